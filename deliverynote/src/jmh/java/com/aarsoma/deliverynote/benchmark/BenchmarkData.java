@@ -0,0 +1,247 @@
+package com.aarsoma.deliverynote.benchmark;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.FinancialYear;
+import com.aarsoma.deliverynote.repository.CustomerRepository;
+import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Seeds one H2 file per scale under build/jmh-data from fixed seeds, reused by later runs
+final class BenchmarkData {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int NOTES_PER_CUSTOMER = 25;
+    private static final int MIN_CUSTOMERS = 20;
+    static final int HISTORY_DAYS = 3 * 365;
+    private static final long SEED = 20240401L;
+
+    private static final String[] MATERIALS = {"Steel", "Brass", "Aluminium", "Copper", "Nylon", "PVC", "Zinc", "Stainless"};
+    private static final String[] PRODUCTS = {"Hex Bolt", "Washer", "Nut", "Bracket", "Pipe", "Elbow", "Flange",
+            "Gasket", "Clamp", "Coupling", "Sheet", "Rod", "Spacer", "Hinge", "Rivet", "Bush"};
+    private static final String[] SIZES = {"M6", "M8", "M10", "M12", "M16", "1/2\"", "3/4\"", "1\"", "25mm", "50mm"};
+    private static final String[] CITIES = {"Pune", "Mumbai", "Chennai", "Bengaluru", "Ahmedabad", "Nashik"};
+    private static final String[] FIRST_NAMES = {"Ravi", "Meera", "Anil", "Sunita", "Kiran", "Farhan", "Priya", "Joseph"};
+    private static final String[] LAST_NAMES = {"Kumar", "Iyer", "Patil", "Shah", "Deshmukh", "Khan", "Nair", "Fernandes"};
+
+    private BenchmarkData() {
+    }
+
+    // Point DBConfig at the database of this scale and seed it if needed; must run before anything uses DBConfig
+    static void open(int scale) throws SQLException {
+        Path dataDir = Paths.get(System.getProperty("deliverynote.benchmark.dataDir", "build/jmh-data"));
+        Path file = dataDir.resolve("notes-" + scale).toAbsolutePath();
+        System.setProperty("deliverynote.db.url", "jdbc:h2:" + file);
+
+        DBConfig.initDatabase();
+        seed(scale);
+    }
+
+    // Issue date of the oldest note; the history ends on the day the database was seeded
+    static LocalDate firstIssueDate() throws SQLException {
+        try (Connection conn = DBConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(issue_date) FROM delivery_notes")) {
+            rs.next();
+            Timestamp first = rs.getTimestamp(1);
+            return first == null ? LocalDate.now().minusDays(HISTORY_DAYS) : first.toLocalDateTime().toLocalDate();
+        }
+    }
+
+    static int customerCount(int scale) {
+        return Math.max(MIN_CUSTOMERS, scale / NOTES_PER_CUSTOMER);
+    }
+
+    static int[] customerIds() throws SQLException {
+        return new CustomerRepository().findIdsByName().values().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    static int maxNoteId() throws SQLException {
+        try (Connection conn = DBConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM delivery_notes")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // Remove notes a benchmark added after the seeded ones
+    static void deleteNotesAfter(int noteId) throws SQLException {
+        try (Connection conn = DBConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM delivery_items WHERE delivery_note_id > ?")) {
+                    pstmt.setInt(1, noteId);
+                    pstmt.executeUpdate();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM delivery_notes WHERE id > ?")) {
+                    pstmt.setInt(1, noteId);
+                    pstmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    static DeliveryNote newNote(Random random, int customerId, LocalDateTime issueDate) {
+        DeliveryNote note = new DeliveryNote();
+        note.setCustomerId(customerId);
+        note.setIssueDate(issueDate);
+        note.setFinancialYear(FinancialYear.getFinancialYear(issueDate.toLocalDate()));
+
+        List<DeliveryItem> items = new ArrayList<>();
+        int itemCount = itemCount(random);
+        for (int i = 0; i < itemCount; i++) {
+            int ordered = 1 + random.nextInt(200);
+            int delivered = random.nextInt(4) == 0 ? random.nextInt(ordered + 1) : ordered;
+
+            DeliveryItem item = new DeliveryItem();
+            item.setItemName(SIZES[random.nextInt(SIZES.length)] + " " + MATERIALS[random.nextInt(MATERIALS.length)]
+                    + " " + PRODUCTS[random.nextInt(PRODUCTS.length)]);
+            item.setOrderedQty(ordered);
+            item.setDeliveredQty(delivered);
+            item.setBalanceQty(ordered - delivered);
+            items.add(item);
+        }
+        note.setItems(items);
+        return note;
+    }
+
+    private static void seed(int scale) throws SQLException {
+        CustomerRepository customerRepository = new CustomerRepository();
+        DeliveryNoteRepository deliveryNoteRepository = new DeliveryNoteRepository();
+
+        int[] customerIds = customerIds();
+        if (customerIds.length < customerCount(scale)) {
+            seedCustomers(customerRepository, customerCount(scale));
+            customerIds = customerIds();
+        }
+
+        int existing = countNotes();
+        if (existing >= scale) {
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        System.out.printf("Seeding %,d delivery notes (%,d present)%n", scale, existing);
+
+        LocalDateTime firstIssueDate = firstIssueDate().atTime(8, 0);
+        long spanSeconds = (long) HISTORY_DAYS * 24 * 60 * 60;
+        Map<String, Integer> numbers = new HashMap<>();
+
+        for (int batch = 0; batch * BATCH_SIZE < scale; batch++) {
+            Random random = new Random(SEED + batch);
+            int first = batch * BATCH_SIZE;
+            int last = Math.min(scale, first + BATCH_SIZE);
+
+            List<DeliveryNote> notes = new ArrayList<>(last - first);
+            for (int n = first; n < last; n++) {
+                // Evenly spread and in id order, like a real history
+                LocalDateTime issueDate = firstIssueDate.plusSeconds(spanSeconds * n / scale);
+                DeliveryNote note = newNote(random, customerIds[random.nextInt(customerIds.length)], issueDate);
+                int number = numbers.merge(note.getFinancialYear(), 1, Integer::sum);
+                note.setNoteNumber(noteNumber(note.getFinancialYear(), number));
+                notes.add(note);
+            }
+            // Batches committed by an earlier, interrupted seeding are skipped
+            if (last <= existing) {
+                continue;
+            }
+
+            try (Connection conn = DBConfig.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    deliveryNoteRepository.insertAll(notes, conn);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+
+        System.out.printf("Seeded in %.1f s%n", (System.nanoTime() - startedAt) / 1e9);
+    }
+
+    private static void seedCustomers(CustomerRepository customerRepository, int count) throws SQLException {
+        Random random = new Random(SEED);
+        try (Connection conn = DBConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Customer> batch = new ArrayList<>();
+                for (int i = 1; i <= count; i++) {
+                    Customer customer = new Customer();
+                    String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                    String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                    customer.setName(lastName + " " + PRODUCTS[random.nextInt(PRODUCTS.length)].split(" ")[0]
+                            + " Works " + i);
+                    customer.setAddress(i + " Industrial Estate, " + CITIES[random.nextInt(CITIES.length)]);
+                    customer.setContactPerson(firstName + " " + lastName);
+                    customer.setPhone(String.format("+91 98%03d %05d", random.nextInt(1000), i % 100000));
+                    customer.setEmail("orders" + i + "@example.com");
+                    batch.add(customer);
+
+                    if (batch.size() == BATCH_SIZE) {
+                        customerRepository.upsertAll(batch, conn);
+                        batch.clear();
+                    }
+                }
+                customerRepository.upsertAll(batch, conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int countNotes() throws SQLException {
+        try (Connection conn = DBConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM delivery_notes")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // Mostly small notes with a tail of larger ones: 1 to 8 items, 3 on average
+    private static int itemCount(Random random) {
+        int count = 1;
+        while (count < 8 && random.nextInt(3) != 0) {
+            count++;
+        }
+        return count;
+    }
+
+    // Same layout as the numbers the application allocates, e.g. "DN2024-25-0042"
+    private static String noteNumber(String financialYear, int number) {
+        String[] years = financialYear.split("-");
+        return String.format("DN%s-%s-%04d", years[0], years[1].substring(2), number);
+    }
+}
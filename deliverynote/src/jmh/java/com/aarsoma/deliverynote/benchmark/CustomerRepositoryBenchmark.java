@@ -0,0 +1,28 @@
+package com.aarsoma.deliverynote.benchmark;
+
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.repository.CustomerRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The uncached customer list; one customer per 25 notes of the scale
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CustomerRepositoryBenchmark {
+
+    private final CustomerRepository repository = new CustomerRepository();
+
+    @Benchmark
+    public List<Customer> findAll(SeededDatabase db) throws SQLException {
+        return repository.findAll();
+    }
+}
@@ -0,0 +1,50 @@
+package com.aarsoma.deliverynote.benchmark;
+
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The history screen's reads and the next-number preview of the delivery note form
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DeliveryNoteRepositoryBenchmark {
+
+    private final DeliveryNoteRepository repository = new DeliveryNoteRepository();
+    private int nextCustomer;
+
+    @Benchmark
+    public List<DeliveryNote> findAll(SeededDatabase db) throws SQLException {
+        return repository.findAll();
+    }
+
+    // One week from the middle of the history
+    @Benchmark
+    public List<DeliveryNote> findByDateRange(SeededDatabase db) throws SQLException {
+        LocalDate start = db.firstIssueDate.plusDays(BenchmarkData.HISTORY_DAYS / 2);
+        return repository.findByDateRange(start, start.plusDays(6));
+    }
+
+    // Each call asks for the next customer, so the caches see a realistic spread
+    @Benchmark
+    public List<DeliveryNote> findByCustomerId(SeededDatabase db) throws SQLException {
+        int customerId = db.customerIds[nextCustomer++ % db.customerIds.length];
+        return repository.findByCustomerId(customerId);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String generateNextDeliveryNoteNumber(SeededDatabase db) throws SQLException {
+        return repository.generateNextDeliveryNoteNumber();
+    }
+}
@@ -0,0 +1,47 @@
+package com.aarsoma.deliverynote.benchmark;
+
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
+import com.aarsoma.deliverynote.service.StatisticsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Saving a note with its items; the notes saved during a trial are deleted afterwards
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeliveryNoteSaveBenchmark {
+
+    private final DeliveryNoteRepository repository = new DeliveryNoteRepository();
+    private final Random random = new Random(42);
+    private int seededMaxNoteId;
+
+    @Setup(Level.Trial)
+    public void rememberSeededNotes(SeededDatabase db) throws SQLException {
+        seededMaxNoteId = BenchmarkData.maxNoteId();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSavedNotes(SeededDatabase db) throws SQLException {
+        BenchmarkData.deleteNotesAfter(seededMaxNoteId);
+        new StatisticsService().reconcileCounters();
+    }
+
+    @Benchmark
+    public DeliveryNote save(SeededDatabase db) throws SQLException {
+        int customerId = db.customerIds[random.nextInt(db.customerIds.length)];
+        return repository.save(BenchmarkData.newNote(random, customerId, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,28 @@
+package com.aarsoma.deliverynote.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+// The seeded database of one scale, opened once per fork
+@State(Scope.Benchmark)
+public class SeededDatabase {
+
+    @Param({"1000", "100000", "1000000"})
+    public int scale;
+
+    int[] customerIds;
+    LocalDate firstIssueDate;
+
+    @Setup(Level.Trial)
+    public void open() throws SQLException {
+        BenchmarkData.open(scale);
+        customerIds = BenchmarkData.customerIds();
+        firstIssueDate = BenchmarkData.firstIssueDate();
+    }
+}
@@ -0,0 +1,27 @@
+package com.aarsoma.deliverynote.benchmark;
+
+import com.aarsoma.deliverynote.model.Statistics;
+import com.aarsoma.deliverynote.service.StatisticsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// The dashboard figures, read from the statistics counters
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatisticsServiceBenchmark {
+
+    private final StatisticsService service = new StatisticsService();
+
+    @Benchmark
+    public Statistics getDeliveryNoteStatistics(SeededDatabase db) throws SQLException {
+        return service.getDeliveryNoteStatistics();
+    }
+}
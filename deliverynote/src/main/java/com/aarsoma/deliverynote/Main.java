@@ -1,6 +1,13 @@
 package com.aarsoma.deliverynote;
 
+import com.aarsoma.deliverynote.api.ApiServer;
 import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.controller.SplashScreenController;
+import com.aarsoma.deliverynote.service.AsyncDataService;
+import com.aarsoma.deliverynote.service.DataChangeWatcher;
+import com.aarsoma.deliverynote.service.SearchIndexJob;
+import com.aarsoma.deliverynote.service.StatisticsReconciliationJob;
+import com.aarsoma.deliverynote.util.ViewLoader;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -10,25 +17,57 @@ import javafx.stage.Stage;
 import java.io.IOException;
 
 public class Main extends Application {
+    private final StatisticsReconciliationJob reconciliationJob = new StatisticsReconciliationJob();
+    private final SearchIndexJob searchIndexJob = new SearchIndexJob();
+    private final DataChangeWatcher dataChangeWatcher = new DataChangeWatcher();
+    // Null unless deliverynote.api.port is set
+    private final ApiServer apiServer = ApiServer.fromSystemProperties();
+
     @Override
     public void start(Stage stage) throws IOException {
-        // Initialize database
-        DBConfig.initDatabase();
+        // Open the database and preload the dashboard while the splash screen is shown
+        Startup startup = new Startup(() -> {
+            // Correct any drift in the dashboard counters in the background
+            reconciliationJob.start();
+
+            // Load the history search index
+            searchIndexJob.start();
+
+            // Notice notes and customers saved by other terminals
+            dataChangeWatcher.start();
+
+            if (apiServer != null) {
+                try {
+                    apiServer.start();
+                } catch (IOException e) {
+                    System.err.println("HTTP API not started: " + e.getMessage());
+                }
+            }
+        });
+        startup.begin();
 
-        FXMLLoader fxmlLoader = new FXMLLoader(Main.class.getResource("hello-view.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 320, 240);
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/splash.fxml"));
-        Parent root = loader.load();
+        Parent root = ViewLoader.load(loader);
+        SplashScreenController controller = loader.getController();
+        controller.setStartup(startup);
 
         stage.setTitle("AARSOMA GRAPHICS DELIVERY NOTE SYSTEM");
         stage.setScene(new Scene(root, 800, 600));
         stage.centerOnScreen();
         stage.show();
+        startup.splashShown();
     }
 
     @Override
     public void stop() throws Exception {
         super.stop();
+        if (apiServer != null) {
+            apiServer.stop();
+        }
+        reconciliationJob.stop();
+        searchIndexJob.stop();
+        dataChangeWatcher.stop();
+        AsyncDataService.shutdown();
         DBConfig.closeConnections();
     }
 
@@ -0,0 +1,121 @@
+package com.aarsoma.deliverynote;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.model.DeliveryNoteQuery;
+import com.aarsoma.deliverynote.model.PdfExportResult;
+import com.aarsoma.deliverynote.service.PdfExportService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+// Headless PDF export for month-end runs; options are in README.md
+public class PdfExport {
+
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final DeliveryNoteQuery query = DeliveryNoteQuery.all();
+    private Path target;
+    private boolean zip;
+    private String dbUrl;
+    private long lastProgressAt = System.nanoTime();
+
+    public static void main(String[] args) {
+        PdfExport export = new PdfExport();
+        try {
+            export.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: PdfExport (--out FOLDER | --zip FILE) [--from YYYY-MM-DD] [--to YYYY-MM-DD]"
+                    + " [--customer ID] [--threads N] [--db JDBC_URL]");
+            System.exit(2);
+        }
+
+        try {
+            PdfExportResult result = export.run();
+            System.out.printf("%,d delivery notes (%,d pages) written to %s%nSize: %,d bytes%nTime: %.1f s, %.0f notes/s%n",
+                    result.getNotesWritten(), result.getPagesWritten(), result.getTarget(),
+                    result.getBytesWritten(), result.getElapsedMillis() / 1000.0, result.getNotesPerSecond());
+            System.exit(0);
+        } catch (IOException | SQLException | RuntimeException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--out":
+                        target = Paths.get(value);
+                        zip = false;
+                        break;
+                    case "--zip":
+                        target = Paths.get(value);
+                        zip = true;
+                        break;
+                    case "--from":
+                        query.setStartDate(LocalDate.parse(value));
+                        break;
+                    case "--to":
+                        query.setEndDate(LocalDate.parse(value));
+                        break;
+                    case "--customer":
+                        query.setCustomerId(Integer.parseInt(value));
+                        break;
+                    case "--threads":
+                        // Read when PdfExportService is first used, which is after this
+                        System.setProperty("deliverynote.pdf.threads", Integer.toString(Integer.parseInt(value)));
+                        break;
+                    case "--db":
+                        dbUrl = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Not a date for " + option + ": " + value);
+            }
+        }
+
+        if (target == null) {
+            throw new IllegalArgumentException("One of --out or --zip is required");
+        }
+        if (query.getStartDate() != null && query.getEndDate() != null && query.getStartDate().isAfter(query.getEndDate())) {
+            throw new IllegalArgumentException("--from must not be after --to");
+        }
+    }
+
+    private PdfExportResult run() throws IOException, SQLException {
+        if (dbUrl != null) {
+            System.setProperty("deliverynote.db.url", dbUrl);
+        }
+        DBConfig.initDatabase();
+
+        try {
+            return new PdfExportService().exportPdfs(query, target, zip, this::showProgress);
+        } finally {
+            DBConfig.closeConnections();
+        }
+    }
+
+    private void showProgress(PdfExportResult progress) {
+        long now = System.nanoTime();
+        if (!progress.isFinished() && now - lastProgressAt >= PROGRESS_INTERVAL_NANOS) {
+            lastProgressAt = now;
+            System.out.printf("%,d notes written, %.0f notes/s%n", progress.getNotesWritten(), progress.getNotesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.aarsoma.deliverynote;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.controller.DashboardController;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.model.Statistics;
+import com.aarsoma.deliverynote.service.StatisticsService;
+import com.aarsoma.deliverynote.util.ViewLoader;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Opens the database and loads the dashboard in parallel behind the splash screen, timing each
+// phase as Startup.<phase>
+public class Startup {
+
+    private static final String DASHBOARD_VIEW = "/com/aarsoma/deliverynote/view/dashboard.fxml";
+
+    private final Runnable onDatabaseReady;
+    private final long startedAt = System.nanoTime();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    // One thread for the database and one for the view, so neither waits for the other
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "startup-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CompletableFuture<Statistics> database;
+    private CompletableFuture<FXMLLoader> dashboard;
+    private CompletableFuture<Void> ready;
+    private volatile long splashShownMillis = -1;
+
+    // onDatabaseReady runs on a startup thread once the database is open, e.g. to start the background jobs
+    public Startup(Runnable onDatabaseReady) {
+        this.onDatabaseReady = onDatabaseReady;
+    }
+
+    public synchronized void begin() {
+        if (ready != null) {
+            return;
+        }
+
+        database = CompletableFuture.supplyAsync(() -> {
+            Metrics.timer("Startup.database").run(DBConfig::initDatabase);
+            onDatabaseReady.run();
+            try {
+                // Also warms the pages and code the dashboard needs
+                return Metrics.timer("Startup.firstStatistics").time(new StatisticsService()::getDeliveryNoteStatistics);
+            } catch (SQLException e) {
+                // The dashboard queries them again when shown
+                System.err.println("Startup statistics query failed: " + e.getMessage());
+                return null;
+            }
+        }, executor);
+
+        // FXML may be loaded off the FX thread as long as the nodes are not shown yet
+        dashboard = CompletableFuture.supplyAsync(() -> {
+            FXMLLoader loader = new FXMLLoader(Startup.class.getResource(DASHBOARD_VIEW));
+            try {
+                ViewLoader.load(loader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return loader;
+        }, executor).exceptionally(error -> {
+            // Not fatal, the splash screen then loads it on the FX thread
+            System.err.println("Dashboard preload failed: " + error.getMessage());
+            return null;
+        });
+
+        ready = CompletableFuture.allOf(database, dashboard).whenComplete((result, error) -> {
+            executor.shutdown();
+            if (error == null) {
+                long readyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt);
+                Metrics.timer("Startup.ready").record(readyMicros);
+                printSummary(readyMicros / 1000);
+            }
+        });
+    }
+
+    // Completes when the dashboard can be shown; exceptionally if the database could not be opened
+    public CompletableFuture<Void> whenReady() {
+        return ready;
+    }
+
+    // Call right after the splash screen is shown; measured from JVM start, as that is what the user waits for
+    public void splashShown() {
+        splashShownMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        Metrics.timer("Startup.splashShown").record(TimeUnit.MILLISECONDS.toMicros(splashShownMillis));
+    }
+
+    // The preloaded dashboard, or null if it could not be loaded in the background;
+    // only valid once whenReady() has completed normally
+    public Parent getDashboardRoot() {
+        FXMLLoader loader = dashboard.join();
+        return loader == null ? null : loader.getRoot();
+    }
+
+    public DashboardController getDashboardController() {
+        FXMLLoader loader = dashboard.join();
+        return loader == null ? null : loader.getController();
+    }
+
+    // Null if the query failed
+    public Statistics getFirstStatistics() {
+        return database.join();
+    }
+
+    private void printSummary(long readyMillis) {
+        StringBuilder summary = new StringBuilder("Startup:");
+        if (splashShownMillis >= 0) {
+            summary.append(" splash shown ").append(splashShownMillis).append(" ms after JVM start,");
+        }
+        summary.append(" database ").append(millis("Startup.database"))
+                .append(" ms, dashboard view ").append(millis("View.dashboard"))
+                .append(" ms, first statistics ").append(millis("Startup.firstStatistics"))
+                .append(" ms, ready after ").append(readyMillis).append(" ms");
+        System.out.println(summary);
+    }
+
+    private static long millis(String timerName) {
+        return Metrics.timer(timerName).snapshot().getMaxMicros() / 1000;
+    }
+}
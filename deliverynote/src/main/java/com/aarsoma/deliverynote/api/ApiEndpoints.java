@@ -0,0 +1,293 @@
+package com.aarsoma.deliverynote.api;
+
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.DeliveryNotePage;
+import com.aarsoma.deliverynote.model.DeliveryNoteQuery;
+import com.aarsoma.deliverynote.model.FinancialYear;
+import com.aarsoma.deliverynote.model.Statistics;
+import com.aarsoma.deliverynote.service.CustomerService;
+import com.aarsoma.deliverynote.service.DeliveryNoteService;
+import com.aarsoma.deliverynote.service.StatisticsService;
+import com.aarsoma.deliverynote.util.DeliveryNoteJson;
+import com.aarsoma.deliverynote.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// The customer, delivery note and statistics endpoints; notes and customers are written in the
+// layout of DeliveryNoteJson
+class ApiEndpoints {
+
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 200;
+    private static final int LIST_PAGE_SIZE = 200;
+
+    private final CustomerService customerService = new CustomerService();
+    private final DeliveryNoteService deliveryNoteService = new DeliveryNoteService();
+    private final StatisticsService statisticsService = new StatisticsService();
+
+    void register(ApiServer server) {
+        server.route("GET", "/api/customers", this::listCustomers);
+        server.route("POST", "/api/customers", this::createCustomer);
+        server.route("GET", "/api/customers/{id}", this::getCustomer);
+        server.route("PUT", "/api/customers/{id}", this::updateCustomer);
+        server.route("GET", "/api/notes", this::listNotes);
+        server.route("POST", "/api/notes", this::createNote);
+        server.route("GET", "/api/notes/search", this::searchNotes);
+        server.route("GET", "/api/notes/{number}", this::getNote);
+        server.route("GET", "/api/statistics", this::getStatistics);
+        server.route("GET", "/api/metrics", this::getMetrics);
+    }
+
+    // ?q= searches names, contacts and phone numbers; without it every customer is listed
+    private void listCustomers(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        String text = request.query("q");
+        List<Customer> customers = text == null
+                ? customerService.getAllCustomers()
+                : customerService.searchCustomers(text, request.queryInt("limit", DEFAULT_SEARCH_LIMIT, 1, MAX_SEARCH_LIMIT));
+
+        JsonWriter json = response.begin(200);
+        json.beginArray();
+        for (Customer customer : customers) {
+            DeliveryNoteJson.writeCustomer(json, customer);
+        }
+        json.endArray();
+    }
+
+    private void getCustomer(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        Customer customer = findCustomer(request.pathParamInt("id"));
+        DeliveryNoteJson.writeCustomer(response.begin(200), customer);
+    }
+
+    private void createCustomer(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        Customer customer = readCustomer(request.bodyObject(), new Customer());
+        DeliveryNoteJson.writeCustomer(response.begin(201), customerService.saveCustomer(customer));
+    }
+
+    // Fields left out of the body keep their current value
+    private void updateCustomer(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        Customer customer = readCustomer(request.bodyObject(), copy(findCustomer(request.pathParamInt("id"))));
+        DeliveryNoteJson.writeCustomer(response.begin(200), customerService.saveCustomer(customer));
+    }
+
+    // ?from=&to= (dates, inclusive) lists the notes of the range oldest first, optionally only
+    // those of ?customerId=; ?customerId= alone lists that customer's notes, newest first
+    private void listNotes(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        LocalDate from = request.queryDate("from");
+        LocalDate to = request.queryDate("to");
+        Integer customerId = request.queryInt("customerId");
+
+        DeliveryNoteQuery query;
+        if (from == null && to == null) {
+            if (customerId == null) {
+                throw new ApiException(400, "Give 'from' and 'to', or 'customerId'");
+            }
+            query = DeliveryNoteQuery.forCustomer(customerId);
+        } else {
+            if (from == null || to == null) {
+                throw new ApiException(400, "Give both 'from' and 'to'");
+            }
+            if (to.isBefore(from)) {
+                throw new ApiException(400, "'to' is before 'from'");
+            }
+            query = DeliveryNoteQuery.forDateRange(from, to);
+            query.setCustomerId(customerId);
+            query.setAscending(true);
+        }
+
+        // Keyset pages, so a slow client holds no pooled connection while it reads
+        JsonWriter json = response.begin(200);
+        json.beginArray();
+        DeliveryNotePage page = deliveryNoteService.getDeliveryNotesPage(query, null, LIST_PAGE_SIZE);
+        while (true) {
+            for (DeliveryNote note : page.getNotes()) {
+                DeliveryNoteJson.writeNote(json, note);
+            }
+            if (!page.isHasMore()) {
+                break;
+            }
+            page = deliveryNoteService.getDeliveryNotesPage(query, page.getLastNote(), LIST_PAGE_SIZE);
+        }
+        json.endArray();
+    }
+
+    private void searchNotes(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        String text = request.query("q");
+        if (text == null) {
+            throw new ApiException(400, "'q' is required");
+        }
+        List<DeliveryNote> notes = deliveryNoteService.searchDeliveryNotes(text,
+                request.queryInt("limit", DEFAULT_SEARCH_LIMIT, 1, MAX_SEARCH_LIMIT));
+
+        JsonWriter json = response.begin(200);
+        json.beginArray();
+        for (DeliveryNote note : notes) {
+            DeliveryNoteJson.writeNote(json, note);
+        }
+        json.endArray();
+    }
+
+    private void getNote(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        String noteNumber = request.pathParam("number");
+        DeliveryNote note = deliveryNoteService.getDeliveryNoteByNumber(noteNumber)
+                .orElseThrow(() -> new ApiException(404, "No delivery note " + noteNumber));
+        DeliveryNoteJson.writeNote(response.begin(200), note);
+    }
+
+    // Body: {"customerId", "issueDate" (optional, default now), "items": [{"itemName",
+    // "orderedQty", "deliveredQty", "balanceQty" (optional)}]}; the note number is assigned on save
+    private void createNote(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        Map<String, Object> body = request.bodyObject();
+        int customerId = requiredInt(body, "customerId");
+        Optional<Customer> customer = customerService.getCustomerById(customerId);
+        if (customer.isEmpty()) {
+            throw new ApiException(422, "No customer " + customerId);
+        }
+
+        DeliveryNote note = new DeliveryNote();
+        note.setCustomerId(customerId);
+        note.setCustomer(customer.get());
+        String issueDate = optionalString(body, "issueDate");
+        note.setIssueDate(issueDate == null ? LocalDateTime.now().withNano(0) : parseDateTime("issueDate", issueDate));
+        note.setFinancialYear(FinancialYear.getFinancialYear(note.getIssueDate().toLocalDate()));
+
+        Object items = body.get("items");
+        if (!(items instanceof List) || ((List<?>) items).isEmpty()) {
+            throw new ApiException(400, "'items' must be a non-empty array");
+        }
+        for (Object value : (List<?>) items) {
+            if (!(value instanceof Map)) {
+                throw new ApiException(400, "Every item must be an object");
+            }
+            note.getItems().add(readItem((Map<?, ?>) value));
+        }
+
+        DeliveryNoteJson.writeNote(response.begin(201), deliveryNoteService.saveDeliveryNote(note));
+    }
+
+    private void getStatistics(ApiRequest request, ApiResponse response) throws SQLException, IOException {
+        Statistics stats = statisticsService.getDeliveryNoteStatistics();
+        response.begin(200).beginObject()
+                .name("totalDeliveryNotes").value(stats.getTotalDeliveryNotes())
+                .name("financialYearDeliveryNotes").value(stats.getFinancialYearDeliveryNotes())
+                .name("monthlyDeliveryNotes").value(stats.getMonthlyDeliveryNotes())
+                .name("weeklyDeliveryNotes").value(stats.getWeeklyDeliveryNotes())
+                .name("dailyDeliveryNotes").value(stats.getDailyDeliveryNotes())
+                .name("financialYear").value(stats.getFinancialYear())
+                .name("computedAt").value(DeliveryNoteJson.formatDateTime(stats.getComputedAt()))
+                .endObject();
+    }
+
+    // The same figures as the diagnostics window, including the Api.* latency of each endpoint
+    private void getMetrics(ApiRequest request, ApiResponse response) throws IOException {
+        StringWriter snapshot = new StringWriter();
+        Metrics.snapshot().writeJson(snapshot);
+        response.begin(200).rawValue(snapshot.toString());
+    }
+
+    private Customer findCustomer(int id) throws SQLException {
+        return customerService.getCustomerById(id)
+                .orElseThrow(() -> new ApiException(404, "No customer " + id));
+    }
+
+    private static Customer readCustomer(Map<String, Object> body, Customer customer) {
+        if (body.containsKey("name")) {
+            customer.setName(checkLength("name", optionalString(body, "name"), 100));
+        }
+        if (customer.getName() == null || customer.getName().isBlank()) {
+            throw new ApiException(400, "'name' is required");
+        }
+        if (body.containsKey("address")) {
+            customer.setAddress(checkLength("address", optionalString(body, "address"), 200));
+        }
+        if (body.containsKey("contactPerson")) {
+            customer.setContactPerson(checkLength("contactPerson", optionalString(body, "contactPerson"), 100));
+        }
+        if (body.containsKey("phone")) {
+            customer.setPhone(checkLength("phone", optionalString(body, "phone"), 20));
+        }
+        if (body.containsKey("email")) {
+            customer.setEmail(checkLength("email", optionalString(body, "email"), 100));
+        }
+        return customer;
+    }
+
+    // The cache hands out shared instances, so updates work on a copy
+    private static Customer copy(Customer customer) {
+        Customer copy = new Customer();
+        copy.setId(customer.getId());
+        copy.setName(customer.getName());
+        copy.setAddress(customer.getAddress());
+        copy.setContactPerson(customer.getContactPerson());
+        copy.setPhone(customer.getPhone());
+        copy.setEmail(customer.getEmail());
+        copy.setCreatedAt(customer.getCreatedAt());
+        copy.setUpdatedAt(customer.getUpdatedAt());
+        return copy;
+    }
+
+    private static DeliveryItem readItem(Map<?, ?> value) {
+        DeliveryItem item = new DeliveryItem();
+        Object name = value.get("itemName");
+        if (!(name instanceof String) || ((String) name).isBlank()) {
+            throw new ApiException(400, "Every item needs an 'itemName'");
+        }
+        item.setItemName(checkLength("itemName", ((String) name).trim(), 100));
+        item.setOrderedQty(quantity(value, "orderedQty"));
+        item.setDeliveredQty(quantity(value, "deliveredQty"));
+        item.setBalanceQty(value.get("balanceQty") == null
+                ? item.getOrderedQty() - item.getDeliveredQty()
+                : quantity(value, "balanceQty"));
+        return item;
+    }
+
+    private static int quantity(Map<?, ?> value, String name) {
+        Object quantity = value.get(name);
+        if (!(quantity instanceof Long) || (Long) quantity < 0 || (Long) quantity > Integer.MAX_VALUE) {
+            throw new ApiException(400, "'" + name + "' must be a whole number of at least 0");
+        }
+        return ((Long) quantity).intValue();
+    }
+
+    private static int requiredInt(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof Long) || (Long) value > Integer.MAX_VALUE || (Long) value < Integer.MIN_VALUE) {
+            throw new ApiException(400, "'" + name + "' must be a whole number");
+        }
+        return ((Long) value).intValue();
+    }
+
+    private static String optionalString(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new ApiException(400, "'" + name + "' must be a string");
+        }
+        return value == null ? null : ((String) value).trim();
+    }
+
+    // Column sizes of the schema, so a value that would not fit is refused before it reaches the database
+    private static String checkLength(String name, String value, int maxLength) {
+        if (value != null && value.length() > maxLength) {
+            throw new ApiException(400, "'" + name + "' is longer than " + maxLength + " characters");
+        }
+        return value;
+    }
+
+    private static LocalDateTime parseDateTime(String name, String value) {
+        try {
+            return LocalDateTime.parse(value, DeliveryNoteJson.DATE_TIME_FORMAT);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "'" + name + "' must look like 2024-04-01T09:30:00");
+        }
+    }
+}
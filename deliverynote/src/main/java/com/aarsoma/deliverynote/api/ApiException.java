@@ -0,0 +1,18 @@
+package com.aarsoma.deliverynote.api;
+
+// A request the API refuses, answered with the given HTTP status and the message as error text
+public class ApiException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public ApiException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
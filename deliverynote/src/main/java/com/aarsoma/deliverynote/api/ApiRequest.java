@@ -0,0 +1,119 @@
+package com.aarsoma.deliverynote.api;
+
+import com.aarsoma.deliverynote.util.JsonReader;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+// One call to an endpoint: path parameters, query parameters and the JSON body, with the
+// conversions endpoints need; invalid values are refused with 400
+public class ApiRequest {
+
+    private final String method;
+    private final String path;
+    private final Map<String, String> pathParams;
+    private final Map<String, String> query;
+    private final String bodyText;
+    private Object body;
+    private boolean bodyParsed;
+
+    ApiRequest(String method, String path, Map<String, String> pathParams, Map<String, String> query,
+               String bodyText, Object body) {
+        this.method = method;
+        this.path = path;
+        this.pathParams = pathParams;
+        this.query = query;
+        this.bodyText = bodyText;
+        this.body = body;
+        this.bodyParsed = bodyText == null;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String pathParam(String name) {
+        return pathParams.get(name);
+    }
+
+    public int pathParamInt(String name) {
+        return parseInt(name, pathParams.get(name));
+    }
+
+    // Null when the parameter is missing or empty
+    public String query(String name) {
+        String value = query.get(name);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    public Integer queryInt(String name) {
+        String value = query(name);
+        return value == null ? null : parseInt(name, value);
+    }
+
+    public int queryInt(String name, int defaultValue, int min, int max) {
+        Integer value = queryInt(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value < min || value > max) {
+            throw new ApiException(400, "'" + name + "' must be between " + min + " and " + max);
+        }
+        return value;
+    }
+
+    // Dates as yyyy-MM-dd
+    public LocalDate queryDate(String name) {
+        String value = query(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "'" + name + "' must be a date like 2024-04-01");
+        }
+    }
+
+    // The parsed JSON body; see JsonReader for the types
+    public Object body() {
+        if (!bodyParsed) {
+            bodyParsed = true;
+            if (bodyText == null || bodyText.isBlank()) {
+                body = null;
+            } else {
+                try {
+                    body = JsonReader.parse(bodyText);
+                } catch (IllegalArgumentException e) {
+                    throw new ApiException(400, "Invalid JSON: " + e.getMessage());
+                }
+            }
+        }
+        if (body == null) {
+            throw new ApiException(400, "A JSON body is required");
+        }
+        return body;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> bodyObject() {
+        Object value = body();
+        if (!(value instanceof Map)) {
+            throw new ApiException(400, "The body must be a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "'" + name + "' must be a whole number");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.aarsoma.deliverynote.api;
+
+import com.aarsoma.deliverynote.util.JsonWriter;
+
+import java.io.IOException;
+
+// Where an endpoint writes its answer: over HTTP it is streamed to the client as it is written,
+// inside a batch it is collected until the endpoint returns
+public interface ApiResponse {
+
+    // Sends the status; the body is then written as one JSON value to the returned writer.
+    // Errors thrown before this call become an error response, after it the body is cut short
+    JsonWriter begin(int status) throws IOException;
+}
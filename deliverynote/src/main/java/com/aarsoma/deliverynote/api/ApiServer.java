@@ -0,0 +1,424 @@
+package com.aarsoma.deliverynote.api;
+
+import com.aarsoma.deliverynote.metrics.Counter;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
+import com.aarsoma.deliverynote.util.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Optional JSON API over HTTP, started when deliverynote.api.port is set; see README.md
+public class ApiServer {
+
+    // Platform threads when virtual threads are not available
+    private static final int FALLBACK_THREADS = 64;
+    // Connections the OS queues while all handlers are busy accepting
+    private static final int BACKLOG = 1000;
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+
+    private static final Counter RESPONSES_2XX = Metrics.counter("Api.responses.2xx");
+    private static final Counter RESPONSES_4XX = Metrics.counter("Api.responses.4xx");
+    private static final Counter RESPONSES_5XX = Metrics.counter("Api.responses.5xx");
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(ApiRequest request, ApiResponse response) throws SQLException, IOException;
+    }
+
+    private final String host;
+    private final int port;
+    private final String apiKey;
+    private final List<Route> routes = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // apiKey, when not null, must be sent by clients in the X-Api-Key header
+    public ApiServer(String host, int port, String apiKey) {
+        this.host = host;
+        this.port = port;
+        this.apiKey = apiKey;
+        route("POST", "/api/batch", this::handleBatch);
+        new ApiEndpoints().register(this);
+        Metrics.gauge("Api.inFlight", inFlight::get);
+    }
+
+    // The server configured by the deliverynote.api.* properties, or null when the API is off
+    public static ApiServer fromSystemProperties() {
+        Integer port = Integer.getInteger("deliverynote.api.port");
+        if (port == null) {
+            return null;
+        }
+        return new ApiServer(System.getProperty("deliverynote.api.host", "127.0.0.1"), port,
+                System.getProperty("deliverynote.api.key"));
+    }
+
+    // Literal segments match before {parameters}, so register /api/notes/search before /api/notes/{number}
+    public void route(String method, String pattern, Handler handler) {
+        routes.add(new Route(method, pattern, handler));
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        executor = newExecutor();
+        server = HttpServer.create(new InetSocketAddress(host, port), BACKLOG);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("API listening on http://" + host + ":" + port + "/api/");
+    }
+
+    // Finishes the requests in progress, waiting at most a second
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            server = null;
+            // Not shutdownNow(): interrupting a thread inside H2 closes the database
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    // The build targets Java 17, so virtual threads are looked up when running
+    private static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(FALLBACK_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "api-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) {
+        inFlight.incrementAndGet();
+        HttpResponse response = new HttpResponse(exchange);
+        try {
+            if (apiKey != null && !apiKey.equals(exchange.getRequestHeaders().getFirst("X-Api-Key"))) {
+                throw new ApiException(401, "Missing or wrong X-Api-Key header");
+            }
+            String bodyText = null;
+            String method = exchange.getRequestMethod();
+            if (method.equals("POST") || method.equals("PUT")) {
+                bodyText = readBody(exchange.getRequestBody());
+            }
+            dispatch(method, exchange.getRequestURI().getRawPath(), exchange.getRequestURI().getRawQuery(),
+                    bodyText, null, response);
+        } catch (ApiException e) {
+            response.error(e.getStatus(), e.getMessage());
+            countStatus(e.getStatus());
+        } catch (IOException e) {
+            // The client went away; nothing to answer
+        } finally {
+            response.finish();
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Runs the route for one call, turning failures into error responses while nothing was sent yet
+    private void dispatch(String method, String rawPath, String rawQuery, String bodyText, Object body,
+                          ResponseSink response) throws IOException {
+        long startedAt = System.nanoTime();
+        Route route = null;
+        try {
+            String path = decode(rawPath);
+            // Decoded one by one, so an encoded '/' inside e.g. a note number stays in its segment
+            String[] segments = rawPath.split("/");
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = decode(segments[i]);
+            }
+            Map<String, String> pathParams = new HashMap<>();
+            route = findRoute(method, path, segments, pathParams);
+            ApiRequest request = new ApiRequest(method, path, pathParams, parseQuery(rawQuery), bodyText, body);
+            route.handler.handle(request, response);
+            if (!response.isStarted()) {
+                response.begin(204);
+            }
+        } catch (ApiException e) {
+            response.error(e.getStatus(), e.getMessage());
+        } catch (SQLTimeoutException e) {
+            response.error(503, "The database is busy, try again");
+        } catch (SQLException e) {
+            // The details stay in the log; they can show table names and values of other requests
+            System.err.println("API " + method + " " + rawPath + " failed:");
+            e.printStackTrace();
+            response.error(500, "Database error");
+        } catch (RuntimeException e) {
+            System.err.println("API " + method + " " + rawPath + " failed:");
+            e.printStackTrace();
+            response.error(500, "Internal error");
+        } finally {
+            if (route != null) {
+                route.timer.recordSince(startedAt);
+            }
+            countStatus(response.getStatus());
+        }
+    }
+
+    // Body: an array of {"method", "path" (with an optional query), "body"}; answered with an
+    // array of {"status", "body"} in the same order. The calls run one after the other
+    private void handleBatch(ApiRequest request, ApiResponse response) throws IOException {
+        Object body = request.body();
+        if (!(body instanceof List)) {
+            throw new ApiException(400, "The body must be an array of requests");
+        }
+        List<?> calls = (List<?>) body;
+        if (calls.size() > MAX_BATCH_SIZE) {
+            throw new ApiException(400, "At most " + MAX_BATCH_SIZE + " requests per batch");
+        }
+
+        // Checked up front so that a bad entry does not leave half the batch done
+        List<Map<?, ?>> checked = new ArrayList<>();
+        for (Object call : calls) {
+            if (!(call instanceof Map) || !(((Map<?, ?>) call).get("method") instanceof String)
+                    || !(((Map<?, ?>) call).get("path") instanceof String)) {
+                throw new ApiException(400, "Every request needs a \"method\" and a \"path\"");
+            }
+            if (((String) ((Map<?, ?>) call).get("path")).startsWith("/api/batch")) {
+                throw new ApiException(400, "Batches cannot be nested");
+            }
+            checked.add((Map<?, ?>) call);
+        }
+
+        JsonWriter json = response.begin(200);
+        json.beginArray();
+        for (Map<?, ?> call : checked) {
+            String target = (String) call.get("path");
+            int queryStart = target.indexOf('?');
+            String rawPath = queryStart < 0 ? target : target.substring(0, queryStart);
+            String rawQuery = queryStart < 0 ? null : target.substring(queryStart + 1);
+
+            BufferedResponse callResponse = new BufferedResponse();
+            dispatch(((String) call.get("method")).toUpperCase(), rawPath, rawQuery, null, call.get("body"), callResponse);
+            json.beginObject();
+            json.name("status").value(callResponse.getStatus());
+            json.name("body");
+            if (callResponse.hasBody()) {
+                json.rawValue(callResponse.body.toString());
+            } else {
+                json.value((String) null);
+            }
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private Route findRoute(String method, String path, String[] segments, Map<String, String> pathParams) {
+        boolean pathMatched = false;
+        for (Route route : routes) {
+            Map<String, String> params = new HashMap<>();
+            if (route.matches(segments, params)) {
+                pathMatched = true;
+                if (route.method.equals(method)) {
+                    pathParams.putAll(params);
+                    return route;
+                }
+            }
+        }
+        throw pathMatched ? new ApiException(405, method + " is not supported for " + path)
+                : new ApiException(404, "No endpoint " + path);
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "The body is larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+            String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+            query.putIfAbsent(name, value);
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Invalid URL encoding");
+        }
+    }
+
+    private static void countStatus(int status) {
+        if (status >= 500) {
+            RESPONSES_5XX.increment();
+        } else if (status >= 400) {
+            RESPONSES_4XX.increment();
+        } else {
+            RESPONSES_2XX.increment();
+        }
+    }
+
+    private static final class Route {
+        private final String method;
+        private final String[] segments;
+        private final Handler handler;
+        private final Timer timer;
+
+        private Route(String method, String pattern, Handler handler) {
+            this.method = method;
+            this.segments = pattern.split("/");
+            this.handler = handler;
+            this.timer = Metrics.timer("Api." + method + " " + pattern);
+        }
+
+        private boolean matches(String[] path, Map<String, String> params) {
+            if (path.length != segments.length) {
+                return false;
+            }
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.startsWith("{") && segment.endsWith("}")) {
+                    if (path[i].isEmpty()) {
+                        return false;
+                    }
+                    params.put(segment.substring(1, segment.length() - 1), path[i]);
+                } else if (!segment.equals(path[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // A response that also knows how to report an error and which status it sent
+    private abstract static class ResponseSink implements ApiResponse {
+        int status;
+
+        @Override
+        public final JsonWriter begin(int status) throws IOException {
+            if (this.status != 0) {
+                throw new IllegalStateException("Response already started");
+            }
+            this.status = status;
+            return start(status);
+        }
+
+        protected abstract JsonWriter start(int status) throws IOException;
+
+        boolean isStarted() {
+            return status != 0;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        // Only possible while nothing has been sent; afterwards the body is simply cut short
+        void error(int status, String message) throws IOException {
+            if (isStarted()) {
+                return;
+            }
+            JsonWriter json = begin(status);
+            json.beginObject().name("status").value(status).name("error").value(message).endObject();
+        }
+    }
+
+    // Streams the body to the client with chunked encoding
+    private static final class HttpResponse extends ResponseSink {
+        private final HttpExchange exchange;
+        private Writer writer;
+
+        private HttpResponse(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        protected JsonWriter start(int status) throws IOException {
+            if (status == 204) {
+                exchange.sendResponseHeaders(status, -1);
+                return new JsonWriter(Writer.nullWriter());
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, 0);
+            writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8),
+                    RESPONSE_BUFFER_SIZE);
+            return new JsonWriter(writer);
+        }
+
+        @Override
+        void error(int status, String message) {
+            try {
+                super.error(status, message);
+            } catch (IOException e) {
+                // The client went away
+            }
+        }
+
+        private void finish() {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                // The client went away
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    // Collects the body of one call in a batch
+    private static final class BufferedResponse extends ResponseSink {
+        private final StringWriter body = new StringWriter();
+        private boolean hasBody;
+
+        @Override
+        protected JsonWriter start(int status) {
+            hasBody = status != 204;
+            return new JsonWriter(hasBody ? body : Writer.nullWriter());
+        }
+
+        // Unlike over HTTP, a call that fails midway can still be answered with its error
+        @Override
+        void error(int status, String message) throws IOException {
+            body.getBuffer().setLength(0);
+            this.status = 0;
+            super.error(status, message);
+        }
+
+        private boolean hasBody() {
+            return hasBody && body.getBuffer().length() > 0;
+        }
+    }
+}
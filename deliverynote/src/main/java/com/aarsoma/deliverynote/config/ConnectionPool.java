@@ -0,0 +1,473 @@
+package com.aarsoma.deliverynote.config;
+
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
+import org.h2.api.ErrorCode;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded JDBC connection pool; close() on a leased connection hands it back, and each connection
+// keeps its prepared statements across leases
+public class ConnectionPool {
+
+    // Pause between attempts to reach a database server that is down, doubling up to the maximum
+    private static final long RECONNECT_INITIAL_BACKOFF_MS = 50;
+    private static final long RECONNECT_MAX_BACKOFF_MS = 1_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long validationIdleNanos;
+    private final int statementCacheSize;
+    // Times the statements handed out; null when slow-query logging is off
+    private final SlowQueryLog slowQueryLog;
+
+    // Idle physical connections, most recently returned first
+    private final LinkedBlockingDeque<IdleConnection> idleConnections = new LinkedBlockingDeque<>();
+    // One permit per connection that may be leased at the same time
+    private final Semaphore permits;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    // Counters
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final AtomicLong connectFailures = new AtomicLong();
+    // When a connection last failed; idle connections returned before then are checked before reuse
+    private volatile long lastFailureAt = System.nanoTime();
+    // Time spent waiting for a connection, and how long callers keep theirs
+    private final Timer waitTimer = Metrics.timer("ConnectionPool.wait");
+    private final Timer leaseTimer = Metrics.timer("ConnectionPool.lease");
+
+    public ConnectionPool(String url, String user, String password, int maxSize,
+                          long borrowTimeoutMillis, long validationIdleMillis, int statementCacheSize,
+                          SlowQueryLog slowQueryLog) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationIdleNanos = TimeUnit.MILLISECONDS.toNanos(validationIdleMillis);
+        this.statementCacheSize = statementCacheSize;
+        this.slowQueryLog = slowQueryLog;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    // Open physical connections up front so the first screens do not pay for them
+    public void warmUp(int count) throws SQLException {
+        int target = Math.min(count, maxSize);
+        while (idleConnections.size() < target) {
+            idleConnections.offerLast(new IdleConnection(createPhysicalConnection()));
+        }
+    }
+
+    // Lease a connection, waiting up to the borrow timeout when the pool is exhausted
+    public Connection borrow() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate(start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis));
+            activeCount.incrementAndGet();
+            borrowCount.incrementAndGet();
+            return wrap(pooled);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleOrCreate(long deadline) throws SQLException {
+        IdleConnection idle;
+        while ((idle = idleConnections.pollFirst()) != null) {
+            PooledConnection pooled = idle.pooled;
+
+            // Only connections that sat idle long enough, or that were idle when another
+            // connection failed, are checked with a round-trip
+            long now = System.nanoTime();
+            if (now - idle.returnedAt < validationIdleNanos && idle.returnedAt - lastFailureAt > 0) {
+                return pooled;
+            }
+            if (!pooled.physical.isClosed() && pooled.physical.isValid(2)) {
+                return pooled;
+            }
+
+            validationFailures.incrementAndGet();
+            closeQuietly(pooled);
+        }
+        return reconnect(deadline);
+    }
+
+    // A new connection, retrying connection failures with a growing pause until the deadline,
+    // so a database server that restarts is picked up again without the caller noticing
+    private PooledConnection reconnect(long deadline) throws SQLException {
+        long backoffMillis = RECONNECT_INITIAL_BACKOFF_MS;
+        while (true) {
+            try {
+                return createPhysicalConnection();
+            } catch (SQLException e) {
+                if (!isConnectionFailure(e)) {
+                    throw e;
+                }
+                connectFailures.incrementAndGet();
+                lastFailureAt = System.nanoTime();
+                if (lastFailureAt + TimeUnit.MILLISECONDS.toNanos(backoffMillis) - deadline > 0) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, RECONNECT_MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    // Failures of the connection itself rather than of the statement: SQLState class 08, or
+    // H2's own codes for a broken network connection or a database that has been closed
+    static boolean isConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+        if (state != null && state.startsWith("08")) {
+            return true;
+        }
+        switch (e.getErrorCode()) {
+            case ErrorCode.CONNECTION_BROKEN_1:
+            case ErrorCode.IO_EXCEPTION_1:
+            case ErrorCode.IO_EXCEPTION_2:
+            case ErrorCode.DATABASE_IS_CLOSED:
+            case ErrorCode.DATABASE_CALLED_AT_SHUTDOWN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private PooledConnection createPhysicalConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        createdCount.incrementAndGet();
+        return new PooledConnection(connection,
+                new StatementCache(connection, statementCacheSize, statementHits, statementMisses));
+    }
+
+    // Called by the proxy when the caller closes its lease
+    private void giveBack(PooledConnection pooled, boolean broken) {
+        activeCount.decrementAndGet();
+        Connection physical = pooled.physical;
+        try {
+            if (broken || closed.get() || physical.isClosed()) {
+                closeQuietly(pooled);
+                return;
+            }
+
+            // Reset connection state before returning it to the pool
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            idleConnections.offerFirst(new IdleConnection(pooled));
+        } catch (SQLException e) {
+            System.err.println("Error returning connection to pool: " + e.getMessage());
+            closeQuietly(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Close idle connections and refuse new leases; leased connections close when returned
+    public void shutdown() {
+        closed.set(true);
+        IdleConnection idle;
+        while ((idle = idleConnections.pollFirst()) != null) {
+            closeQuietly(idle.pooled);
+        }
+    }
+
+    public PoolStats getStats() {
+        long borrows = borrowCount.get();
+        return new PoolStats(
+                maxSize,
+                activeCount.get(),
+                idleConnections.size(),
+                permits.getQueueLength(),
+                createdCount.get(),
+                borrows,
+                timeoutCount.get(),
+                validationFailures.get(),
+                borrows == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / borrows),
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()),
+                statementHits.sum(),
+                statementMisses.sum(),
+                connectFailures.get());
+    }
+
+    private void recordWait(long waitNanos) {
+        waitTimer.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private Connection wrap(PooledConnection pooled) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new LeasedConnectionHandler(pooled));
+    }
+
+    private static void closeQuietly(PooledConnection pooled) {
+        pooled.statements.closeAll();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Ignore, the connection is being discarded anyway
+        }
+    }
+
+    // A physical connection and the statements prepared on it; lives as long as the connection
+    private static final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+
+        private PooledConnection(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+        }
+    }
+
+    private static final class IdleConnection {
+        private final PooledConnection pooled;
+        private final long returnedAt = System.nanoTime();
+
+        private IdleConnection(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+    }
+
+    // Forwards every call to the physical connection, except close() which returns it to the pool
+    // and prepareStatement(sql[, autoGeneratedKeys]) which goes through the statement cache.
+    // Statements are handed to the slow-query log, when there is one, to be timed
+    private final class LeasedConnectionHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection physical;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private final long leasedAt = System.nanoTime();
+        private volatile boolean broken;
+
+        private LeasedConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.physical = pooled.physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (released.compareAndSet(false, true)) {
+                        leaseTimer.recordSince(leasedAt);
+                        giveBack(pooled, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return released.get() || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(physical)) {
+                        return physical;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (released.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            try {
+                Object result = null;
+                if (method.getName().equals("prepareStatement")) {
+                    Class<?>[] types = method.getParameterTypes();
+                    if (types.length == 1) {
+                        result = pooled.statements.prepare((Connection) proxy, (String) args[0],
+                                StatementCache.NO_GENERATED_KEYS);
+                    } else if (types.length == 2 && types[1] == int.class) {
+                        result = pooled.statements.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                    }
+                }
+                if (result == null) {
+                    result = method.invoke(physical, args);
+                }
+                if (slowQueryLog != null && result instanceof Statement) {
+                    String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                    result = slowQueryLog.wrap(result, sql);
+                }
+                return result;
+            } catch (SQLException e) {
+                markBrokenIfConnectionFailure(e);
+                throw e;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    markBrokenIfConnectionFailure((SQLException) cause);
+                }
+                throw cause;
+            }
+        }
+
+        // Connection-level failures mean the connection must not be reused, and that the idle
+        // ones may have failed too
+        private void markBrokenIfConnectionFailure(SQLException e) {
+            if (isConnectionFailure(e)) {
+                broken = true;
+                lastFailureAt = System.nanoTime();
+            }
+        }
+    }
+
+    public static final class PoolStats {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final int waiting;
+        private final long created;
+        private final long borrowed;
+        private final long timeouts;
+        private final long validationFailures;
+        private final long averageWaitMicros;
+        private final long maxWaitMicros;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long connectFailures;
+
+        private PoolStats(int maxSize, int active, int idle, int waiting, long created, long borrowed,
+                          long timeouts, long validationFailures, long averageWaitMicros, long maxWaitMicros,
+                          long statementCacheHits, long statementCacheMisses, long connectFailures) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.waiting = waiting;
+            this.created = created;
+            this.borrowed = borrowed;
+            this.timeouts = timeouts;
+            this.validationFailures = validationFailures;
+            this.averageWaitMicros = averageWaitMicros;
+            this.maxWaitMicros = maxWaitMicros;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.connectFailures = connectFailures;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getBorrowed() {
+            return borrowed;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getValidationFailures() {
+            return validationFailures;
+        }
+
+        public long getAverageWaitMicros() {
+            return averageWaitMicros;
+        }
+
+        public long getMaxWaitMicros() {
+            return maxWaitMicros;
+        }
+
+        public long getStatementCacheHits() {
+            return statementCacheHits;
+        }
+
+        public long getStatementCacheMisses() {
+            return statementCacheMisses;
+        }
+
+        // Attempts to open a connection that failed because the database could not be reached
+        public long getConnectFailures() {
+            return connectFailures;
+        }
+
+        public double getStatementCacheHitRatio() {
+            long total = statementCacheHits + statementCacheMisses;
+            return total == 0 ? 0 : (double) statementCacheHits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolStats{max=" + maxSize + ", active=" + active + ", idle=" + idle
+                    + ", waiting=" + waiting + ", created=" + created + ", borrowed=" + borrowed
+                    + ", timeouts=" + timeouts + ", validationFailures=" + validationFailures
+                    + ", avgWaitUs=" + averageWaitMicros + ", maxWaitUs=" + maxWaitMicros
+                    + ", statementHits=" + statementCacheHits + ", statementMisses=" + statementCacheMisses
+                    + String.format(", statementHitRatio=%.2f", getStatementCacheHitRatio())
+                    + ", connectFailures=" + connectFailures + "}";
+        }
+    }
+}
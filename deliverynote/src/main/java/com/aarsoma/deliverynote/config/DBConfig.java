@@ -1,105 +1,178 @@
 package com.aarsoma.deliverynote.config;
 
+import com.aarsoma.deliverynote.metrics.Metrics;
+import org.h2.api.ErrorCode;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class DBConfig {
-    private static final String DB_URL = "jdbc:h2:./data/aarsoma;AUTO_SERVER=TRUE";
+    // How the terminals share the database:
+    // embedded: each terminal opens the file itself, handing it over through AUTO_SERVER
+    // server: this terminal opens it in-process and runs a TCP server the others connect to
+    // client: connect to the server terminal at deliverynote.db.host
+    private static final String DB_MODE = System.getProperty("deliverynote.db.mode", "embedded");
+    private static final Path DB_DIR = Paths.get(System.getProperty("deliverynote.db.dir", "./data"))
+            .toAbsolutePath().normalize();
+    private static final String DB_NAME = "aarsoma";
+    private static final String DB_HOST = System.getProperty("deliverynote.db.host", "localhost");
+    private static final int DB_PORT = Integer.getInteger("deliverynote.db.port", 9092);
+    // The server only accepts other machines when asked to; its health endpoint stays local by default
+    private static final boolean DB_ALLOW_OTHERS = Boolean.getBoolean("deliverynote.db.allowOthers");
+    private static final String HEALTH_HOST = System.getProperty("deliverynote.db.healthHost", "127.0.0.1");
+    private static final int HEALTH_PORT = Integer.getInteger("deliverynote.db.healthPort", DB_PORT + 1);
     private static final String DB_USER = "sa";
-    private static final String DB_PASSWORD = "";
+    // Required in server and client mode, where the database is reachable over the network
+    private static final String DB_PASSWORD = System.getProperty("deliverynote.db.password", "");
+
+    // Overridable for tools that run against another database, e.g. the benchmarks
+    private static final String DB_URL = System.getProperty("deliverynote.db.url", defaultUrl());
+    private static final DatabaseServer databaseServer = DB_MODE.equals("server")
+            ? new DatabaseServer(DB_DIR, DB_NAME, DB_PORT, DB_ALLOW_OTHERS, HEALTH_HOST, HEALTH_PORT,
+            DB_USER, DB_PASSWORD)
+            : null;
 
-    // Simple connection pooling
+    // Connection pooling
     private static final int MAX_POOL_SIZE = 10;
-    private static final ConcurrentLinkedQueue<Connection> connectionPool = new ConcurrentLinkedQueue<>();
+    private static final int MIN_IDLE = MAX_POOL_SIZE / 2;
+    private static final long BORROW_TIMEOUT_MS = 30_000;
+    private static final long VALIDATE_AFTER_IDLE_MS = 30_000;
+    // Prepared statements kept per connection; comfortably above the number of distinct queries
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    // Statements slower than this are logged with their plan; a negative value turns timing off
+    private static final long SLOW_QUERY_THRESHOLD_MS = Long.getLong("deliverynote.slowQuery.thresholdMs", 200);
+    private static final Path SLOW_QUERY_FILE = Paths.get(System.getProperty("deliverynote.slowQuery.file",
+            "./logs/slow-queries.log"));
+    private static final long SLOW_QUERY_FILE_MAX_BYTES = 5L * 1024 * 1024;
+    private static final SlowQueryLog slowQueryLog = SLOW_QUERY_THRESHOLD_MS < 0 ? null
+            : new SlowQueryLog(SLOW_QUERY_THRESHOLD_MS, SLOW_QUERY_FILE, SLOW_QUERY_FILE_MAX_BYTES,
+            DBConfig::getConnection);
+
+    private static final ConnectionPool connectionPool = new ConnectionPool(
+            DB_URL, DB_USER, DB_PASSWORD, MAX_POOL_SIZE, BORROW_TIMEOUT_MS, VALIDATE_AFTER_IDLE_MS,
+            STATEMENT_CACHE_SIZE, slowQueryLog);
+
+    static {
+        Metrics.gauge("pool.active", () -> connectionPool.getStats().getActive());
+        Metrics.gauge("pool.idle", () -> connectionPool.getStats().getIdle());
+        Metrics.gauge("pool.waiting", () -> connectionPool.getStats().getWaiting());
+        Metrics.gauge("pool.created", () -> connectionPool.getStats().getCreated());
+        Metrics.gauge("pool.timeouts", () -> connectionPool.getStats().getTimeouts());
+        Metrics.gauge("pool.validationFailures", () -> connectionPool.getStats().getValidationFailures());
+        Metrics.gauge("pool.statementCacheHits", () -> connectionPool.getStats().getStatementCacheHits());
+        Metrics.gauge("pool.statementCacheMisses", () -> connectionPool.getStats().getStatementCacheMisses());
+        Metrics.gauge("pool.statementCacheHitRatio", () -> connectionPool.getStats().getStatementCacheHitRatio());
+        Metrics.gauge("pool.connectFailures", () -> connectionPool.getStats().getConnectFailures());
+        if (slowQueryLog != null) {
+            Metrics.gauge("slowQueries.logged", slowQueryLog::getSlowCount);
+            Metrics.gauge("slowQueries.dropped", slowQueryLog::getDroppedCount);
+        }
+    }
 
     // Initialize the database and create tables if they don't exist
     public static void initDatabase() {
+        if (!DB_MODE.equals("embedded") && DB_PASSWORD.isEmpty()) {
+            throw new IllegalStateException("deliverynote.db.password must be set in " + DB_MODE + " mode");
+        }
         try {
+            if (databaseServer != null) {
+                setPasswordIfEmpty();
+            }
+
             // Test connection and create tables
             try (Connection conn = getConnection()) {
                 createTablesIfNotExist(conn);
-            }
 
-            // Pre-populate the connection pool
-            for (int i = 0; i < MAX_POOL_SIZE / 2; i++) {
-                Connection conn = createConnection();
-                if (conn != null) {
-                    connectionPool.offer(conn);
+                // Warn if the hot queries stopped using their indexes
+                for (String problem : QueryPlanCheck.findUnindexedQueries(conn)) {
+                    System.err.println("Query plan check: " + problem);
                 }
             }
+
+            // Only once the tables exist, as other terminals may not create the database
+            if (databaseServer != null) {
+                databaseServer.start();
+            }
+
+            // Pre-populate the connection pool
+            connectionPool.warmUp(MIN_IDLE);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to initialize database", e);
         }
     }
 
-    // Create a new connection
-    private static Connection createConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-    }
-
-    // Get a connection from the pool or create a new one if the pool is empty
+    // Lease a connection from the pool; closing it returns it to the pool
     public static Connection getConnection() throws SQLException {
-        Connection connection = connectionPool.poll();
-        if (connection == null || connection.isClosed()) {
-            connection = createConnection();
-        }
-
-        // Test the connection to ensure it's valid
-        if (!connection.isValid(2)) { // 2 seconds timeout
-            connection.close();
-            connection = createConnection();
-        }
-
-        return connection;
+        return connectionPool.borrow();
     }
 
     // Return a connection to the pool
     public static void releaseConnection(Connection connection) {
         if (connection != null) {
             try {
-                if (!connection.isClosed() && connection.isValid(2)) {
-                    if (connectionPool.size() < MAX_POOL_SIZE) {
-                        // Reset connection state before returning to pool
-                        connection.setAutoCommit(true);
-                        connectionPool.offer(connection);
-                    } else {
-                        connection.close();
-                    }
-                } else {
-                    // If the connection is invalid or closed, discard it
-                    if (!connection.isClosed()) {
-                        connection.close();
-                    }
-                }
+                connection.close();
             } catch (SQLException e) {
-                // Log error and discard connection
                 System.err.println("Error releasing connection: " + e.getMessage());
-                try {
-                    if (!connection.isClosed()) {
-                        connection.close();
-                    }
-                } catch (SQLException ex) {
-                    // Ignore
-                }
             }
         }
     }
 
+    // Current pool counters (active, idle, wait time, statement cache hits)
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return connectionPool.getStats();
+    }
+
+    // Per-statement timings and the slow-query file; null when turned off
+    public static SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
     // Close all connections when application is shutting down
     public static void closeConnections() {
-        Connection conn;
-        while ((conn = connectionPool.poll()) != null) {
-            try {
-                if (!conn.isClosed()) {
-                    conn.close();
-                }
-            } catch (SQLException e) {
-                // Just log the error and continue
-                System.err.println("Error closing connection: " + e.getMessage());
+        if (slowQueryLog != null) {
+            // Finish writing the queued entries while their plans can still be explained
+            slowQueryLog.close(2000);
+        }
+        connectionPool.shutdown();
+        if (databaseServer != null) {
+            databaseServer.stop();
+        }
+    }
+
+    // Databases created before a password was required still have an empty one, which the server
+    // terminal replaces with the configured password before anyone can connect over TCP
+    private static void setPasswordIfEmpty() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, "");
+             PreparedStatement pstmt = conn.prepareStatement("ALTER USER " + DB_USER + " SET PASSWORD ?")) {
+            pstmt.setString(1, DB_PASSWORD);
+            pstmt.execute();
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ErrorCode.WRONG_USER_OR_PASSWORD) {
+                throw e;
             }
+            // Already has a password
+        }
+    }
+
+    private static String defaultUrl() {
+        switch (DB_MODE) {
+            case "embedded":
+                return "jdbc:h2:" + DB_DIR.resolve(DB_NAME) + ";AUTO_SERVER=TRUE";
+            case "server":
+                // Kept open while no connection is leased, so the TCP server always finds it open
+                return "jdbc:h2:" + DB_DIR.resolve(DB_NAME) + ";DB_CLOSE_DELAY=-1";
+            case "client":
+                // H2 re-opens a broken session on the next statement, re-preparing cached statements
+                return "jdbc:h2:tcp://" + DB_HOST + ":" + DB_PORT + "/" + DB_NAME + ";AUTO_RECONNECT=TRUE";
+            default:
+                throw new IllegalStateException("Unknown deliverynote.db.mode '" + DB_MODE
+                        + "', expected embedded, server or client");
         }
     }
 
@@ -145,6 +218,50 @@ public class DBConfig {
                             "FOREIGN KEY (delivery_note_id) REFERENCES delivery_notes(id) " +
                             ")"
             );
+
+            // Next delivery note number per financial year
+            statement.execute(
+                    "CREATE TABLE IF NOT EXISTS note_number_counters (" +
+                            "financial_year VARCHAR(9) PRIMARY KEY, " +
+                            "next_value INT NOT NULL " +
+                            ")"
+            );
+
+            // Dashboard counts per period bucket, maintained on save
+            statement.execute(
+                    "CREATE TABLE IF NOT EXISTS delivery_note_counters (" +
+                            "period_type VARCHAR(20) NOT NULL, " +
+                            "period_key VARCHAR(10) NOT NULL, " +
+                            "note_count BIGINT NOT NULL, " +
+                            "PRIMARY KEY (period_type, period_key) " +
+                            ")"
+            );
+
+            // Change counter per table, bumped by every write so other terminals can detect stale caches
+            statement.execute(
+                    "CREATE TABLE IF NOT EXISTS data_versions (" +
+                            "table_name VARCHAR(50) PRIMARY KEY, " +
+                            "version BIGINT NOT NULL " +
+                            ")"
+            );
+
+            // Resume point of unfinished CSV imports
+            statement.execute(
+                    "CREATE TABLE IF NOT EXISTS import_checkpoints (" +
+                            "import_key VARCHAR(500) PRIMARY KEY, " +
+                            "file_size BIGINT NOT NULL, " +
+                            "records_done BIGINT NOT NULL, " +
+                            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP " +
+                            ")"
+            );
+
+            // Secondary indexes for date range, per-customer and per-note lookups
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_delivery_notes_issue_date ON delivery_notes(issue_date, id)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_delivery_notes_customer_date ON delivery_notes(customer_id, issue_date)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_delivery_notes_financial_year ON delivery_notes(financial_year)");
+            // Customer list order and import upserts, which match customers by name
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_customers_name ON customers(name)");
+            // delivery_items(delivery_note_id) is already indexed by H2 for its foreign key
         }
     }
 }
@@ -0,0 +1,181 @@
+package com.aarsoma.deliverynote.config;
+
+import com.aarsoma.deliverynote.util.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.h2.tools.Server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The H2 TCP server of the terminal in server mode, with a /health endpoint next to it
+public class DatabaseServer {
+
+    private static final long HEALTH_CHECK_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path baseDir;
+    private final String databaseName;
+    private final int tcpPort;
+    private final String healthHost;
+    private final int healthPort;
+    private final boolean allowOthers;
+    private final String user;
+    private final String password;
+
+    private Server tcpServer;
+    private HttpServer healthServer;
+    private long startedAt;
+    private HealthCheck lastCheck;
+
+    public DatabaseServer(Path baseDir, String databaseName, int tcpPort, boolean allowOthers,
+                          String healthHost, int healthPort, String user, String password) {
+        this.baseDir = baseDir;
+        this.databaseName = databaseName;
+        this.tcpPort = tcpPort;
+        this.allowOthers = allowOthers;
+        this.healthHost = healthHost;
+        this.healthPort = healthPort;
+        this.user = user;
+        this.password = password;
+    }
+
+    public synchronized void start() throws SQLException {
+        if (tcpServer != null) {
+            return;
+        }
+
+        // Other terminals may only open the database this terminal has created, not new ones
+        List<String> args = new ArrayList<>(List.of(
+                "-tcpPort", Integer.toString(tcpPort),
+                "-baseDir", baseDir.toString(),
+                "-ifExists"));
+        if (allowOthers) {
+            // Without it only this machine may connect
+            args.add("-tcpAllowOthers");
+        }
+        tcpServer = Server.createTcpServer(args.toArray(new String[0]));
+        tcpServer.start();
+        startedAt = System.nanoTime();
+
+        try {
+            healthServer = HttpServer.create(new InetSocketAddress(healthHost, healthPort), 0);
+            healthServer.createContext("/health", this::handleHealth);
+            healthServer.start();
+        } catch (IOException e) {
+            // The database is usable without it
+            healthServer = null;
+            System.err.println("Database health endpoint not started on " + healthHost + ":" + healthPort
+                    + ": " + e.getMessage());
+        }
+        System.out.println("Database server listening on port " + tcpPort
+                + (allowOthers ? " for all hosts" : " for this machine only")
+                + (healthServer != null ? ", health on http://" + healthHost + ":" + healthPort + "/health" : ""));
+    }
+
+    // Stops accepting terminals; their open connections fail and reconnect once it is back
+    public synchronized void stop() {
+        if (healthServer != null) {
+            healthServer.stop(0);
+            healthServer = null;
+        }
+        if (tcpServer != null) {
+            tcpServer.stop();
+            tcpServer = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return tcpServer != null && tcpServer.isRunning(false);
+    }
+
+    // The URL other terminals use, with host being this machine's name as they know it
+    public String clientUrl(String host) {
+        return "jdbc:h2:tcp://" + host + ":" + tcpPort + "/" + databaseName;
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+
+        HealthCheck check = check();
+
+        StringWriter body = new StringWriter();
+        JsonWriter json = new JsonWriter(body);
+        json.beginObject()
+                .name("status").value(check.up ? "UP" : "DOWN")
+                .name("database").value(databaseName)
+                .name("tcpPort").value(tcpPort)
+                .name("checkMillis").value(check.micros / 1000.0)
+                .name("uptimeSeconds").value(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt));
+        if (check.error != null) {
+            json.name("error").value(check.error);
+        }
+        ConnectionPool.PoolStats pool = DBConfig.getPoolStats();
+        json.name("pool").beginObject()
+                .name("active").value(pool.getActive())
+                .name("idle").value(pool.getIdle())
+                .name("waiting").value(pool.getWaiting())
+                .endObject();
+        json.endObject();
+
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(check.up ? 200 : 503, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Answers repeated probes from the last result, so polling does not hold a connection each time
+    private synchronized HealthCheck check() {
+        long now = System.nanoTime();
+        if (lastCheck != null && now - lastCheck.checkedAt < HEALTH_CHECK_MAX_AGE_NANOS) {
+            return lastCheck;
+        }
+
+        boolean up = false;
+        String error = null;
+        if (isRunning()) {
+            try (Connection connection = DriverManager.getConnection(clientUrl("localhost"), user, password);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SELECT 1");
+                up = true;
+            } catch (SQLException e) {
+                error = e.getMessage();
+            }
+        } else {
+            error = "TCP server is not running";
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - now);
+        lastCheck = new HealthCheck(up, error, micros, now);
+        return lastCheck;
+    }
+
+    private static final class HealthCheck {
+        final boolean up;
+        final String error;
+        final long micros;
+        final long checkedAt;
+
+        HealthCheck(boolean up, String error, long micros, long checkedAt) {
+            this.up = up;
+            this.error = error;
+            this.micros = micros;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
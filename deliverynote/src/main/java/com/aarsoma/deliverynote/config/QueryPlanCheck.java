@@ -0,0 +1,66 @@
+package com.aarsoma.deliverynote.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Runs EXPLAIN for the hot queries and reports any whose plan does not use the index it was
+// written for (e.g. a date filter wrapped in a CAST)
+public class QueryPlanCheck {
+
+    // Query shape -> index its plan is expected to use (null: any index, as long as it is not a table scan)
+    private static final Map<String, String> EXPECTED_INDEXES = new LinkedHashMap<>();
+
+    static {
+        EXPECTED_INDEXES.put(
+                "SELECT id FROM delivery_notes WHERE issue_date >= TIMESTAMP '2024-04-01 00:00:00' " +
+                        "AND issue_date < TIMESTAMP '2025-04-01 00:00:00' ORDER BY issue_date DESC, id DESC",
+                "IDX_DELIVERY_NOTES_ISSUE_DATE");
+        EXPECTED_INDEXES.put(
+                "SELECT id FROM delivery_notes WHERE customer_id = 1 " +
+                        "AND issue_date >= TIMESTAMP '2024-04-01 00:00:00' AND issue_date < TIMESTAMP '2025-04-01 00:00:00'",
+                "IDX_DELIVERY_NOTES_CUSTOMER_DATE");
+        EXPECTED_INDEXES.put(
+                "SELECT COUNT(*) FROM delivery_notes WHERE financial_year = '2024-2025'",
+                "IDX_DELIVERY_NOTES_FINANCIAL_YEAR");
+        EXPECTED_INDEXES.put(
+                "SELECT id FROM delivery_items WHERE delivery_note_id = 1 ORDER BY id",
+                null);
+    }
+
+    // Returns one message per query whose plan does not use its expected index
+    public static List<String> findUnindexedQueries(Connection connection) throws SQLException {
+        List<String> problems = new ArrayList<>();
+
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> entry : EXPECTED_INDEXES.entrySet()) {
+                String plan = explain(statement, entry.getKey());
+                String expected = entry.getValue();
+                boolean indexed = expected == null
+                        ? !plan.contains(".tableScan")
+                        : plan.toUpperCase().contains(expected);
+                if (!indexed) {
+                    problems.add("expected " + (expected == null ? "an index" : expected)
+                            + " for [" + entry.getKey() + "] but plan was: " + plan);
+                }
+            }
+        }
+
+        return problems;
+    }
+
+    public static String explain(Statement statement, String sql) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1));
+            }
+            return plan.toString().replaceAll("\\s+", " ");
+        }
+    }
+}
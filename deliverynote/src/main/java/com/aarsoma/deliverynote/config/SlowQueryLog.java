@@ -0,0 +1,471 @@
+package com.aarsoma.deliverynote.config;
+
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Times every pooled statement, keeps totals per SQL text, and logs executions over the threshold
+// with their plan from a background thread
+public class SlowQueryLog {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int QUEUE_SIZE = 1000;
+    // Distinct SQL texts kept; statements built with literals could otherwise grow the map forever
+    private static final int MAX_STATEMENTS = 1000;
+    // A plan is captured again after this long, in case the data or the indexes changed
+    private static final long PLAN_MAX_AGE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int MAX_PARAMETER_LENGTH = 100;
+    private static final int BACKUP_FILES = 3;
+
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection getConnection() throws SQLException;
+    }
+
+    private final long thresholdNanos;
+    private final Path file;
+    private final long maxFileBytes;
+    private final ConnectionSource connectionSource;
+
+    private final Map<String, Aggregate> statements = new ConcurrentHashMap<>();
+    private final BlockingQueue<SlowStatement> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final AtomicLong slowCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Timer statementTimer = Metrics.timer("JDBC.statement");
+    private volatile Thread writerThread;
+    private volatile boolean closed;
+
+    // Only read and written by the writer thread
+    private BufferedWriter writer;
+    private long fileBytes;
+
+    public SlowQueryLog(long thresholdMillis, Path file, long maxFileBytes, ConnectionSource connectionSource) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.connectionSource = connectionSource;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getSlowCount() {
+        return slowCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    // Wrap a statement returned by a connection, so its executions are timed; sql is null for plain statements
+    Object wrap(Object statement, String sql) {
+        if (!(statement instanceof Statement)) {
+            return statement;
+        }
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new TimedStatementHandler(this, (Statement) statement, sql));
+    }
+
+    // Called by the statement wrappers once an execution, including reading its results, is done
+    void record(String sql, List<Object> parameters, long rows, long nanos) {
+        if (sql == null || Thread.currentThread() == writerThread) {
+            // The writer's own EXPLAIN statements are not measured
+            return;
+        }
+        statementTimer.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+
+        Aggregate aggregate = statements.get(sql);
+        if (aggregate == null && statements.size() < MAX_STATEMENTS) {
+            aggregate = statements.computeIfAbsent(sql, Aggregate::new);
+        }
+        boolean slow = nanos >= thresholdNanos;
+        if (aggregate != null) {
+            aggregate.add(nanos, rows, slow);
+        }
+
+        if (slow && !closed) {
+            slowCount.incrementAndGet();
+            SlowStatement entry = new SlowStatement(LocalDateTime.now(), Thread.currentThread().getName(),
+                    sql, new ArrayList<>(parameters), rows, nanos, aggregate);
+            if (queue.offer(entry)) {
+                startWriter();
+            } else {
+                droppedCount.incrementAndGet();
+            }
+        }
+    }
+
+    // Statements with the highest total time first
+    public List<StatementStats> topStatements(int limit) {
+        List<StatementStats> top = new ArrayList<>();
+        for (Aggregate aggregate : statements.values()) {
+            top.add(aggregate.snapshot());
+        }
+        top.sort(Comparator.comparingLong(StatementStats::getTotalMicros).reversed());
+        return top.size() > limit ? new ArrayList<>(top.subList(0, limit)) : top;
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    // Write what is queued (waiting up to timeoutMillis) and stop the writer; must run before the pool shuts down
+    public void close(long timeoutMillis) {
+        closed = true;
+        Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+        // Not interrupted: an interrupt during H2 file I/O would close the database file
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startWriter() {
+        if (writerThread != null) {
+            return;
+        }
+        Thread thread = new Thread(this::writeLoop, "slow-query-log");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+    }
+
+    private void writeLoop() {
+        try {
+            while (!closed) {
+                SlowStatement entry;
+                try {
+                    entry = queue.poll(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (entry != null) {
+                    write(entry);
+                }
+                if (queue.isEmpty()) {
+                    flush();
+                }
+            }
+            // Closing: write what is left, without waiting for more
+            SlowStatement entry;
+            while ((entry = queue.poll()) != null) {
+                write(entry);
+            }
+        } finally {
+            closeWriter();
+        }
+    }
+
+    private void write(SlowStatement entry) {
+        String plan = explain(entry);
+        StringBuilder text = new StringBuilder(512);
+        text.append(entry.loggedAt.format(TIMESTAMP_FORMAT))
+                .append(String.format(Locale.ROOT, " %.1f ms", entry.nanos / 1_000_000.0))
+                .append(" rows=").append(entry.rows < 0 ? "?" : Long.toString(entry.rows))
+                .append(" thread=").append(entry.threadName).append('\n');
+        text.append("  SQL: ").append(entry.sql.replaceAll("\\s+", " ")).append('\n');
+        if (!entry.parameters.isEmpty()) {
+            text.append("  Parameters: ").append(formatParameters(entry.parameters)).append('\n');
+        }
+        if (plan != null) {
+            text.append("  Plan: ").append(plan).append('\n');
+        }
+
+        try {
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            openWriter(bytes.length);
+            writer.write(text.toString());
+            fileBytes += bytes.length;
+        } catch (IOException e) {
+            System.err.println("Could not write the slow query log " + file + ": " + e.getMessage());
+            closeWriter();
+        }
+    }
+
+    // EXPLAIN with the same parameters, reused for a while per SQL text; null for statements H2 cannot explain
+    private String explain(SlowStatement entry) {
+        if (!isExplainable(entry.sql)) {
+            return null;
+        }
+        Aggregate aggregate = entry.aggregate;
+        if (aggregate != null && aggregate.plan != null && System.nanoTime() - aggregate.plannedAt < PLAN_MAX_AGE_NANOS) {
+            return aggregate.plan;
+        }
+
+        String plan;
+        try (Connection conn = connectionSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + entry.sql)) {
+            for (int i = 0; i < entry.parameters.size(); i++) {
+                pstmt.setObject(i + 1, entry.parameters.get(i));
+            }
+            StringBuilder text = new StringBuilder();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    text.append(rs.getString(1));
+                }
+            }
+            plan = text.toString().replaceAll("\\s+", " ");
+        } catch (SQLException e) {
+            return "(EXPLAIN failed: " + e.getMessage() + ")";
+        }
+
+        if (aggregate != null) {
+            aggregate.plan = plan;
+            aggregate.plannedAt = System.nanoTime();
+        }
+        return plan;
+    }
+
+    private static boolean isExplainable(String sql) {
+        String start = sql.stripLeading();
+        int end = 0;
+        while (end < start.length() && Character.isLetter(start.charAt(end))) {
+            end++;
+        }
+        switch (start.substring(0, end).toUpperCase(Locale.ROOT)) {
+            case "SELECT":
+            case "WITH":
+            case "INSERT":
+            case "UPDATE":
+            case "DELETE":
+            case "MERGE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void openWriter(int nextEntryBytes) throws IOException {
+        if (writer != null && fileBytes + nextEntryBytes <= maxFileBytes) {
+            return;
+        }
+        if (writer == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            fileBytes = Files.exists(file) ? Files.size(file) : 0;
+        }
+        if (fileBytes > 0 && fileBytes + nextEntryBytes > maxFileBytes) {
+            closeWriter();
+            roll();
+            fileBytes = 0;
+        }
+        if (writer == null) {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    // slow-queries.log -> .1 -> .2 -> .3, dropping the oldest
+    private void roll() throws IOException {
+        for (int i = BACKUP_FILES - 1; i >= 1; i--) {
+            Path from = backup(i);
+            if (Files.exists(from)) {
+                Files.move(from, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path backup(int number) {
+        return file.resolveSibling(file.getFileName() + "." + number);
+    }
+
+    private void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("Could not write the slow query log " + file + ": " + e.getMessage());
+            closeWriter();
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // Nothing more can be done about it
+        }
+        writer = null;
+    }
+
+    static String formatParameters(List<Object> parameters) {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            Object value = parameters.get(i);
+            if (value == null) {
+                text.append("NULL");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                text.append(value);
+            } else if (value instanceof InputStream || value instanceof Reader || value instanceof byte[]) {
+                text.append('<').append(value.getClass().getSimpleName()).append('>');
+            } else {
+                String string = value.toString();
+                if (string.length() > MAX_PARAMETER_LENGTH) {
+                    string = string.substring(0, MAX_PARAMETER_LENGTH) + "...";
+                }
+                text.append('\'').append(string.replace("'", "''")).append('\'');
+            }
+        }
+        return text.append(']').toString();
+    }
+
+    // Running totals of one SQL text
+    private static final class Aggregate {
+        private final String sql;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder totalRows = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        // Written by the writer thread
+        private volatile String plan;
+        private volatile long plannedAt;
+
+        private Aggregate(String sql) {
+            this.sql = sql;
+        }
+
+        private void add(long nanos, long rows, boolean slow) {
+            calls.increment();
+            totalNanos.add(nanos);
+            if (rows > 0) {
+                totalRows.add(rows);
+            }
+            if (slow) {
+                slowCalls.increment();
+            }
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        private StatementStats snapshot() {
+            return new StatementStats(sql, calls.sum(), slowCalls.sum(),
+                    TimeUnit.NANOSECONDS.toMicros(totalNanos.sum()), TimeUnit.NANOSECONDS.toMicros(maxNanos.get()),
+                    totalRows.sum(), plan);
+        }
+    }
+
+    private static final class SlowStatement {
+        private final LocalDateTime loggedAt;
+        private final String threadName;
+        private final String sql;
+        private final List<Object> parameters;
+        private final long rows;
+        private final long nanos;
+        private final Aggregate aggregate;
+
+        private SlowStatement(LocalDateTime loggedAt, String threadName, String sql, List<Object> parameters,
+                              long rows, long nanos, Aggregate aggregate) {
+            this.loggedAt = loggedAt;
+            this.threadName = threadName;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.rows = rows;
+            this.nanos = nanos;
+            this.aggregate = aggregate;
+        }
+    }
+
+    public static final class StatementStats {
+        private final String sql;
+        private final long calls;
+        private final long slowCalls;
+        private final long totalMicros;
+        private final long maxMicros;
+        private final long totalRows;
+        private final String plan;
+
+        private StatementStats(String sql, long calls, long slowCalls, long totalMicros, long maxMicros,
+                               long totalRows, String plan) {
+            this.sql = sql;
+            this.calls = calls;
+            this.slowCalls = slowCalls;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+            this.totalRows = totalRows;
+            this.plan = plan;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getSlowCalls() {
+            return slowCalls;
+        }
+
+        public long getTotalMicros() {
+            return totalMicros;
+        }
+
+        public long getMeanMicros() {
+            return calls == 0 ? 0 : totalMicros / calls;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        public long getTotalRows() {
+            return totalRows;
+        }
+
+        // Last captured EXPLAIN plan; null until the statement was slow once
+        public String getPlan() {
+            return plan;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.aarsoma.deliverynote.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// LRU cache of one connection's prepared statements, kept across leases; a statement that is
+// still open when its SQL is prepared again is not shared
+final class StatementCache {
+
+    static final int NO_GENERATED_KEYS = -1;
+
+    // Changing these would leak into the next caller, so such statements are not reused
+    private static final Set<String> STATEFUL_SETTERS = Set.of(
+            "setMaxRows", "setLargeMaxRows", "setFetchSize", "setFetchDirection",
+            "setQueryTimeout", "setEscapeProcessing", "setPoolable", "setCursorName", "setMaxFieldSize");
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    // Access-ordered, so the eldest entry is the least recently used statement
+    private final LinkedHashMap<Key, Entry> entries;
+
+    StatementCache(Connection physical, int maxSize, LongAdder hits, LongAdder misses) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Prepare sql on the physical connection, reusing a cached statement when one is free
+    synchronized PreparedStatement prepare(Connection leased, String sql, int generatedKeys) throws SQLException {
+        if (maxSize <= 0) {
+            return create(sql, generatedKeys);
+        }
+
+        Key key = new Key(sql, generatedKeys);
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.inUse) {
+            // Nested use of the same SQL: hand out a private statement
+            misses.increment();
+            return create(sql, generatedKeys);
+        }
+
+        if (entry != null && entry.statement.isClosed()) {
+            // Closed behind our back (e.g. through ResultSet.getStatement()), prepare it again
+            entries.remove(key);
+            entry = null;
+        }
+
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            entry = new Entry(create(sql, generatedKeys));
+            entries.put(key, entry);
+        }
+
+        entry.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new CachedStatementHandler(leased, entry, key));
+    }
+
+    // Close every cached statement; called before the physical connection is closed
+    synchronized void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.evict();
+        }
+        entries.clear();
+    }
+
+    private PreparedStatement create(String sql, int generatedKeys) throws SQLException {
+        return generatedKeys == NO_GENERATED_KEYS
+                ? physical.prepareStatement(sql)
+                : physical.prepareStatement(sql, generatedKeys);
+    }
+
+    // Called when a caller closes its statement proxy
+    private synchronized void release(Key key, Entry entry, boolean reusable) {
+        entry.inUse = false;
+
+        if (entry.evicted || !reusable) {
+            entries.remove(key, entry);
+            entry.evict();
+            return;
+        }
+
+        try {
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+            entry.statement.clearWarnings();
+        } catch (SQLException e) {
+            entries.remove(key, entry);
+            entry.evict();
+        }
+    }
+
+    private static final class Entry {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        // Close now, or on release if a caller still has it open
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // Ignore, the statement is being discarded anyway
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final int generatedKeys;
+
+        private Key(String sql, int generatedKeys) {
+            this.sql = sql;
+            this.generatedKeys = generatedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return generatedKeys == other.generatedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sql, generatedKeys);
+        }
+    }
+
+    // Forwards to the cached statement, except close() which returns it to the cache
+    private final class CachedStatementHandler implements InvocationHandler {
+        private final Connection leased;
+        private final Entry entry;
+        private final Key key;
+        // Result sets the caller may have left open
+        private final List<ResultSet> openResults = new ArrayList<>();
+        private boolean released;
+        private boolean reusable = true;
+
+        private CachedStatementHandler(Connection leased, Entry entry, Key key) {
+            this.leased = leased;
+            this.entry = entry;
+            this.key = key;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        closeOpenResults();
+                        release(key, entry, reusable);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || entry.statement.isClosed();
+                case "getConnection":
+                    return leased;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    break;
+            }
+
+            if (released) {
+                throw new SQLException("Statement is closed");
+            }
+            if (STATEFUL_SETTERS.contains(name)) {
+                reusable = false;
+            }
+
+            Object result;
+            try {
+                result = method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (result instanceof ResultSet) {
+                openResults.add((ResultSet) result);
+            }
+            return result;
+        }
+
+        private void closeOpenResults() {
+            for (ResultSet rs : openResults) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    // Don't reuse a statement whose results could not be closed
+                    reusable = false;
+                }
+            }
+            openResults.clear();
+        }
+    }
+}
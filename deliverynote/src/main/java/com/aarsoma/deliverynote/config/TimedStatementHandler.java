@@ -0,0 +1,200 @@
+package com.aarsoma.deliverynote.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// Times a statement's executions for SlowQueryLog, including reading its result set
+final class TimedStatementHandler implements InvocationHandler {
+
+    private final SlowQueryLog log;
+    private final Statement statement;
+    // Fixed for prepared statements; set per execution for plain ones
+    private final String preparedSql;
+    private final List<Object> parameters = new ArrayList<>();
+    private int batchSize;
+    private TimedResults openResults;
+
+    TimedStatementHandler(SlowQueryLog log, Statement statement, String preparedSql) {
+        this.log = log;
+        this.statement = statement;
+        this.preparedSql = preparedSql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "close":
+                finishOpenResults();
+                break;
+            case "clearParameters":
+                parameters.clear();
+                break;
+            case "addBatch":
+                batchSize++;
+                break;
+            case "clearBatch":
+                batchSize = 0;
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    setParameter((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.startsWith("execute")) {
+                    return execute(proxy, method, args);
+                }
+                break;
+        }
+        return forward(method, args);
+    }
+
+    private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+        finishOpenResults();
+        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+
+        long startedAt = System.nanoTime();
+        Object result;
+        try {
+            result = forward(method, args);
+        } catch (Throwable e) {
+            log.record(sql, parameters, -1, System.nanoTime() - startedAt);
+            throw e;
+        }
+
+        if (result instanceof ResultSet) {
+            // Timing continues while the caller reads the rows
+            openResults = new TimedResults(sql, System.nanoTime() - startedAt);
+            return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    new ResultSetHandler(proxy, (ResultSet) result, openResults));
+        }
+
+        long rows = -1;
+        if (result instanceof int[]) {
+            rows = 0;
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            rows = 0;
+            for (long count : (long[]) result) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof Number) {
+            rows = ((Number) result).longValue();
+        }
+        List<Object> recorded = parameters;
+        if (method.getName().equals("executeBatch")) {
+            recorded = List.of("batch of " + batchSize);
+            batchSize = 0;
+        }
+        log.record(sql, recorded, rows, System.nanoTime() - startedAt);
+        return result;
+    }
+
+    private void setParameter(int index, Object value) {
+        while (parameters.size() < index) {
+            parameters.add(null);
+        }
+        parameters.set(index - 1, value);
+    }
+
+    private void finishOpenResults() {
+        if (openResults != null) {
+            openResults.finish();
+            openResults = null;
+        }
+    }
+
+    private Object forward(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // One query's result set being read; recorded once, when it is exhausted or closed
+    private final class TimedResults {
+        private final String sql;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        private TimedResults(String sql, long executeNanos) {
+            this.sql = sql;
+            this.nanos = executeNanos;
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                log.record(sql, parameters, rows, nanos);
+            }
+        }
+    }
+
+    // Counts rows and the time spent in next(); everything else goes straight to the result set
+    private final class ResultSetHandler implements InvocationHandler {
+        private final Object statementProxy;
+        private final ResultSet resultSet;
+        private final TimedResults results;
+
+        private ResultSetHandler(Object statementProxy, ResultSet resultSet, TimedResults results) {
+            this.statementProxy = statementProxy;
+            this.resultSet = resultSet;
+            this.results = results;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    long startedAt = System.nanoTime();
+                    boolean hasRow = (Boolean) forward(method, args);
+                    results.nanos += System.nanoTime() - startedAt;
+                    if (hasRow) {
+                        results.rows++;
+                    } else {
+                        finish();
+                    }
+                    return hasRow;
+                case "close":
+                    finish();
+                    break;
+                case "getStatement":
+                    return statementProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return forward(method, args);
+        }
+
+        private void finish() {
+            if (openResults == results) {
+                openResults = null;
+            }
+            results.finish();
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(resultSet, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.aarsoma.deliverynote.controller;
 
+import com.aarsoma.deliverynote.event.CustomerDeleted;
+import com.aarsoma.deliverynote.event.CustomerSaved;
+import com.aarsoma.deliverynote.event.DataChanged;
 import com.aarsoma.deliverynote.model.Customer;
-import com.aarsoma.deliverynote.service.CustomerService;
+import com.aarsoma.deliverynote.repository.DataVersionRepository;
+import com.aarsoma.deliverynote.service.AsyncDataService;
 import com.aarsoma.deliverynote.util.AlertUtil;
+import com.aarsoma.deliverynote.util.FxAsync;
+import com.aarsoma.deliverynote.util.FxEvents;
 import com.aarsoma.deliverynote.util.ValidationUtil;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -14,9 +20,9 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.net.URL;
-import java.sql.SQLException;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 public class CustomerController implements Initializable {
@@ -39,9 +45,11 @@ public class CustomerController implements Initializable {
 
     @FXML private VBox formContainer;
 
-    private final CustomerService customerService = new CustomerService();
+    private final AsyncDataService dataService = new AsyncDataService();
     private Customer selectedCustomer;
     private Consumer<Customer> onCustomerAddedCallback;
+    // Set while the table is changed under the user, so the form is left as it is
+    private boolean updatingTable;
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
@@ -64,6 +72,9 @@ public class CustomerController implements Initializable {
         // Set table selection listener
         customerTable.getSelectionModel().selectedItemProperty().addListener(
                 (obs, oldSelection, newSelection) -> {
+                    if (updatingTable) {
+                        return;
+                    }
                     if (newSelection != null) {
                         showCustomerDetails(newSelection);
                         deleteButton.setDisable(false);
@@ -77,14 +88,72 @@ public class CustomerController implements Initializable {
         // Initialize form
         clearForm();
         deleteButton.setDisable(true);
+
+        // Customers saved on this terminal (here, in another window or through the API) are
+        // applied to the table; changes by other terminals reload it
+        FxEvents.subscribe(customerTable, CustomerSaved.class, event -> applySaved(event.getCustomer()));
+        FxEvents.subscribe(customerTable, CustomerDeleted.class, event -> applyDeleted(event.getCustomerId()));
+        FxEvents.subscribe(customerTable, DataChanged.class, event -> {
+            if (DataVersionRepository.CUSTOMERS.equals(event.getTable())) {
+                loadCustomers();
+            }
+        });
     }
 
     private void loadCustomers() {
+        if (customerTable.getItems().isEmpty()) {
+            customerTable.setPlaceholder(new Label("Loading customers..."));
+        }
+        FxAsync.run(dataService.getAllCustomers(),
+                customers -> {
+                    updateTable(() -> customerTable.setItems(FXCollections.observableArrayList(customers)));
+                    customerTable.setPlaceholder(new Label("No customers"));
+                },
+                e -> AlertUtil.showErrorAlert("Error", "Could not load customers", e.getMessage()));
+    }
+
+    // Put a saved customer in its place by name, replacing the old row
+    private void applySaved(Customer customer) {
+        updateTable(() -> {
+            List<Customer> items = customerTable.getItems();
+            items.removeIf(c -> c.getId().equals(customer.getId()));
+            int index = 0;
+            while (index < items.size() && items.get(index).getName().compareTo(customer.getName()) <= 0) {
+                index++;
+            }
+            items.add(index, customer);
+        });
+    }
+
+    private void applyDeleted(int customerId) {
+        updateTable(() -> customerTable.getItems().removeIf(c -> c.getId() == customerId));
+    }
+
+    // Change the rows while keeping the selected customer selected and the form untouched
+    private void updateTable(Runnable change) {
+        Integer selectedId = selectedCustomer == null ? null : selectedCustomer.getId();
+        updatingTable = true;
         try {
-            List<Customer> customers = customerService.getAllCustomers();
-            customerTable.setItems(FXCollections.observableArrayList(customers));
-        } catch (SQLException e) {
-            AlertUtil.showErrorAlert("Error", "Could not load customers", e.getMessage());
+            change.run();
+            if (selectedId != null) {
+                selectById(selectedId);
+            }
+        } finally {
+            updatingTable = false;
+        }
+        // The customer being edited is gone
+        if (selectedId != null && customerTable.getSelectionModel().getSelectedItem() == null) {
+            clearForm();
+        }
+    }
+
+    private void selectById(int customerId) {
+        customerTable.getSelectionModel().clearSelection();
+        for (Customer c : customerTable.getItems()) {
+            if (c.getId() == customerId) {
+                customerTable.getSelectionModel().select(c);
+                break;
+            }
         }
     }
 
@@ -107,57 +176,53 @@ public class CustomerController implements Initializable {
             return;
         }
 
-        try {
-            Customer customer = new Customer();
-
-            // If updating existing customer, set its ID
-            if (selectedCustomer != null) {
-                customer.setId(selectedCustomer.getId());
-            }
-
-            // Set customer data from form
-            customer.setName(nameField.getText().trim());
-            customer.setAddress(addressField.getText().trim());
-            customer.setContactPerson(contactPersonField.getText().trim());
-            customer.setPhone(phoneField.getText().trim());
-            customer.setEmail(emailField.getText().trim());
-
-            // Save customer
-            Customer savedCustomer = customerService.saveCustomer(customer);
-
-            // Show success message
-            String message = (selectedCustomer != null)
-                    ? "Customer updated successfully."
-                    : "Customer added successfully.";
-            AlertUtil.showInformationAlert("Success", "Customer Saved", message);
-
-            // Refresh table
-            loadCustomers();
-
-            // Select the saved customer
-            for (Customer c : customerTable.getItems()) {
-                if (c.getId().equals(savedCustomer.getId())) {
-                    customerTable.getSelectionModel().select(c);
-                    break;
-                }
-            }
-
-            // Notify callback if new customer added
-            if (selectedCustomer == null && onCustomerAddedCallback != null) {
-                onCustomerAddedCallback.accept(savedCustomer);
-            }
+        Customer customer = new Customer();
+        boolean isUpdate = selectedCustomer != null;
 
-            // If this was opened as a dialog from another form
-            if (onCustomerAddedCallback != null && selectedCustomer == null) {
-                // Close this window
-                Stage stage = (Stage) saveButton.getScene().getWindow();
-                stage.close();
-            }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not save customer", e.getMessage());
+        // If updating existing customer, set its ID
+        if (isUpdate) {
+            customer.setId(selectedCustomer.getId());
         }
+
+        // Set customer data from form
+        customer.setName(nameField.getText().trim());
+        customer.setAddress(addressField.getText().trim());
+        customer.setContactPerson(contactPersonField.getText().trim());
+        customer.setPhone(phoneField.getText().trim());
+        customer.setEmail(emailField.getText().trim());
+
+        // Save customer in the background
+        saveButton.setDisable(true);
+        FxAsync.run(dataService.saveCustomer(customer),
+                savedCustomer -> {
+                    saveButton.setDisable(false);
+
+                    // Show success message
+                    String message = isUpdate
+                            ? "Customer updated successfully."
+                            : "Customer added successfully.";
+                    AlertUtil.showInformationAlert("Success", "Customer Saved", message);
+
+                    // Show the saved row and select it; the CustomerSaved event may already have
+                    // placed it, which this repeats harmlessly
+                    applySaved(savedCustomer);
+                    selectById(savedCustomer.getId());
+                    customerTable.scrollTo(customerTable.getSelectionModel().getSelectedItem());
+
+                    // Notify callback if new customer added
+                    if (!isUpdate && onCustomerAddedCallback != null) {
+                        onCustomerAddedCallback.accept(savedCustomer);
+
+                        // Opened as a dialog from another form, so close this window
+                        Stage stage = (Stage) saveButton.getScene().getWindow();
+                        stage.close();
+                    }
+                },
+                e -> {
+                    saveButton.setDisable(false);
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Could not save customer", e.getMessage());
+                });
     }
 
     @FXML
@@ -182,39 +247,44 @@ public class CustomerController implements Initializable {
             return;
         }
 
-        try {
-            // Check if customer is used in any delivery notes
-            boolean isUsed = customerService.isCustomerUsedInDeliveryNotes(selectedCustomer.getId());
-
-            if (isUsed) {
-                AlertUtil.showWarningAlert(
-                        "Cannot Delete",
-                        "Customer In Use",
-                        "This customer cannot be deleted because it is used in one or more delivery notes."
-                );
-                return;
-            }
-
-            // Delete customer
-            customerService.deleteCustomer(selectedCustomer.getId());
-
-            // Show success message
-            AlertUtil.showInformationAlert(
-                    "Success",
-                    "Customer Deleted",
-                    "Customer has been deleted successfully."
-            );
-
-            // Refresh table
-            loadCustomers();
+        // Check if customer is used in any delivery notes, and delete it if not
+        int customerId = selectedCustomer.getId();
+        CompletableFuture<Boolean> deletion = dataService.isCustomerUsedInDeliveryNotes(customerId)
+                .thenCompose(isUsed -> isUsed
+                        ? CompletableFuture.completedFuture(false)
+                        : dataService.deleteCustomer(customerId).thenApply(ignored -> true));
 
-            // Clear form
-            clearForm();
+        deleteButton.setDisable(true);
+        FxAsync.run(deletion,
+                deleted -> {
+                    if (!deleted) {
+                        deleteButton.setDisable(false);
+                        AlertUtil.showWarningAlert(
+                                "Cannot Delete",
+                                "Customer In Use",
+                                "This customer cannot be deleted because it is used in one or more delivery notes."
+                        );
+                        return;
+                    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not delete customer", e.getMessage());
-        }
+                    // Show success message
+                    AlertUtil.showInformationAlert(
+                            "Success",
+                            "Customer Deleted",
+                            "Customer has been deleted successfully."
+                    );
+
+                    // Remove the row; the CustomerDeleted event may already have done so
+                    applyDeleted(customerId);
+
+                    // Clear form
+                    clearForm();
+                },
+                e -> {
+                    deleteButton.setDisable(false);
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Could not delete customer", e.getMessage());
+                });
     }
 
     private void clearForm() {
@@ -0,0 +1,137 @@
+package com.aarsoma.deliverynote.controller;
+
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.service.AsyncDataService;
+import com.aarsoma.deliverynote.util.FxAsync;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.TextField;
+import javafx.util.StringConverter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Makes a customer ComboBox an editable type-ahead picker that looks up matches in the background
+public class CustomerPicker {
+
+    private static final int SUGGESTION_LIMIT = 20;
+
+    private final ComboBox<Customer> comboBox;
+    private final AsyncDataService dataService;
+    private CompletableFuture<List<Customer>> pendingSuggestions;
+    // Set while the picker itself changes the text, which must not start another lookup
+    private boolean updating;
+
+    private CustomerPicker(ComboBox<Customer> comboBox, AsyncDataService dataService) {
+        this.comboBox = comboBox;
+        this.dataService = dataService;
+    }
+
+    public static CustomerPicker attach(ComboBox<Customer> comboBox, AsyncDataService dataService) {
+        CustomerPicker picker = new CustomerPicker(comboBox, dataService);
+        comboBox.setEditable(true);
+        comboBox.setConverter(picker.new NameConverter());
+        comboBox.getEditor().textProperty().addListener((obs, oldText, newText) -> picker.textChanged(newText));
+        // Opening the popup before typing lists the first customers by name
+        comboBox.setOnShowing(event -> {
+            if (comboBox.getItems().isEmpty()) {
+                picker.suggest(comboBox.getEditor().getText());
+            }
+        });
+        return picker;
+    }
+
+    // Show a customer chosen elsewhere, e.g. one just added
+    public void select(Customer customer) {
+        updating = true;
+        try {
+            comboBox.getItems().setAll(customer);
+            comboBox.setValue(customer);
+        } finally {
+            updating = false;
+        }
+    }
+
+    public void clear() {
+        FxAsync.cancel(pendingSuggestions);
+        updating = true;
+        try {
+            comboBox.setValue(null);
+            comboBox.getEditor().clear();
+            comboBox.getItems().clear();
+        } finally {
+            updating = false;
+        }
+    }
+
+    private void textChanged(String text) {
+        if (updating) {
+            return;
+        }
+        // Choosing a suggestion puts its name into the editor; nothing to look up then
+        Customer value = comboBox.getValue();
+        if (value != null && value.getName().equals(text)) {
+            return;
+        }
+        suggest(text);
+    }
+
+    private void suggest(String text) {
+        FxAsync.cancel(pendingSuggestions);
+        pendingSuggestions = FxAsync.run(dataService.searchCustomers(text, SUGGESTION_LIMIT),
+                customers -> showSuggestions(text, customers),
+                e -> {
+                    // The picker stays usable with the suggestions it has; a keystroke is no reason for a dialog
+                    e.printStackTrace();
+                });
+    }
+
+    private void showSuggestions(String text, List<Customer> customers) {
+        TextField editor = comboBox.getEditor();
+        // Suggestions for text that has since been changed again are stale
+        if (!text.equals(editor.getText())) {
+            return;
+        }
+
+        updating = true;
+        try {
+            comboBox.getItems().setAll(customers);
+            // Replacing the items can move a selected name into the editor; keep what was typed
+            if (!text.equals(editor.getText())) {
+                editor.setText(text);
+            }
+            editor.positionCaret(text.length());
+        } finally {
+            updating = false;
+        }
+
+        if (customers.isEmpty()) {
+            comboBox.hide();
+        } else if (editor.isFocused()) {
+            comboBox.show();
+        }
+    }
+
+    // Customers are shown by name; typed text becomes the suggested customer of that name, if any
+    private class NameConverter extends StringConverter<Customer> {
+        @Override
+        public String toString(Customer customer) {
+            return customer == null ? "" : customer.getName();
+        }
+
+        @Override
+        public Customer fromString(String text) {
+            if (text == null || text.isBlank()) {
+                return null;
+            }
+            String name = text.trim();
+            Customer value = comboBox.getValue();
+            if (value != null && value.getName().equalsIgnoreCase(name)) {
+                return value;
+            }
+            return comboBox.getItems().stream()
+                    .filter(customer -> customer.getName().equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+}
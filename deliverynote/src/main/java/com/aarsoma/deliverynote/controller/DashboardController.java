@@ -2,13 +2,23 @@
 // DashboardController.java
 package com.aarsoma.deliverynote.controller;
 
+import com.aarsoma.deliverynote.event.DataChanged;
+import com.aarsoma.deliverynote.event.DeliveryNoteSaved;
 import com.aarsoma.deliverynote.model.FinancialYear;
+import com.aarsoma.deliverynote.model.ImportResult;
 import com.aarsoma.deliverynote.model.Statistics;
+import com.aarsoma.deliverynote.service.AsyncDataService;
+import com.aarsoma.deliverynote.repository.DataVersionRepository;
+import com.aarsoma.deliverynote.service.ImportService;
 import com.aarsoma.deliverynote.service.StatisticsService;
 import com.aarsoma.deliverynote.util.AlertUtil;
+import com.aarsoma.deliverynote.util.FxAsync;
+import com.aarsoma.deliverynote.util.FxEvents;
+import com.aarsoma.deliverynote.util.ViewLoader;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -18,23 +28,35 @@ import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressIndicator;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.sql.SQLException;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 public class DashboardController implements Initializable {
 
+    private static final int MAX_ERRORS_SHOWN = 20;
+
     @FXML private MenuBar menuBar;
     @FXML private MenuItem customerMenuItem;
     @FXML private MenuItem deliveryChallanMenuItem;
     @FXML private MenuItem deliveryHistoryMenuItem;
+    @FXML private MenuItem importCustomersMenuItem;
+    @FXML private MenuItem importDeliveryNotesMenuItem;
+    @FXML private MenuItem cancelImportMenuItem;
 
     @FXML private Label dateTimeLabel;
     @FXML private Label totalDeliveryNotesLabel;
@@ -43,26 +65,60 @@ public class DashboardController implements Initializable {
     @FXML private Label weeklyDeliveryNotesLabel;
     @FXML private Label dailyDeliveryNotesLabel;
     @FXML private Label financialYearLabel;
+    @FXML private Label importStatusLabel;
+    @FXML private ProgressIndicator loadingIndicator;
 
+    private final AsyncDataService dataService = new AsyncDataService();
+    private final ImportService importService = new ImportService();
     private final StatisticsService statisticsService = new StatisticsService();
+    private CompletableFuture<Statistics> pendingStatistics;
+    // What the labels show, and whether a change arrived while they were being loaded
+    private Statistics shownStatistics;
+    private boolean reloadRequested;
+    private CompletableFuture<ImportResult> pendingImport;
     private Timeline clockTimeline;
     private Timeline statsUpdateTimeline;
+    private Stage diagnosticsStage;
 
+    // May run off the FX thread when the dashboard is preloaded during startup, so nothing
+    // is started here; see start()
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        // Initialize clock
-        initializeClock();
-
         // Set financial year
         String currentFY = FinancialYear.getCurrentFinancialYear();
         financialYearLabel.setText("Financial Year: " + currentFY);
+    }
+
+    // Called on the FX thread once the dashboard is shown; statistics already queried during
+    // startup are shown straight away, otherwise they are loaded now
+    public void start(Statistics firstStatistics) {
+        // Initialize clock
+        initializeClock();
 
         // Load initial statistics
-        loadStatistics();
+        if (firstStatistics != null) {
+            showStatistics(firstStatistics);
+        } else {
+            loadStatistics();
+        }
 
-        // Set up periodic statistics refresh (every 5 minutes)
+        // Notes saved here are added to the counts as they are saved; notes saved by other
+        // terminals are noticed through the change stamps and the counts read again
+        FxEvents.subscribe(menuBar, DeliveryNoteSaved.class, event -> addNote(event.getNote().getIssueDate().toLocalDate()));
+        FxEvents.subscribe(menuBar, DataChanged.class, event -> {
+            if (DataVersionRepository.DELIVERY_NOTES.equals(event.getTable())) {
+                loadStatistics();
+            }
+        });
+
+        // The day, week, month and financial year counts start again at midnight
         statsUpdateTimeline = new Timeline(
-                new KeyFrame(Duration.minutes(5), event -> loadStatistics())
+                new KeyFrame(Duration.minutes(1), event -> {
+                    if (shownStatistics != null && shownStatistics.getComputedAt() != null
+                            && !shownStatistics.getComputedAt().toLocalDate().equals(LocalDate.now())) {
+                        loadStatistics();
+                    }
+                })
         );
         statsUpdateTimeline.setCycleCount(Animation.INDEFINITE);
         statsUpdateTimeline.play();
@@ -85,34 +141,58 @@ public class DashboardController implements Initializable {
     }
 
     private void loadStatistics() {
-        try {
-            Statistics stats = statisticsService.getDeliveryNoteStatistics();
+        // The running refresh may have started before the change, so read once more after it
+        if (pendingStatistics != null && !pendingStatistics.isDone()) {
+            reloadRequested = true;
+            return;
+        }
+
+        reloadRequested = false;
+        pendingStatistics = FxAsync.run(dataService.getDeliveryNoteStatistics(), loadingIndicator,
+                stats -> {
+                    showStatistics(stats);
+                    if (reloadRequested) {
+                        loadStatistics();
+                    }
+                },
+                e -> {
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Could not load statistics", e.getMessage());
+                });
+    }
 
-            totalDeliveryNotesLabel.setText(String.valueOf(stats.getTotalDeliveryNotes()));
-            fyDeliveryNotesLabel.setText(String.valueOf(stats.getFinancialYearDeliveryNotes()));
-            monthlyDeliveryNotesLabel.setText(String.valueOf(stats.getMonthlyDeliveryNotes()));
-            weeklyDeliveryNotesLabel.setText(String.valueOf(stats.getWeeklyDeliveryNotes()));
-            dailyDeliveryNotesLabel.setText(String.valueOf(stats.getDailyDeliveryNotes()));
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not load statistics", e.getMessage());
+    private void addNote(LocalDate issueDate) {
+        Statistics updated = shownStatistics == null || reloadRequested
+                || (pendingStatistics != null && !pendingStatistics.isDone())
+                ? null : statisticsService.addNote(shownStatistics, issueDate);
+        if (updated != null) {
+            showStatistics(updated);
+        } else {
+            loadStatistics();
         }
     }
 
+    private void showStatistics(Statistics stats) {
+        shownStatistics = stats;
+        totalDeliveryNotesLabel.setText(String.valueOf(stats.getTotalDeliveryNotes()));
+        fyDeliveryNotesLabel.setText(String.valueOf(stats.getFinancialYearDeliveryNotes()));
+        monthlyDeliveryNotesLabel.setText(String.valueOf(stats.getMonthlyDeliveryNotes()));
+        weeklyDeliveryNotesLabel.setText(String.valueOf(stats.getWeeklyDeliveryNotes()));
+        dailyDeliveryNotesLabel.setText(String.valueOf(stats.getDailyDeliveryNotes()));
+        financialYearLabel.setText("Financial Year: " + stats.getFinancialYear());
+    }
+
     @FXML
     private void handleCustomerMenuItem(ActionEvent event) {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/customermanagement.fxml"));
-            Parent root = loader.load();
+            Parent root = ViewLoader.load(loader);
 
             Stage stage = new Stage();
             stage.setTitle("Customer Management");
             stage.setScene(new Scene(root, 800, 600));
             stage.initModality(Modality.APPLICATION_MODAL);
             stage.showAndWait();
-
-            // Refresh stats after customer management is closed
-            loadStatistics();
         } catch (IOException e) {
             AlertUtil.showErrorAlert("Error", "Could not open customer management", e.getMessage());
         }
@@ -122,16 +202,13 @@ public class DashboardController implements Initializable {
     private void handleDeliveryChallanMenuItem(ActionEvent event) {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/deliverynote.fxml"));
-            Parent root = loader.load();
+            Parent root = ViewLoader.load(loader);
 
             Stage stage = new Stage();
             stage.setTitle("Create Delivery Note");
             stage.setScene(new Scene(root, 900, 700));
             stage.initModality(Modality.APPLICATION_MODAL);
             stage.showAndWait();
-
-            // Refresh stats after delivery note creation is closed
-            loadStatistics();
         } catch (IOException e) {
             AlertUtil.showErrorAlert("Error", "Could not open delivery note form", e.getMessage());
         }
@@ -141,7 +218,7 @@ public class DashboardController implements Initializable {
     private void handleDeliveryHistoryMenuItem(ActionEvent event) {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/deliveryhistory.fxml"));
-            Parent root = loader.load();
+            Parent root = ViewLoader.load(loader);
 
             Stage stage = new Stage();
             stage.setTitle("Delivery Note History");
@@ -153,6 +230,127 @@ public class DashboardController implements Initializable {
         }
     }
 
+    @FXML
+    private void handleDiagnosticsMenuItem(ActionEvent event) {
+        // Not modal, so it can stay open next to the screen being investigated
+        if (diagnosticsStage != null) {
+            diagnosticsStage.toFront();
+            return;
+        }
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/diagnostics.fxml"));
+            Parent root = ViewLoader.load(loader);
+            DiagnosticsController controller = loader.getController();
+
+            Stage stage = new Stage();
+            stage.setTitle("Diagnostics");
+            stage.setScene(new Scene(root, 900, 600));
+            stage.initOwner(menuBar.getScene().getWindow());
+            stage.setOnHidden(e -> {
+                controller.stop();
+                diagnosticsStage = null;
+            });
+            diagnosticsStage = stage;
+            stage.show();
+        } catch (IOException e) {
+            AlertUtil.showErrorAlert("Error", "Could not open diagnostics", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleImportCustomersMenuItem(ActionEvent event) {
+        startImport("Import Customers", importService::importCustomersAsync);
+    }
+
+    @FXML
+    private void handleImportDeliveryNotesMenuItem(ActionEvent event) {
+        startImport("Import Delivery Notes", importService::importDeliveryNotesAsync);
+    }
+
+    @FXML
+    private void handleCancelImportMenuItem(ActionEvent event) {
+        importService.cancel();
+        importStatusLabel.setText("Stopping import after the current batch...");
+    }
+
+    private void startImport(String title,
+                             BiFunction<Path, Consumer<ImportResult>, CompletableFuture<ImportResult>> importer) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(title);
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = fileChooser.showOpenDialog(menuBar.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        setImportRunning(true);
+        CompletableFuture<ImportResult> future = importer.apply(file.toPath(),
+                progress -> Platform.runLater(() -> showImportProgress(progress)));
+
+        pendingImport = FxAsync.run(future, loadingIndicator,
+                result -> {
+                    setImportRunning(false);
+                    importStatusLabel.setText("");
+                    showImportResult(title, result);
+                    loadStatistics();
+                },
+                e -> {
+                    setImportRunning(false);
+                    importStatusLabel.setText("");
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", title + " failed", e.getMessage()
+                            + "\n\nImporting the same file again continues after the last saved batch.");
+                });
+    }
+
+    private void setImportRunning(boolean running) {
+        importCustomersMenuItem.setDisable(running);
+        importDeliveryNotesMenuItem.setDisable(running);
+        cancelImportMenuItem.setDisable(!running);
+    }
+
+    private void showImportProgress(ImportResult progress) {
+        importStatusLabel.setText(String.format("Importing %s: %,d rows read, %,d imported, %,d errors",
+                progress.getFileName(), progress.getRecordsRead(), progress.getImported(), progress.getErrorCount()));
+    }
+
+    private void showImportResult(String title, ImportResult result) {
+        StringBuilder content = new StringBuilder();
+        content.append(String.format("Rows read: %,d%n", result.getRecordsRead()));
+        if (result.getResumedFromRecord() > 0) {
+            content.append(String.format("Resumed after row: %,d%n", result.getResumedFromRecord()));
+        }
+        content.append(String.format("Imported: %,d%n", result.getImported()));
+        if (result.getAlreadyPresent() > 0) {
+            content.append(String.format("Already present: %,d%n", result.getAlreadyPresent()));
+        }
+        content.append(String.format("Rejected: %,d%n", result.getRejected()));
+        content.append(String.format("Time: %.1f s%n", result.getElapsedMillis() / 1000.0));
+
+        // Show the first few errors; the rest are only counted
+        int shown = Math.min(MAX_ERRORS_SHOWN, result.getErrors().size());
+        if (shown > 0) {
+            content.append("\nErrors:\n");
+            for (int i = 0; i < shown; i++) {
+                content.append(result.getErrors().get(i)).append('\n');
+            }
+            if (result.getErrorCount() > shown) {
+                content.append(String.format("... and %,d more%n", result.getErrorCount() - shown));
+            }
+        }
+
+        if (result.isCancelled()) {
+            content.append("\nThe import was stopped. Importing the same file again continues where it stopped.");
+        }
+
+        String header = result.isCancelled() ? "Import stopped" : "Import finished";
+        if (result.getErrorCount() > 0) {
+            AlertUtil.showWarningAlert(title, header, content.toString());
+        } else {
+            AlertUtil.showInformationAlert(title, header, content.toString());
+        }
+    }
+
 
     public void stop() {
         // Stop timelines when controller is destroyed
@@ -162,5 +360,10 @@ public class DashboardController implements Initializable {
         if (statsUpdateTimeline != null) {
             statsUpdateTimeline.stop();
         }
+        FxAsync.cancel(pendingStatistics);
+        // A running import finishes its current batch and can be resumed later
+        if (pendingImport != null && !pendingImport.isDone()) {
+            importService.cancel();
+        }
     }
 }
@@ -1,28 +1,46 @@
 package com.aarsoma.deliverynote.controller;
 
+import com.aarsoma.deliverynote.event.CustomerSaved;
+import com.aarsoma.deliverynote.event.DeliveryNoteSaved;
 import com.aarsoma.deliverynote.model.Customer;
 import com.aarsoma.deliverynote.model.DeliveryNote;
-import com.aarsoma.deliverynote.service.CustomerService;
-import com.aarsoma.deliverynote.service.DeliveryNoteService;
+import com.aarsoma.deliverynote.model.DeliveryNotePage;
+import com.aarsoma.deliverynote.model.DeliveryNoteQuery;
+import com.aarsoma.deliverynote.model.ExportFormat;
+import com.aarsoma.deliverynote.model.ExportResult;
+import com.aarsoma.deliverynote.model.PdfExportResult;
+import com.aarsoma.deliverynote.service.AsyncDataService;
+import com.aarsoma.deliverynote.service.ExportService;
+import com.aarsoma.deliverynote.service.PdfExportService;
 import com.aarsoma.deliverynote.service.PrintService;
 import com.aarsoma.deliverynote.util.AlertUtil;
+import com.aarsoma.deliverynote.util.FxAsync;
+import com.aarsoma.deliverynote.util.FxEvents;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 
+import java.io.File;
 import java.net.URL;
-import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 
 public class DeliveryHistoryController implements Initializable {
 
+    @FXML private TextField searchField;
     @FXML private ComboBox<Customer> customerComboBox;
     @FXML private DatePicker singleDatePicker;
     @FXML private DatePicker startDatePicker;
@@ -32,6 +50,9 @@ public class DeliveryHistoryController implements Initializable {
     @FXML private TableColumn<DeliveryNote, String> issueDateColumn;
     @FXML private TableColumn<DeliveryNote, String> customerNameColumn;
     @FXML private TableColumn<DeliveryNote, Integer> itemCountColumn;
+    @FXML private ProgressIndicator loadingIndicator;
+    @FXML private Button exportButton;
+    @FXML private Label exportStatusLabel;
     @FXML private VBox detailsPane;
     @FXML private Label selectedNoteNumberLabel;
     @FXML private Label selectedCustomerLabel;
@@ -43,9 +64,24 @@ public class DeliveryHistoryController implements Initializable {
     @FXML private TableColumn<DeliveryItemViewModel, Integer> deliveredQtyColumn;
     @FXML private TableColumn<DeliveryItemViewModel, Integer> balanceQtyColumn;
 
-    private final DeliveryNoteService deliveryNoteService = new DeliveryNoteService();
-    private final CustomerService customerService = new CustomerService();
+    private final AsyncDataService dataService = new AsyncDataService();
     private final PrintService printService = new PrintService();
+    private final ExportService exportService = new ExportService();
+    private final PdfExportService pdfExportService = new PdfExportService();
+    private CompletableFuture<?> pendingExport;
+
+    // Notes are fetched page by page as the table is scrolled
+    private static final int PAGE_SIZE = 100;
+    private static final int PREFETCH_ROWS = 20;
+    // Text search shows only the best matches, without paging
+    private static final int SEARCH_LIMIT = 200;
+    private final ObservableList<DeliveryNote> loadedNotes = FXCollections.observableArrayList();
+    private DeliveryNoteQuery currentQuery = DeliveryNoteQuery.all();
+    private DeliveryNotePage lastPage;
+    private CompletableFuture<DeliveryNotePage> pendingPage;
+    private CompletableFuture<List<DeliveryNote>> pendingSearch;
+    // The shown text search results, or null while a query is shown
+    private DeliveryNotePage searchResults;
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
@@ -55,8 +91,8 @@ public class DeliveryHistoryController implements Initializable {
         startDatePicker.setValue(today.minusWeeks(1));
         endDatePicker.setValue(today);
 
-        // Load customers
-        loadCustomers();
+        // Customers are looked up as the name is typed
+        CustomerPicker.attach(customerComboBox, dataService);
 
         // Configure delivery notes table
         configureDeliveryNotesTable();
@@ -67,20 +103,14 @@ public class DeliveryHistoryController implements Initializable {
         // Hide details pane initially
         detailsPane.setVisible(false);
 
+        // Keep the shown notes in step with notes and customers saved while the screen is open
+        FxEvents.subscribe(deliveryNotesTable, DeliveryNoteSaved.class, event -> addSavedNote(event.getNote()));
+        FxEvents.subscribe(deliveryNotesTable, CustomerSaved.class, event -> updateCustomer(event.getCustomer()));
+
         // Load all delivery notes initially
         loadAllDeliveryNotes();
     }
 
-    private void loadCustomers() {
-        try {
-            List<Customer> customers = customerService.getAllCustomers();
-            customerComboBox.setItems(FXCollections.observableArrayList(customers));
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not load customers", e.getMessage());
-        }
-    }
-
     private void configureDeliveryNotesTable() {
         noteNumberColumn.setCellValueFactory(cellData ->
                 new SimpleStringProperty(cellData.getValue().getNoteNumber()));
@@ -95,6 +125,26 @@ public class DeliveryHistoryController implements Initializable {
         itemCountColumn.setCellValueFactory(cellData ->
                 new SimpleObjectProperty<>(cellData.getValue().getItems().size()));
 
+        // Sorting is done by the database; only issue date has a keyset to page on
+        noteNumberColumn.setSortable(false);
+        customerNameColumn.setSortable(false);
+        itemCountColumn.setSortable(false);
+        deliveryNotesTable.setSortPolicy(table -> true);
+        deliveryNotesTable.getSortOrder().addListener((ListChangeListener<TableColumn<DeliveryNote, ?>>) change -> reloadForSortOrder());
+        issueDateColumn.sortTypeProperty().addListener((obs, oldType, newType) -> reloadForSortOrder());
+
+        // Fetch the next page once rows near the end of the loaded notes are displayed
+        deliveryNotesTable.setRowFactory(table -> {
+            TableRow<DeliveryNote> row = new TableRow<>();
+            row.indexProperty().addListener((obs, oldIndex, newIndex) -> {
+                if (newIndex.intValue() >= loadedNotes.size() - PREFETCH_ROWS) {
+                    Platform.runLater(this::loadNextPage);
+                }
+            });
+            return row;
+        });
+        deliveryNotesTable.setItems(loadedNotes);
+
         deliveryNotesTable.getSelectionModel().selectedItemProperty().addListener(
                 (obs, oldSelection, newSelection) -> {
                     if (newSelection != null) {
@@ -123,6 +173,45 @@ public class DeliveryHistoryController implements Initializable {
                 new SimpleObjectProperty<>(cellData.getValue().getBalanceQty()));
     }
 
+    // Words of a note number, item or customer, best matches first
+    @FXML
+    private void handleSearch() {
+        String text = searchField.getText();
+        if (text == null || text.isBlank()) {
+            AlertUtil.showWarningAlert("Warning", "No Search Text",
+                    "Please enter a note number, item or customer to search for.");
+            return;
+        }
+
+        // The results replace the current query; marking them as the last page stops paging
+        cancelPendingLoads();
+        DeliveryNotePage results = new DeliveryNotePage();
+        searchResults = results;
+        lastPage = results;
+        loadedNotes.clear();
+        detailsPane.setVisible(false);
+
+        pendingSearch = FxAsync.run(dataService.searchDeliveryNotes(text.trim(), SEARCH_LIMIT), loadingIndicator,
+                notes -> {
+                    if (searchResults != results) {
+                        return;
+                    }
+                    results.setNotes(notes);
+                    loadedNotes.setAll(notes);
+                    if (notes.isEmpty()) {
+                        AlertUtil.showInformationAlert("No Results", "No Delivery Notes Found",
+                                "No delivery notes match \"" + text.trim() + "\".");
+                    } else {
+                        deliveryNotesTable.scrollTo(0);
+                        deliveryNotesTable.getSelectionModel().selectFirst();
+                    }
+                },
+                e -> {
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Search Failed", e.getMessage());
+                });
+    }
+
     @FXML
     private void handleSearchByCustomer() {
         Customer selectedCustomer = customerComboBox.getValue();
@@ -132,23 +221,8 @@ public class DeliveryHistoryController implements Initializable {
             return;
         }
 
-        try {
-            List<DeliveryNote> notes = deliveryNoteService.getDeliveryNotesByCustomer(
-                    selectedCustomer.getId());
-
-            if (notes.isEmpty()) {
-                AlertUtil.showInformationAlert("No Results", "No Delivery Notes Found",
-                        "No delivery notes found for the selected customer.");
-                deliveryNotesTable.setItems(FXCollections.observableArrayList());
-                detailsPane.setVisible(false);
-            } else {
-                deliveryNotesTable.setItems(FXCollections.observableArrayList(notes));
-                deliveryNotesTable.getSelectionModel().selectFirst();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Search Failed", e.getMessage());
-        }
+        startQuery(DeliveryNoteQuery.forCustomer(selectedCustomer.getId()), "No Results", "No Delivery Notes Found",
+                "No delivery notes found for the selected customer.");
     }
 
     @FXML
@@ -160,58 +234,135 @@ public class DeliveryHistoryController implements Initializable {
             return;
         }
 
-        try {
-            List<DeliveryNote> notes = deliveryNoteService.getDeliveryNotesByDate(date);
-
-            if (notes.isEmpty()) {
-                AlertUtil.showInformationAlert("No Results", "No Delivery Notes Found",
-                        "No delivery notes found for the selected date.");
-                deliveryNotesTable.setItems(FXCollections.observableArrayList());
-                detailsPane.setVisible(false);
-            } else {
-                deliveryNotesTable.setItems(FXCollections.observableArrayList(notes));
-                deliveryNotesTable.getSelectionModel().selectFirst();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Search Failed", e.getMessage());
-        }
+        startQuery(DeliveryNoteQuery.forDateRange(date, date), "No Results", "No Delivery Notes Found",
+                "No delivery notes found for the selected date.");
     }
 
     @FXML
     private void handleSearchByDateRange() {
+        if (!isDateRangeValid()) {
+            return;
+        }
+
+        startQuery(DeliveryNoteQuery.forDateRange(startDatePicker.getValue(), endDatePicker.getValue()),
+                "No Results", "No Delivery Notes Found", "No delivery notes found for the selected date range.");
+    }
+
+    private boolean isDateRangeValid() {
         LocalDate startDate = startDatePicker.getValue();
         LocalDate endDate = endDatePicker.getValue();
 
         if (startDate == null || endDate == null) {
             AlertUtil.showWarningAlert("Warning", "Date Range Incomplete",
                     "Please select both start and end dates.");
-            return;
+            return false;
         }
 
         if (startDate.isAfter(endDate)) {
             AlertUtil.showWarningAlert("Warning", "Invalid Date Range",
                     "Start date must be before or equal to end date.");
+            return false;
+        }
+        return true;
+    }
+
+    // Export the notes of the selected date range; pressed again while running, stops the export
+    @FXML
+    private void handleExport() {
+        if (pendingExport != null && !pendingExport.isDone()) {
+            exportService.cancel();
+            pdfExportService.cancel();
+            exportStatusLabel.setText("Stopping export...");
+            return;
+        }
+        if (!isDateRangeValid()) {
             return;
         }
 
-        try {
-            List<DeliveryNote> notes = deliveryNoteService.getDeliveryNotesByDateRange(
-                    startDate, endDate);
+        LocalDate startDate = startDatePicker.getValue();
+        LocalDate endDate = endDatePicker.getValue();
 
-            if (notes.isEmpty()) {
-                AlertUtil.showInformationAlert("No Results", "No Delivery Notes Found",
-                        "No delivery notes found for the selected date range.");
-                deliveryNotesTable.setItems(FXCollections.observableArrayList());
-                detailsPane.setVisible(false);
-            } else {
-                deliveryNotesTable.setItems(FXCollections.observableArrayList(notes));
-                deliveryNotesTable.getSelectionModel().selectFirst();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Search Failed", e.getMessage());
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Delivery Notes");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV files", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV files, gzipped", "*.csv.gz"),
+                new FileChooser.ExtensionFilter("JSON Lines files", "*.jsonl"),
+                new FileChooser.ExtensionFilter("JSON Lines files, gzipped", "*.jsonl.gz"),
+                new FileChooser.ExtensionFilter("PDF files, zipped", "*.zip"));
+        fileChooser.setInitialFileName("delivery-notes_" + startDate + "_" + endDate + ".csv");
+        File file = fileChooser.showSaveDialog(deliveryNotesTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        // The file name decides the format
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".zip")) {
+            exportPdfs(startDate, endDate, file);
+            return;
         }
+        boolean gzip = name.endsWith(".gz");
+        ExportFormat format = name.endsWith(".jsonl") || name.endsWith(".jsonl.gz")
+                ? ExportFormat.JSON_LINES : ExportFormat.CSV;
+
+        exportButton.setText("Stop Export");
+        CompletableFuture<ExportResult> future = exportService.exportDeliveryNotesAsync(startDate, endDate,
+                file.toPath(), format, gzip, progress -> Platform.runLater(() -> showExportProgress(progress)));
+
+        pendingExport = FxAsync.run(future,
+                result -> {
+                    exportFinished();
+                    if (result.isCancelled()) {
+                        AlertUtil.showInformationAlert("Export", "Export stopped", "No file was written.");
+                    } else {
+                        AlertUtil.showInformationAlert("Export", "Export finished", String.format(
+                                "%,d delivery notes (%,d rows) written to %s%nSize: %,d bytes%nTime: %.1f s",
+                                result.getNotesWritten(), result.getRowsWritten(), file.getAbsolutePath(),
+                                result.getBytesWritten(), result.getElapsedMillis() / 1000.0));
+                    }
+                },
+                e -> {
+                    exportFinished();
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Export failed", e.getMessage());
+                });
+    }
+
+    // One PDF per note of the date range, in a zip file
+    private void exportPdfs(LocalDate startDate, LocalDate endDate, File file) {
+        exportButton.setText("Stop Export");
+        CompletableFuture<PdfExportResult> future = pdfExportService.exportPdfsAsync(
+                DeliveryNoteQuery.forDateRange(startDate, endDate), file.toPath(), true,
+                progress -> Platform.runLater(() -> exportStatusLabel.setText(String.format(
+                        "Exporting %s: %,d PDFs", file.getName(), progress.getNotesWritten()))));
+
+        pendingExport = FxAsync.run(future,
+                result -> {
+                    exportFinished();
+                    if (result.isCancelled()) {
+                        AlertUtil.showInformationAlert("Export", "Export stopped", "No file was written.");
+                    } else {
+                        AlertUtil.showInformationAlert("Export", "Export finished", String.format(
+                                "%,d delivery notes (%,d pages) written to %s%nSize: %,d bytes%nTime: %.1f s",
+                                result.getNotesWritten(), result.getPagesWritten(), file.getAbsolutePath(),
+                                result.getBytesWritten(), result.getElapsedMillis() / 1000.0));
+                    }
+                },
+                e -> {
+                    exportFinished();
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Export failed", e.getMessage());
+                });
+    }
+
+    private void showExportProgress(ExportResult progress) {
+        exportStatusLabel.setText(String.format("Exporting %s: %,d notes", progress.getFileName(), progress.getNotesWritten()));
+    }
+
+    private void exportFinished() {
+        exportButton.setText("Export...");
+        exportStatusLabel.setText("");
     }
 
     @FXML
@@ -220,21 +371,119 @@ public class DeliveryHistoryController implements Initializable {
     }
 
     private void loadAllDeliveryNotes() {
-        try {
-            List<DeliveryNote> notes = deliveryNoteService.getAllDeliveryNotes();
-
-            if (notes.isEmpty()) {
-                AlertUtil.showInformationAlert("No Data", "No Delivery Notes",
-                        "There are no delivery notes in the system.");
-                deliveryNotesTable.setItems(FXCollections.observableArrayList());
-                detailsPane.setVisible(false);
+        startQuery(DeliveryNoteQuery.all(), "No Data", "No Delivery Notes",
+                "There are no delivery notes in the system.");
+    }
+
+    // Replace the table contents with the first page of a new search
+    private void startQuery(DeliveryNoteQuery query, String emptyTitle, String emptyHeader, String emptyMessage) {
+        query.setAscending(isIssueDateAscending());
+        cancelPendingLoads();
+        searchResults = null;
+        currentQuery = query;
+        lastPage = null;
+        loadedNotes.clear();
+        detailsPane.setVisible(false);
+
+        loadNextPage(() -> {
+            if (loadedNotes.isEmpty()) {
+                AlertUtil.showInformationAlert(emptyTitle, emptyHeader, emptyMessage);
             } else {
-                deliveryNotesTable.setItems(FXCollections.observableArrayList(notes));
+                deliveryNotesTable.scrollTo(0);
                 deliveryNotesTable.getSelectionModel().selectFirst();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Load Failed", e.getMessage());
+        });
+    }
+
+    private void cancelPendingLoads() {
+        FxAsync.cancel(pendingPage);
+        FxAsync.cancel(pendingSearch);
+    }
+
+    private void loadNextPage() {
+        loadNextPage(null);
+    }
+
+    private void loadNextPage(Runnable onLoaded) {
+        if ((pendingPage != null && !pendingPage.isDone()) || (lastPage != null && !lastPage.isHasMore())) {
+            return;
+        }
+
+        DeliveryNoteQuery query = currentQuery;
+        DeliveryNote after = lastPage == null ? null : lastPage.getLastNote();
+        pendingPage = FxAsync.run(dataService.getDeliveryNotesPage(query, after, PAGE_SIZE), loadingIndicator,
+                page -> {
+                    // Ignore pages of a search that has since been replaced
+                    if (query != currentQuery) {
+                        return;
+                    }
+                    lastPage = page;
+                    loadedNotes.addAll(page.getNotes());
+                    if (onLoaded != null) {
+                        onLoaded.run();
+                    }
+                },
+                e -> {
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Load Failed", e.getMessage());
+                });
+    }
+
+    // A new note joins the shown query where it sorts; past the loaded pages, paging fetches it.
+    // Text search results keep their ranking and are left alone
+    private void addSavedNote(DeliveryNote note) {
+        if (searchResults != null || lastPage == null || !currentQuery.matches(note)) {
+            return;
+        }
+        for (DeliveryNote loaded : loadedNotes) {
+            if (loaded.getId().equals(note.getId())) {
+                return;
+            }
+        }
+
+        Comparator<DeliveryNote> order = Comparator.comparing(DeliveryNote::getIssueDate)
+                .thenComparing(DeliveryNote::getId);
+        if (!currentQuery.isAscending()) {
+            order = order.reversed();
+        }
+        int index = 0;
+        while (index < loadedNotes.size() && order.compare(loadedNotes.get(index), note) < 0) {
+            index++;
+        }
+        if (index < loadedNotes.size() || !lastPage.isHasMore()) {
+            loadedNotes.add(index, note);
+        }
+    }
+
+    private void updateCustomer(Customer customer) {
+        boolean changed = false;
+        for (DeliveryNote note : loadedNotes) {
+            if (customer.getId().equals(note.getCustomerId())) {
+                note.setCustomer(customer);
+                changed = true;
+            }
+        }
+        if (changed) {
+            deliveryNotesTable.refresh();
+            DeliveryNote selected = deliveryNotesTable.getSelectionModel().getSelectedItem();
+            if (selected != null) {
+                showDeliveryNoteDetails(selected);
+            }
+        }
+    }
+
+    private boolean isIssueDateAscending() {
+        return deliveryNotesTable.getSortOrder().contains(issueDateColumn)
+                && issueDateColumn.getSortType() == TableColumn.SortType.ASCENDING;
+    }
+
+    private void reloadForSortOrder() {
+        // Search results keep their ranking; the next query picks up the new order
+        if (searchResults != null) {
+            return;
+        }
+        if (currentQuery.isAscending() != isIssueDateAscending()) {
+            startQuery(currentQuery, "No Data", "No Delivery Notes", "No delivery notes to display.");
         }
     }
 
@@ -247,7 +496,7 @@ public class DeliveryHistoryController implements Initializable {
             return;
         }
 
-        printService.printDeliveryNote(selectedNote);
+        printService.printDeliveryNote(selectedNote, deliveryNotesTable.getScene().getWindow());
     }
 
     private void showDeliveryNoteDetails(DeliveryNote note) {
@@ -4,10 +4,11 @@ import com.aarsoma.deliverynote.model.Customer;
 import com.aarsoma.deliverynote.model.DeliveryItem;
 import com.aarsoma.deliverynote.model.DeliveryNote;
 import com.aarsoma.deliverynote.model.FinancialYear;
-import com.aarsoma.deliverynote.service.CustomerService;
-import com.aarsoma.deliverynote.service.DeliveryNoteService;
+import com.aarsoma.deliverynote.service.AsyncDataService;
 import com.aarsoma.deliverynote.service.PrintService;
 import com.aarsoma.deliverynote.util.AlertUtil;
+import com.aarsoma.deliverynote.util.FxAsync;
+import com.aarsoma.deliverynote.util.ViewLoader;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -28,9 +29,9 @@ import javafx.util.converter.IntegerStringConverter;
 
 import java.io.IOException;
 import java.net.URL;
-import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.stream.Collectors;
@@ -48,9 +49,11 @@ public class DeliveryNoteController implements Initializable {
     @FXML private TableColumn<DeliveryItem, Integer> deliveredQtyColumn;
     @FXML private TableColumn<DeliveryItem, Integer> balanceQtyColumn;
 
-    private final DeliveryNoteService deliveryNoteService = new DeliveryNoteService();
-    private final CustomerService customerService = new CustomerService();
+    @FXML private Button saveButton;
+
+    private final AsyncDataService dataService = new AsyncDataService();
     private final PrintService printService = new PrintService();
+    private CustomerPicker customerPicker;
 
     private final ObservableList<DeliveryItem> itemsList = FXCollections.observableArrayList();
     private LocalDateTime currentDateTime;
@@ -61,23 +64,11 @@ public class DeliveryNoteController implements Initializable {
         currentDateTime = LocalDateTime.now();
         dateField.setText(currentDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
 
-        // Generate next delivery note number
-        try {
-            String nextNumber = deliveryNoteService.generateNextDeliveryNoteNumber();
-            noteNumberField.setText(nextNumber);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not generate delivery note number", e.getMessage());
-        }
+        // The delivery note number is allocated when the note is saved
+        noteNumberField.setPromptText("Assigned on save");
 
-        // Load customers
-        try {
-            List<Customer> customers = customerService.getAllCustomers();
-            customerComboBox.setItems(FXCollections.observableArrayList(customers));
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not load customers", e.getMessage());
-        }
+        // Customers are looked up as the name is typed
+        customerPicker = CustomerPicker.attach(customerComboBox, dataService);
 
         // Configure table columns
         configureItemTable();
@@ -179,37 +170,41 @@ public class DeliveryNoteController implements Initializable {
             return;
         }
 
-        try {
-            // Create delivery note
-            DeliveryNote deliveryNote = new DeliveryNote();
-            deliveryNote.setNoteNumber(noteNumberField.getText());
-            deliveryNote.setCustomerId(customerComboBox.getValue().getId());
-            deliveryNote.setCustomer(customerComboBox.getValue());
-            deliveryNote.setIssueDate(currentDateTime);
-            deliveryNote.setFinancialYear(FinancialYear.getCurrentFinancialYear());
-            deliveryNote.setItems(itemsList);
-
-            // Save delivery note
-            DeliveryNote savedNote = deliveryNoteService.saveDeliveryNote(deliveryNote);
-
-            AlertUtil.showInformationAlert("Success", "Delivery Note Saved",
-                    "Delivery Note #" + savedNote.getNoteNumber() + " has been saved successfully.");
-
-            // Ask if user wants to print
-            boolean printNow = AlertUtil.showConfirmationAlert("Print", "Print Delivery Note",
-                    "Do you want to print this delivery note now?");
-
-            if (printNow) {
-                handlePrintPreview();
-            }
-
-            // Clear form for new entry
-            clearForm();
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not save delivery note", e.getMessage());
-        }
+        // Create delivery note
+        DeliveryNote deliveryNote = new DeliveryNote();
+        deliveryNote.setCustomerId(customerComboBox.getValue().getId());
+        deliveryNote.setCustomer(customerComboBox.getValue());
+        deliveryNote.setIssueDate(currentDateTime);
+        deliveryNote.setFinancialYear(FinancialYear.getFinancialYear(currentDateTime.toLocalDate()));
+        // Copy the items, the table may be edited while the save runs
+        deliveryNote.setItems(new ArrayList<>(itemsList));
+
+        // Save delivery note in the background
+        saveButton.setDisable(true);
+        FxAsync.run(dataService.saveDeliveryNote(deliveryNote),
+                savedNote -> {
+                    saveButton.setDisable(false);
+                    noteNumberField.setText(savedNote.getNoteNumber());
+
+                    AlertUtil.showInformationAlert("Success", "Delivery Note Saved",
+                            "Delivery Note #" + savedNote.getNoteNumber() + " has been saved successfully.");
+
+                    // Ask if user wants to print
+                    boolean printNow = AlertUtil.showConfirmationAlert("Print", "Print Delivery Note",
+                            "Do you want to print this delivery note now?");
+
+                    if (printNow) {
+                        printService.printDeliveryNote(savedNote, saveButton.getScene().getWindow());
+                    }
+
+                    // Clear form for new entry
+                    clearForm();
+                },
+                e -> {
+                    saveButton.setDisable(false);
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Could not save delivery note", e.getMessage());
+                });
     }
 
     @FXML
@@ -224,15 +219,16 @@ public class DeliveryNoteController implements Initializable {
         deliveryNote.setNoteNumber(noteNumberField.getText());
         deliveryNote.setCustomer(customerComboBox.getValue());
         deliveryNote.setIssueDate(currentDateTime);
-        deliveryNote.setItems(itemsList);
+        // Copy the items, the preview is laid out in the background while the table stays editable
+        deliveryNote.setItems(new ArrayList<>(itemsList));
 
-        printService.printDeliveryNote(deliveryNote);
+        printService.printDeliveryNote(deliveryNote, saveButton.getScene().getWindow());
     }
     @FXML
     private void handleAddCustomer() {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/customer_form.fxml"));
-            Parent root = loader.load();
+            Parent root = ViewLoader.load(loader);
 
             Stage stage = new Stage();
             stage.setTitle("Add New Customer");
@@ -241,12 +237,8 @@ public class DeliveryNoteController implements Initializable {
 
             // Set the controller to notify when a new customer is added
             QuickAddCustomerController controller = loader.getController();
-            controller.setOnCustomerAddedCallback(customer -> {
-                refreshCustomers();
-
-                // Select the newly added customer
-                customerComboBox.getSelectionModel().select(customer);
-            });
+            // Select the newly added customer
+            controller.setOnCustomerAddedCallback(customerPicker::select);
 
             stage.showAndWait();
         } catch (IOException e) {
@@ -254,38 +246,18 @@ public class DeliveryNoteController implements Initializable {
         }
     }
 
-    private void refreshCustomers() {
-        try {
-            List<Customer> customers = customerService.getAllCustomers();
-            customerComboBox.setItems(FXCollections.observableArrayList(customers));
-            // Select the last added customer
-            if (!customers.isEmpty()) {
-                customerComboBox.getSelectionModel().select(customers.size() - 1);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not refresh customers", e.getMessage());
-        }
-    }
-
     private void clearForm() {
-        try {
-            // Generate next delivery note number
-            String nextNumber = deliveryNoteService.generateNextDeliveryNoteNumber();
-            noteNumberField.setText(nextNumber);
-
-            // Update current date and time
-            currentDateTime = LocalDateTime.now();
-            dateField.setText(currentDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-
-            // Clear customer selection
-            customerComboBox.getSelectionModel().clearSelection();
-
-            // Clear items
-            itemsList.clear();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not generate new delivery note number", e.getMessage());
-        }
+        // Number of the next note is allocated on save
+        noteNumberField.clear();
+
+        // Update current date and time
+        currentDateTime = LocalDateTime.now();
+        dateField.setText(currentDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+
+        // Clear customer selection
+        customerPicker.clear();
+
+        // Clear items
+        itemsList.clear();
     }
 }
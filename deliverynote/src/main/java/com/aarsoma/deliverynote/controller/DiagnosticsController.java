@@ -0,0 +1,215 @@
+package com.aarsoma.deliverynote.controller;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.config.SlowQueryLog;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.MetricsSnapshot;
+import com.aarsoma.deliverynote.metrics.TimerSnapshot;
+import com.aarsoma.deliverynote.util.AlertUtil;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+// Live view of the metrics and the statements with the most time spent in them
+public class DiagnosticsController implements Initializable {
+
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int STATEMENT_LIMIT = 50;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @FXML private TextField filterField;
+    @FXML private Label updatedLabel;
+
+    @FXML private TableView<TimerSnapshot> timerTable;
+    @FXML private TableColumn<TimerSnapshot, String> operationColumn;
+    @FXML private TableColumn<TimerSnapshot, Long> callsColumn;
+    @FXML private TableColumn<TimerSnapshot, Double> meanColumn;
+    @FXML private TableColumn<TimerSnapshot, Double> p50Column;
+    @FXML private TableColumn<TimerSnapshot, Double> p99Column;
+    @FXML private TableColumn<TimerSnapshot, Double> maxColumn;
+
+    @FXML private TableView<Map.Entry<String, String>> valueTable;
+    @FXML private TableColumn<Map.Entry<String, String>, String> valueNameColumn;
+    @FXML private TableColumn<Map.Entry<String, String>, String> valueColumn;
+
+    @FXML private TableView<SlowQueryLog.StatementStats> statementTable;
+    @FXML private TableColumn<SlowQueryLog.StatementStats, String> sqlColumn;
+    @FXML private TableColumn<SlowQueryLog.StatementStats, Long> statementCallsColumn;
+    @FXML private TableColumn<SlowQueryLog.StatementStats, Long> slowCallsColumn;
+    @FXML private TableColumn<SlowQueryLog.StatementStats, Double> totalColumn;
+    @FXML private TableColumn<SlowQueryLog.StatementStats, Double> statementMeanColumn;
+    @FXML private TableColumn<SlowQueryLog.StatementStats, Double> statementMaxColumn;
+    @FXML private TableColumn<SlowQueryLog.StatementStats, Long> rowsColumn;
+
+    private final ObservableList<TimerSnapshot> timers = FXCollections.observableArrayList();
+    private final ObservableList<Map.Entry<String, String>> values = FXCollections.observableArrayList();
+    private final ObservableList<SlowQueryLog.StatementStats> statements = FXCollections.observableArrayList();
+    private Timeline refreshTimeline;
+
+    @Override
+    public void initialize(URL url, ResourceBundle resourceBundle) {
+        operationColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getName()));
+        callsColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(data.getValue().getCount()));
+        meanColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(millis(data.getValue().getMeanMicros())));
+        p50Column.setCellValueFactory(data -> new SimpleObjectProperty<>(millis(data.getValue().percentileMicros(0.50))));
+        p99Column.setCellValueFactory(data -> new SimpleObjectProperty<>(millis(data.getValue().percentileMicros(0.99))));
+        maxColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(millis(data.getValue().getMaxMicros())));
+        timerTable.setItems(timers);
+
+        valueNameColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getKey()));
+        valueColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getValue()));
+        valueTable.setItems(values);
+
+        sqlColumn.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getSql()));
+        statementCallsColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(data.getValue().getCalls()));
+        slowCallsColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(data.getValue().getSlowCalls()));
+        totalColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(millis(data.getValue().getTotalMicros())));
+        statementMeanColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(millis(data.getValue().getMeanMicros())));
+        statementMaxColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(millis(data.getValue().getMaxMicros())));
+        rowsColumn.setCellValueFactory(data -> new SimpleObjectProperty<>(data.getValue().getTotalRows()));
+        statementTable.setItems(statements);
+        // Hovering a statement shows its full text and, once it has been slow, its plan
+        statementTable.setRowFactory(table -> new TableRow<>() {
+            @Override
+            protected void updateItem(SlowQueryLog.StatementStats item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    setTooltip(null);
+                } else {
+                    String text = item.getPlan() == null ? item.getSql() : item.getSql() + "\n\n" + item.getPlan();
+                    setTooltip(new Tooltip(text));
+                }
+            }
+        });
+        if (DBConfig.getSlowQueryLog() == null) {
+            statementTable.setPlaceholder(new Label("Statement timing is turned off (deliverynote.slowQuery.thresholdMs)"));
+        }
+
+        filterField.textProperty().addListener((observable, oldValue, newValue) -> refresh());
+
+        refresh();
+        refreshTimeline = new Timeline(new KeyFrame(Duration.seconds(1), event -> refresh()));
+        refreshTimeline.setCycleCount(Animation.INDEFINITE);
+        refreshTimeline.play();
+    }
+
+    private void refresh() {
+        MetricsSnapshot snapshot = Metrics.snapshot();
+        String filter = filterField.getText() == null ? "" : filterField.getText().trim().toLowerCase(Locale.ROOT);
+
+        List<TimerSnapshot> shown = new ArrayList<>();
+        for (TimerSnapshot timer : snapshot.getTimers()) {
+            if (timer.getCount() > 0 && matches(timer.getName(), filter)) {
+                shown.add(timer);
+            }
+        }
+        timers.setAll(shown);
+        // Keep the order the user picked by clicking a column header
+        timerTable.sort();
+
+        List<Map.Entry<String, String>> shownValues = new ArrayList<>();
+        for (Map.Entry<String, Long> counter : snapshot.getCounters().entrySet()) {
+            if (matches(counter.getKey(), filter)) {
+                shownValues.add(Map.entry(counter.getKey(), String.format("%,d", counter.getValue())));
+            }
+        }
+        for (Map.Entry<String, Number> gauge : snapshot.getGauges().entrySet()) {
+            if (matches(gauge.getKey(), filter)) {
+                shownValues.add(Map.entry(gauge.getKey(), formatGauge(gauge.getValue())));
+            }
+        }
+        values.setAll(shownValues);
+
+        SlowQueryLog slowQueryLog = DBConfig.getSlowQueryLog();
+        if (slowQueryLog != null) {
+            List<SlowQueryLog.StatementStats> shownStatements = new ArrayList<>();
+            for (SlowQueryLog.StatementStats statement : slowQueryLog.topStatements(STATEMENT_LIMIT)) {
+                if (matches(statement.getSql(), filter)) {
+                    shownStatements.add(statement);
+                }
+            }
+            statements.setAll(shownStatements);
+            statementTable.sort();
+        }
+
+        updatedLabel.setText("Updated " + snapshot.getTakenAt().format(TIME_FORMAT));
+    }
+
+    @FXML
+    private void handleSaveSnapshot(ActionEvent event) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save Diagnostics Snapshot");
+        fileChooser.setInitialFileName("deliverynote-metrics-" + LocalDateTime.now().format(FILE_NAME_FORMAT) + ".json");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON files", "*.json"));
+        File file = fileChooser.showSaveDialog(timerTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Metrics.dump(file.toPath());
+        } catch (IOException e) {
+            AlertUtil.showErrorAlert("Error", "Could not save the snapshot", e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleReset(ActionEvent event) {
+        if (AlertUtil.showConfirmationAlert("Reset Metrics", "Start all timers and counters from zero?",
+                "Do this just before reproducing a problem, so the figures show only that.")) {
+            Metrics.reset();
+            if (DBConfig.getSlowQueryLog() != null) {
+                DBConfig.getSlowQueryLog().reset();
+            }
+            refresh();
+        }
+    }
+
+    // Called when the window closes
+    public void stop() {
+        if (refreshTimeline != null) {
+            refreshTimeline.stop();
+        }
+    }
+
+    private static boolean matches(String name, String filter) {
+        return filter.isEmpty() || name.toLowerCase(Locale.ROOT).contains(filter);
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+
+    private static String formatGauge(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return String.format("%.3f", value.doubleValue());
+        }
+        return String.format("%,d", value.longValue());
+    }
+}
@@ -0,0 +1,100 @@
+package com.aarsoma.deliverynote.controller;
+
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.print.FxPageRenderer;
+import com.aarsoma.deliverynote.print.PrintPage;
+import com.aarsoma.deliverynote.service.PrintService;
+import com.aarsoma.deliverynote.util.AlertUtil;
+import com.aarsoma.deliverynote.util.FxAsync;
+import com.aarsoma.deliverynote.util.PrintUtil;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.print.PrinterJob;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class PrintPreviewController {
+
+    // Screen pixels per point; A5 then shows about 500 pixels wide
+    private static final double PREVIEW_SCALE = 1.2;
+
+    @FXML private Label titleLabel;
+    @FXML private Label pageCountLabel;
+    @FXML private ProgressIndicator loadingIndicator;
+    @FXML private VBox pagesBox;
+    @FXML private Button printButton;
+
+    private final PrintService printService = new PrintService();
+    private DeliveryNote deliveryNote;
+    private List<PrintPage> pages;
+    private CompletableFuture<List<PrintPage>> pendingLayout;
+
+    // Lays out the note in the background and shows its pages once ready
+    public void show(DeliveryNote note) {
+        this.deliveryNote = note;
+        titleLabel.setText(note.getNoteNumber() == null || note.getNoteNumber().isBlank()
+                ? "Delivery Note (not saved)" : "Delivery Note " + note.getNoteNumber());
+        pagesBox.getScene().getWindow().setOnHidden(e -> FxAsync.cancel(pendingLayout));
+
+        pendingLayout = FxAsync.run(printService.layoutAsync(note), loadingIndicator,
+                laidOut -> {
+                    pages = laidOut;
+                    pageCountLabel.setText(laidOut.size() == 1 ? "1 page" : laidOut.size() + " pages");
+                    for (PrintPage page : laidOut) {
+                        Pane pageNode = FxPageRenderer.render(page, PREVIEW_SCALE);
+                        pageNode.setEffect(new DropShadow(8, 0, 2, Color.gray(0, 0.4)));
+                        pagesBox.getChildren().add(pageNode);
+                    }
+                    printButton.setDisable(false);
+                },
+                e -> {
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Could not lay out the delivery note", e.getMessage());
+                });
+    }
+
+    @FXML
+    private void handlePrint(ActionEvent event) {
+        if (pages == null) {
+            return;
+        }
+        String jobName = "Delivery Note " + (deliveryNote.getNoteNumber() == null ? "" : deliveryNote.getNoteNumber());
+        PrinterJob job = PrintUtil.showPrintDialog(jobName.trim(), printButton.getScene().getWindow());
+        if (job == null) {
+            return;
+        }
+
+        // The pages are sent from the print thread; the window can be closed meanwhile
+        printButton.setDisable(true);
+        FxAsync.run(printService.printAsync(job, pages), loadingIndicator,
+                printed -> {
+                    printButton.setDisable(false);
+                    if (printed) {
+                        AlertUtil.showInformationAlert("Print", "Print Successful",
+                                "Document has been sent to the printer.");
+                    } else {
+                        AlertUtil.showErrorAlert("Print Error", "Print Failed",
+                                "Unable to print the document.");
+                    }
+                },
+                e -> {
+                    printButton.setDisable(false);
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Print Error", "Print Failed", e.getMessage());
+                });
+    }
+
+    @FXML
+    private void handleClose(ActionEvent event) {
+        ((Stage) printButton.getScene().getWindow()).close();
+    }
+}
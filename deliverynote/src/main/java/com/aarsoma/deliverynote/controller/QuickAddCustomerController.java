@@ -1,8 +1,9 @@
 package com.aarsoma.deliverynote.controller;
 
 import com.aarsoma.deliverynote.model.Customer;
-import com.aarsoma.deliverynote.service.CustomerService;
+import com.aarsoma.deliverynote.service.AsyncDataService;
 import com.aarsoma.deliverynote.util.AlertUtil;
+import com.aarsoma.deliverynote.util.FxAsync;
 import com.aarsoma.deliverynote.util.ValidationUtil;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -12,7 +13,6 @@ import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 
 import java.net.URL;
-import java.sql.SQLException;
 import java.util.ResourceBundle;
 import java.util.function.Consumer;
 
@@ -27,7 +27,7 @@ public class QuickAddCustomerController implements Initializable {
     @FXML private Button saveButton;
     @FXML private Button clearButton;
 
-    private final CustomerService customerService = new CustomerService();
+    private final AsyncDataService dataService = new AsyncDataService();
     private Consumer<Customer> onCustomerAddedCallback;
 
     @Override
@@ -42,36 +42,37 @@ public class QuickAddCustomerController implements Initializable {
             return;
         }
 
-        try {
-            Customer customer = new Customer();
-
-            // Set customer data from form
-            customer.setName(nameField.getText().trim());
-            customer.setAddress(addressField.getText().trim());
-            customer.setContactPerson(contactPersonField.getText().trim());
-            customer.setPhone(phoneField.getText().trim());
-            customer.setEmail(emailField.getText().trim());
-
-            // Save customer
-            Customer savedCustomer = customerService.saveCustomer(customer);
-
-            // Show success message
-            AlertUtil.showInformationAlert("Success", "Customer Added",
-                    "Customer \"" + savedCustomer.getName() + "\" added successfully.");
-
-            // Notify the calling form through callback
-            if (onCustomerAddedCallback != null) {
-                onCustomerAddedCallback.accept(savedCustomer);
-            }
-
-            // Close the dialog
-            Stage stage = (Stage) saveButton.getScene().getWindow();
-            stage.close();
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            AlertUtil.showErrorAlert("Error", "Could not save customer", e.getMessage());
-        }
+        Customer customer = new Customer();
+
+        // Set customer data from form
+        customer.setName(nameField.getText().trim());
+        customer.setAddress(addressField.getText().trim());
+        customer.setContactPerson(contactPersonField.getText().trim());
+        customer.setPhone(phoneField.getText().trim());
+        customer.setEmail(emailField.getText().trim());
+
+        // Save customer in the background
+        saveButton.setDisable(true);
+        FxAsync.run(dataService.saveCustomer(customer),
+                savedCustomer -> {
+                    // Show success message
+                    AlertUtil.showInformationAlert("Success", "Customer Added",
+                            "Customer \"" + savedCustomer.getName() + "\" added successfully.");
+
+                    // Notify the calling form through callback
+                    if (onCustomerAddedCallback != null) {
+                        onCustomerAddedCallback.accept(savedCustomer);
+                    }
+
+                    // Close the dialog
+                    Stage stage = (Stage) saveButton.getScene().getWindow();
+                    stage.close();
+                },
+                e -> {
+                    saveButton.setDisable(false);
+                    e.printStackTrace();
+                    AlertUtil.showErrorAlert("Error", "Could not save customer", e.getMessage());
+                });
     }
 
     @FXML
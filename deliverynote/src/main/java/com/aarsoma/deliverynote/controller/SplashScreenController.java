@@ -1,23 +1,67 @@
 package com.aarsoma.deliverynote.controller;
 
+import com.aarsoma.deliverynote.Startup;
+import com.aarsoma.deliverynote.model.Statistics;
+import com.aarsoma.deliverynote.util.AlertUtil;
+import com.aarsoma.deliverynote.util.FxAsync;
+import com.aarsoma.deliverynote.util.ViewLoader;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.stage.Stage;
 
 import java.io.IOException;
 
 public class SplashScreenController {
 
+    @FXML private Button nextButton;
+    @FXML private ProgressIndicator loadingIndicator;
+    @FXML private Label statusLabel;
+
+    private Startup startup;
+
+    // Next stays disabled until the database is open and the dashboard is loaded
+    public void setStartup(Startup startup) {
+        this.startup = startup;
+        nextButton.setDisable(true);
+        statusLabel.setText("Starting...");
+
+        FxAsync.run(startup.whenReady(), loadingIndicator,
+                ready -> {
+                    statusLabel.setText("");
+                    nextButton.setDisable(false);
+                    nextButton.requestFocus();
+                },
+                e -> {
+                    e.printStackTrace();
+                    statusLabel.setText("");
+                    AlertUtil.showErrorAlert("Error", "Could not open the database", e.getMessage());
+                    Platform.exit();
+                });
+    }
+
     @FXML
     private void handleNextButton(ActionEvent event) {
         try {
-            // Load dashboard screen
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/dashboard.fxml"));
-            Parent dashboardRoot = loader.load();
+            // Use the dashboard preloaded during startup, or load it now
+            Parent dashboardRoot = startup == null ? null : startup.getDashboardRoot();
+            DashboardController dashboardController;
+            Statistics firstStatistics = null;
+            if (dashboardRoot != null) {
+                dashboardController = startup.getDashboardController();
+                firstStatistics = startup.getFirstStatistics();
+            } else {
+                FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/dashboard.fxml"));
+                dashboardRoot = ViewLoader.load(loader);
+                dashboardController = loader.getController();
+            }
 
             // Get current stage
             Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
@@ -28,9 +72,10 @@ public class SplashScreenController {
             stage.centerOnScreen();
             stage.setTitle("Dashboard - AARSOMA GRAPHICS DELIVERY NOTE SYSTEM");
             stage.show();
+            dashboardController.start(firstStatistics);
         } catch (IOException e) {
             e.printStackTrace();
-            // Show error dialog
+            AlertUtil.showErrorAlert("Error", "Could not open the dashboard", e.getMessage());
         }
     }
 }
@@ -0,0 +1,14 @@
+package com.aarsoma.deliverynote.event;
+
+// A customer was deleted by this terminal
+public final class CustomerDeleted {
+    private final int customerId;
+
+    public CustomerDeleted(int customerId) {
+        this.customerId = customerId;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+}
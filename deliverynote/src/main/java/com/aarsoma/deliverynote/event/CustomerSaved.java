@@ -0,0 +1,22 @@
+package com.aarsoma.deliverynote.event;
+
+import com.aarsoma.deliverynote.model.Customer;
+
+// A customer was added or updated by this terminal
+public final class CustomerSaved {
+    private final Customer customer;
+    private final boolean created;
+
+    public CustomerSaved(Customer customer, boolean created) {
+        this.customer = customer;
+        this.created = created;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public boolean isCreated() {
+        return created;
+    }
+}
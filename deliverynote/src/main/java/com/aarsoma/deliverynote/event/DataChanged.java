@@ -0,0 +1,22 @@
+package com.aarsoma.deliverynote.event;
+
+// Another terminal changed a table (see DataVersionRepository for the names); what changed is not
+// known, so subscribers reload what they show of it
+public final class DataChanged {
+    private final String table;
+    private final long changes;
+
+    public DataChanged(String table, long changes) {
+        this.table = table;
+        this.changes = changes;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    // Number of writes since the last notice, at least 1
+    public long getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,16 @@
+package com.aarsoma.deliverynote.event;
+
+import com.aarsoma.deliverynote.model.DeliveryNote;
+
+// A new delivery note was saved by this terminal; the note carries its number, customer and items
+public final class DeliveryNoteSaved {
+    private final DeliveryNote note;
+
+    public DeliveryNoteSaved(DeliveryNote note) {
+        this.note = note;
+    }
+
+    public DeliveryNote getNote() {
+        return note;
+    }
+}
@@ -0,0 +1,67 @@
+package com.aarsoma.deliverynote.event;
+
+import com.aarsoma.deliverynote.metrics.Metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// In-process publish/subscribe for domain events; handlers run on the publishing thread
+public final class EventBus {
+
+    private static final Map<Class<?>, List<Handler<?>>> HANDLERS = new ConcurrentHashMap<>();
+
+    private EventBus() {
+    }
+
+    // Handle every published event of exactly this type until the subscription is cancelled
+    public static <T> Subscription subscribe(Class<T> type, Consumer<? super T> handler) {
+        Handler<T> subscription = new Handler<>(type, handler);
+        HANDLERS.computeIfAbsent(type, t -> new CopyOnWriteArrayList<>()).add(subscription);
+        return subscription;
+    }
+
+    public static void publish(Object event) {
+        Metrics.counter("EventBus." + event.getClass().getSimpleName()).increment();
+        List<Handler<?>> handlers = HANDLERS.get(event.getClass());
+        if (handlers == null) {
+            return;
+        }
+        for (Handler<?> handler : handlers) {
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("Handler of " + event.getClass().getSimpleName() + " failed: " + e);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public interface Subscription {
+        void cancel();
+    }
+
+    private static final class Handler<T> implements Subscription {
+        private final Class<T> type;
+        private final Consumer<? super T> consumer;
+
+        private Handler(Class<T> type, Consumer<? super T> consumer) {
+            this.type = type;
+            this.consumer = consumer;
+        }
+
+        private void accept(Object event) {
+            consumer.accept(type.cast(event));
+        }
+
+        @Override
+        public void cancel() {
+            List<Handler<?>> handlers = HANDLERS.get(type);
+            if (handlers != null) {
+                handlers.remove(this);
+            }
+        }
+    }
+}
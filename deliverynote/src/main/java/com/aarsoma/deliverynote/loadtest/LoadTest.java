@@ -0,0 +1,300 @@
+package com.aarsoma.deliverynote.loadtest;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.loadtest.LoadTestTerminal.Operation;
+import com.aarsoma.deliverynote.metrics.TimerSnapshot;
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.service.CustomerService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Headless load test: simulated terminals run a mix of operations, and latencies and failures are
+// reported per operation; see README.md
+public class LoadTest {
+
+    private static final String STATS_PREFIX = "LOADTEST-STATS ";
+    private static final String DEFAULT_MIX = "create=20,page=40,search=20,stats=20";
+
+    private int processes = 1;
+    private int terminals = 4;
+    private long durationSeconds = 60;
+    private long warmupSeconds = 10;
+    private long thinkMillis = 100;
+    private Map<Operation, Integer> mix = parseMix(DEFAULT_MIX);
+    private String dbUrl;
+    private boolean child;
+
+    public static void main(String[] args) {
+        LoadTest loadTest = new LoadTest();
+        try {
+            loadTest.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadTest [--processes N] [--terminals N] [--duration SECONDS] [--warmup SECONDS]"
+                    + " [--think-ms MILLIS] [--mix " + DEFAULT_MIX + "] [--db JDBC_URL]");
+            System.exit(2);
+        }
+
+        try {
+            Map<Operation, OperationStats> stats = loadTest.processes > 1 ? loadTest.runProcesses() : loadTest.runTerminals();
+            if (loadTest.child) {
+                // Handed to the coordinating process, which reports for all of them
+                for (OperationStats operationStats : stats.values()) {
+                    System.out.println(STATS_PREFIX + operationStats.encode());
+                }
+                System.exit(0);
+            }
+
+            loadTest.printReport(stats);
+            boolean failed = stats.values().stream().anyMatch(s -> s.getFailures() > 0);
+            System.exit(failed ? 1 : 0);
+        } catch (IOException | SQLException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if ("--child".equals(option)) {
+                child = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--processes":
+                        processes = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--terminals":
+                        terminals = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--duration":
+                        durationSeconds = Math.max(1, Long.parseLong(value));
+                        break;
+                    case "--warmup":
+                        warmupSeconds = Math.max(0, Long.parseLong(value));
+                        break;
+                    case "--think-ms":
+                        thinkMillis = Math.max(0, Long.parseLong(value));
+                        break;
+                    case "--mix":
+                        mix = parseMix(value);
+                        break;
+                    case "--db":
+                        dbUrl = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            }
+        }
+    }
+
+    // "create=20,page=40" -> weights by operation; operations left out are not run
+    private static Map<Operation, Integer> parseMix(String text) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String part : text.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            Operation operation;
+            try {
+                operation = Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown operation in mix: " + pair[0]);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(operation, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operations");
+        }
+        return weights;
+    }
+
+    // All terminals as threads of this process, sharing its connection pool
+    private Map<Operation, OperationStats> runTerminals() throws SQLException, InterruptedException {
+        if (dbUrl != null) {
+            System.setProperty("deliverynote.db.url", dbUrl);
+        }
+        DBConfig.initDatabase();
+
+        try {
+            List<Integer> customerIds = findCustomerIds();
+            Map<Operation, OperationStats> stats = newStats();
+
+            long startedAt = System.nanoTime();
+            long warmupEndsAt = startedAt + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long endsAt = warmupEndsAt + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < terminals; i++) {
+                LoadTestTerminal terminal = new LoadTestTerminal(i + 1, mix, thinkMillis, warmupEndsAt, endsAt,
+                        customerIds, stats);
+                Thread thread = new Thread(terminal, "terminal-" + (i + 1));
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            return stats;
+        } finally {
+            DBConfig.closeConnections();
+        }
+    }
+
+    // One JVM per process, each running `terminals` terminals; their results are merged
+    private Map<Operation, OperationStats> runProcesses() throws IOException, InterruptedException {
+        List<Process> children = new ArrayList<>();
+        for (int i = 0; i < processes; i++) {
+            ProcessBuilder builder = new ProcessBuilder(childCommand());
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            children.add(builder.start());
+        }
+
+        Map<Operation, OperationStats> stats = newStats();
+        for (Process process : children) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(STATS_PREFIX)) {
+                        OperationStats processStats = OperationStats.decode(line.substring(STATS_PREFIX.length()));
+                        stats.get(Operation.valueOf(processStats.getName())).merge(processStats);
+                    } else {
+                        System.out.println(line);
+                    }
+                }
+            }
+            if (process.waitFor() != 0) {
+                throw new IOException("A load test process exited with code " + process.exitValue());
+            }
+        }
+        return stats;
+    }
+
+    // The same java and class or module path as this process, with the deliverynote.* properties
+    private List<String> childCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("deliverynote.")) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null && !modulePath.isEmpty()) {
+            command.add("--module-path");
+            command.add(modulePath);
+            command.add("--module");
+            command.add(LoadTest.class.getModule().getName() + "/" + LoadTest.class.getName());
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(LoadTest.class.getName());
+        }
+
+        command.add("--child");
+        command.add("--terminals");
+        command.add(String.valueOf(terminals));
+        command.add("--duration");
+        command.add(String.valueOf(durationSeconds));
+        command.add("--warmup");
+        command.add(String.valueOf(warmupSeconds));
+        command.add("--think-ms");
+        command.add(String.valueOf(thinkMillis));
+        command.add("--mix");
+        command.add(formatMix());
+        if (dbUrl != null) {
+            command.add("--db");
+            command.add(dbUrl);
+        }
+        return command;
+    }
+
+    // Notes need a customer; an empty database gets a few
+    private static List<Integer> findCustomerIds() throws SQLException {
+        CustomerService customerService = new CustomerService();
+        List<Integer> ids = new ArrayList<>();
+        for (Customer customer : customerService.getAllCustomers()) {
+            ids.add(customer.getId());
+        }
+        for (int i = ids.size(); i < 3; i++) {
+            Customer customer = new Customer();
+            customer.setName("Load Test Customer " + (i + 1));
+            ids.add(customerService.saveCustomer(customer).getId());
+        }
+        return ids;
+    }
+
+    private Map<Operation, OperationStats> newStats() {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats(operation.name()));
+        }
+        return stats;
+    }
+
+    private String formatMix() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(entry.getKey().name().toLowerCase(Locale.ROOT)).append('=').append(entry.getValue());
+        }
+        return text.toString();
+    }
+
+    private void printReport(Map<Operation, OperationStats> stats) {
+        System.out.printf("%nLoad test: %d process(es) x %d terminal(s), %d s measured after %d s warm-up, think time %d ms, mix %s%n%n",
+                processes, terminals, durationSeconds, warmupSeconds, thinkMillis, formatMix());
+        System.out.printf("%-8s %9s %8s %8s %8s %8s %9s %7s %10s %9s %9s %7s%n",
+                "", "calls", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms",
+                "failed", "duplicate", "lock", "pool t/o", "other");
+
+        OperationStats total = new OperationStats("TOTAL");
+        for (OperationStats operationStats : stats.values()) {
+            if (operationStats.getCalls() > 0) {
+                printRow(operationStats);
+                total.merge(operationStats);
+            }
+        }
+        printRow(total);
+    }
+
+    private void printRow(OperationStats stats) {
+        TimerSnapshot latencies = stats.getLatencies();
+        System.out.printf(Locale.ROOT, "%-8s %9d %8.1f %8.1f %8.1f %8.1f %9.1f %7d %10d %9d %9d %7d%n",
+                stats.getName().toLowerCase(Locale.ROOT), stats.getCalls(),
+                (double) stats.getCalls() / durationSeconds,
+                latencies.percentileMicros(0.50) / 1000.0, latencies.percentileMicros(0.90) / 1000.0,
+                latencies.percentileMicros(0.99) / 1000.0, latencies.getMaxMicros() / 1000.0,
+                stats.getFailures(), stats.getConstraintViolations(), stats.getLockConflicts(),
+                stats.getPoolTimeouts(), stats.getOtherErrors());
+    }
+}
@@ -0,0 +1,171 @@
+package com.aarsoma.deliverynote.loadtest;
+
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.DeliveryNoteQuery;
+import com.aarsoma.deliverynote.model.FinancialYear;
+import com.aarsoma.deliverynote.service.DeliveryNoteService;
+import com.aarsoma.deliverynote.service.StatisticsService;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One simulated terminal, picking operations at random until the test ends
+public class LoadTestTerminal implements Runnable {
+
+    public enum Operation {
+        // Save a new note with 1 to 5 items
+        CREATE,
+        // First history page of all notes, one customer or the last week
+        PAGE,
+        // Text search of the history
+        SEARCH,
+        // Dashboard figures
+        STATS
+    }
+
+    private static final int PAGE_SIZE = 100;
+    private static final int SEARCH_LIMIT = 200;
+    private static final int MAX_FAILURES_PRINTED = 20;
+    private static final String[] SEARCH_WORDS = {"load", "test item", "item 3", "dn", "customer", "bolt", "0001"};
+
+    private final DeliveryNoteService deliveryNoteService = new DeliveryNoteService();
+    private final StatisticsService statisticsService = new StatisticsService();
+
+    private final int terminal;
+    private final Map<Operation, Integer> mix;
+    private final int totalWeight;
+    private final long thinkMillis;
+    private final long warmupEndsAt;
+    private final long endsAt;
+    private final List<Integer> customerIds;
+    private final Map<Operation, OperationStats> stats;
+    private final Random random;
+    private int failuresPrinted;
+
+    public LoadTestTerminal(int terminal, Map<Operation, Integer> mix, long thinkMillis, long warmupEndsAt,
+                            long endsAt, List<Integer> customerIds, Map<Operation, OperationStats> stats) {
+        this.terminal = terminal;
+        this.mix = mix;
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.thinkMillis = thinkMillis;
+        this.warmupEndsAt = warmupEndsAt;
+        this.endsAt = endsAt;
+        this.customerIds = customerIds;
+        this.stats = stats;
+        this.random = new Random(terminal * 7919L + System.nanoTime());
+    }
+
+    @Override
+    public void run() {
+        while (System.nanoTime() < endsAt && !Thread.currentThread().isInterrupted()) {
+            Operation operation = pickOperation();
+
+            long startedAt = System.nanoTime();
+            Exception failure = null;
+            try {
+                perform(operation);
+            } catch (SQLException | RuntimeException e) {
+                failure = e;
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt);
+
+            if (startedAt >= warmupEndsAt) {
+                if (failure == null) {
+                    stats.get(operation).recordSuccess(micros);
+                } else {
+                    stats.get(operation).recordFailure(micros, failure);
+                }
+            }
+            if (failure != null && failuresPrinted++ < MAX_FAILURES_PRINTED) {
+                System.err.println("Terminal " + terminal + " " + operation + " failed: " + failure.getMessage());
+            }
+
+            if (!think()) {
+                return;
+            }
+        }
+    }
+
+    private Operation pickOperation() {
+        int pick = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    private void perform(Operation operation) throws SQLException {
+        switch (operation) {
+            case CREATE:
+                deliveryNoteService.saveDeliveryNote(newNote());
+                break;
+            case PAGE:
+                deliveryNoteService.getDeliveryNotesPage(pageQuery(), null, PAGE_SIZE);
+                break;
+            case SEARCH:
+                deliveryNoteService.searchDeliveryNotes(SEARCH_WORDS[random.nextInt(SEARCH_WORDS.length)], SEARCH_LIMIT);
+                break;
+            case STATS:
+                statisticsService.getDeliveryNoteStatistics();
+                break;
+        }
+    }
+
+    private DeliveryNote newNote() {
+        LocalDateTime now = LocalDateTime.now();
+        DeliveryNote note = new DeliveryNote();
+        note.setCustomerId(customerIds.get(random.nextInt(customerIds.size())));
+        note.setIssueDate(now);
+        note.setFinancialYear(FinancialYear.getFinancialYear(now.toLocalDate()));
+
+        List<DeliveryItem> items = new ArrayList<>();
+        int itemCount = 1 + random.nextInt(5);
+        for (int i = 0; i < itemCount; i++) {
+            int ordered = 1 + random.nextInt(100);
+            DeliveryItem item = new DeliveryItem();
+            item.setItemName("Load test item " + (1 + random.nextInt(50)));
+            item.setOrderedQty(ordered);
+            item.setDeliveredQty(ordered);
+            item.setBalanceQty(0);
+            items.add(item);
+        }
+        note.setItems(items);
+        return note;
+    }
+
+    private DeliveryNoteQuery pageQuery() {
+        switch (random.nextInt(3)) {
+            case 0:
+                return DeliveryNoteQuery.all();
+            case 1:
+                return DeliveryNoteQuery.forCustomer(customerIds.get(random.nextInt(customerIds.size())));
+            default:
+                LocalDate today = LocalDate.now();
+                return DeliveryNoteQuery.forDateRange(today.minusDays(6), today);
+        }
+    }
+
+    // Pause between 0 and twice the think time; false if interrupted
+    private boolean think() {
+        if (thinkMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep((long) (random.nextDouble() * 2 * thinkMillis));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.aarsoma.deliverynote.loadtest;
+
+import com.aarsoma.deliverynote.metrics.Timer;
+import com.aarsoma.deliverynote.metrics.TimerSnapshot;
+import org.h2.api.ErrorCode;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+// Outcome counts and latencies of one load test operation, mergeable across processes
+public class OperationStats {
+
+    private final String name;
+    private final Timer latencies;
+    private long succeeded;
+    private long constraintViolations;
+    private long lockConflicts;
+    private long poolTimeouts;
+    private long otherErrors;
+
+    public OperationStats(String name) {
+        this.name = name;
+        this.latencies = new Timer(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized void recordSuccess(long micros) {
+        succeeded++;
+        latencies.record(micros);
+    }
+
+    // Failed calls count towards the latencies too; a lock conflict is slow by definition
+    public synchronized void recordFailure(long micros, Exception e) {
+        latencies.record(micros);
+
+        SQLException sqlException = findSqlException(e);
+        if (sqlException == null) {
+            otherErrors++;
+        } else if ("23505".equals(sqlException.getSQLState())) {
+            // Unique constraint, e.g. a duplicate note number
+            constraintViolations++;
+        } else if (sqlException.getErrorCode() == ErrorCode.LOCK_TIMEOUT_1
+                || sqlException.getErrorCode() == ErrorCode.DEADLOCK_1) {
+            lockConflicts++;
+        } else if (sqlException instanceof SQLTimeoutException) {
+            // No pooled connection became free in time
+            poolTimeouts++;
+        } else {
+            otherErrors++;
+        }
+    }
+
+    public synchronized void merge(OperationStats other) {
+        synchronized (other) {
+            latencies.add(other.latencies.snapshot());
+            succeeded += other.succeeded;
+            constraintViolations += other.constraintViolations;
+            lockConflicts += other.lockConflicts;
+            poolTimeouts += other.poolTimeouts;
+            otherErrors += other.otherErrors;
+        }
+    }
+
+    public synchronized long getCalls() {
+        return succeeded + getFailures();
+    }
+
+    public synchronized long getSucceeded() {
+        return succeeded;
+    }
+
+    public synchronized long getFailures() {
+        return constraintViolations + lockConflicts + poolTimeouts + otherErrors;
+    }
+
+    public synchronized long getConstraintViolations() {
+        return constraintViolations;
+    }
+
+    public synchronized long getLockConflicts() {
+        return lockConflicts;
+    }
+
+    public synchronized long getPoolTimeouts() {
+        return poolTimeouts;
+    }
+
+    public synchronized long getOtherErrors() {
+        return otherErrors;
+    }
+
+    public TimerSnapshot getLatencies() {
+        return latencies.snapshot();
+    }
+
+    // One line of text, for handing the stats of a terminal process to the coordinating one
+    public synchronized String encode() {
+        return name + ' ' + succeeded + ' ' + constraintViolations + ' ' + lockConflicts + ' ' + poolTimeouts + ' '
+                + otherErrors + ' ' + latencies.snapshot().encode();
+    }
+
+    public static OperationStats decode(String line) {
+        String[] fields = line.trim().split(" ", 7);
+        OperationStats stats = new OperationStats(fields[0]);
+        stats.succeeded = Long.parseLong(fields[1]);
+        stats.constraintViolations = Long.parseLong(fields[2]);
+        stats.lockConflicts = Long.parseLong(fields[3]);
+        stats.poolTimeouts = Long.parseLong(fields[4]);
+        stats.otherErrors = Long.parseLong(fields[5]);
+        stats.latencies.add(TimerSnapshot.decode(fields[0], fields[6]));
+        return stats;
+    }
+
+    private static SQLException findSqlException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                return (SQLException) cause;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.aarsoma.deliverynote.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic count of events, e.g. rows imported
+public final class Counter {
+
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    void reset() {
+        value.reset();
+    }
+}
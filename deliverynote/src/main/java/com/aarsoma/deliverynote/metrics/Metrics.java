@@ -0,0 +1,82 @@
+package com.aarsoma.deliverynote.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Process-wide registry of timers, counters and gauges; gauges are read when a snapshot is taken
+public final class Metrics {
+
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+    private static final LocalDateTime startedAt = LocalDateTime.now();
+
+    static {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("jvm.heapUsedBytes", () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("jvm.heapMaxBytes", () -> memory.getHeapMemoryUsage().getMax());
+        gauge("jvm.threads", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        gauge("jvm.uptimeSeconds", () -> ManagementFactory.getRuntimeMXBean().getUptime() / 1000);
+    }
+
+    private Metrics() {
+    }
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    // Registering a gauge again under the same name replaces it
+    public static void gauge(String name, Supplier<? extends Number> value) {
+        gauges.put(name, value);
+    }
+
+    public static MetricsSnapshot snapshot() {
+        List<TimerSnapshot> timerSnapshots = new ArrayList<>();
+        for (Timer timer : timers.values()) {
+            timerSnapshots.add(timer.snapshot());
+        }
+        timerSnapshots.sort(Comparator.comparing(TimerSnapshot::getName));
+
+        Map<String, Long> counterValues = new TreeMap<>();
+        for (Counter counter : counters.values()) {
+            counterValues.put(counter.getName(), counter.get());
+        }
+
+        Map<String, Number> gaugeValues = new TreeMap<>();
+        for (Map.Entry<String, Supplier<? extends Number>> gauge : gauges.entrySet()) {
+            try {
+                gaugeValues.put(gauge.getKey(), gauge.getValue().get());
+            } catch (RuntimeException e) {
+                // A gauge whose source is not available (yet) is left out
+            }
+        }
+
+        return new MetricsSnapshot(startedAt, LocalDateTime.now(), timerSnapshots, counterValues, gaugeValues);
+    }
+
+    // Write a snapshot to a JSON file, e.g. to attach to a support ticket
+    public static void dump(Path file) throws IOException {
+        snapshot().writeJson(file);
+    }
+
+    // Start timers and counters from zero, e.g. before reproducing a problem; gauges are unaffected
+    public static void reset() {
+        timers.values().forEach(Timer::reset);
+        counters.values().forEach(Counter::reset);
+    }
+}
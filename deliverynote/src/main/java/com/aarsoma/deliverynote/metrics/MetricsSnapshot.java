@@ -0,0 +1,104 @@
+package com.aarsoma.deliverynote.metrics;
+
+import com.aarsoma.deliverynote.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+// Every timer, counter and gauge at one moment, sorted by name
+public final class MetricsSnapshot {
+
+    private static final DateTimeFormatter JSON_DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final LocalDateTime startedAt;
+    private final LocalDateTime takenAt;
+    private final List<TimerSnapshot> timers;
+    private final Map<String, Long> counters;
+    private final Map<String, Number> gauges;
+
+    MetricsSnapshot(LocalDateTime startedAt, LocalDateTime takenAt, List<TimerSnapshot> timers,
+                    Map<String, Long> counters, Map<String, Number> gauges) {
+        this.startedAt = startedAt;
+        this.takenAt = takenAt;
+        this.timers = timers;
+        this.counters = counters;
+        this.gauges = gauges;
+    }
+
+    public LocalDateTime getTakenAt() {
+        return takenAt;
+    }
+
+    public List<TimerSnapshot> getTimers() {
+        return timers;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public Map<String, Number> getGauges() {
+        return gauges;
+    }
+
+    // Latencies in milliseconds with microsecond precision; timers that never ran are left out
+    public void writeJson(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeJson(writer);
+            writer.newLine();
+        }
+    }
+
+    public void writeJson(Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer, true);
+        json.beginObject();
+        json.name("startedAt").value(startedAt.format(JSON_DATE_TIME_FORMAT));
+        json.name("takenAt").value(takenAt.format(JSON_DATE_TIME_FORMAT));
+        json.name("javaVersion").value(System.getProperty("java.version"));
+        json.name("os").value(System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        json.name("processors").value(Runtime.getRuntime().availableProcessors());
+
+        json.name("timers").beginObject();
+        for (TimerSnapshot timer : timers) {
+            if (timer.getCount() == 0) {
+                continue;
+            }
+            json.name(timer.getName()).beginObject();
+            json.name("count").value(timer.getCount());
+            json.name("meanMs").value(millis(timer.getMeanMicros()));
+            json.name("p50Ms").value(millis(timer.percentileMicros(0.50)));
+            json.name("p90Ms").value(millis(timer.percentileMicros(0.90)));
+            json.name("p99Ms").value(millis(timer.percentileMicros(0.99)));
+            json.name("p999Ms").value(millis(timer.percentileMicros(0.999)));
+            json.name("maxMs").value(millis(timer.getMaxMicros()));
+            json.endObject();
+        }
+        json.endObject();
+
+        json.name("counters").beginObject();
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            json.name(counter.getKey()).value(counter.getValue().longValue());
+        }
+        json.endObject();
+
+        json.name("gauges").beginObject();
+        for (Map.Entry<String, Number> gauge : gauges.entrySet()) {
+            json.name(gauge.getKey()).value(gauge.getValue());
+        }
+        json.endObject();
+
+        json.endObject();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
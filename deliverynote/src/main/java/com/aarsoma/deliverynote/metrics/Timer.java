@@ -0,0 +1,126 @@
+package com.aarsoma.deliverynote.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histogram in microseconds with buckets within 3% of their values, recorded without locks
+public final class Timer {
+
+    // 2^5 buckets per power of two
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // About 12 days; longer calls are counted as this
+    private static final long MAX_MICROS = (1L << 40) - 1;
+    static final int BUCKETS = bucket(MAX_MICROS) + 1;
+
+    @FunctionalInterface
+    public interface TimedCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface TimedRunnable<E extends Exception> {
+        void run() throws E;
+    }
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    // A timer of its own, e.g. for a load test's figures; Metrics.timer gives the shared, reported one
+    public Timer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Record the time since startNanos, a System.nanoTime() taken when the operation began
+    public void recordSince(long startNanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    public void record(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_MICROS));
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        totalMicros.add(value);
+        if (value > maxMicros.get()) {
+            maxMicros.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    // Run call and record how long it took, whether it returned or threw
+    public <T, E extends Exception> T time(TimedCall<T, E> call) throws E {
+        long startedAt = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            recordSince(startedAt);
+        }
+    }
+
+    public <E extends Exception> void run(TimedRunnable<E> runnable) throws E {
+        long startedAt = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            recordSince(startedAt);
+        }
+    }
+
+    // Adds the calls of another timer, e.g. one kept by another process
+    public void add(TimerSnapshot other) {
+        long[] otherBuckets = other.buckets();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (otherBuckets[i] > 0) {
+                buckets.addAndGet(i, otherBuckets[i]);
+            }
+        }
+        count.add(other.getCount());
+        totalMicros.add(other.getTotalMicros());
+        maxMicros.accumulateAndGet(other.getMaxMicros(), Math::max);
+    }
+
+    // Calls recorded while the snapshot is taken may be only partly included
+    public TimerSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new TimerSnapshot(name, count.sum(), totalMicros.sum(), maxMicros.get(), counts);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    // Values below 2 * SUB_BUCKETS map to themselves; above that the top SUB_BUCKET_BITS + 1 bits pick the bucket
+    static int bucket(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * shift + (int) (micros >>> shift);
+    }
+
+    // Highest value that lands in the bucket
+    static long highestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket - (long) SUB_BUCKETS * shift;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,87 @@
+package com.aarsoma.deliverynote.metrics;
+
+// Counts of a Timer at one moment; percentiles are exact to within the 3% width of a bucket
+public final class TimerSnapshot {
+
+    private final String name;
+    private final long count;
+    private final long totalMicros;
+    private final long maxMicros;
+    private final long[] buckets;
+
+    TimerSnapshot(String name, long count, long totalMicros, long maxMicros, long[] buckets) {
+        this.name = name;
+        this.count = count;
+        this.totalMicros = totalMicros;
+        this.maxMicros = maxMicros;
+        this.buckets = buckets;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public long getMeanMicros() {
+        return count == 0 ? 0 : totalMicros / count;
+    }
+
+    // Latency at or below which the given fraction of calls completed, e.g. 0.99 for p99
+    public long percentileMicros(double fraction) {
+        long recorded = 0;
+        for (long bucketCount : buckets) {
+            recorded += bucketCount;
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * recorded));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(maxMicros, Timer.highestValue(i));
+            }
+        }
+        return maxMicros;
+    }
+
+    // One line of text (without the name) for handing the counts to another process; see decode
+    public String encode() {
+        StringBuilder line = new StringBuilder()
+                .append(count).append(' ').append(totalMicros).append(' ').append(maxMicros);
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > 0) {
+                line.append(' ').append(i).append(':').append(buckets[i]);
+            }
+        }
+        return line.toString();
+    }
+
+    public static TimerSnapshot decode(String name, String line) {
+        String[] fields = line.trim().split(" ");
+        long[] buckets = new long[Timer.BUCKETS];
+        for (int i = 3; i < fields.length; i++) {
+            int colon = fields[i].indexOf(':');
+            buckets[Integer.parseInt(fields[i].substring(0, colon))] = Long.parseLong(fields[i].substring(colon + 1));
+        }
+        return new TimerSnapshot(name, Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                buckets);
+    }
+
+    long[] buckets() {
+        return buckets;
+    }
+}
@@ -0,0 +1,16 @@
+package com.aarsoma.deliverynote.model;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+// One keyset page of delivery notes; the last note is the cursor for the next page
+@Data
+public class DeliveryNotePage {
+    private List<DeliveryNote> notes = new ArrayList<>();
+    private boolean hasMore;
+
+    public DeliveryNote getLastNote() {
+        return notes.isEmpty() ? null : notes.get(notes.size() - 1);
+    }
+}
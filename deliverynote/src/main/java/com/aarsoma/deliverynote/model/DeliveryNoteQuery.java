@@ -0,0 +1,38 @@
+package com.aarsoma.deliverynote.model;
+
+import lombok.Data;
+import java.time.LocalDate;
+
+// Filters and sort order for paged delivery note searches; null filters are ignored
+@Data
+public class DeliveryNoteQuery {
+    private Integer customerId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private boolean ascending;
+
+    public static DeliveryNoteQuery all() {
+        return new DeliveryNoteQuery();
+    }
+
+    public static DeliveryNoteQuery forCustomer(int customerId) {
+        DeliveryNoteQuery query = new DeliveryNoteQuery();
+        query.setCustomerId(customerId);
+        return query;
+    }
+
+    public static DeliveryNoteQuery forDateRange(LocalDate startDate, LocalDate endDate) {
+        DeliveryNoteQuery query = new DeliveryNoteQuery();
+        query.setStartDate(startDate);
+        query.setEndDate(endDate);
+        return query;
+    }
+
+    // Whether note belongs in the results, dates being inclusive as in the queries
+    public boolean matches(DeliveryNote note) {
+        LocalDate date = note.getIssueDate().toLocalDate();
+        return (customerId == null || customerId.equals(note.getCustomerId()))
+                && (startDate == null || !date.isBefore(startDate))
+                && (endDate == null || !date.isAfter(endDate));
+    }
+}
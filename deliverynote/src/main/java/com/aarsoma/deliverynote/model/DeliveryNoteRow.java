@@ -0,0 +1,25 @@
+package com.aarsoma.deliverynote.model;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// One item row of a delivery note joined with its customer, as read by a streaming export.
+// A note without items gives one row with a null itemId.
+@Data
+public class DeliveryNoteRow {
+    private int noteId;
+    private String noteNumber;
+    private LocalDateTime issueDate;
+    private String financialYear;
+    private int customerId;
+    private String customerName;
+    private String customerAddress;
+    private String customerContactPerson;
+    private String customerPhone;
+    private String customerEmail;
+    private Integer itemId;
+    private String itemName;
+    private int orderedQty;
+    private int deliveredQty;
+    private int balanceQty;
+}
@@ -0,0 +1,19 @@
+package com.aarsoma.deliverynote.model;
+
+// File formats of a delivery note export
+public enum ExportFormat {
+    // One line per item, same columns as the delivery note import
+    CSV("csv"),
+    // One JSON object per delivery note, items nested
+    JSON_LINES("jsonl");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
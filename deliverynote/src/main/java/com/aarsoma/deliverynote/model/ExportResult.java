@@ -0,0 +1,21 @@
+package com.aarsoma.deliverynote.model;
+
+import lombok.Data;
+
+// Progress of a delivery note export; the final snapshot is the export's result
+@Data
+public class ExportResult {
+    private String fileName;
+    private long notesWritten;
+    // Item rows read from the database, including one row per note without items
+    private long rowsWritten;
+    // Bytes that reached the file so far (compressed size when gzipped)
+    private long bytesWritten;
+    private long elapsedMillis;
+    private boolean finished;
+    private boolean cancelled;
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? 0 : rowsWritten * 1000.0 / elapsedMillis;
+    }
+}
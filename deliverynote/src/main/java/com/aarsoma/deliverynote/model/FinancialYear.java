@@ -6,21 +6,22 @@ import java.time.Month;
 public class FinancialYear {
 
     public static String getCurrentFinancialYear() {
-        LocalDate today = LocalDate.now();
-        int currentYear = today.getYear();
-        Month currentMonth = today.getMonth();
+        return getFinancialYear(LocalDate.now());
+    }
 
-        if (currentMonth.getValue() >= Month.APRIL.getValue()) {
-            return currentYear + "-" + (currentYear + 1);
-        } else {
-            return (currentYear - 1) + "-" + currentYear;
-        }
+    // Financial year (April 1 to March 31) containing the given date, e.g. "2024-2025"
+    public static String getFinancialYear(LocalDate date) {
+        int startYear = getFinancialYearStartDate(date).getYear();
+        return startYear + "-" + (startYear + 1);
     }
 
     public static LocalDate getFinancialYearStartDate() {
-        LocalDate today = LocalDate.now();
-        int currentYear = today.getYear();
-        Month currentMonth = today.getMonth();
+        return getFinancialYearStartDate(LocalDate.now());
+    }
+
+    public static LocalDate getFinancialYearStartDate(LocalDate date) {
+        int currentYear = date.getYear();
+        Month currentMonth = date.getMonth();
 
         if (currentMonth.getValue() >= Month.APRIL.getValue()) {
             return LocalDate.of(currentYear, Month.APRIL, 1);
@@ -0,0 +1,29 @@
+package com.aarsoma.deliverynote.model;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+// Progress of a CSV import; the final snapshot is the import's result
+@Data
+public class ImportResult {
+    private String fileName;
+    // Data records read from the file, including those skipped when resuming
+    private long recordsRead;
+    private long resumedFromRecord;
+    // Customers upserted or delivery notes inserted
+    private long imported;
+    // Delivery notes whose number already exists in the database
+    private long alreadyPresent;
+    private long rejected;
+    private long errorCount;
+    // The first errors only, the rest are counted
+    private List<ImportRowError> errors = new ArrayList<>();
+    private long elapsedMillis;
+    private boolean finished;
+    private boolean cancelled;
+
+    public double getRecordsPerSecond() {
+        return elapsedMillis == 0 ? 0 : (recordsRead - resumedFromRecord) * 1000.0 / elapsedMillis;
+    }
+}
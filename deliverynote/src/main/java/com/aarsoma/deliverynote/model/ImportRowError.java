@@ -0,0 +1,15 @@
+package com.aarsoma.deliverynote.model;
+
+import lombok.Data;
+
+// A rejected CSV row: the line it starts on and why it was rejected
+@Data
+public class ImportRowError {
+    private final long lineNumber;
+    private final String message;
+
+    @Override
+    public String toString() {
+        return "Line " + lineNumber + ": " + message;
+    }
+}
@@ -0,0 +1,20 @@
+package com.aarsoma.deliverynote.model;
+
+import lombok.Data;
+
+// Progress of a PDF export; the final snapshot is the export's result
+@Data
+public class PdfExportResult {
+    // The zip file or the folder the PDFs are written to
+    private String target;
+    private long notesWritten;
+    private long pagesWritten;
+    private long bytesWritten;
+    private long elapsedMillis;
+    private boolean finished;
+    private boolean cancelled;
+
+    public double getNotesPerSecond() {
+        return elapsedMillis == 0 ? 0 : notesWritten * 1000.0 / elapsedMillis;
+    }
+}
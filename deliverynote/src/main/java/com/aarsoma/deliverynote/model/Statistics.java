@@ -1,6 +1,7 @@
 package com.aarsoma.deliverynote.model;
 
 import lombok.Data;
+import java.time.LocalDateTime;
 
 @Data
 public class Statistics {
@@ -9,4 +10,7 @@ public class Statistics {
     private long monthlyDeliveryNotes;
     private long weeklyDeliveryNotes;
     private long dailyDeliveryNotes;
+    // Financial year the counts refer to and when they were computed
+    private String financialYear;
+    private LocalDateTime computedAt;
 }
@@ -0,0 +1,41 @@
+package com.aarsoma.deliverynote.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+// Buckets the dashboard counts notes in; the key identifies the bucket a date falls into
+public enum StatisticsPeriod {
+    TOTAL {
+        @Override
+        public String keyFor(LocalDate date) {
+            return "ALL";
+        }
+    },
+    FINANCIAL_YEAR {
+        @Override
+        public String keyFor(LocalDate date) {
+            return FinancialYear.getFinancialYear(date);
+        }
+    },
+    MONTH {
+        @Override
+        public String keyFor(LocalDate date) {
+            return date.withDayOfMonth(1).toString().substring(0, 7);
+        }
+    },
+    WEEK {
+        @Override
+        public String keyFor(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toString();
+        }
+    },
+    DAY {
+        @Override
+        public String keyFor(LocalDate date) {
+            return date.toString();
+        }
+    };
+
+    public abstract String keyFor(LocalDate date);
+}
@@ -0,0 +1,353 @@
+package com.aarsoma.deliverynote.print;
+
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// The A5 delivery note layout, compiled once against a TextMeasurer and then shared by the threads
+// laying out notes
+public class DeliveryNoteTemplate {
+
+    // A5 portrait in points
+    public static final double PAGE_WIDTH = 419.53;
+    public static final double PAGE_HEIGHT = 595.28;
+
+    static final String COMPANY_NAME = "AARSOMA GRAPHICS";
+    static final String TITLE = "DELIVERY NOTE";
+    static final String FOOTER_TEXT = "This is a system generated Delivery Note & does not require a physical signature";
+
+    private static final double MARGIN = 28;
+    private static final double CELL_PADDING = 4;
+    private static final double ROW_PADDING = 3;
+    private static final double SIGNATURE_SPACE = 34;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final String[] HEADINGS = {"Sr.", "Item", "Ordered", "Delivered", "Balance"};
+
+    private final TextMeasurer measurer;
+
+    // Column edges; the quantity columns share one width
+    private final double srLeft;
+    private final double itemLeft;
+    private final double orderedLeft;
+    private final double qtyWidth;
+    private final double itemTextWidth;
+    private final double[] headingX = new double[HEADINGS.length];
+
+    private final double companyX;
+    private final double titleX;
+    private final List<String> footerLines;
+    private final double[] footerLineX;
+    private final double footerHeight;
+    private final double signatureWidth;
+    private final double receivedByX;
+    private final double stampX;
+
+    private DeliveryNoteTemplate(TextMeasurer measurer) {
+        this.measurer = measurer;
+        double contentWidth = PAGE_WIDTH - 2 * MARGIN;
+
+        double srWidth = Math.max(measurer.width(HEADINGS[0], PrintFont.HEADING), measurer.width("000", PrintFont.BODY))
+                + 2 * CELL_PADDING;
+        qtyWidth = Math.max(Math.max(measurer.width(HEADINGS[2], PrintFont.HEADING), measurer.width(HEADINGS[3], PrintFont.HEADING)),
+                Math.max(measurer.width(HEADINGS[4], PrintFont.HEADING), measurer.width("0000000", PrintFont.BODY)))
+                + 2 * CELL_PADDING;
+        srLeft = MARGIN;
+        itemLeft = MARGIN + srWidth;
+        orderedLeft = PAGE_WIDTH - MARGIN - 3 * qtyWidth;
+        itemTextWidth = orderedLeft - itemLeft - 2 * CELL_PADDING;
+
+        headingX[0] = srLeft + CELL_PADDING;
+        headingX[1] = itemLeft + CELL_PADDING;
+        for (int column = 2; column < HEADINGS.length; column++) {
+            headingX[column] = rightAligned(orderedLeft + (column - 1) * qtyWidth, HEADINGS[column], PrintFont.HEADING);
+        }
+
+        companyX = centred(COMPANY_NAME, PrintFont.TITLE);
+        titleX = centred(TITLE, PrintFont.HEADING);
+
+        footerLines = wrap(FOOTER_TEXT, PrintFont.SMALL, contentWidth);
+        footerLineX = new double[footerLines.size()];
+        for (int i = 0; i < footerLines.size(); i++) {
+            footerLineX[i] = centred(footerLines.get(i), PrintFont.SMALL);
+        }
+        footerHeight = footerLines.size() * PrintFont.SMALL.getLineHeight() + 6
+                + PrintFont.HEADING.getLineHeight() + 4
+                + 2 * PrintFont.BODY.getLineHeight()
+                + SIGNATURE_SPACE + PrintFont.SMALL.getLineHeight();
+
+        signatureWidth = (contentWidth - 40) / 2;
+        receivedByX = MARGIN;
+        stampX = PAGE_WIDTH - MARGIN - signatureWidth;
+    }
+
+    public static DeliveryNoteTemplate compile(TextMeasurer measurer) {
+        return new DeliveryNoteTemplate(measurer);
+    }
+
+    // The pages of note, at least one
+    public List<PrintPage> layout(DeliveryNote note) {
+        List<String> customerLines = customerLines(note.getCustomer());
+        double itemsTop = headerHeight(customerLines);
+        double bottom = PAGE_HEIGHT - MARGIN - PrintFont.SMALL.getLineHeight() - 4;
+        double continuedHeight = PrintFont.BODY.getLineHeight();
+
+        // Wrap the item names, then fill pages with whole rows
+        List<Row> rows = new ArrayList<>();
+        List<DeliveryItem> items = note.getItems() == null ? List.of() : note.getItems();
+        for (int i = 0; i < items.size(); i++) {
+            rows.add(new Row(i + 1, items.get(i), wrap(text(items.get(i).getItemName()), PrintFont.BODY, itemTextWidth)));
+        }
+
+        List<List<Row>> pageRows = new ArrayList<>();
+        List<Row> current = new ArrayList<>();
+        double y = itemsTop;
+        for (Row row : rows) {
+            if (!current.isEmpty() && y + row.height() > bottom - continuedHeight) {
+                pageRows.add(current);
+                current = new ArrayList<>();
+                y = itemsTop;
+            }
+            current.add(row);
+            y += row.height();
+        }
+        // The footer goes below the last items, or on a page of its own if they leave no room
+        if (!current.isEmpty() && y + footerHeight > bottom) {
+            pageRows.add(current);
+            current = new ArrayList<>();
+        }
+        pageRows.add(current);
+
+        List<PrintPage> pages = new ArrayList<>(pageRows.size());
+        for (int i = 0; i < pageRows.size(); i++) {
+            PrintPage page = new PrintPage(PAGE_WIDTH, PAGE_HEIGHT, i + 1);
+            double rowsBottom = drawRows(page, pageRows.get(i), drawHeader(page, note, customerLines));
+            boolean last = i == pageRows.size() - 1;
+            if (last) {
+                drawFooter(page, note, bottom - footerHeight);
+            } else {
+                page.text(itemLeft + CELL_PADDING, rowsBottom + PrintFont.BODY.getLineHeight(),
+                        "Continued on page " + (i + 2), PrintFont.BODY);
+            }
+            if (pageRows.size() > 1) {
+                String pageNumber = "Page " + (i + 1) + " of " + pageRows.size();
+                page.text(rightAligned(PAGE_WIDTH - MARGIN + CELL_PADDING, pageNumber, PrintFont.SMALL),
+                        PAGE_HEIGHT - MARGIN, pageNumber, PrintFont.SMALL);
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    private List<String> customerLines(Customer customer) {
+        List<String> lines = new ArrayList<>();
+        if (customer == null) {
+            return lines;
+        }
+        double width = PAGE_WIDTH - 2 * MARGIN - toLabelWidth();
+        lines.addAll(wrap(text(customer.getName()), PrintFont.BODY_BOLD, width));
+        if (customer.getAddress() != null) {
+            for (String addressLine : customer.getAddress().split("\\R")) {
+                if (!addressLine.isBlank()) {
+                    lines.addAll(wrap(addressLine.trim(), PrintFont.BODY, width));
+                }
+            }
+        }
+        if (customer.getContactPerson() != null && !customer.getContactPerson().isBlank()) {
+            lines.add(fit("Contact: " + customer.getContactPerson().trim(), PrintFont.BODY, width));
+        }
+        if (customer.getPhone() != null && !customer.getPhone().isBlank()) {
+            lines.add(fit("Phone: " + customer.getPhone().trim(), PrintFont.BODY, width));
+        }
+        return lines;
+    }
+
+    private double toLabelWidth() {
+        return measurer.width("To: ", PrintFont.BODY_BOLD);
+    }
+
+    // Height taken by drawHeader, up to the first item row; keep in step with it
+    private double headerHeight(List<String> customerLines) {
+        return MARGIN + PrintFont.TITLE.getSize() + PrintFont.HEADING.getLineHeight() + 2 + 6
+                + (1 + Math.max(1, customerLines.size())) * PrintFont.BODY.getLineHeight()
+                + 4 + PrintFont.BODY.getSize() + PrintFont.HEADING.getLineHeight() + 1;
+    }
+
+    // Returns the top of the first item row
+    private double drawHeader(PrintPage page, DeliveryNote note, List<String> customerLines) {
+        double y = MARGIN + PrintFont.TITLE.getSize();
+        page.text(companyX, y, COMPANY_NAME, PrintFont.TITLE);
+        y += PrintFont.HEADING.getLineHeight() + 2;
+        page.text(titleX, y, TITLE, PrintFont.HEADING);
+        y += 6;
+        page.line(MARGIN, y, PAGE_WIDTH - MARGIN, y, 0.8, false);
+
+        y += PrintFont.BODY.getLineHeight();
+        page.text(MARGIN, y, "No: " + noteNumber(note), PrintFont.BODY_BOLD);
+        String date = "Date: " + (note.getIssueDate() == null ? "" : note.getIssueDate().format(DATE_FORMAT));
+        page.text(rightAligned(PAGE_WIDTH - MARGIN + CELL_PADDING, date, PrintFont.BODY), y, date, PrintFont.BODY);
+
+        y += PrintFont.BODY.getLineHeight();
+        page.text(MARGIN, y, "To:", PrintFont.BODY_BOLD);
+        for (int i = 0; i < customerLines.size(); i++) {
+            page.text(MARGIN + toLabelWidth(), y, customerLines.get(i), i == 0 ? PrintFont.BODY_BOLD : PrintFont.BODY);
+            y += PrintFont.BODY.getLineHeight();
+        }
+        if (customerLines.isEmpty()) {
+            y += PrintFont.BODY.getLineHeight();
+        }
+
+        // Item table heading
+        y += 4 - PrintFont.BODY.getLineHeight() + PrintFont.BODY.getSize();
+        page.line(MARGIN, y, PAGE_WIDTH - MARGIN, y, 0.8, false);
+        double baseline = y + PrintFont.HEADING.getLineHeight() - 2;
+        for (int column = 0; column < HEADINGS.length; column++) {
+            page.text(headingX[column], baseline, HEADINGS[column], PrintFont.HEADING);
+        }
+        y += PrintFont.HEADING.getLineHeight() + 1;
+        page.line(MARGIN, y, PAGE_WIDTH - MARGIN, y, 0.5, false);
+        return y;
+    }
+
+    // Returns the bottom of the last row
+    private double drawRows(PrintPage page, List<Row> rows, double top) {
+        double y = top;
+        for (Row row : rows) {
+            double baseline = y + PrintFont.BODY.getSize() + ROW_PADDING / 2;
+            page.text(srLeft + CELL_PADDING, baseline, Integer.toString(row.number), PrintFont.BODY);
+            for (int line = 0; line < row.nameLines.size(); line++) {
+                page.text(itemLeft + CELL_PADDING, baseline + line * PrintFont.BODY.getLineHeight(),
+                        row.nameLines.get(line), PrintFont.BODY);
+            }
+            drawQuantity(page, 0, baseline, row.item.getOrderedQty());
+            drawQuantity(page, 1, baseline, row.item.getDeliveredQty());
+            drawQuantity(page, 2, baseline, row.item.getBalanceQty());
+            y += row.height();
+            page.line(MARGIN, y, PAGE_WIDTH - MARGIN, y, 0.25, false);
+        }
+        return y;
+    }
+
+    private void drawQuantity(PrintPage page, int column, double baseline, Integer quantity) {
+        if (quantity == null) {
+            return;
+        }
+        String text = quantity.toString();
+        page.text(rightAligned(orderedLeft + (column + 1) * qtyWidth, text, PrintFont.BODY), baseline, text, PrintFont.BODY);
+    }
+
+    private void drawFooter(PrintPage page, DeliveryNote note, double top) {
+        double y = top;
+        for (int i = 0; i < footerLines.size(); i++) {
+            y += PrintFont.SMALL.getLineHeight();
+            page.text(footerLineX[i], y, footerLines.get(i), PrintFont.SMALL);
+        }
+        y += 6;
+        page.line(0, y, PAGE_WIDTH, y, 0.6, true);
+
+        // Receipt, torn off and kept once signed
+        y += PrintFont.HEADING.getLineHeight() + 4;
+        page.text(MARGIN, y, "RECEIPT", PrintFont.HEADING);
+        String number = "No: " + noteNumber(note);
+        page.text(rightAligned(PAGE_WIDTH - MARGIN + CELL_PADDING, number, PrintFont.BODY_BOLD), y, number, PrintFont.BODY_BOLD);
+        y += PrintFont.BODY.getLineHeight();
+        String customerName = note.getCustomer() == null ? "" : text(note.getCustomer().getName());
+        page.text(MARGIN, y, fit("Received from " + COMPANY_NAME + " by " + customerName, PrintFont.BODY,
+                PAGE_WIDTH - 2 * MARGIN), PrintFont.BODY);
+        y += PrintFont.BODY.getLineHeight();
+        if (note.getIssueDate() != null) {
+            page.text(MARGIN, y, "Issued: " + note.getIssueDate().format(DATE_FORMAT), PrintFont.BODY);
+        }
+
+        y += SIGNATURE_SPACE - PrintFont.BODY.getLineHeight();
+        page.line(receivedByX, y, receivedByX + signatureWidth, y, 0.5, false);
+        page.line(stampX, y, stampX + signatureWidth, y, 0.5, false);
+        y += PrintFont.SMALL.getLineHeight();
+        page.text(receivedByX, y, "Received by (name and date)", PrintFont.SMALL);
+        page.text(stampX, y, "Signature and stamp", PrintFont.SMALL);
+    }
+
+    // Words of text in lines no wider than width; a word wider than a line is broken
+    List<String> wrap(String text, PrintFont font, double width) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String candidate = line.length() == 0 ? word : line + " " + word;
+            if (measurer.width(candidate, font) <= width) {
+                line.setLength(0);
+                line.append(candidate);
+                continue;
+            }
+            if (line.length() > 0) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+            // Break an overlong word wherever it reaches the edge
+            while (measurer.width(word, font) > width && word.length() > 1) {
+                int end = word.length() - 1;
+                while (end > 1 && measurer.width(word.substring(0, end), font) > width) {
+                    end--;
+                }
+                lines.add(word.substring(0, end));
+                word = word.substring(end);
+            }
+            line.append(word);
+        }
+        if (line.length() > 0 || lines.isEmpty()) {
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    // text cut short with "..." to fit width
+    private String fit(String text, PrintFont font, double width) {
+        if (measurer.width(text, font) <= width) {
+            return text;
+        }
+        int end = text.length();
+        while (end > 0 && measurer.width(text.substring(0, end) + "...", font) > width) {
+            end--;
+        }
+        return text.substring(0, end) + "...";
+    }
+
+    private double centred(String text, PrintFont font) {
+        return (PAGE_WIDTH - measurer.width(text, font)) / 2;
+    }
+
+    // x at which text ends CELL_PADDING before right
+    private double rightAligned(double right, String text, PrintFont font) {
+        return right - CELL_PADDING - measurer.width(text, font);
+    }
+
+    private static String noteNumber(DeliveryNote note) {
+        return note.getNoteNumber() == null || note.getNoteNumber().isBlank() ? "(not saved)" : note.getNoteNumber();
+    }
+
+    private static String text(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static final class Row {
+        private final int number;
+        private final DeliveryItem item;
+        private final List<String> nameLines;
+
+        private Row(int number, DeliveryItem item, List<String> nameLines) {
+            this.number = number;
+            this.item = item;
+            this.nameLines = nameLines;
+        }
+
+        private double height() {
+            return nameLines.size() * PrintFont.BODY.getLineHeight() + ROW_PADDING;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.aarsoma.deliverynote.print;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Line;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+import javafx.scene.transform.Scale;
+
+// Turns laid out pages into JavaFX nodes, for the preview and the printer. The nodes are built
+// detached from any scene, so this may run off the FX thread
+public class FxPageRenderer {
+
+    // The page at scale, on white paper
+    public static Pane render(PrintPage page, double scale) {
+        Group content = new Group();
+        Rectangle paper = new Rectangle(page.getWidth(), page.getHeight(), Color.WHITE);
+        content.getChildren().add(paper);
+        for (PrintPage.Element element : page.getElements()) {
+            content.getChildren().add(toNode(element));
+        }
+        content.getTransforms().add(new Scale(scale, scale, 0, 0));
+
+        Pane pane = new Pane(content);
+        pane.setPrefSize(page.getWidth() * scale, page.getHeight() * scale);
+        pane.setMinSize(page.getWidth() * scale, page.getHeight() * scale);
+        pane.setMaxSize(page.getWidth() * scale, page.getHeight() * scale);
+        return pane;
+    }
+
+    private static Node toNode(PrintPage.Element element) {
+        if (element instanceof PrintPage.Text) {
+            PrintPage.Text text = (PrintPage.Text) element;
+            Text node = new Text(text.getX(), text.getY(), text.getText());
+            node.setFont(FxTextMeasurer.font(text.getFont()));
+            return node;
+        }
+        PrintPage.Line line = (PrintPage.Line) element;
+        Line node = new Line(line.getX1(), line.getY1(), line.getX2(), line.getY2());
+        node.setStrokeWidth(line.getLineWidth());
+        if (line.isDashed()) {
+            node.getStrokeDashArray().addAll(4.0, 3.0);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,35 @@
+package com.aarsoma.deliverynote.print;
+
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Measures text as JavaFX draws it on screen and on the printer; needs the JavaFX toolkit, but
+// not the FX thread
+public class FxTextMeasurer implements TextMeasurer {
+
+    private static final Map<PrintFont, Font> FONTS = new EnumMap<>(PrintFont.class);
+
+    static {
+        for (PrintFont font : PrintFont.values()) {
+            FONTS.put(font, Font.font("SansSerif", font.isBold() ? FontWeight.BOLD : FontWeight.NORMAL, font.getSize()));
+        }
+    }
+
+    // Reused for every measurement; the text is never shown
+    private final Text text = new Text();
+
+    public static Font font(PrintFont font) {
+        return FONTS.get(font);
+    }
+
+    @Override
+    public double width(String value, PrintFont font) {
+        text.setFont(FONTS.get(font));
+        text.setText(value);
+        return text.getLayoutBounds().getWidth();
+    }
+}
@@ -0,0 +1,71 @@
+package com.aarsoma.deliverynote.print;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+// Writes laid out pages as a PDF document; safe to share between threads, each of which gets its
+// own font objects
+public class PdfRenderer {
+
+    private static final float[] DASH_PATTERN = {4, 3};
+    private static final float[] SOLID = {};
+
+    private static final ThreadLocal<PDType1Font[]> FONTS = ThreadLocal.withInitial(
+            () -> new PDType1Font[]{PdfTextMeasurer.newFont(false), PdfTextMeasurer.newFont(true)});
+
+    private final PdfTextMeasurer measurer;
+
+    // measurer must be the one the pages were laid out with
+    public PdfRenderer(PdfTextMeasurer measurer) {
+        this.measurer = measurer;
+    }
+
+    // Write pages to out as one document with the given title; out is not closed
+    public void write(List<PrintPage> pages, String title, OutputStream out) throws IOException {
+        PDType1Font[] fonts = FONTS.get();
+        try (PDDocument document = new PDDocument()) {
+            PDDocumentInformation information = document.getDocumentInformation();
+            information.setTitle(title);
+            information.setCreator(DeliveryNoteTemplate.COMPANY_NAME);
+
+            for (PrintPage page : pages) {
+                PDPage pdfPage = new PDPage(new PDRectangle((float) page.getWidth(), (float) page.getHeight()));
+                document.addPage(pdfPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdfPage)) {
+                    draw(page, content, fonts);
+                }
+            }
+            document.save(out);
+        }
+    }
+
+    // PDF coordinates start at the bottom left, page coordinates at the top left
+    private void draw(PrintPage page, PDPageContentStream content, PDType1Font[] fonts) throws IOException {
+        float height = (float) page.getHeight();
+        for (PrintPage.Element element : page.getElements()) {
+            if (element instanceof PrintPage.Text) {
+                PrintPage.Text text = (PrintPage.Text) element;
+                content.beginText();
+                content.setFont(fonts[text.getFont().isBold() ? 1 : 0], (float) text.getFont().getSize());
+                content.newLineAtOffset((float) text.getX(), height - (float) text.getY());
+                content.showText(measurer.printable(text.getText()));
+                content.endText();
+            } else if (element instanceof PrintPage.Line) {
+                PrintPage.Line line = (PrintPage.Line) element;
+                content.setLineWidth((float) line.getLineWidth());
+                content.setLineDashPattern(line.isDashed() ? DASH_PATTERN : SOLID, 0);
+                content.moveTo((float) line.getX1(), height - (float) line.getY1());
+                content.lineTo((float) line.getX2(), height - (float) line.getY2());
+                content.stroke();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.aarsoma.deliverynote.print;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+import org.apache.pdfbox.pdmodel.font.encoding.WinAnsiEncoding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Text widths of the standard Helvetica fonts; PDFBox fonts are not thread-safe, so every thread
+// creates its own with newFont()
+public class PdfTextMeasurer implements TextMeasurer {
+
+    private static final char MISSING = '?';
+
+    // Widths in thousandths of the font size, by character
+    private final Map<Character, Float> regularWidths;
+    private final Map<Character, Float> boldWidths;
+
+    public PdfTextMeasurer() {
+        try {
+            regularWidths = readWidths(newFont(false));
+            boldWidths = readWidths(newFont(true));
+        } catch (IOException e) {
+            // The metrics of the standard fonts ship inside PDFBox
+            throw new UncheckedIOException("Could not read the metrics of the PDF fonts", e);
+        }
+    }
+
+    // A new Helvetica (bold) font object for use by one thread
+    public static PDType1Font newFont(boolean bold) {
+        COSDictionary dictionary = new COSDictionary();
+        dictionary.setItem(COSName.TYPE, COSName.FONT);
+        dictionary.setItem(COSName.SUBTYPE, COSName.TYPE1);
+        dictionary.setName(COSName.BASE_FONT, bold ? "Helvetica-Bold" : "Helvetica");
+        dictionary.setItem(COSName.ENCODING, COSName.WIN_ANSI_ENCODING);
+        try {
+            return new PDType1Font(dictionary);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the PDF font", e);
+        }
+    }
+
+    @Override
+    public double width(String text, PrintFont font) {
+        Map<Character, Float> widths = font.isBold() ? boldWidths : regularWidths;
+        float missingWidth = widths.get(MISSING);
+        double total = 0;
+        for (int i = 0; i < text.length(); i++) {
+            total += widths.getOrDefault(text.charAt(i), missingWidth);
+        }
+        return total * font.getSize() / 1000;
+    }
+
+    // text with every character the fonts cannot show replaced, as width() measured it
+    public String printable(String text) {
+        StringBuilder result = null;
+        for (int i = 0; i < text.length(); i++) {
+            if (!regularWidths.containsKey(text.charAt(i))) {
+                if (result == null) {
+                    result = new StringBuilder(text);
+                }
+                result.setCharAt(i, MISSING);
+            }
+        }
+        return result == null ? text : result.toString();
+    }
+
+    // Widths of every character of the WinAnsi encoding, which both fonts use
+    private static Map<Character, Float> readWidths(PDType1Font font) throws IOException {
+        Map<Character, Float> widths = new HashMap<>();
+        for (Map.Entry<Integer, String> glyph : WinAnsiEncoding.INSTANCE.getCodeToNameMap().entrySet()) {
+            String unicode = GlyphList.getAdobeGlyphList().toUnicode(glyph.getValue());
+            if (unicode != null && unicode.length() == 1) {
+                widths.put(unicode.charAt(0), font.getWidth(glyph.getKey()));
+            }
+        }
+        return Collections.unmodifiableMap(widths);
+    }
+}
@@ -0,0 +1,31 @@
+package com.aarsoma.deliverynote.print;
+
+// The type styles of a printed delivery note; sizes are in points
+public enum PrintFont {
+    TITLE(14, true),
+    HEADING(9.5, true),
+    BODY(9, false),
+    BODY_BOLD(9, true),
+    SMALL(7, false);
+
+    private final double size;
+    private final boolean bold;
+
+    PrintFont(double size, boolean bold) {
+        this.size = size;
+        this.bold = bold;
+    }
+
+    public double getSize() {
+        return size;
+    }
+
+    public boolean isBold() {
+        return bold;
+    }
+
+    // Baseline-to-baseline distance of consecutive lines
+    public double getLineHeight() {
+        return size * 1.3;
+    }
+}
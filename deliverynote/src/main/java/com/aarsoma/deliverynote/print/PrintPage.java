@@ -0,0 +1,122 @@
+package com.aarsoma.deliverynote.print;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// One laid out page: positioned text and lines in points from the top left corner, ready to be
+// drawn by a renderer without measuring anything again
+public class PrintPage {
+
+    private final double width;
+    private final double height;
+    private final int number;
+    private final List<Element> elements = new ArrayList<>();
+
+    public PrintPage(double width, double height, int number) {
+        this.width = width;
+        this.height = height;
+        this.number = number;
+    }
+
+    // Text starting at x, with y being its baseline
+    public void text(double x, double y, String text, PrintFont font) {
+        elements.add(new Text(x, y, text, font));
+    }
+
+    public void line(double x1, double y1, double x2, double y2, double lineWidth, boolean dashed) {
+        elements.add(new Line(x1, y1, x2, y2, lineWidth, dashed));
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    // 1-based
+    public int getNumber() {
+        return number;
+    }
+
+    public List<Element> getElements() {
+        return Collections.unmodifiableList(elements);
+    }
+
+    public interface Element {
+    }
+
+    public static final class Text implements Element {
+        private final double x;
+        private final double y;
+        private final String text;
+        private final PrintFont font;
+
+        private Text(double x, double y, String text, PrintFont font) {
+            this.x = x;
+            this.y = y;
+            this.text = text;
+            this.font = font;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public PrintFont getFont() {
+            return font;
+        }
+    }
+
+    public static final class Line implements Element {
+        private final double x1;
+        private final double y1;
+        private final double x2;
+        private final double y2;
+        private final double lineWidth;
+        private final boolean dashed;
+
+        private Line(double x1, double y1, double x2, double y2, double lineWidth, boolean dashed) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.lineWidth = lineWidth;
+            this.dashed = dashed;
+        }
+
+        public double getX1() {
+            return x1;
+        }
+
+        public double getY1() {
+            return y1;
+        }
+
+        public double getX2() {
+            return x2;
+        }
+
+        public double getY2() {
+            return y2;
+        }
+
+        public double getLineWidth() {
+            return lineWidth;
+        }
+
+        public boolean isDashed() {
+            return dashed;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.aarsoma.deliverynote.print;
+
+// Text widths as the output (screen, printer, PDF) will draw them; a template is compiled against
+// one measurer and its pages are only correct for that output
+public interface TextMeasurer {
+
+    // Width of text in points
+    double width(String text, PrintFont font);
+}
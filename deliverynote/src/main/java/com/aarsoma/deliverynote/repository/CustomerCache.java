@@ -0,0 +1,299 @@
+package com.aarsoma.deliverynote.repository;
+
+import com.aarsoma.deliverynote.model.Customer;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Read-through cache of customers by id and of the sorted list, cleared when data_versions shows
+// a change by another terminal; cached customers are shared and must not be modified
+public class CustomerCache {
+
+    private static final Comparator<Customer> BY_NAME = Comparator.comparing(Customer::getName);
+
+    private final CustomerRepository customerRepository;
+    private final DataVersionRepository versionRepository = new DataVersionRepository();
+    private final int maxSize;
+    private final long checkIntervalNanos;
+
+    // Guarded by this
+    private final Map<Integer, Customer> byId;
+    private List<Customer> allCustomers;
+    private CustomerIndex index;
+    private long knownVersion = -1;
+    private long lastCheckedAt;
+
+    // Counters
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public CustomerCache(CustomerRepository customerRepository) {
+        this(customerRepository,
+                Integer.getInteger("deliverynote.customerCache.size", 1000),
+                Long.getLong("deliverynote.customerCache.checkMillis", 1000));
+    }
+
+    public CustomerCache(CustomerRepository customerRepository, int maxSize, long checkIntervalMillis) {
+        this.customerRepository = customerRepository;
+        this.maxSize = Math.max(1, maxSize);
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkIntervalMillis);
+
+        // Access-ordered, so the eldest entry is the least recently used one
+        this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Customer> eldest) {
+                if (size() > CustomerCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // All customers sorted by name
+    public List<Customer> findAll() throws SQLException {
+        long version = checkVersion();
+        synchronized (this) {
+            if (allCustomers != null) {
+                hits.increment();
+                return allCustomers;
+            }
+        }
+
+        misses.increment();
+        List<Customer> customers = Collections.unmodifiableList(customerRepository.findAll());
+        synchronized (this) {
+            // Only keep the result if nothing changed while it was loading
+            if (version == knownVersion) {
+                allCustomers = customers;
+                for (Customer customer : customers) {
+                    byId.put(customer.getId(), customer);
+                }
+            }
+        }
+        return customers;
+    }
+
+    // The best `limit` customers matching text (see CustomerIndex), or the first ones by name if text is blank
+    public List<Customer> search(String text, int limit) throws SQLException {
+        List<Customer> all = findAll();
+        if (text == null || text.isBlank()) {
+            return new ArrayList<>(all.subList(0, Math.min(limit, all.size())));
+        }
+
+        CustomerIndex searched = indexFor(all);
+        synchronized (this) {
+            return searched.search(text, limit);
+        }
+    }
+
+    // Build the search index ahead of the first search
+    public void loadIndex() throws SQLException {
+        indexFor(findAll());
+    }
+
+    // The shared index of list all; built outside the lock, as that takes a while for many customers
+    private CustomerIndex indexFor(List<Customer> all) {
+        synchronized (this) {
+            if (all == allCustomers && index != null) {
+                return index;
+            }
+        }
+
+        CustomerIndex built = new CustomerIndex(all);
+        synchronized (this) {
+            // Only keep it if no write replaced the list meanwhile
+            if (all == allCustomers) {
+                if (index == null) {
+                    index = built;
+                }
+                return index;
+            }
+        }
+        return built;
+    }
+
+    public Optional<Customer> findById(int id) throws SQLException {
+        long version = checkVersion();
+        synchronized (this) {
+            Customer cached = byId.get(id);
+            if (cached != null) {
+                hits.increment();
+                return Optional.of(cached);
+            }
+        }
+
+        misses.increment();
+        Optional<Customer> customer = customerRepository.findById(id);
+        synchronized (this) {
+            if (customer.isPresent() && version == knownVersion) {
+                byId.put(id, customer.get());
+            }
+        }
+        return customer;
+    }
+
+    public Customer save(Customer customer) throws SQLException {
+        Customer saved = customerRepository.save(customer);
+        afterWrite(() -> {
+            byId.put(saved.getId(), saved);
+            if (index != null) {
+                index.put(saved);
+            }
+            if (allCustomers != null) {
+                List<Customer> updated = new ArrayList<>(allCustomers);
+                updated.removeIf(c -> c.getId().equals(saved.getId()));
+                updated.add(saved);
+                updated.sort(BY_NAME);
+                allCustomers = Collections.unmodifiableList(updated);
+            }
+        });
+        return saved;
+    }
+
+    public void delete(int id) throws SQLException {
+        customerRepository.delete(id);
+        afterWrite(() -> {
+            byId.remove(id);
+            if (index != null) {
+                index.remove(id);
+            }
+            if (allCustomers != null) {
+                List<Customer> updated = new ArrayList<>(allCustomers);
+                updated.removeIf(c -> c.getId() == id);
+                allCustomers = Collections.unmodifiableList(updated);
+            }
+        });
+    }
+
+    // Drop everything; the next lookups reload from the database
+    public synchronized void invalidateAll() {
+        byId.clear();
+        allCustomers = null;
+        index = null;
+        knownVersion = -1;
+        invalidations.increment();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(maxSize, byId.size(), allCustomers != null,
+                hits.sum(), misses.sum(), evictions.sum(), invalidations.sum());
+    }
+
+    // Have the next access re-read the shared version without waiting for the check interval,
+    // e.g. once another terminal is known to have written
+    public synchronized void expireVersionCheck() {
+        lastCheckedAt = System.nanoTime() - checkIntervalNanos;
+    }
+
+    // Re-read the shared version when the check interval has passed; returns the version the cache reflects
+    private long checkVersion() throws SQLException {
+        synchronized (this) {
+            if (knownVersion >= 0 && System.nanoTime() - lastCheckedAt < checkIntervalNanos) {
+                return knownVersion;
+            }
+        }
+
+        long version = versionRepository.findVersion(DataVersionRepository.CUSTOMERS);
+        synchronized (this) {
+            if (version != knownVersion) {
+                if (knownVersion >= 0) {
+                    invalidateAll();
+                }
+                knownVersion = version;
+            }
+            lastCheckedAt = System.nanoTime();
+            return knownVersion;
+        }
+    }
+
+    // Apply a local write to the cache, unless another write slipped in since the cache was last in sync
+    private void afterWrite(Runnable update) throws SQLException {
+        long version = versionRepository.findVersion(DataVersionRepository.CUSTOMERS);
+        synchronized (this) {
+            if (knownVersion >= 0 && version == knownVersion + 1) {
+                // Exactly one write happened since the last check, and it was ours
+                update.run();
+                knownVersion = version;
+            } else {
+                if (knownVersion >= 0) {
+                    invalidateAll();
+                }
+                knownVersion = version;
+            }
+            lastCheckedAt = System.nanoTime();
+        }
+    }
+
+    public static final class CacheStats {
+        private final int maxSize;
+        private final int size;
+        private final boolean fullListCached;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+
+        private CacheStats(int maxSize, int size, boolean fullListCached, long hits, long misses,
+                           long evictions, long invalidations) {
+            this.maxSize = maxSize;
+            this.size = size;
+            this.fullListCached = fullListCached;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public boolean isFullListCached() {
+            return fullListCached;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStats{max=" + maxSize + ", size=" + size + ", fullList=" + fullListCached
+                    + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                    + ", invalidations=" + invalidations + "}";
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.aarsoma.deliverynote.repository;
+
+import com.aarsoma.deliverynote.model.Customer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Prefix index over customer names, contact persons and phone numbers for the pickers; not
+// thread-safe, CustomerCache owns it
+public class CustomerIndex {
+
+    private static final int MAX_QUERY_WORDS = 5;
+    // Shorter digit runs would match most phone numbers
+    private static final int MIN_PHONE_DIGITS = 3;
+
+    private static final byte NAME_START_WEIGHT = 8;
+    private static final byte NAME_WEIGHT = 4;
+    private static final byte CONTACT_WEIGHT = 2;
+    private static final byte PHONE_WEIGHT = 1;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Integer, Integer> slotById = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    // Per slot: the customer and the digits of its phone number
+    private Customer[] customers = new Customer[16];
+    private String[] phoneDigits = new String[16];
+    private int slotCount;
+
+    public CustomerIndex(List<Customer> customers) {
+        for (Customer customer : customers) {
+            put(customer);
+        }
+    }
+
+    // Add a customer, or replace the indexed version of it
+    public void put(Customer customer) {
+        remove(customer.getId());
+
+        int slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.pop();
+        if (slot == customers.length) {
+            customers = Arrays.copyOf(customers, slot * 2);
+            phoneDigits = Arrays.copyOf(phoneDigits, slot * 2);
+        }
+        customers[slot] = customer;
+        phoneDigits[slot] = digits(customer.getPhone());
+        slotById.put(customer.getId(), slot);
+
+        for (Map.Entry<String, Byte> term : termsOf(customer).entrySet()) {
+            terms.computeIfAbsent(term.getKey(), key -> new Postings()).add(slot, term.getValue());
+        }
+    }
+
+    public void remove(int id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return;
+        }
+
+        for (String term : termsOf(customers[slot]).keySet()) {
+            Postings postings = terms.get(term);
+            if (postings != null && postings.remove(slot) && postings.size == 0) {
+                terms.remove(term);
+            }
+        }
+        customers[slot] = null;
+        phoneDigits[slot] = null;
+        freeSlots.push(slot);
+    }
+
+    public int size() {
+        return slotById.size();
+    }
+
+    // The best `limit` customers matching every word of text, best first
+    public List<Customer> search(String text, int limit) {
+        List<String> words = queryWords(text);
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        int[] total = new int[slotCount];
+        int[] best = new int[slotCount];
+        // Number of words each slot has matched so far; only slots that matched all earlier words count
+        byte[] matched = new byte[slotCount];
+        Postings touched = new Postings();
+
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            touched.size = 0;
+
+            for (Postings postings : terms.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                for (int i = 0; i < postings.size; i++) {
+                    score(postings.slots[i], postings.weights[i], w, matched, best, touched);
+                }
+            }
+
+            if (word.length() >= MIN_PHONE_DIGITS && isDigits(word)) {
+                // Digit runs anywhere in the number; a scan of short strings is cheaper than indexing every substring
+                for (int slot = 0; slot < slotCount; slot++) {
+                    if (phoneDigits[slot] != null && phoneDigits[slot].contains(word)) {
+                        score(slot, PHONE_WEIGHT, w, matched, best, touched);
+                    }
+                }
+            }
+
+            for (int i = 0; i < touched.size; i++) {
+                int slot = touched.slots[i];
+                total[slot] += best[slot];
+                best[slot] = 0;
+                matched[slot] = (byte) (w + 1);
+            }
+            if (touched.size == 0) {
+                return new ArrayList<>();
+            }
+        }
+
+        // The slots touched by the last word matched every word; keep the best `limit` of them
+        Comparator<Integer> rank = (a, b) -> compareRank(a, b, total);
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, rank.reversed());
+        for (int i = 0; i < touched.size; i++) {
+            int slot = touched.slots[i];
+            if (top.size() == limit && compareRank(slot, top.peek(), total) >= 0) {
+                continue;
+            }
+            top.add(slot);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Integer> slots = new ArrayList<>(top);
+        slots.sort(rank);
+        List<Customer> result = new ArrayList<>(slots.size());
+        for (int slot : slots) {
+            result.add(customers[slot]);
+        }
+        return result;
+    }
+
+    // Higher score first, then by name like the full customer list
+    private int compareRank(int a, int b, int[] total) {
+        if (total[a] != total[b]) {
+            return Integer.compare(total[b], total[a]);
+        }
+        int byName = customers[a].getName().compareTo(customers[b].getName());
+        return byName != 0 ? byName : Integer.compare(a, b);
+    }
+
+    // Record a match of word w for a slot, keeping the best score per slot and word
+    private static void score(int slot, int score, int w, byte[] matched, int[] best, Postings touched) {
+        if (matched[slot] != w) {
+            return;
+        }
+        if (best[slot] == 0) {
+            touched.add(slot, (byte) 0);
+        }
+        if (score > best[slot]) {
+            best[slot] = score;
+        }
+    }
+
+    // Terms of the name and contact person with their highest weight
+    private static Map<String, Byte> termsOf(Customer customer) {
+        Map<String, Byte> result = new HashMap<>();
+        addTerms(result, customer.getContactPerson(), CONTACT_WEIGHT, CONTACT_WEIGHT);
+        addTerms(result, customer.getName(), NAME_START_WEIGHT, NAME_WEIGHT);
+        return result;
+    }
+
+    private static void addTerms(Map<String, Byte> result, String text, byte firstWeight, byte weight) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String[] words = SearchIndex.WHITESPACE.split(text.trim());
+        for (int i = 0; i < words.length; i++) {
+            byte wordWeight = i == 0 ? firstWeight : weight;
+            addTerm(result, SearchIndex.compact(words[i]), wordWeight);
+            List<String> parts = SearchIndex.alphanumericParts(words[i]);
+            if (parts.size() > 1) {
+                for (String part : parts) {
+                    addTerm(result, part, wordWeight);
+                }
+            }
+        }
+    }
+
+    private static void addTerm(Map<String, Byte> result, String term, byte weight) {
+        if (!term.isEmpty()) {
+            result.merge(term, weight, (a, b) -> a >= b ? a : b);
+        }
+    }
+
+    private static List<String> queryWords(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text != null) {
+            for (String word : SearchIndex.WHITESPACE.split(text.trim())) {
+                String term = SearchIndex.compact(word);
+                if (!term.isEmpty() && words.size() < MAX_QUERY_WORDS) {
+                    words.add(term);
+                }
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    private static String digits(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            if (Character.isDigit(phone.charAt(i))) {
+                digits.append(phone.charAt(i));
+            }
+        }
+        return digits.length() == 0 ? null : digits.toString();
+    }
+
+    private static boolean isDigits(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Growable list of (slot, weight)
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private byte[] weights = new byte[4];
+        private int size;
+
+        private void add(int slot, byte weight) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            slots[size] = slot;
+            weights[size] = weight;
+            size++;
+        }
+
+        private boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    System.arraycopy(slots, i + 1, slots, i, size - i - 1);
+                    System.arraycopy(weights, i + 1, weights, i, size - i - 1);
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -5,18 +5,22 @@ import com.aarsoma.deliverynote.model.Customer;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class CustomerRepository {
 
+    private final DataVersionRepository versionRepository = new DataVersionRepository();
+
     public List<Customer> findAll() throws SQLException {
         List<Customer> customers = new ArrayList<>();
         String sql = "SELECT * FROM customers ORDER BY name";
 
         try (Connection conn = DBConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
                 Customer customer = mapResultSetToCustomer(rs);
@@ -51,48 +55,49 @@ public class CustomerRepository {
             conn.setAutoCommit(false);
 
             try {
-                Customer savedCustomer;
+                Customer savedCustomer = null;
 
+                // FINAL TABLE returns the written row, including its timestamps, without a second query
+                String sql;
                 if (customer.getId() == null) {
                     // Insert new customer
-                    String sql = "INSERT INTO customers (name, address, contact_person, phone, email) VALUES (?, ?, ?, ?, ?)";
-                    try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                        pstmt.setString(1, customer.getName());
-                        pstmt.setString(2, customer.getAddress());
-                        pstmt.setString(3, customer.getContactPerson());
-                        pstmt.setString(4, customer.getPhone());
-                        pstmt.setString(5, customer.getEmail());
-
-                        pstmt.executeUpdate();
-
-                        ResultSet generatedKeys = pstmt.getGeneratedKeys();
-                        if (generatedKeys.next()) {
-                            customer.setId(generatedKeys.getInt(1));
-                        }
-                    }
+                    sql = "SELECT * FROM FINAL TABLE (" +
+                            "INSERT INTO customers (name, address, contact_person, phone, email) VALUES (?, ?, ?, ?, ?))";
                 } else {
                     // Update existing customer
-                    String sql = "UPDATE customers SET name = ?, address = ?, contact_person = ?, phone = ?, email = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
-                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                        pstmt.setString(1, customer.getName());
-                        pstmt.setString(2, customer.getAddress());
-                        pstmt.setString(3, customer.getContactPerson());
-                        pstmt.setString(4, customer.getPhone());
-                        pstmt.setString(5, customer.getEmail());
+                    sql = "SELECT * FROM FINAL TABLE (" +
+                            "UPDATE customers SET name = ?, address = ?, contact_person = ?, phone = ?, email = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?)";
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, customer.getName());
+                    pstmt.setString(2, customer.getAddress());
+                    pstmt.setString(3, customer.getContactPerson());
+                    pstmt.setString(4, customer.getPhone());
+                    pstmt.setString(5, customer.getEmail());
+                    if (customer.getId() != null) {
                         pstmt.setInt(6, customer.getId());
+                    }
 
-                        pstmt.executeUpdate();
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            savedCustomer = mapResultSetToCustomer(rs);
+                            customer.setId(savedCustomer.getId());
+                        }
                     }
                 }
 
+                // Let other terminals know their cached customers are stale
+                versionRepository.increment(conn, DataVersionRepository.CUSTOMERS);
+
                 conn.commit();
+                DataVersionRepository.committed(conn);
 
-                // Get fresh data with updated timestamps
-                Optional<Customer> refreshed = findById(customer.getId());
-                return refreshed.orElse(customer);
+                return savedCustomer != null ? savedCustomer : customer;
 
             } catch (SQLException e) {
                 conn.rollback();
+                DataVersionRepository.rolledBack(conn);
                 throw e;
             } finally {
                 // Reset auto-commit mode
@@ -101,6 +106,53 @@ public class CustomerRepository {
         }
     }
 
+    // Insert or update customers matched by name, as one batch in the caller's transaction
+    public void upsertAll(List<Customer> customers, Connection conn) throws SQLException {
+        if (customers.isEmpty()) {
+            return;
+        }
+
+        String sql = "MERGE INTO customers c " +
+                "USING (VALUES (CAST(? AS VARCHAR(100)), CAST(? AS VARCHAR(200)), CAST(? AS VARCHAR(100)), " +
+                "CAST(? AS VARCHAR(20)), CAST(? AS VARCHAR(100)))) s(name, address, contact_person, phone, email) " +
+                "ON c.name = s.name " +
+                "WHEN MATCHED THEN UPDATE SET address = s.address, contact_person = s.contact_person, " +
+                "phone = s.phone, email = s.email, updated_at = CURRENT_TIMESTAMP " +
+                "WHEN NOT MATCHED THEN INSERT (name, address, contact_person, phone, email) " +
+                "VALUES (s.name, s.address, s.contact_person, s.phone, s.email)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Customer customer : customers) {
+                pstmt.setString(1, customer.getName());
+                pstmt.setString(2, customer.getAddress());
+                pstmt.setString(3, customer.getContactPerson());
+                pstmt.setString(4, customer.getPhone());
+                pstmt.setString(5, customer.getEmail());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+
+        versionRepository.increment(conn, DataVersionRepository.CUSTOMERS);
+    }
+
+    // Customer ids by name; for duplicate names the oldest customer wins
+    public Map<String, Integer> findIdsByName() throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        String sql = "SELECT id, name FROM customers ORDER BY id";
+
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                ids.putIfAbsent(rs.getString("name"), rs.getInt("id"));
+            }
+        }
+
+        return ids;
+    }
+
     public void delete(int id) throws SQLException {
         try (Connection conn = DBConfig.getConnection()) {
             conn.setAutoCommit(false);
@@ -122,9 +174,13 @@ public class CustomerRepository {
                     }
                 }
 
+                versionRepository.increment(conn, DataVersionRepository.CUSTOMERS);
+
                 conn.commit();
+                DataVersionRepository.committed(conn);
             } catch (SQLException e) {
                 conn.rollback();
+                DataVersionRepository.rolledBack(conn);
                 throw e;
             } finally {
                 // Reset auto-commit mode
@@ -0,0 +1,96 @@
+package com.aarsoma.deliverynote.repository;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-table change counters in data_versions, bumped in the writing transaction so cached rows
+// can be checked against other terminals' writes with one lookup
+public class DataVersionRepository {
+
+    public static final String CUSTOMERS = "customers";
+    public static final String DELIVERY_NOTES = "delivery_notes";
+
+    private static final String INCREMENT_SQL =
+            "MERGE INTO data_versions t USING (VALUES (?)) s(table_name) " +
+            "ON t.table_name = s.table_name " +
+            "WHEN MATCHED THEN UPDATE SET version = t.version + 1 " +
+            "WHEN NOT MATCHED THEN INSERT (table_name, version) VALUES (s.table_name, 1)";
+
+    // This process's increments, counted when made so a reader can tell how much of a new version
+    // was its own; the writing transaction reports committed() or rolledBack() to settle them
+    private static final Map<String, AtomicLong> LOCAL_INCREMENTS = new ConcurrentHashMap<>();
+    // Increments per table made by transactions that have not finished yet
+    private static final Map<Connection, Map<String, Long>> PENDING = new ConcurrentHashMap<>();
+
+    // Bump the version of tableName; conn must be the writing transaction
+    public void increment(Connection conn, String tableName) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            try (PreparedStatement pstmt = conn.prepareStatement(INCREMENT_SQL)) {
+                pstmt.setString(1, tableName);
+                pstmt.executeUpdate();
+                LOCAL_INCREMENTS.computeIfAbsent(tableName, t -> new AtomicLong()).incrementAndGet();
+                PENDING.computeIfAbsent(conn, c -> new HashMap<>()).merge(tableName, 1L, Long::sum);
+                return;
+            } catch (SQLException e) {
+                // Another terminal created the row concurrently; it exists now, so update it
+                if (attempt > 0 || !"23505".equals(e.getSQLState())) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Current version of tableName, 0 if it was never written
+    public long findVersion(String tableName) throws SQLException {
+        String sql = "SELECT version FROM data_versions WHERE table_name = ?";
+
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, tableName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    // Current version of every table that was ever written, in one query
+    public Map<String, Long> findVersions() throws SQLException {
+        Map<String, Long> versions = new HashMap<>();
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT table_name, version FROM data_versions");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                versions.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return versions;
+    }
+
+    // The transaction on conn committed; its increments stay counted
+    public static void committed(Connection conn) {
+        PENDING.remove(conn);
+    }
+
+    // The transaction on conn rolled back; its increments no longer count as this process's own
+    public static void rolledBack(Connection conn) {
+        Map<String, Long> pending = PENDING.remove(conn);
+        if (pending != null) {
+            pending.forEach((table, increments) -> LOCAL_INCREMENTS.get(table).addAndGet(-increments));
+        }
+    }
+
+    // Increments of tableName by this process so far, including any whose transaction is still open
+    public static long getLocalIncrements(String tableName) {
+        AtomicLong increments = LOCAL_INCREMENTS.get(tableName);
+        return increments == null ? 0 : increments.get();
+    }
+}
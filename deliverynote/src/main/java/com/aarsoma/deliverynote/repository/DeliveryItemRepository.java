@@ -31,6 +31,40 @@ public class DeliveryItemRepository {
         return item;
     }
 
+    // Insert all items of a note with one prepared statement and one batch, assigning generated ids in order
+    public List<DeliveryItem> saveAll(List<DeliveryItem> items, Connection conn) throws SQLException {
+        if (items.isEmpty()) {
+            return items;
+        }
+
+        String sql = "INSERT INTO delivery_items (delivery_note_id, item_name, ordered_qty, delivered_qty, balance_qty) VALUES (?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (DeliveryItem item : items) {
+                pstmt.setInt(1, item.getDeliveryNoteId());
+                pstmt.setString(2, item.getItemName());
+                pstmt.setInt(3, item.getOrderedQty());
+                pstmt.setInt(4, item.getDeliveredQty());
+                pstmt.setInt(5, item.getBalanceQty());
+                pstmt.addBatch();
+            }
+
+            pstmt.executeBatch();
+
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                int index = 0;
+                while (generatedKeys.next() && index < items.size()) {
+                    items.get(index++).setId(generatedKeys.getInt(1));
+                }
+                if (index != items.size()) {
+                    throw new SQLException("Expected " + items.size() + " generated item ids but got " + index);
+                }
+            }
+        }
+
+        return items;
+    }
+
     public List<DeliveryItem> findByDeliveryNoteId(int deliveryNoteId) throws SQLException {
         List<DeliveryItem> items = new ArrayList<>();
         String sql = "SELECT * FROM delivery_items WHERE delivery_note_id = ?";
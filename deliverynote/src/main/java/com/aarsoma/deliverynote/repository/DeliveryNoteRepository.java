@@ -4,25 +4,73 @@ import com.aarsoma.deliverynote.config.DBConfig;
 import com.aarsoma.deliverynote.model.Customer;
 import com.aarsoma.deliverynote.model.DeliveryItem;
 import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.DeliveryNotePage;
+import com.aarsoma.deliverynote.model.DeliveryNoteQuery;
+import com.aarsoma.deliverynote.model.DeliveryNoteRow;
+import com.aarsoma.deliverynote.model.FinancialYear;
 
+import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 public class DeliveryNoteRepository {
 
-    private final CustomerRepository customerRepository = new CustomerRepository();
     private final DeliveryItemRepository itemRepository = new DeliveryItemRepository();
+    private final StatisticsCounterRepository counterRepository = new StatisticsCounterRepository();
+    private final DataVersionRepository versionRepository = new DataVersionRepository();
+    // Shared so that reserved number blocks are per process, not per repository
+    private static final NoteNumberAllocator noteNumberAllocator = new NoteNumberAllocator();
+    // Shared so that every screen searches the same in-memory index
+    private static final SearchIndex searchIndex = new SearchIndex();
+
+    // Notes joined with their customer and items, so a whole result graph is one round-trip
+    private static final String NOTE_GRAPH_COLUMNS =
+            "SELECT n.id, n.note_number, n.customer_id, n.issue_date, n.financial_year, n.created_at, " +
+                    "c.name AS c_name, c.address AS c_address, c.contact_person AS c_contact_person, " +
+                    "c.phone AS c_phone, c.email AS c_email, c.created_at AS c_created_at, c.updated_at AS c_updated_at, " +
+                    "i.id AS i_id, i.item_name AS i_item_name, i.ordered_qty AS i_ordered_qty, " +
+                    "i.delivered_qty AS i_delivered_qty, i.balance_qty AS i_balance_qty ";
+    private static final String NOTE_GRAPH_JOINS =
+            "LEFT JOIN customers c ON c.id = n.customer_id " +
+                    "LEFT JOIN delivery_items i ON i.delivery_note_id = n.id ";
+    private static final String NOTE_GRAPH_SELECT = NOTE_GRAPH_COLUMNS + "FROM delivery_notes n " + NOTE_GRAPH_JOINS;
+    private static final String NOTE_GRAPH_ORDER = "ORDER BY n.issue_date DESC, n.id DESC, i.id";
+
+    // Ordered by the issue_date index only, so H2 can stream rows without sorting; items of a note
+    // come from the delivery_note_id index, which returns them in id order
+    private static final String STREAM_SQL = NOTE_GRAPH_SELECT +
+            "WHERE n.issue_date >= ? AND n.issue_date < ? ORDER BY n.issue_date, n.id";
+    private static final int STREAM_FETCH_SIZE = 1000;
 
     public DeliveryNote save(DeliveryNote deliveryNote) throws SQLException {
         try (Connection conn = DBConfig.getConnection()) {
             conn.setAutoCommit(false);
 
+            boolean numberAssigned = false;
+            boolean inserted = false;
             try {
                 if (deliveryNote.getId() == null) {
+                    inserted = true;
+                    if (deliveryNote.getFinancialYear() == null) {
+                        deliveryNote.setFinancialYear(FinancialYear.getFinancialYear(deliveryNote.getIssueDate().toLocalDate()));
+                    }
+
+                    // Number is taken at commit time so concurrent terminals never collide
+                    if (deliveryNote.getNoteNumber() == null || deliveryNote.getNoteNumber().isBlank()) {
+                        deliveryNote.setNoteNumber(noteNumberAllocator.allocate(conn, deliveryNote.getFinancialYear()));
+                        numberAssigned = true;
+                    }
+
                     // Insert new delivery note
                     String sql = "INSERT INTO delivery_notes (note_number, customer_id, issue_date, financial_year) VALUES (?, ?, ?, ?)";
                     try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -43,15 +91,27 @@ public class DeliveryNoteRepository {
                     if (deliveryNote.getItems() != null && !deliveryNote.getItems().isEmpty()) {
                         for (DeliveryItem item : deliveryNote.getItems()) {
                             item.setDeliveryNoteId(deliveryNote.getId());
-                            itemRepository.save(item, conn);
                         }
+                        itemRepository.saveAll(deliveryNote.getItems(), conn);
                     }
+
+                    // Keep the dashboard counters in step with the notes table
+                    counterRepository.increment(conn, deliveryNote.getIssueDate().toLocalDate(), 1);
+                    versionRepository.increment(conn, DataVersionRepository.DELIVERY_NOTES);
                 }
 
                 conn.commit();
+                DataVersionRepository.committed(conn);
+                if (inserted) {
+                    searchIndex.afterSave(deliveryNote);
+                }
                 return deliveryNote;
             } catch (SQLException e) {
                 conn.rollback();
+                DataVersionRepository.rolledBack(conn);
+                if (numberAssigned) {
+                    deliveryNote.setNoteNumber(null);
+                }
                 throw e;
             } finally {
                 conn.setAutoCommit(true);
@@ -59,151 +119,398 @@ public class DeliveryNoteRepository {
         }
     }
 
-    public List<DeliveryNote> findAll() throws SQLException {
-        List<DeliveryNote> deliveryNotes = new ArrayList<>();
-        String sql = "SELECT * FROM delivery_notes ORDER BY issue_date DESC";
+    // Insert complete notes that already carry their numbers (e.g. imported history) as batches
+    // in the caller's transaction, keeping the counters and the number sequence in step
+    public void insertAll(List<DeliveryNote> notes, Connection conn) throws SQLException {
+        if (notes.isEmpty()) {
+            return;
+        }
 
-        try (Connection conn = DBConfig.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        // Locks in the order save() takes them: number counters, then dashboard counters, then the
+        // data version; a year's numbers are advanced before any of its notes is inserted
+        Map<String, Integer> highestNumbers = new TreeMap<>();
+        for (DeliveryNote note : notes) {
+            if (note.getFinancialYear() == null) {
+                note.setFinancialYear(FinancialYear.getFinancialYear(note.getIssueDate().toLocalDate()));
+            }
+            int number = NoteNumberAllocator.parseNumber(note.getFinancialYear(), note.getNoteNumber());
+            if (number >= 0) {
+                highestNumbers.merge(note.getFinancialYear(), number, Math::max);
+            }
+        }
+        // New notes must not be given a number that is being imported
+        for (Map.Entry<String, Integer> highest : highestNumbers.entrySet()) {
+            noteNumberAllocator.advancePast(conn, highest.getKey(), highest.getValue());
+        }
 
-            while (rs.next()) {
-                DeliveryNote note = mapResultSetToDeliveryNote(rs);
+        String sql = "INSERT INTO delivery_notes (note_number, customer_id, issue_date, financial_year) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (DeliveryNote note : notes) {
+                pstmt.setString(1, note.getNoteNumber());
+                pstmt.setInt(2, note.getCustomerId());
+                pstmt.setTimestamp(3, Timestamp.valueOf(note.getIssueDate()));
+                pstmt.setString(4, note.getFinancialYear());
+                pstmt.addBatch();
+            }
+
+            pstmt.executeBatch();
 
-                // Load customer - we need to create a separate connection in customerRepository
-                Optional<Customer> customer = customerRepository.findById(note.getCustomerId());
-                customer.ifPresent(note::setCustomer);
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                int index = 0;
+                while (generatedKeys.next() && index < notes.size()) {
+                    notes.get(index++).setId(generatedKeys.getInt(1));
+                }
+                if (index != notes.size()) {
+                    throw new SQLException("Expected " + notes.size() + " generated note ids but got " + index);
+                }
+            }
+        }
 
-                // Load items - separate connection in itemRepository
-                List<DeliveryItem> items = itemRepository.findByDeliveryNoteId(note.getId());
-                note.setItems(items);
+        List<DeliveryItem> items = new ArrayList<>();
+        Map<LocalDate, Long> notesPerDay = new HashMap<>();
 
-                deliveryNotes.add(note);
+        for (DeliveryNote note : notes) {
+            for (DeliveryItem item : note.getItems()) {
+                item.setDeliveryNoteId(note.getId());
+                items.add(item);
             }
+            notesPerDay.merge(note.getIssueDate().toLocalDate(), 1L, Long::sum);
         }
 
-        return deliveryNotes;
+        itemRepository.saveAll(items, conn);
+
+        counterRepository.incrementAll(conn, notesPerDay);
+        versionRepository.increment(conn, DataVersionRepository.DELIVERY_NOTES);
+    }
+
+    // The subset of noteNumbers that is already used by a delivery note
+    public Set<String> findExistingNoteNumbers(Collection<String> noteNumbers, Connection conn) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        if (noteNumbers.isEmpty()) {
+            return existing;
+        }
+
+        String sql = "SELECT note_number FROM delivery_notes WHERE note_number = ANY(?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("VARCHAR", noteNumbers.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getString(1));
+                }
+            }
+        }
+
+        return existing;
+    }
+
+    public List<DeliveryNote> findAll() throws SQLException {
+        String sql = NOTE_GRAPH_SELECT + NOTE_GRAPH_ORDER;
+
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            return loadNoteGraph(pstmt);
+        }
     }
 
     public Optional<DeliveryNote> findById(int id) throws SQLException {
-        String sql = "SELECT * FROM delivery_notes WHERE id = ?";
+        String sql = NOTE_GRAPH_SELECT + "WHERE n.id = ? " + NOTE_GRAPH_ORDER;
 
         try (Connection conn = DBConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, id);
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    DeliveryNote note = mapResultSetToDeliveryNote(rs);
+            List<DeliveryNote> notes = loadNoteGraph(pstmt);
+            return notes.isEmpty() ? Optional.empty() : Optional.of(notes.get(0));
+        }
+    }
+
+    public Optional<DeliveryNote> findByNoteNumber(String noteNumber) throws SQLException {
+        String sql = NOTE_GRAPH_SELECT + "WHERE n.note_number = ? " + NOTE_GRAPH_ORDER;
+
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, noteNumber);
+
+            List<DeliveryNote> notes = loadNoteGraph(pstmt);
+            return notes.isEmpty() ? Optional.empty() : Optional.of(notes.get(0));
+        }
+    }
+
+    // Notes with the given ids, in the order of ids; ids that don't exist are skipped
+    public List<DeliveryNote> findByIds(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-                    // Load customer
-                    Optional<Customer> customer = customerRepository.findById(note.getCustomerId());
-                    customer.ifPresent(note::setCustomer);
+        String sql = NOTE_GRAPH_SELECT + "WHERE n.id = ANY(?) " + NOTE_GRAPH_ORDER;
+        Map<Integer, DeliveryNote> notesById = new HashMap<>();
 
-                    // Load items
-                    List<DeliveryItem> items = itemRepository.findByDeliveryNoteId(note.getId());
-                    note.setItems(items);
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-                    return Optional.of(note);
+            Array idArray = conn.createArrayOf("INTEGER", ids.toArray());
+            try {
+                pstmt.setArray(1, idArray);
+                for (DeliveryNote note : loadNoteGraph(pstmt)) {
+                    notesById.put(note.getId(), note);
                 }
+            } finally {
+                idArray.free();
             }
         }
 
-        return Optional.empty();
+        List<DeliveryNote> notes = new ArrayList<>(notesById.size());
+        for (Integer id : ids) {
+            DeliveryNote note = notesById.get(id);
+            if (note != null) {
+                notes.add(note);
+            }
+        }
+        return notes;
     }
 
     public List<DeliveryNote> findByCustomerId(int customerId) throws SQLException {
-        List<DeliveryNote> deliveryNotes = new ArrayList<>();
-        String sql = "SELECT * FROM delivery_notes WHERE customer_id = ? ORDER BY issue_date DESC";
+        String sql = NOTE_GRAPH_SELECT + "WHERE n.customer_id = ? " + NOTE_GRAPH_ORDER;
 
         try (Connection conn = DBConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, customerId);
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    DeliveryNote note = mapResultSetToDeliveryNote(rs);
+            return loadNoteGraph(pstmt);
+        }
+    }
+
+    public List<DeliveryNote> findByDateRange(LocalDate startDate, LocalDate endDate) throws SQLException {
+        // Half-open timestamp range so the issue_date index can be used
+        String sql = NOTE_GRAPH_SELECT + "WHERE n.issue_date >= ? AND n.issue_date < ? " + NOTE_GRAPH_ORDER;
 
-                    // Load customer
-                    Optional<Customer> customer = customerRepository.findById(note.getCustomerId());
-                    customer.ifPresent(note::setCustomer);
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-                    // Load items
-                    List<DeliveryItem> items = itemRepository.findByDeliveryNoteId(note.getId());
-                    note.setItems(items);
+            pstmt.setTimestamp(1, Timestamp.valueOf(startDate.atStartOfDay()));
+            pstmt.setTimestamp(2, Timestamp.valueOf(endDate.plusDays(1).atStartOfDay()));
+
+            return loadNoteGraph(pstmt);
+        }
+    }
 
-                    deliveryNotes.add(note);
+    // Stream notes of [startDate, endDate] with their customer and items, oldest first, one row
+    // per item. Nothing is collected: the row object is refilled for every row, so handlers must
+    // copy what they want to keep.
+    public void streamByDateRange(LocalDate startDate, LocalDate endDate, RowHandler handler)
+            throws SQLException, IOException {
+        try (Connection conn = DBConfig.getConnection()) {
+            // Without this H2 materializes the whole result before returning the first row
+            setLazyQueryExecution(conn, true);
+            try (PreparedStatement pstmt = conn.prepareStatement(STREAM_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                pstmt.setFetchSize(STREAM_FETCH_SIZE);
+                pstmt.setTimestamp(1, Timestamp.valueOf(startDate.atStartOfDay()));
+                pstmt.setTimestamp(2, Timestamp.valueOf(endDate.plusDays(1).atStartOfDay()));
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    DeliveryNoteRow row = new DeliveryNoteRow();
+                    while (rs.next()) {
+                        mapStreamedRow(rs, row);
+                        if (!handler.handle(row)) {
+                            break;
+                        }
+                    }
                 }
+            } finally {
+                setLazyQueryExecution(conn, false);
             }
         }
+    }
 
-        return deliveryNotes;
+    // Receives the rows of streamByDateRange; returning false stops the stream
+    public interface RowHandler {
+        boolean handle(DeliveryNoteRow row) throws IOException;
     }
 
-    public List<DeliveryNote> findByDateRange(LocalDate startDate, LocalDate endDate) throws SQLException {
-        List<DeliveryNote> deliveryNotes = new ArrayList<>();
-        String sql = "SELECT * FROM delivery_notes WHERE CAST(issue_date AS DATE) BETWEEN ? AND ? ORDER BY issue_date DESC";
+    // Notes matching every word of text in their number, items or customer, best matches first
+    public List<DeliveryNote> search(String text, int limit) throws SQLException {
+        return findByIds(searchIndex.search(text, limit));
+    }
 
-        try (Connection conn = DBConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Load the search index now rather than on the first search
+    public void loadSearchIndex() throws SQLException {
+        searchIndex.refresh();
+    }
 
-            pstmt.setString(1, startDate.toString());
-            pstmt.setString(2, endDate.toString());
+    // Keyset page over (issue_date, id): notes strictly after the given cursor note, in query order
+    public DeliveryNotePage findPage(DeliveryNoteQuery query, DeliveryNote after, int pageSize) throws SQLException {
+        String direction = query.isAscending() ? "ASC" : "DESC";
+        String comparator = query.isAscending() ? ">" : "<";
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    DeliveryNote note = mapResultSetToDeliveryNote(rs);
+        StringBuilder where = new StringBuilder("WHERE 1 = 1 ");
+        List<Object> params = new ArrayList<>();
+
+        if (query.getCustomerId() != null) {
+            where.append("AND customer_id = ? ");
+            params.add(query.getCustomerId());
+        }
+        if (query.getStartDate() != null) {
+            where.append("AND issue_date >= ? ");
+            params.add(Timestamp.valueOf(query.getStartDate().atStartOfDay()));
+        }
+        if (query.getEndDate() != null) {
+            where.append("AND issue_date < ? ");
+            params.add(Timestamp.valueOf(query.getEndDate().plusDays(1).atStartOfDay()));
+        }
+        if (after != null) {
+            // Equivalent to (issue_date, id) < (?, ?) but lets the issue_date index bound the scan
+            Timestamp afterDate = Timestamp.valueOf(after.getIssueDate());
+            where.append("AND issue_date ").append(comparator).append("= ? ")
+                    .append("AND (issue_date ").append(comparator).append(" ? OR id ").append(comparator).append(" ?) ");
+            params.add(afterDate);
+            params.add(afterDate);
+            params.add(after.getId());
+        }
 
-                    // Load customer
-                    Optional<Customer> customer = customerRepository.findById(note.getCustomerId());
-                    customer.ifPresent(note::setCustomer);
+        // Fetch one extra note to know whether another page follows
+        String page = "SELECT * FROM delivery_notes " + where +
+                "ORDER BY issue_date " + direction + ", id " + direction + " LIMIT ?";
+        String sql = NOTE_GRAPH_COLUMNS + "FROM (" + page + ") n " + NOTE_GRAPH_JOINS +
+                "ORDER BY n.issue_date " + direction + ", n.id " + direction + ", i.id";
+        params.add(pageSize + 1);
 
-                    // Load items
-                    List<DeliveryItem> items = itemRepository.findByDeliveryNoteId(note.getId());
-                    note.setItems(items);
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-                    deliveryNotes.add(note);
-                }
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
             }
-        }
 
-        return deliveryNotes;
+            List<DeliveryNote> notes = loadNoteGraph(pstmt);
+
+            DeliveryNotePage result = new DeliveryNotePage();
+            result.setHasMore(notes.size() > pageSize);
+            result.setNotes(notes.size() > pageSize ? new ArrayList<>(notes.subList(0, pageSize)) : notes);
+            return result;
+        }
     }
 
     public List<DeliveryNote> findByDate(LocalDate date) throws SQLException {
         return findByDateRange(date, date);
     }
 
+    // Preview of the number the next saved note in the current financial year will get
     public String generateNextDeliveryNoteNumber() throws SQLException {
-        // Get the current year for the prefix
-        int currentYear = LocalDate.now().getYear();
-        String prefix = "DN" + currentYear + "-";
+        try (Connection conn = DBConfig.getConnection()) {
+            return noteNumberAllocator.peek(conn, FinancialYear.getCurrentFinancialYear());
+        }
+    }
 
-        // Find the last number used
-        String sql = "SELECT MAX(note_number) FROM delivery_notes WHERE note_number LIKE ?";
+    // Build notes from NOTE_GRAPH_SELECT rows; rows of one note are adjacent and customers are shared
+    private List<DeliveryNote> loadNoteGraph(PreparedStatement pstmt) throws SQLException {
+        List<DeliveryNote> deliveryNotes = new ArrayList<>();
+        Map<Integer, Customer> customers = new HashMap<>();
+        DeliveryNote current = null;
 
-        try (Connection conn = DBConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                int noteId = rs.getInt("id");
+                if (current == null || current.getId() != noteId) {
+                    current = mapResultSetToDeliveryNote(rs);
+                    current.setItems(new ArrayList<>());
+
+                    if (rs.getString("c_name") != null) {
+                        Customer customer = customers.get(current.getCustomerId());
+                        if (customer == null) {
+                            customer = mapJoinedCustomer(rs, current.getCustomerId());
+                            customers.put(customer.getId(), customer);
+                        }
+                        current.setCustomer(customer);
+                    }
 
-            pstmt.setString(1, prefix + "%");
+                    deliveryNotes.add(current);
+                }
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next() && rs.getString(1) != null) {
-                    String lastNumber = rs.getString(1);
-                    // Extract the numeric part
-                    String numericPart = lastNumber.substring(prefix.length());
-                    // Increment
-                    int nextNumeric = Integer.parseInt(numericPart) + 1;
-                    // Format with leading zeros (4 digits)
-                    return prefix + String.format("%04d", nextNumeric);
-                } else {
-                    // First note of the year
-                    return prefix + "0001";
+                int itemId = rs.getInt("i_id");
+                if (!rs.wasNull()) {
+                    current.getItems().add(mapJoinedItem(rs, itemId, noteId));
                 }
             }
         }
+
+        return deliveryNotes;
+    }
+
+    private Customer mapJoinedCustomer(ResultSet rs, int customerId) throws SQLException {
+        Customer customer = new Customer();
+        customer.setId(customerId);
+        customer.setName(rs.getString("c_name"));
+        customer.setAddress(rs.getString("c_address"));
+        customer.setContactPerson(rs.getString("c_contact_person"));
+        customer.setPhone(rs.getString("c_phone"));
+        customer.setEmail(rs.getString("c_email"));
+
+        Timestamp createdAt = rs.getTimestamp("c_created_at");
+        if (createdAt != null) {
+            customer.setCreatedAt(createdAt.toLocalDateTime());
+        }
+
+        Timestamp updatedAt = rs.getTimestamp("c_updated_at");
+        if (updatedAt != null) {
+            customer.setUpdatedAt(updatedAt.toLocalDateTime());
+        }
+
+        return customer;
+    }
+
+    private DeliveryItem mapJoinedItem(ResultSet rs, int itemId, int noteId) throws SQLException {
+        DeliveryItem item = new DeliveryItem();
+        item.setId(itemId);
+        item.setDeliveryNoteId(noteId);
+        item.setItemName(rs.getString("i_item_name"));
+        item.setOrderedQty(rs.getInt("i_ordered_qty"));
+        item.setDeliveredQty(rs.getInt("i_delivered_qty"));
+        item.setBalanceQty(rs.getInt("i_balance_qty"));
+        return item;
+    }
+
+    // Refill row from a STREAM_SQL row; note and customer columns are only read when the note changes
+    private void mapStreamedRow(ResultSet rs, DeliveryNoteRow row) throws SQLException {
+        int noteId = rs.getInt("id");
+        if (noteId != row.getNoteId() || row.getNoteNumber() == null) {
+            row.setNoteId(noteId);
+            row.setNoteNumber(rs.getString("note_number"));
+            row.setIssueDate(rs.getTimestamp("issue_date").toLocalDateTime());
+            row.setFinancialYear(rs.getString("financial_year"));
+            row.setCustomerId(rs.getInt("customer_id"));
+            row.setCustomerName(rs.getString("c_name"));
+            row.setCustomerAddress(rs.getString("c_address"));
+            row.setCustomerContactPerson(rs.getString("c_contact_person"));
+            row.setCustomerPhone(rs.getString("c_phone"));
+            row.setCustomerEmail(rs.getString("c_email"));
+        }
+
+        int itemId = rs.getInt("i_id");
+        if (rs.wasNull()) {
+            row.setItemId(null);
+            row.setItemName(null);
+            row.setOrderedQty(0);
+            row.setDeliveredQty(0);
+            row.setBalanceQty(0);
+        } else {
+            row.setItemId(itemId);
+            row.setItemName(rs.getString("i_item_name"));
+            row.setOrderedQty(rs.getInt("i_ordered_qty"));
+            row.setDeliveredQty(rs.getInt("i_delivered_qty"));
+            row.setBalanceQty(rs.getInt("i_balance_qty"));
+        }
+    }
+
+    private static void setLazyQueryExecution(Connection conn, boolean lazy) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
     }
 
     private DeliveryNote mapResultSetToDeliveryNote(ResultSet rs) throws SQLException {
@@ -0,0 +1,56 @@
+package com.aarsoma.deliverynote.repository;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Progress of unfinished imports, saved with each batch so an import resumes after the last commit
+public class ImportCheckpointRepository {
+
+    // Data records already imported from the file, or 0 if the import starts from scratch
+    public long findRecordsDone(String importKey, long fileSize) throws SQLException {
+        String sql = "SELECT file_size, records_done FROM import_checkpoints WHERE import_key = ?";
+
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, importKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // A file that changed since the checkpoint is imported again from the start
+                if (rs.next() && rs.getLong("file_size") == fileSize) {
+                    return rs.getLong("records_done");
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    // Record progress; conn must be the transaction that imported the records
+    public void save(Connection conn, String importKey, long fileSize, long recordsDone) throws SQLException {
+        String sql = "MERGE INTO import_checkpoints (import_key, file_size, records_done, updated_at) " +
+                "KEY (import_key) VALUES (?, ?, ?, CURRENT_TIMESTAMP)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, importKey);
+            pstmt.setLong(2, fileSize);
+            pstmt.setLong(3, recordsDone);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Forget the checkpoint once the whole file has been imported
+    public void delete(String importKey) throws SQLException {
+        String sql = "DELETE FROM import_checkpoints WHERE import_key = ?";
+
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, importKey);
+            pstmt.executeUpdate();
+        }
+    }
+}
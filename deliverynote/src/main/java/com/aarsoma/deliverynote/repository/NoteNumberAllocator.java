@@ -0,0 +1,182 @@
+package com.aarsoma.deliverynote.repository;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Allocates numbers like DN2024-25-0001 from a counter row per financial year; blocks above 1
+// (deliverynote.noteNumberBlock) are reserved in their own transaction and may leave gaps
+public class NoteNumberAllocator {
+
+    private static final String PREFIX = "DN";
+    private static final int DIGITS = 4;
+
+    private final int blockSize;
+    // Financial year -> numbers reserved by this process but not handed out yet
+    private final Map<String, Block> reservedBlocks = new HashMap<>();
+
+    public NoteNumberAllocator() {
+        this(Integer.getInteger("deliverynote.noteNumberBlock", 1));
+    }
+
+    public NoteNumberAllocator(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    // Take the next number for the financial year; conn must be the saving transaction
+    public synchronized String allocate(Connection conn, String financialYear) throws SQLException {
+        if (blockSize == 1) {
+            int end = reserve(conn, financialYear, 1);
+            return format(financialYear, end - 1);
+        }
+
+        Block block = reservedBlocks.get(financialYear);
+        if (block == null || block.next >= block.end) {
+            // Reserve in a separate transaction so the block survives a failed save
+            try (Connection reserveConn = DBConfig.getConnection()) {
+                int end = reserve(reserveConn, financialYear, blockSize);
+                block = new Block(end - blockSize, end);
+                reservedBlocks.put(financialYear, block);
+            }
+        }
+        return format(financialYear, block.next++);
+    }
+
+    // The number the next allocation would return, without reserving it
+    public synchronized String peek(Connection conn, String financialYear) throws SQLException {
+        Block block = reservedBlocks.get(financialYear);
+        if (block != null && block.next < block.end) {
+            return format(financialYear, block.next);
+        }
+
+        String sql = "SELECT next_value FROM note_number_counters WHERE financial_year = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, financialYear);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return format(financialYear, rs.getInt(1));
+                }
+            }
+        }
+        return format(financialYear, findHighestUsedNumber(conn, financialYear) + 1);
+    }
+
+    // Make sure future allocations come after number, e.g. after importing notes with their original numbers
+    public synchronized void advancePast(Connection conn, String financialYear, int number) throws SQLException {
+        String sql = "UPDATE note_number_counters SET next_value = GREATEST(next_value, ?) WHERE financial_year = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, number + 1);
+            pstmt.setString(2, financialYear);
+            // No row yet: the counter will start after the highest used number when it is created
+            pstmt.executeUpdate();
+        }
+
+        Block block = reservedBlocks.get(financialYear);
+        if (block != null && block.next <= number) {
+            reservedBlocks.remove(financialYear);
+        }
+    }
+
+    // Advance the counter by count and return the new (exclusive) end of the reserved range
+    private int reserve(Connection conn, String financialYear, int count) throws SQLException {
+        String sql = "SELECT next_value FROM FINAL TABLE (" +
+                "UPDATE note_number_counters SET next_value = next_value + ? WHERE financial_year = ?)";
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, count);
+                pstmt.setString(2, financialYear);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt(1);
+                    }
+                }
+            }
+
+            // First note of the financial year: create the counter, continuing after any existing numbers
+            int end = findHighestUsedNumber(conn, financialYear) + 1 + count;
+            if (createCounter(conn, financialYear, end)) {
+                return end;
+            }
+            // Another terminal created it first, so update its row instead
+        }
+
+        throw new SQLException("Could not reserve a delivery note number for " + financialYear);
+    }
+
+    private boolean createCounter(Connection conn, String financialYear, int nextValue) throws SQLException {
+        String sql = "INSERT INTO note_number_counters (financial_year, next_value) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, financialYear);
+            pstmt.setInt(2, nextValue);
+            pstmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            // 23505: unique constraint violation
+            if ("23505".equals(e.getSQLState())) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    // Highest number already used in this financial year's format (0 if none); imported notes keep
+    // their original numbers, so numbers with the prefix but another format are skipped
+    private int findHighestUsedNumber(Connection conn, String financialYear) throws SQLException {
+        String prefix = prefix(financialYear);
+        // Not MAX(note_number): past DIGITS digits "...-10000" sorts before "...-9999"
+        String sql = "SELECT note_number FROM delivery_notes WHERE financial_year = ? AND note_number LIKE ? " +
+                "AND REGEXP_LIKE(note_number, ?) ORDER BY CHAR_LENGTH(note_number) DESC, note_number DESC LIMIT 1";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, financialYear);
+            pstmt.setString(2, prefix + "%");
+            // The suffixes parseNumber accepts
+            pstmt.setString(3, "^" + prefix + "[0-9]{1,9}$");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Math.max(0, parseNumber(financialYear, rs.getString(1)));
+                }
+            }
+        }
+        return 0;
+    }
+
+    // "2024-2025" -> "DN2024-25-"
+    static String prefix(String financialYear) {
+        String[] years = financialYear.split("-");
+        return PREFIX + years[0] + "-" + years[1].substring(years[1].length() - 2) + "-";
+    }
+
+    // Sequence part of a number in this financial year's format, or -1 if it has a different format
+    static int parseNumber(String financialYear, String noteNumber) {
+        String prefix = prefix(financialYear);
+        if (noteNumber == null || !noteNumber.startsWith(prefix)) {
+            return -1;
+        }
+        String digits = noteNumber.substring(prefix.length());
+        if (digits.isEmpty() || digits.length() > 9 || !digits.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        return Integer.parseInt(digits);
+    }
+
+    static String format(String financialYear, int number) {
+        return prefix(financialYear) + String.format("%0" + DIGITS + "d", number);
+    }
+
+    private static final class Block {
+        private int next;
+        private final int end;
+
+        private Block(int next, int end) {
+            this.next = next;
+            this.end = end;
+        }
+    }
+}
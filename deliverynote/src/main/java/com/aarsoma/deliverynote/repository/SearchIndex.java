@@ -0,0 +1,394 @@
+package com.aarsoma.deliverynote.repository;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+// In-memory prefix index behind the history search; kept current from this process's saves and
+// from data_versions for other terminals' writes
+public class SearchIndex {
+
+    static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final int MAX_QUERY_WORDS = 5;
+    private static final int MAX_TERM_LENGTH = 40;
+    // Notes of other terminals are read from this many ids below the highest loaded one, in case
+    // a lower id was committed after a higher one
+    private static final int REFRESH_OVERLAP_IDS = 2000;
+
+    private static final byte NOTE_NUMBER_WEIGHT = 4;
+    private static final byte ITEM_WEIGHT = 3;
+    private static final byte CUSTOMER_NAME_WEIGHT = 2;
+    private static final byte CUSTOMER_CONTACT_WEIGHT = 1;
+
+    private final DataVersionRepository versionRepository = new DataVersionRepository();
+
+    // Guarded by this
+    private final TreeMap<String, Postings> noteTerms = new TreeMap<>();
+    private TreeMap<String, Postings> customerTerms = new TreeMap<>();
+    private final Map<Integer, Postings> notesByCustomer = new HashMap<>();
+    // Per note id: whether it is indexed, and its issue date for ranking
+    private final BitSet indexedNotes = new BitSet();
+    private long[] issuedAt = new long[1024];
+    private int maxNoteId;
+    private boolean loaded;
+    private long knownNotesVersion = -1;
+    private long knownCustomersVersion = -1;
+
+    // Ids of the best matching notes, best first
+    public List<Integer> search(String text, int limit) throws SQLException {
+        List<String> words = queryWords(text);
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        refresh();
+        return find(words, limit);
+    }
+
+    // Bring the index up to date with the database
+    public void refresh() throws SQLException {
+        // Versions are read before the data, so a write that races with the load is seen next time
+        long notesVersion = versionRepository.findVersion(DataVersionRepository.DELIVERY_NOTES);
+        long customersVersion = versionRepository.findVersion(DataVersionRepository.CUSTOMERS);
+
+        synchronized (this) {
+            if (loaded && notesVersion == knownNotesVersion && customersVersion == knownCustomersVersion) {
+                return;
+            }
+
+            try (Connection conn = DBConfig.getConnection()) {
+                if (!loaded || notesVersion != knownNotesVersion) {
+                    loadNotes(conn, loaded ? Math.max(0, maxNoteId - REFRESH_OVERLAP_IDS) : 0);
+                }
+                if (!loaded || customersVersion != knownCustomersVersion) {
+                    loadCustomers(conn);
+                }
+            }
+
+            loaded = true;
+            knownNotesVersion = notesVersion;
+            knownCustomersVersion = customersVersion;
+        }
+    }
+
+    // Add a note this process just inserted; never fails, as the note is already committed
+    public void afterSave(DeliveryNote note) {
+        long version;
+        try {
+            version = versionRepository.findVersion(DataVersionRepository.DELIVERY_NOTES);
+        } catch (SQLException e) {
+            // The next search notices the new version and reads the note then
+            return;
+        }
+
+        synchronized (this) {
+            if (!loaded) {
+                return;
+            }
+            if (addNote(note.getId(), note.getCustomerId(), note.getIssueDate(), note.getNoteNumber())
+                    && note.getItems() != null) {
+                for (DeliveryItem item : note.getItems()) {
+                    addTerms(noteTerms, item.getItemName(), note.getId(), ITEM_WEIGHT);
+                }
+            }
+            if (version == knownNotesVersion + 1) {
+                // Exactly one note write happened since the last refresh, and it was ours
+                knownNotesVersion = version;
+            }
+        }
+    }
+
+    private synchronized List<Integer> find(List<String> words, int limit) {
+        int size = maxNoteId + 1;
+        int[] total = new int[size];
+        int[] best = new int[size];
+        // Number of words each note has matched so far; only notes that matched all earlier words count
+        byte[] matched = new byte[size];
+        Postings touched = new Postings();
+
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            touched.size = 0;
+
+            for (Map.Entry<String, Postings> entry : prefixRange(noteTerms, word).entrySet()) {
+                int factor = entry.getKey().equals(word) ? 2 : 1;
+                Postings postings = entry.getValue();
+                for (int i = 0; i < postings.size; i++) {
+                    score(postings.ids[i], postings.weights[i] * factor, w, matched, best, touched);
+                }
+            }
+
+            for (Map.Entry<String, Postings> entry : prefixRange(customerTerms, word).entrySet()) {
+                int factor = entry.getKey().equals(word) ? 2 : 1;
+                Postings customers = entry.getValue();
+                for (int i = 0; i < customers.size; i++) {
+                    Postings notes = notesByCustomer.get(customers.ids[i]);
+                    if (notes == null) {
+                        continue;
+                    }
+                    int score = customers.weights[i] * factor;
+                    for (int j = 0; j < notes.size; j++) {
+                        score(notes.ids[j], score, w, matched, best, touched);
+                    }
+                }
+            }
+
+            for (int i = 0; i < touched.size; i++) {
+                int id = touched.ids[i];
+                total[id] += best[id];
+                best[id] = 0;
+                matched[id] = (byte) (w + 1);
+            }
+            if (touched.size == 0) {
+                return new ArrayList<>();
+            }
+        }
+
+        // The notes touched by the last word matched every word; keep the best `limit` of them
+        Comparator<Integer> rank = (a, b) -> compareRank(a, b, total);
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, rank);
+        for (int i = 0; i < touched.size; i++) {
+            int id = touched.ids[i];
+            // Most candidates lose to the worst kept one; checking that first avoids boxing them
+            if (top.size() == limit && compareRank(id, top.peek(), total) <= 0) {
+                continue;
+            }
+            top.add(id);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>(top);
+        ids.sort(rank.reversed());
+        return ids;
+    }
+
+    // Score, then issue date, then id; higher ranks first
+    private int compareRank(int a, int b, int[] total) {
+        if (total[a] != total[b]) {
+            return Integer.compare(total[a], total[b]);
+        }
+        if (issuedAt[a] != issuedAt[b]) {
+            return Long.compare(issuedAt[a], issuedAt[b]);
+        }
+        return Integer.compare(a, b);
+    }
+
+    // Record a match of word w for note id, keeping the best score per note and word
+    private static void score(int id, int score, int w, byte[] matched, int[] best, Postings touched) {
+        if (id >= matched.length || matched[id] != w) {
+            return;
+        }
+        if (best[id] == 0) {
+            touched.add(id, (byte) 0);
+        }
+        if (score > best[id]) {
+            best[id] = score;
+        }
+    }
+
+    private static Map<String, Postings> prefixRange(TreeMap<String, Postings> terms, String prefix) {
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    // Notes with id > afterId and their items; notes already indexed are skipped
+    private void loadNotes(Connection conn, int afterId) throws SQLException {
+        BitSet added = new BitSet();
+
+        String notesSql = "SELECT id, customer_id, issue_date, note_number FROM delivery_notes WHERE id > ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(notesSql)) {
+            pstmt.setInt(1, afterId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt("id");
+                    Timestamp issueDate = rs.getTimestamp("issue_date");
+                    if (addNote(id, rs.getInt("customer_id"), issueDate.toLocalDateTime(), rs.getString("note_number"))) {
+                        added.set(id);
+                    }
+                }
+            }
+        }
+
+        if (added.isEmpty()) {
+            return;
+        }
+
+        String itemsSql = "SELECT delivery_note_id, item_name FROM delivery_items WHERE delivery_note_id > ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(itemsSql)) {
+            pstmt.setInt(1, afterId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int noteId = rs.getInt("delivery_note_id");
+                    if (added.get(noteId)) {
+                        addTerms(noteTerms, rs.getString("item_name"), noteId, ITEM_WEIGHT);
+                    }
+                }
+            }
+        }
+    }
+
+    // Replace all customer terms; customers are few compared to notes
+    private void loadCustomers(Connection conn) throws SQLException {
+        TreeMap<String, Postings> terms = new TreeMap<>();
+
+        String sql = "SELECT id, name, contact_person, phone, email FROM customers";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                addTerms(terms, rs.getString("name"), id, CUSTOMER_NAME_WEIGHT);
+                addTerms(terms, rs.getString("contact_person"), id, CUSTOMER_CONTACT_WEIGHT);
+                addTerms(terms, rs.getString("phone"), id, CUSTOMER_CONTACT_WEIGHT);
+                addTerms(terms, rs.getString("email"), id, CUSTOMER_CONTACT_WEIGHT);
+            }
+        }
+
+        customerTerms = terms;
+    }
+
+    // Index a note's number and date; false if it was already indexed
+    private boolean addNote(int id, int customerId, LocalDateTime issueDate, String noteNumber) {
+        if (indexedNotes.get(id)) {
+            return false;
+        }
+        indexedNotes.set(id);
+
+        if (id >= issuedAt.length) {
+            issuedAt = Arrays.copyOf(issuedAt, Math.max(id + 1, issuedAt.length + issuedAt.length / 2));
+        }
+        issuedAt[id] = issueDate.toEpochSecond(ZoneOffset.UTC);
+        maxNoteId = Math.max(maxNoteId, id);
+
+        notesByCustomer.computeIfAbsent(customerId, key -> new Postings()).add(id, (byte) 0);
+        addNoteNumberTerms(noteNumber, id);
+        return true;
+    }
+
+    // The whole number, e.g. "dn2025260051", plus its serial with and without leading zeros
+    private void addNoteNumberTerms(String noteNumber, int id) {
+        if (noteNumber == null) {
+            return;
+        }
+        addTerm(noteTerms, compact(noteNumber), id, NOTE_NUMBER_WEIGHT);
+
+        List<String> parts = alphanumericParts(noteNumber);
+        if (!parts.isEmpty()) {
+            String serial = parts.get(parts.size() - 1);
+            addTerm(noteTerms, serial, id, NOTE_NUMBER_WEIGHT);
+            addTerm(noteTerms, serial.replaceFirst("^0+(?=.)", ""), id, NOTE_NUMBER_WEIGHT);
+        }
+    }
+
+    // Every word of text, compacted, and the parts of words that contain punctuation
+    private static void addTerms(TreeMap<String, Postings> terms, String text, int id, byte weight) {
+        if (text == null) {
+            return;
+        }
+        for (String word : WHITESPACE.split(text.trim())) {
+            addTerm(terms, compact(word), id, weight);
+            List<String> parts = alphanumericParts(word);
+            if (parts.size() > 1) {
+                for (String part : parts) {
+                    addTerm(terms, part, id, weight);
+                }
+            }
+        }
+    }
+
+    private static void addTerm(TreeMap<String, Postings> terms, String term, int id, byte weight) {
+        if (term.isEmpty()) {
+            return;
+        }
+        if (term.length() > MAX_TERM_LENGTH) {
+            term = term.substring(0, MAX_TERM_LENGTH);
+        }
+        terms.computeIfAbsent(term, key -> new Postings()).add(id, weight);
+    }
+
+    // Query words are compacted like indexed words, so "m12-bolt" and "DN2025-26-0051" match whole
+    private static List<String> queryWords(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text != null) {
+            for (String word : WHITESPACE.split(text.trim())) {
+                String term = compact(word);
+                if (term.length() > MAX_TERM_LENGTH) {
+                    term = term.substring(0, MAX_TERM_LENGTH);
+                }
+                if (!term.isEmpty() && words.size() < MAX_QUERY_WORDS) {
+                    words.add(term);
+                }
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(words));
+    }
+
+    // Lower-cased letters and digits of word
+    static String compact(String word) {
+        StringBuilder term = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+            }
+        }
+        return term.toString().toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> alphanumericParts(String word) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        for (int i = 0; i <= word.length(); i++) {
+            if (i < word.length() && Character.isLetterOrDigit(word.charAt(i))) {
+                part.append(word.charAt(i));
+            } else if (part.length() > 0) {
+                parts.add(part.toString().toLowerCase(Locale.ROOT));
+                part.setLength(0);
+            }
+        }
+        return parts;
+    }
+
+    // Growable list of (id, weight); an id added twice in a row keeps its higher weight
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private byte[] weights = new byte[4];
+        private int size;
+
+        private void add(int id, byte weight) {
+            if (size > 0 && ids[size - 1] == id) {
+                weights[size - 1] = (byte) Math.max(weights[size - 1], weight);
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ids[size] = id;
+            weights[size] = weight;
+            size++;
+        }
+    }
+}
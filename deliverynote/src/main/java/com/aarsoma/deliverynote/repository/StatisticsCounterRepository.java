@@ -0,0 +1,226 @@
+package com.aarsoma.deliverynote.repository;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.model.StatisticsPeriod;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Note counts per period bucket, updated in the saving transaction so the dashboard reads a few
+// rows; buckets are keyed by period, so a new day or month needs no reset
+public class StatisticsCounterRepository {
+
+    // TOTAL comes first so every writer locks the rows in the same order
+    private static final StatisticsPeriod[] PERIODS = StatisticsPeriod.values();
+
+    // (?, ?) per period
+    private static final String PERIOD_PAIRS = String.join(", ", Collections.nCopies(PERIODS.length, "(?, ?)"));
+
+    private static final String INCREMENT_SQL = buildIncrementSql();
+
+    // Built once so the pooled connections' statement caches see the same SQL text every time
+    private static final String FIND_COUNTS_SQL =
+            "SELECT period_type, note_count FROM delivery_note_counters WHERE (period_type, period_key) IN (" +
+            PERIOD_PAIRS + ")";
+
+    private static String buildIncrementSql() {
+        return "MERGE INTO delivery_note_counters t " +
+                "USING (VALUES " + PERIOD_PAIRS + ") s(period_type, period_key) " +
+                "ON t.period_type = s.period_type AND t.period_key = s.period_key " +
+                "WHEN MATCHED THEN UPDATE SET note_count = t.note_count + ? " +
+                "WHEN NOT MATCHED THEN INSERT (period_type, period_key, note_count) VALUES (s.period_type, s.period_key, ?)";
+    }
+
+    // Add delta to every bucket containing issueDate; conn must be the saving transaction
+    public void increment(Connection conn, LocalDate issueDate, long delta) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            try (PreparedStatement pstmt = conn.prepareStatement(INCREMENT_SQL)) {
+                int index = 1;
+                for (StatisticsPeriod period : PERIODS) {
+                    pstmt.setString(index++, period.name());
+                    pstmt.setString(index++, period.keyFor(issueDate));
+                }
+                pstmt.setLong(index++, delta);
+                pstmt.setLong(index, delta);
+
+                pstmt.executeUpdate();
+                return;
+            } catch (SQLException e) {
+                // Another terminal inserted a new bucket concurrently; it exists now, so update it
+                if (attempt > 0 || !"23505".equals(e.getSQLState())) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Add per-day note counts to their buckets with one batch; conn must be the saving transaction
+    public void incrementAll(Connection conn, Map<LocalDate, Long> notesPerDay) throws SQLException {
+        // Sorted by period then key, so TOTAL is locked first as in increment()
+        Map<StatisticsPeriod, Map<String, Long>> buckets = new EnumMap<>(StatisticsPeriod.class);
+        for (Map.Entry<LocalDate, Long> day : notesPerDay.entrySet()) {
+            for (StatisticsPeriod period : PERIODS) {
+                buckets.computeIfAbsent(period, p -> new TreeMap<>())
+                        .merge(period.keyFor(day.getKey()), day.getValue(), Long::sum);
+            }
+        }
+
+        List<String[]> keys = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        for (Map.Entry<StatisticsPeriod, Map<String, Long>> period : buckets.entrySet()) {
+            for (Map.Entry<String, Long> bucket : period.getValue().entrySet()) {
+                keys.add(new String[]{period.getKey().name(), bucket.getKey()});
+                deltas.add(bucket.getValue());
+            }
+        }
+
+        String sql = "MERGE INTO delivery_note_counters t " +
+                "USING (VALUES (?, ?)) s(period_type, period_key) " +
+                "ON t.period_type = s.period_type AND t.period_key = s.period_key " +
+                "WHEN MATCHED THEN UPDATE SET note_count = t.note_count + ? " +
+                "WHEN NOT MATCHED THEN INSERT (period_type, period_key, note_count) VALUES (s.period_type, s.period_key, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int attempt = 0; ; attempt++) {
+                for (int i = 0; i < keys.size(); i++) {
+                    pstmt.setString(1, keys.get(i)[0]);
+                    pstmt.setString(2, keys.get(i)[1]);
+                    pstmt.setLong(3, deltas.get(i));
+                    pstmt.setLong(4, deltas.get(i));
+                    pstmt.addBatch();
+                }
+                try {
+                    pstmt.executeBatch();
+                    return;
+                } catch (BatchUpdateException e) {
+                    // Another terminal inserted some of the new buckets concurrently; the rest of
+                    // the batch was applied, so only the failed buckets are merged again
+                    if (attempt > 0 || !"23505".equals(e.getSQLState())) {
+                        throw e;
+                    }
+                    int[] counts = e.getUpdateCounts();
+                    List<String[]> failedKeys = new ArrayList<>();
+                    List<Long> failedDeltas = new ArrayList<>();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == Statement.EXECUTE_FAILED) {
+                            failedKeys.add(keys.get(i));
+                            failedDeltas.add(deltas.get(i));
+                        }
+                    }
+                    keys = failedKeys;
+                    deltas = failedDeltas;
+                }
+            }
+        }
+    }
+
+    // Counts of the buckets containing the given date, or an empty map if counters were never built
+    public Map<StatisticsPeriod, Long> findCounts(LocalDate date) throws SQLException {
+        Map<StatisticsPeriod, Long> counts = new EnumMap<>(StatisticsPeriod.class);
+
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(FIND_COUNTS_SQL)) {
+
+            int index = 1;
+            for (StatisticsPeriod period : PERIODS) {
+                pstmt.setString(index++, period.name());
+                pstmt.setString(index++, period.keyFor(date));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(StatisticsPeriod.valueOf(rs.getString("period_type")), rs.getLong("note_count"));
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    // Recount every bucket from delivery_notes and replace the stored counters
+    public void rebuild() throws SQLException {
+        try (Connection conn = DBConfig.getConnection()) {
+            ensureTotalRow(conn);
+
+            conn.setAutoCommit(false);
+            try {
+                // Saves lock TOTAL first and hold it until they commit, so once we hold it every
+                // counted note is committed and no new one can be counted twice or missed. The
+                // recount has to happen under the lock: ids are taken at insert, not at commit,
+                // so notes committed during an unlocked scan cannot be told apart by id
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT note_count FROM delivery_note_counters WHERE period_type = ? FOR UPDATE")) {
+                    pstmt.setString(1, StatisticsPeriod.TOTAL.name());
+                    pstmt.executeQuery().close();
+                }
+
+                Map<String, Long> buckets = countDailyNotes(conn);
+
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM delivery_note_counters");
+                }
+
+                String insertSql = "INSERT INTO delivery_note_counters (period_type, period_key, note_count) VALUES (?, ?, ?)";
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                    for (Map.Entry<String, Long> bucket : buckets.entrySet()) {
+                        String[] parts = bucket.getKey().split("\\|", 2);
+                        pstmt.setString(1, parts[0]);
+                        pstmt.setString(2, parts[1]);
+                        pstmt.setLong(3, bucket.getValue());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Notes per bucket, from one pass of per-day counts
+    private Map<String, Long> countDailyNotes(Connection conn) throws SQLException {
+        String sql = "SELECT CAST(issue_date AS DATE) AS issue_day, COUNT(*) AS note_count " +
+                "FROM delivery_notes GROUP BY CAST(issue_date AS DATE)";
+        Map<String, Long> buckets = new HashMap<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                LocalDate day = rs.getDate("issue_day").toLocalDate();
+                long count = rs.getLong("note_count");
+                for (StatisticsPeriod period : PERIODS) {
+                    buckets.merge(period.name() + "|" + period.keyFor(day), count, Long::sum);
+                }
+            }
+        }
+
+        buckets.putIfAbsent(StatisticsPeriod.TOTAL.name() + "|" + StatisticsPeriod.TOTAL.keyFor(LocalDate.now()), 0L);
+        return buckets;
+    }
+
+    private void ensureTotalRow(Connection conn) throws SQLException {
+        String sql = "INSERT INTO delivery_note_counters (period_type, period_key, note_count) VALUES (?, ?, 0)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, StatisticsPeriod.TOTAL.name());
+            pstmt.setString(2, StatisticsPeriod.TOTAL.keyFor(LocalDate.now()));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            // 23505: the row already exists
+            if (!"23505".equals(e.getSQLState())) {
+                throw e;
+            }
+        }
+    }
+}
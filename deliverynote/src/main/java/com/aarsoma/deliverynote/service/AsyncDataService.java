@@ -0,0 +1,119 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.DeliveryNotePage;
+import com.aarsoma.deliverynote.model.DeliveryNoteQuery;
+import com.aarsoma.deliverynote.model.Statistics;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the services off the FX thread, on virtual threads where the JDK has them; the futures
+// complete on the background thread (see FxAsync)
+public class AsyncDataService {
+
+    @FunctionalInterface
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    private static final int PLATFORM_THREADS = 4;
+    private static final ExecutorService executor = createExecutor();
+    // Time from submitting a call until a thread starts running it
+    private static final Timer QUEUE_WAIT_TIMER = Metrics.timer("AsyncDataService.queueWait");
+
+    private final CustomerService customerService = new CustomerService();
+    private final DeliveryNoteService deliveryNoteService = new DeliveryNoteService();
+    private final StatisticsService statisticsService = new StatisticsService();
+
+    // Customers
+
+    public CompletableFuture<List<Customer>> getAllCustomers() {
+        return submit(customerService::getAllCustomers);
+    }
+
+    public CompletableFuture<List<Customer>> searchCustomers(String text, int limit) {
+        return submit(() -> customerService.searchCustomers(text, limit));
+    }
+
+    public CompletableFuture<Customer> saveCustomer(Customer customer) {
+        return submit(() -> customerService.saveCustomer(customer));
+    }
+
+    public CompletableFuture<Void> deleteCustomer(int id) {
+        return submit(() -> {
+            customerService.deleteCustomer(id);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> isCustomerUsedInDeliveryNotes(int customerId) {
+        return submit(() -> customerService.isCustomerUsedInDeliveryNotes(customerId));
+    }
+
+    // Delivery notes
+
+    public CompletableFuture<DeliveryNote> saveDeliveryNote(DeliveryNote deliveryNote) {
+        return submit(() -> deliveryNoteService.saveDeliveryNote(deliveryNote));
+    }
+
+    public CompletableFuture<Optional<DeliveryNote>> getDeliveryNoteById(int id) {
+        return submit(() -> deliveryNoteService.getDeliveryNoteById(id));
+    }
+
+    public CompletableFuture<DeliveryNotePage> getDeliveryNotesPage(DeliveryNoteQuery query, DeliveryNote after, int pageSize) {
+        return submit(() -> deliveryNoteService.getDeliveryNotesPage(query, after, pageSize));
+    }
+
+    public CompletableFuture<List<DeliveryNote>> searchDeliveryNotes(String text, int limit) {
+        return submit(() -> deliveryNoteService.searchDeliveryNotes(text, limit));
+    }
+
+    // Statistics
+
+    public CompletableFuture<Statistics> getDeliveryNoteStatistics() {
+        return submit(statisticsService::getDeliveryNoteStatistics);
+    }
+
+    // Run any data access call in the background; a SQLException completes the future exceptionally
+    public static <T> CompletableFuture<T> submit(SqlCall<T> call) {
+        long submittedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            QUEUE_WAIT_TIMER.recordSince(submittedAt);
+            try {
+                return call.call();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public static void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Executors.newVirtualThreadPerTaskExecutor() exists from JDK 21 (as a preview before that)
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(PLATFORM_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "data-access-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
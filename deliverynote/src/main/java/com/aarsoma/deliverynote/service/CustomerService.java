@@ -1,9 +1,15 @@
 package com.aarsoma.deliverynote.service;
 
+import com.aarsoma.deliverynote.event.CustomerDeleted;
+import com.aarsoma.deliverynote.event.CustomerSaved;
+import com.aarsoma.deliverynote.event.DataChanged;
+import com.aarsoma.deliverynote.event.EventBus;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
 import com.aarsoma.deliverynote.model.Customer;
-
-import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.repository.CustomerCache;
 import com.aarsoma.deliverynote.repository.CustomerRepository;
+import com.aarsoma.deliverynote.repository.DataVersionRepository;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -11,30 +17,77 @@ import java.util.Optional;
 
 public class CustomerService {
 
+    private static final Timer GET_ALL_CUSTOMERS_TIMER = Metrics.timer("CustomerService.getAllCustomers");
+    private static final Timer SEARCH_CUSTOMERS_TIMER = Metrics.timer("CustomerService.searchCustomers");
+    private static final Timer LOAD_CUSTOMER_INDEX_TIMER = Metrics.timer("CustomerService.loadCustomerIndex");
+    private static final Timer GET_CUSTOMER_BY_ID_TIMER = Metrics.timer("CustomerService.getCustomerById");
+    private static final Timer SAVE_CUSTOMER_TIMER = Metrics.timer("CustomerService.saveCustomer");
+    private static final Timer DELETE_CUSTOMER_TIMER = Metrics.timer("CustomerService.deleteCustomer");
+    private static final Timer IS_CUSTOMER_USED_TIMER = Metrics.timer("CustomerService.isCustomerUsedInDeliveryNotes");
+
     private final CustomerRepository customerRepository = new CustomerRepository();
+    // Shared by every screen, so a list loaded once serves them all
+    private static final CustomerCache customerCache = new CustomerCache(new CustomerRepository());
+
+    static {
+        Metrics.gauge("customerCache.size", () -> customerCache.getStats().getSize());
+        Metrics.gauge("customerCache.hits", () -> customerCache.getStats().getHits());
+        Metrics.gauge("customerCache.misses", () -> customerCache.getStats().getMisses());
+        Metrics.gauge("customerCache.evictions", () -> customerCache.getStats().getEvictions());
+        Metrics.gauge("customerCache.invalidations", () -> customerCache.getStats().getInvalidations());
+        Metrics.gauge("customerCache.hitRatio", () -> customerCache.getStats().getHitRatio());
+
+        // Screens reload as soon as another terminal's change is noticed, so don't let them read
+        // a list cached just before it
+        EventBus.subscribe(DataChanged.class, event -> {
+            if (DataVersionRepository.CUSTOMERS.equals(event.getTable())) {
+                customerCache.expireVersionCheck();
+            }
+        });
+    }
 
     public List<Customer> getAllCustomers() throws SQLException {
-        return customerRepository.findAll();
+        return GET_ALL_CUSTOMERS_TIMER.time(customerCache::findAll);
+    }
+
+    // Type-ahead suggestions: the best matches of text by name, contact person or phone
+    public List<Customer> searchCustomers(String text, int limit) throws SQLException {
+        return SEARCH_CUSTOMERS_TIMER.time(() -> customerCache.search(text, limit));
+    }
+
+    public void loadCustomerIndex() throws SQLException {
+        LOAD_CUSTOMER_INDEX_TIMER.run(customerCache::loadIndex);
     }
 
     public Optional<Customer> getCustomerById(int id) throws SQLException {
-        return customerRepository.findById(id);
+        return GET_CUSTOMER_BY_ID_TIMER.time(() -> customerCache.findById(id));
     }
 
     public Customer saveCustomer(Customer customer) throws SQLException {
-        return customerRepository.save(customer);
+        boolean created = customer.getId() == null;
+        Customer saved = SAVE_CUSTOMER_TIMER.time(() -> customerCache.save(customer));
+        EventBus.publish(new CustomerSaved(saved, created));
+        return saved;
     }
 
     public void deleteCustomer(int id) throws SQLException {
-        // First check if the customer is used in any delivery notes
-        if (isCustomerUsedInDeliveryNotes(id)) {
-            throw new SQLException("Cannot delete customer as it is used in one or more delivery notes");
-        }
+        DELETE_CUSTOMER_TIMER.run(() -> {
+            // First check if the customer is used in any delivery notes
+            if (isCustomerUsedInDeliveryNotes(id)) {
+                throw new SQLException("Cannot delete customer as it is used in one or more delivery notes");
+            }
 
-        customerRepository.delete(id);
+            customerCache.delete(id);
+        });
+        EventBus.publish(new CustomerDeleted(id));
     }
 
     public boolean isCustomerUsedInDeliveryNotes(int customerId) throws SQLException {
-        return customerRepository.isReferencedInDeliveryNotes(customerId);
+        return IS_CUSTOMER_USED_TIMER.time(() -> customerRepository.isReferencedInDeliveryNotes(customerId));
+    }
+
+    // Hit/miss counters of the shared customer cache
+    public static CustomerCache.CacheStats getCacheStats() {
+        return customerCache.getStats();
     }
 }
@@ -0,0 +1,90 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.event.DataChanged;
+import com.aarsoma.deliverynote.event.EventBus;
+import com.aarsoma.deliverynote.repository.DataVersionRepository;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Publishes DataChanged when data_versions shows writes by other terminals
+public class DataChangeWatcher {
+
+    // 0 turns the watcher off
+    private static final long INTERVAL_MILLIS = Long.getLong("deliverynote.changes.pollMs", 2000);
+    private static final String[] TABLES = {DataVersionRepository.CUSTOMERS, DataVersionRepository.DELIVERY_NOTES};
+
+    private final DataVersionRepository versionRepository = new DataVersionRepository();
+    private final Map<String, Tracked> tracked = new HashMap<>();
+    private ScheduledExecutorService scheduler;
+    private boolean failing;
+
+    public synchronized void start() {
+        if (scheduler != null || INTERVAL_MILLIS <= 0) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-change-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runOnce, 0, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void runOnce() {
+        Map<String, Long> versions;
+        try {
+            versions = versionRepository.findVersions();
+        } catch (SQLException e) {
+            // Reported once per outage; the next successful read catches up on what was missed
+            if (!failing) {
+                failing = true;
+                System.err.println("Checking for changes by other terminals failed: " + e.getMessage());
+            }
+            return;
+        }
+        failing = false;
+
+        for (String table : TABLES) {
+            // The version is read before the local count, which includes local writes not committed
+            // yet, so the remote share can look too small for a moment but never too large; only
+            // the highest remote count seen so far is acted on
+            long version = versions.getOrDefault(table, 0L);
+            long localIncrements = DataVersionRepository.getLocalIncrements(table);
+
+            Tracked state = tracked.get(table);
+            if (state == null) {
+                tracked.put(table, new Tracked(version, localIncrements));
+                continue;
+            }
+            long remote = (version - state.firstVersion) - (localIncrements - state.firstLocalIncrements);
+            if (remote > state.remoteSeen) {
+                EventBus.publish(new DataChanged(table, remote - state.remoteSeen));
+                state.remoteSeen = remote;
+            }
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    private static final class Tracked {
+        private final long firstVersion;
+        private final long firstLocalIncrements;
+        private long remoteSeen;
+
+        private Tracked(long firstVersion, long firstLocalIncrements) {
+            this.firstVersion = firstVersion;
+            this.firstLocalIncrements = firstLocalIncrements;
+        }
+    }
+}
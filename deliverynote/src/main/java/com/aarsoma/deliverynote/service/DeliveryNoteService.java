@@ -1,8 +1,15 @@
 package com.aarsoma.deliverynote.service;
 
+import com.aarsoma.deliverynote.event.DeliveryNoteSaved;
+import com.aarsoma.deliverynote.event.EventBus;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
 import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.DeliveryNotePage;
+import com.aarsoma.deliverynote.model.DeliveryNoteQuery;
 import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.List;
@@ -10,33 +17,74 @@ import java.util.Optional;
 
 public class DeliveryNoteService {
 
+    private static final Timer SAVE_DELIVERY_NOTE_TIMER = Metrics.timer("DeliveryNoteService.saveDeliveryNote");
+    private static final Timer GET_ALL_DELIVERY_NOTES_TIMER = Metrics.timer("DeliveryNoteService.getAllDeliveryNotes");
+    private static final Timer GET_DELIVERY_NOTE_BY_ID_TIMER = Metrics.timer("DeliveryNoteService.getDeliveryNoteById");
+    private static final Timer GET_DELIVERY_NOTE_BY_NUMBER_TIMER = Metrics.timer("DeliveryNoteService.getDeliveryNoteByNumber");
+    private static final Timer STREAM_DELIVERY_NOTES_BY_DATE_RANGE_TIMER = Metrics.timer("DeliveryNoteService.streamDeliveryNotesByDateRange");
+    private static final Timer GET_DELIVERY_NOTES_BY_CUSTOMER_TIMER = Metrics.timer("DeliveryNoteService.getDeliveryNotesByCustomer");
+    private static final Timer GET_DELIVERY_NOTES_BY_DATE_TIMER = Metrics.timer("DeliveryNoteService.getDeliveryNotesByDate");
+    private static final Timer GET_DELIVERY_NOTES_BY_DATE_RANGE_TIMER = Metrics.timer("DeliveryNoteService.getDeliveryNotesByDateRange");
+    private static final Timer GET_DELIVERY_NOTES_PAGE_TIMER = Metrics.timer("DeliveryNoteService.getDeliveryNotesPage");
+    private static final Timer SEARCH_DELIVERY_NOTES_TIMER = Metrics.timer("DeliveryNoteService.searchDeliveryNotes");
+    private static final Timer GENERATE_NEXT_DELIVERY_NOTE_NUMBER_TIMER = Metrics.timer("DeliveryNoteService.generateNextDeliveryNoteNumber");
+
     private final DeliveryNoteRepository deliveryNoteRepository = new DeliveryNoteRepository();
 
     public DeliveryNote saveDeliveryNote(DeliveryNote deliveryNote) throws SQLException {
-        return deliveryNoteRepository.save(deliveryNote);
+        boolean created = deliveryNote.getId() == null;
+        DeliveryNote saved = SAVE_DELIVERY_NOTE_TIMER.time(() -> deliveryNoteRepository.save(deliveryNote));
+        if (created) {
+            EventBus.publish(new DeliveryNoteSaved(saved));
+        }
+        return saved;
     }
 
     public List<DeliveryNote> getAllDeliveryNotes() throws SQLException {
-        return deliveryNoteRepository.findAll();
+        return GET_ALL_DELIVERY_NOTES_TIMER.time(deliveryNoteRepository::findAll);
     }
 
     public Optional<DeliveryNote> getDeliveryNoteById(int id) throws SQLException {
-        return deliveryNoteRepository.findById(id);
+        return GET_DELIVERY_NOTE_BY_ID_TIMER.time(() -> deliveryNoteRepository.findById(id));
+    }
+
+    public Optional<DeliveryNote> getDeliveryNoteByNumber(String noteNumber) throws SQLException {
+        return GET_DELIVERY_NOTE_BY_NUMBER_TIMER.time(() -> deliveryNoteRepository.findByNoteNumber(noteNumber));
     }
 
     public List<DeliveryNote> getDeliveryNotesByCustomer(int customerId) throws SQLException {
-        return deliveryNoteRepository.findByCustomerId(customerId);
+        return GET_DELIVERY_NOTES_BY_CUSTOMER_TIMER.time(() -> deliveryNoteRepository.findByCustomerId(customerId));
     }
 
     public List<DeliveryNote> getDeliveryNotesByDate(LocalDate date) throws SQLException {
-        return deliveryNoteRepository.findByDate(date);
+        return GET_DELIVERY_NOTES_BY_DATE_TIMER.time(() -> deliveryNoteRepository.findByDate(date));
     }
 
     public List<DeliveryNote> getDeliveryNotesByDateRange(LocalDate startDate, LocalDate endDate) throws SQLException {
-        return deliveryNoteRepository.findByDateRange(startDate, endDate);
+        return GET_DELIVERY_NOTES_BY_DATE_RANGE_TIMER.time(() -> deliveryNoteRepository.findByDateRange(startDate, endDate));
+    }
+
+    // One row per item, oldest note first, without collecting them; see DeliveryNoteRepository.streamByDateRange
+    public void streamDeliveryNotesByDateRange(LocalDate startDate, LocalDate endDate,
+                                               DeliveryNoteRepository.RowHandler handler) throws SQLException, IOException {
+        long startedAt = System.nanoTime();
+        try {
+            deliveryNoteRepository.streamByDateRange(startDate, endDate, handler);
+        } finally {
+            STREAM_DELIVERY_NOTES_BY_DATE_RANGE_TIMER.recordSince(startedAt);
+        }
+    }
+
+    public DeliveryNotePage getDeliveryNotesPage(DeliveryNoteQuery query, DeliveryNote after, int pageSize) throws SQLException {
+        return GET_DELIVERY_NOTES_PAGE_TIMER.time(() -> deliveryNoteRepository.findPage(query, after, pageSize));
+    }
+
+    // Notes matching every word of text in their number, items or customer, best matches first
+    public List<DeliveryNote> searchDeliveryNotes(String text, int limit) throws SQLException {
+        return SEARCH_DELIVERY_NOTES_TIMER.time(() -> deliveryNoteRepository.search(text, limit));
     }
 
     public String generateNextDeliveryNoteNumber() throws SQLException {
-        return deliveryNoteRepository.generateNextDeliveryNoteNumber();
+        return GENERATE_NEXT_DELIVERY_NOTE_NUMBER_TIMER.time(deliveryNoteRepository::generateNextDeliveryNoteNumber);
     }
 }
@@ -0,0 +1,269 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.metrics.Counter;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
+import com.aarsoma.deliverynote.model.DeliveryNoteRow;
+import com.aarsoma.deliverynote.model.ExportFormat;
+import com.aarsoma.deliverynote.model.ExportResult;
+import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
+import com.aarsoma.deliverynote.util.CsvWriter;
+import com.aarsoma.deliverynote.util.DeliveryNoteJson;
+import com.aarsoma.deliverynote.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+// Streams the notes of a date range to a CSV or JSON Lines file, written under a .part name
+// until complete
+public class ExportService {
+
+    // Whole exports that finished or were stopped, and the rows they wrote
+    private static final Timer EXPORT_TIMER = Metrics.timer("ExportService.export");
+    private static final Counter ROWS_EXPORTED = Metrics.counter("ExportService.rowsExported");
+
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Same layout the import reads
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // One export at a time, off the data-access threads like imports
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DeliveryNoteRepository deliveryNoteRepository = new DeliveryNoteRepository();
+
+    private volatile boolean cancelRequested;
+
+    public CompletableFuture<ExportResult> exportDeliveryNotesAsync(LocalDate startDate, LocalDate endDate,
+                                                                    Path file, ExportFormat format, boolean gzip,
+                                                                    Consumer<ExportResult> onProgress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return exportDeliveryNotes(startDate, endDate, file, format, gzip, onProgress);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // Stop at the next row; the partial file is deleted
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    // Notes issued from startDate to endDate inclusive, oldest first
+    public ExportResult exportDeliveryNotes(LocalDate startDate, LocalDate endDate, Path file, ExportFormat format,
+                                            boolean gzip, Consumer<ExportResult> onProgress)
+            throws IOException, SQLException {
+        cancelRequested = false;
+        Path partFile = file.resolveSibling(file.getFileName() + ".part");
+        Progress progress = new Progress(file, onProgress);
+        boolean complete = false;
+
+        try {
+            try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                progress.channel = channel;
+
+                OutputStream out = Channels.newOutputStream(channel);
+                if (gzip) {
+                    out = new GZIPOutputStream(out, BUFFER_SIZE);
+                }
+
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                    RowWriter rowWriter = format == ExportFormat.JSON_LINES
+                            ? new JsonLinesRowWriter(writer)
+                            : new CsvRowWriter(writer);
+
+                    deliveryNoteRepository.streamByDateRange(startDate, endDate, row -> {
+                        rowWriter.write(row);
+                        progress.row(row);
+                        progress.maybeReport();
+                        return !cancelRequested;
+                    });
+                    rowWriter.finish();
+                }
+            }
+
+            if (cancelRequested) {
+                return progress.cancelled();
+            }
+
+            progress.result.setBytesWritten(Files.size(partFile));
+            moveIntoPlace(partFile, file);
+            complete = true;
+            return progress.finished();
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(partFile);
+            }
+        }
+    }
+
+    // Replace file with the complete partFile
+    static void moveIntoPlace(Path partFile, Path file) throws IOException {
+        try {
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private interface RowWriter {
+        void write(DeliveryNoteRow row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    // One line per item with the import's columns, so an export can be imported elsewhere
+    private static final class CsvRowWriter implements RowWriter {
+        private final CsvWriter csv;
+
+        private CsvRowWriter(Writer writer) throws IOException {
+            this.csv = new CsvWriter(writer);
+            csv.writeRecord("note_number", "issue_date", "financial_year", "customer",
+                    "item_name", "ordered_qty", "delivered_qty", "balance_qty");
+        }
+
+        @Override
+        public void write(DeliveryNoteRow row) throws IOException {
+            csv.writeField(row.getNoteNumber());
+            csv.writeField(row.getIssueDate().format(DATE_TIME_FORMAT));
+            csv.writeField(row.getFinancialYear());
+            csv.writeField(row.getCustomerName());
+            if (row.getItemId() != null) {
+                csv.writeField(row.getItemName());
+                csv.writeField(row.getOrderedQty());
+                csv.writeField(row.getDeliveredQty());
+                csv.writeField(row.getBalanceQty());
+            } else {
+                // A note without items still gets a line, with the item columns left empty; the
+                // import reads it back as a note without items
+                csv.writeRecord("", "", "", "");
+                return;
+            }
+            csv.endRecord();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            csv.flush();
+        }
+    }
+
+    // One object per note with its customer and items, in the layout of the API; a note's line is
+    // written as its rows arrive
+    private static final class JsonLinesRowWriter implements RowWriter {
+        private final JsonWriter json;
+        private final DeliveryNoteJson.RowWriter notes;
+
+        private JsonLinesRowWriter(Writer writer) {
+            this.json = new JsonWriter(writer);
+            this.notes = new DeliveryNoteJson.RowWriter(json);
+        }
+
+        @Override
+        public void write(DeliveryNoteRow row) throws IOException {
+            notes.write(row);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            notes.finish();
+            json.flush();
+        }
+    }
+
+    // The running result, handed to the listener as snapshots at most every 250 ms
+    private static final class Progress {
+        private final ExportResult result = new ExportResult();
+        private final Consumer<ExportResult> listener;
+        private final long startedAt = System.nanoTime();
+        private long lastReportAt = startedAt;
+        private FileChannel channel;
+        private boolean inNote;
+        private int noteId;
+
+        private Progress(Path file, Consumer<ExportResult> listener) {
+            this.listener = listener;
+            result.setFileName(file.getFileName().toString());
+        }
+
+        private void row(DeliveryNoteRow row) {
+            result.setRowsWritten(result.getRowsWritten() + 1);
+            if (!inNote || row.getNoteId() != noteId) {
+                inNote = true;
+                noteId = row.getNoteId();
+                result.setNotesWritten(result.getNotesWritten() + 1);
+            }
+        }
+
+        private void maybeReport() throws IOException {
+            long now = System.nanoTime();
+            if (listener != null && now - lastReportAt >= PROGRESS_INTERVAL_NANOS) {
+                lastReportAt = now;
+                // Excludes what is still buffered, which is at most a few buffers
+                result.setBytesWritten(channel.position());
+                listener.accept(snapshot());
+            }
+        }
+
+        private ExportResult finished() {
+            result.setFinished(true);
+            return report();
+        }
+
+        private ExportResult cancelled() {
+            result.setCancelled(true);
+            return report();
+        }
+
+        private ExportResult report() {
+            EXPORT_TIMER.recordSince(startedAt);
+            ROWS_EXPORTED.add(result.getRowsWritten());
+
+            ExportResult last = snapshot();
+            if (listener != null) {
+                listener.accept(last);
+            }
+            return last;
+        }
+
+        private ExportResult snapshot() {
+            ExportResult copy = new ExportResult();
+            copy.setFileName(result.getFileName());
+            copy.setNotesWritten(result.getNotesWritten());
+            copy.setRowsWritten(result.getRowsWritten());
+            copy.setBytesWritten(result.getBytesWritten());
+            copy.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            copy.setFinished(result.isFinished());
+            copy.setCancelled(result.isCancelled());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.metrics.Counter;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.ImportResult;
+import com.aarsoma.deliverynote.model.ImportRowError;
+import com.aarsoma.deliverynote.repository.CustomerRepository;
+import com.aarsoma.deliverynote.repository.DataVersionRepository;
+import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
+import com.aarsoma.deliverynote.repository.ImportCheckpointRepository;
+import com.aarsoma.deliverynote.util.CsvReader;
+import com.aarsoma.deliverynote.util.ValidationUtil;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Streaming CSV import of customers and delivery notes in batches, resuming after the last
+// committed batch; see README.md for the columns
+public class ImportService {
+
+    // Whole imports that finished or were stopped, and the rows they wrote or rejected
+    private static final Timer IMPORT_TIMER = Metrics.timer("ImportService.import");
+    private static final Counter ROWS_IMPORTED = Metrics.counter("ImportService.rowsImported");
+    private static final Counter ROWS_REJECTED = Metrics.counter("ImportService.rowsRejected");
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd[ HH:mm[:ss]]"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm[:ss]"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy[ HH:mm[:ss]]"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy[ HH:mm[:ss]]"));
+
+    // One import at a time; imports are long-running, so they don't share the data-access threads
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CustomerRepository customerRepository = new CustomerRepository();
+    private final DeliveryNoteRepository deliveryNoteRepository = new DeliveryNoteRepository();
+    private final ImportCheckpointRepository checkpointRepository = new ImportCheckpointRepository();
+    private final int batchSize;
+
+    private volatile boolean cancelRequested;
+
+    public ImportService() {
+        this(Integer.getInteger("deliverynote.import.batchSize", 1000));
+    }
+
+    public ImportService(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public CompletableFuture<ImportResult> importCustomersAsync(Path file, Consumer<ImportResult> onProgress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return importCustomers(file, onProgress);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<ImportResult> importDeliveryNotesAsync(Path file, Consumer<ImportResult> onProgress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return importDeliveryNotes(file, onProgress);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // Stop after the current batch; the import can be resumed later from its checkpoint
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    // Columns: name (required), address, contact_person, phone, email
+    public ImportResult importCustomers(Path file, Consumer<ImportResult> onProgress) throws IOException, SQLException {
+        cancelRequested = false;
+        String importKey = "customers:" + file.toAbsolutePath().normalize();
+        long fileSize = Files.size(file);
+        Progress progress = new Progress(file, onProgress);
+
+        long skip = checkpointRepository.findRecordsDone(importKey, fileSize);
+        progress.result.setResumedFromRecord(skip);
+
+        try (CsvReader csv = openCsv(file)) {
+            Columns columns = Columns.read(csv, "name");
+            List<Customer> batch = new ArrayList<>(batchSize);
+            long record = 0;
+
+            List<String> row;
+            while ((row = csv.readRecord()) != null) {
+                record++;
+                progress.result.setRecordsRead(record);
+                if (record <= skip) {
+                    continue;
+                }
+
+                Customer customer = parseCustomer(row, columns, csv.getRecordLineNumber(), progress);
+                if (customer != null) {
+                    batch.add(customer);
+                }
+
+                if (batch.size() >= batchSize) {
+                    writeCustomers(batch, importKey, fileSize, record);
+                    progress.result.setImported(progress.result.getImported() + batch.size());
+                    batch.clear();
+                    if (cancelRequested) {
+                        return progress.cancelled();
+                    }
+                }
+                progress.maybeReport();
+            }
+
+            writeCustomers(batch, importKey, fileSize, record);
+            progress.result.setImported(progress.result.getImported() + batch.size());
+        }
+
+        checkpointRepository.delete(importKey);
+        return progress.finished();
+    }
+
+    // Columns: note_number, issue_date, customer (name), item_name, ordered_qty, delivered_qty and
+    // optionally balance_qty; one row per item, with the rows of a note next to each other. A note
+    // without items is a single row with the item columns left empty, as the export writes it
+    public ImportResult importDeliveryNotes(Path file, Consumer<ImportResult> onProgress) throws IOException, SQLException {
+        cancelRequested = false;
+        String importKey = "delivery_notes:" + file.toAbsolutePath().normalize();
+        long fileSize = Files.size(file);
+        Progress progress = new Progress(file, onProgress);
+
+        long skip = checkpointRepository.findRecordsDone(importKey, fileSize);
+        progress.result.setResumedFromRecord(skip);
+
+        Map<String, Integer> customerIds = customerRepository.findIdsByName();
+
+        try (CsvReader csv = openCsv(file)) {
+            Columns columns = Columns.read(csv, "note_number", "issue_date", "customer",
+                    "item_name", "ordered_qty", "delivered_qty");
+
+            List<DeliveryNote> batch = new ArrayList<>(batchSize);
+            Set<String> batchNumbers = new HashSet<>();
+            PendingNote current = null;
+            long record = 0;
+
+            List<String> row;
+            while ((row = csv.readRecord()) != null) {
+                record++;
+                progress.result.setRecordsRead(record);
+                if (record <= skip) {
+                    continue;
+                }
+
+                long line = csv.getRecordLineNumber();
+                String noteNumber = columns.get(row, "note_number");
+
+                if (current != null && !current.note.getNoteNumber().equals(noteNumber)) {
+                    // The previous note is complete
+                    if (addNote(current, batch, batchNumbers, progress) && batch.size() >= batchSize) {
+                        // Every record before this one belongs to a finished note
+                        writeNotes(batch, importKey, fileSize, record - 1, progress);
+                        batch.clear();
+                        batchNumbers.clear();
+                        if (cancelRequested) {
+                            return progress.cancelled();
+                        }
+                    }
+                    current = null;
+                }
+
+                if (current == null) {
+                    current = startNote(row, columns, line, customerIds, batchNumbers, progress);
+                } else {
+                    checkSameNote(current, row, columns, line, progress);
+                }
+
+                current.rows++;
+                if (hasNoItem(row, columns)) {
+                    if (current.noItemLine == 0) {
+                        current.noItemLine = line;
+                    }
+                } else {
+                    DeliveryItem item = parseItem(row, columns, line, progress);
+                    if (item != null) {
+                        current.note.getItems().add(item);
+                    } else {
+                        current.valid = false;
+                    }
+                }
+                progress.maybeReport();
+            }
+
+            if (current != null) {
+                addNote(current, batch, batchNumbers, progress);
+            }
+            writeNotes(batch, importKey, fileSize, record, progress);
+        }
+
+        checkpointRepository.delete(importKey);
+        return progress.finished();
+    }
+
+    private CsvReader openCsv(Path file) throws IOException {
+        return new CsvReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private void writeCustomers(List<Customer> batch, String importKey, long fileSize, long recordsDone)
+            throws SQLException {
+        try (Connection conn = DBConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                customerRepository.upsertAll(batch, conn);
+                checkpointRepository.save(conn, importKey, fileSize, recordsDone);
+                conn.commit();
+                DataVersionRepository.committed(conn);
+            } catch (SQLException e) {
+                conn.rollback();
+                DataVersionRepository.rolledBack(conn);
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void writeNotes(List<DeliveryNote> batch, String importKey, long fileSize, long recordsDone,
+                            Progress progress) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            try (Connection conn = DBConfig.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    // Skip notes imported earlier, e.g. when the same file is imported again
+                    List<String> numbers = new ArrayList<>(batch.size());
+                    for (DeliveryNote note : batch) {
+                        numbers.add(note.getNoteNumber());
+                    }
+                    Set<String> existing = deliveryNoteRepository.findExistingNoteNumbers(numbers, conn);
+
+                    List<DeliveryNote> newNotes = new ArrayList<>(batch.size());
+                    for (DeliveryNote note : batch) {
+                        if (!existing.contains(note.getNoteNumber())) {
+                            newNotes.add(note);
+                        }
+                    }
+
+                    deliveryNoteRepository.insertAll(newNotes, conn);
+                    checkpointRepository.save(conn, importKey, fileSize, recordsDone);
+                    conn.commit();
+                    DataVersionRepository.committed(conn);
+
+                    progress.result.setImported(progress.result.getImported() + newNotes.size());
+                    progress.result.setAlreadyPresent(progress.result.getAlreadyPresent() + existing.size());
+                    return;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    DataVersionRepository.rolledBack(conn);
+                    // 23505: a terminal saved a note with one of these numbers meanwhile, check again
+                    if (attempt > 0 || !"23505".equals(e.getSQLState())) {
+                        throw e;
+                    }
+                    for (DeliveryNote note : batch) {
+                        note.setId(null);
+                    }
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    private Customer parseCustomer(List<String> row, Columns columns, long line, Progress progress) {
+        String name = columns.get(row, "name");
+        String address = columns.get(row, "address");
+        String contactPerson = columns.get(row, "contact_person");
+        String phone = columns.get(row, "phone");
+        String email = columns.get(row, "email");
+
+        String error = null;
+        if (name.isEmpty()) {
+            error = "Customer name is required";
+        } else if (name.length() > 100) {
+            error = "Customer name is longer than 100 characters";
+        } else if (address.length() > 200) {
+            error = "Address is longer than 200 characters";
+        } else if (contactPerson.length() > 100) {
+            error = "Contact person is longer than 100 characters";
+        } else if (phone.length() > 20 || !ValidationUtil.isValidPhone(phone)) {
+            error = "Invalid phone number: " + phone;
+        } else if (email.length() > 100 || !ValidationUtil.isValidEmail(email)) {
+            error = "Invalid email: " + email;
+        }
+
+        if (error != null) {
+            progress.error(line, error);
+            progress.result.setRejected(progress.result.getRejected() + 1);
+            return null;
+        }
+
+        Customer customer = new Customer();
+        customer.setName(name);
+        customer.setAddress(address);
+        customer.setContactPerson(contactPerson);
+        customer.setPhone(phone);
+        customer.setEmail(email);
+        return customer;
+    }
+
+    private PendingNote startNote(List<String> row, Columns columns, long line, Map<String, Integer> customerIds,
+                                  Set<String> batchNumbers, Progress progress) {
+        DeliveryNote note = new DeliveryNote();
+        note.setNoteNumber(columns.get(row, "note_number"));
+        PendingNote pending = new PendingNote(note, line);
+
+        if (note.getNoteNumber().isEmpty()) {
+            pending.reject(progress, line, "Note number is required");
+        } else if (note.getNoteNumber().length() > 20) {
+            pending.reject(progress, line, "Note number is longer than 20 characters");
+        } else if (batchNumbers.contains(note.getNoteNumber())) {
+            pending.reject(progress, line, "Rows of note " + note.getNoteNumber() + " must be next to each other");
+        }
+
+        String issueDate = columns.get(row, "issue_date");
+        pending.issueDate = issueDate;
+        note.setIssueDate(parseDateTime(issueDate));
+        if (note.getIssueDate() == null) {
+            pending.reject(progress, line, "Invalid issue date: " + issueDate);
+        }
+
+        String customerName = columns.get(row, "customer");
+        pending.customerName = customerName;
+        Integer customerId = customerIds.get(customerName);
+        if (customerId == null) {
+            pending.reject(progress, line, "Unknown customer: " + customerName);
+        } else {
+            note.setCustomerId(customerId);
+        }
+
+        return pending;
+    }
+
+    // Every row of a note must repeat the note's date and customer
+    private void checkSameNote(PendingNote pending, List<String> row, Columns columns, long line, Progress progress) {
+        String issueDate = columns.get(row, "issue_date");
+        if (!pending.issueDate.equals(issueDate) && !Objects.equals(pending.note.getIssueDate(), parseDateTime(issueDate))) {
+            pending.reject(progress, line, "Issue date differs from the note's first row (line " + pending.firstLine + ")");
+        }
+        if (!pending.customerName.equals(columns.get(row, "customer"))) {
+            pending.reject(progress, line, "Customer differs from the note's first row (line " + pending.firstLine + ")");
+        }
+    }
+
+    private static boolean hasNoItem(List<String> row, Columns columns) {
+        return columns.get(row, "item_name").isEmpty() && columns.get(row, "ordered_qty").isEmpty()
+                && columns.get(row, "delivered_qty").isEmpty() && columns.get(row, "balance_qty").isEmpty();
+    }
+
+    private DeliveryItem parseItem(List<String> row, Columns columns, long line, Progress progress) {
+        String itemName = columns.get(row, "item_name");
+        if (itemName.isEmpty()) {
+            progress.error(line, "Item name is required");
+            return null;
+        }
+        if (itemName.length() > 100) {
+            progress.error(line, "Item name is longer than 100 characters");
+            return null;
+        }
+
+        Integer orderedQty = parseQuantity(columns.get(row, "ordered_qty"));
+        Integer deliveredQty = parseQuantity(columns.get(row, "delivered_qty"));
+        if (orderedQty == null || deliveredQty == null) {
+            progress.error(line, "Quantities must be whole numbers of at least 0");
+            return null;
+        }
+
+        String balance = columns.get(row, "balance_qty");
+        Integer balanceQty = balance.isEmpty() ? Integer.valueOf(orderedQty - deliveredQty) : parseQuantity(balance);
+        if (balanceQty == null) {
+            progress.error(line, "Invalid balance quantity: " + balance);
+            return null;
+        }
+
+        DeliveryItem item = new DeliveryItem();
+        item.setItemName(itemName);
+        item.setOrderedQty(orderedQty);
+        item.setDeliveredQty(deliveredQty);
+        item.setBalanceQty(balanceQty);
+        return item;
+    }
+
+    // Adds a complete note to the batch, or counts it as rejected; returns whether it was added
+    private boolean addNote(PendingNote pending, List<DeliveryNote> batch, Set<String> batchNumbers, Progress progress) {
+        if (pending.noItemLine > 0 && pending.rows > 1) {
+            // Only a note without items may have a row without one
+            pending.reject(progress, pending.noItemLine, "Item name is required");
+        }
+        if (!pending.valid) {
+            progress.result.setRejected(progress.result.getRejected() + 1);
+            return false;
+        }
+        batch.add(pending.note);
+        batchNumbers.add(pending.note.getNoteNumber());
+        return true;
+    }
+
+    private static Integer parseQuantity(String value) {
+        if (!ValidationUtil.isValidNumber(value)) {
+            return null;
+        }
+        int quantity = Integer.parseInt(value);
+        return quantity < 0 ? null : quantity;
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                TemporalAccessor parsed = format.parseBest(value, LocalDateTime::from, LocalDate::from);
+                return parsed instanceof LocalDateTime
+                        ? (LocalDateTime) parsed
+                        : ((LocalDate) parsed).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        return null;
+    }
+
+    // Rows of the note currently being read
+    private static final class PendingNote {
+        private final DeliveryNote note;
+        private final long firstLine;
+        // As written in the note's first row, so later rows are usually compared without parsing
+        private String issueDate;
+        private String customerName;
+        private int rows;
+        // First row with empty item columns, 0 if none
+        private long noItemLine;
+        private boolean valid = true;
+
+        private PendingNote(DeliveryNote note, long firstLine) {
+            this.note = note;
+            this.firstLine = firstLine;
+        }
+
+        private void reject(Progress progress, long line, String message) {
+            valid = false;
+            progress.error(line, message);
+        }
+    }
+
+    // Header positions, matched case-insensitively with spaces and dashes treated as underscores
+    private static final class Columns {
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        private static Columns read(CsvReader csv, String... required) throws IOException {
+            List<String> header = csv.readRecord();
+            if (header == null) {
+                throw new IOException("The file is empty");
+            }
+
+            Columns columns = new Columns();
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).replace("\uFEFF", "").trim()
+                        .toLowerCase(Locale.ROOT).replace(' ', '_').replace('-', '_');
+                columns.indexes.putIfAbsent(name, i);
+            }
+            if (!columns.indexes.containsKey("customer") && columns.indexes.containsKey("customer_name")) {
+                columns.indexes.put("customer", columns.indexes.get("customer_name"));
+            }
+
+            for (String column : required) {
+                if (!columns.indexes.containsKey(column)) {
+                    throw new IOException("Missing column \"" + column + "\" in the header row");
+                }
+            }
+            return columns;
+        }
+
+        // Trimmed value, or "" when the column is absent or the row is short
+        private String get(List<String> row, String column) {
+            Integer index = indexes.get(column);
+            return index == null || index >= row.size() ? "" : row.get(index).trim();
+        }
+    }
+
+    // The running result, handed to the listener as snapshots at most every 250 ms
+    private static final class Progress {
+        private final ImportResult result = new ImportResult();
+        private final Consumer<ImportResult> listener;
+        private final long startedAt = System.nanoTime();
+        private long lastReportAt = startedAt;
+
+        private Progress(Path file, Consumer<ImportResult> listener) {
+            this.listener = listener;
+            result.setFileName(file.getFileName().toString());
+        }
+
+        private void error(long line, String message) {
+            result.setErrorCount(result.getErrorCount() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add(new ImportRowError(line, message));
+            }
+        }
+
+        private void maybeReport() {
+            long now = System.nanoTime();
+            if (listener != null && now - lastReportAt >= PROGRESS_INTERVAL_NANOS) {
+                lastReportAt = now;
+                listener.accept(snapshot());
+            }
+        }
+
+        private ImportResult finished() {
+            result.setFinished(true);
+            return report();
+        }
+
+        private ImportResult cancelled() {
+            result.setCancelled(true);
+            return report();
+        }
+
+        private ImportResult report() {
+            IMPORT_TIMER.recordSince(startedAt);
+            ROWS_IMPORTED.add(result.getImported());
+            ROWS_REJECTED.add(result.getRejected());
+
+            ImportResult last = snapshot();
+            if (listener != null) {
+                listener.accept(last);
+            }
+            return last;
+        }
+
+        private ImportResult snapshot() {
+            ImportResult copy = new ImportResult();
+            copy.setFileName(result.getFileName());
+            copy.setRecordsRead(result.getRecordsRead());
+            copy.setResumedFromRecord(result.getResumedFromRecord());
+            copy.setImported(result.getImported());
+            copy.setAlreadyPresent(result.getAlreadyPresent());
+            copy.setRejected(result.getRejected());
+            copy.setErrorCount(result.getErrorCount());
+            copy.setErrors(new ArrayList<>(result.getErrors()));
+            copy.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            copy.setFinished(result.isFinished());
+            copy.setCancelled(result.isCancelled());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.metrics.Counter;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.DeliveryNotePage;
+import com.aarsoma.deliverynote.model.DeliveryNoteQuery;
+import com.aarsoma.deliverynote.model.PdfExportResult;
+import com.aarsoma.deliverynote.print.DeliveryNoteTemplate;
+import com.aarsoma.deliverynote.print.PdfRenderer;
+import com.aarsoma.deliverynote.print.PdfTextMeasurer;
+import com.aarsoma.deliverynote.print.PrintPage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// One PDF per note into a folder or zip, rendered by deliverynote.pdf.threads threads while the
+// next page of notes is read
+public class PdfExportService {
+
+    // Whole exports that finished or were stopped, and the notes they wrote
+    private static final Timer EXPORT_TIMER = Metrics.timer("PdfExportService.export");
+    private static final Timer COMPILE_TEMPLATE_TIMER = Metrics.timer("PdfExportService.compileTemplate");
+    // Layout and PDF of one note, on a render thread
+    private static final Timer RENDER_TIMER = Metrics.timer("PdfExportService.render");
+    private static final Counter NOTES_EXPORTED = Metrics.counter("PdfExportService.notesExported");
+
+    private static final int BATCH_SIZE = 200;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final int THREADS = Math.max(1,
+            Integer.getInteger("deliverynote.pdf.threads", Runtime.getRuntime().availableProcessors()));
+
+    // One export at a time, like the other exports
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pdf-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Fork-join worker threads are daemons already
+    private static final ForkJoinPool renderPool = new ForkJoinPool(THREADS, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("pdf-render-" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+
+    private static DeliveryNoteTemplate template;
+    private static PdfRenderer renderer;
+
+    private final DeliveryNoteService deliveryNoteService = new DeliveryNoteService();
+
+    private volatile boolean cancelRequested;
+
+    public CompletableFuture<PdfExportResult> exportPdfsAsync(DeliveryNoteQuery query, Path target, boolean zip,
+                                                             Consumer<PdfExportResult> onProgress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return exportPdfs(query, target, zip, onProgress);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // Stop after the notes being rendered; a partial zip is deleted
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    // Notes matching query, oldest first, into the folder target or, with zip, the zip file target
+    public PdfExportResult exportPdfs(DeliveryNoteQuery query, Path target, boolean zip,
+                                      Consumer<PdfExportResult> onProgress) throws IOException, SQLException {
+        cancelRequested = false;
+        compileTemplate();
+        DeliveryNoteQuery oldestFirst = oldestFirst(query);
+        Progress progress = new Progress(target, onProgress);
+
+        if (!zip) {
+            Files.createDirectories(target);
+            boolean complete = exportNotes(oldestFirst, note -> writeToFolder(note, target), rendered -> {
+                progress.note(rendered);
+                progress.result.setBytesWritten(progress.result.getBytesWritten() + rendered.size);
+            }, progress);
+            return complete ? progress.finished() : progress.cancelled();
+        }
+
+        Path partFile = target.resolveSibling(target.getFileName() + ".part");
+        boolean complete = false;
+        try {
+            try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(partFile), BUFFER_SIZE))) {
+                complete = exportNotes(oldestFirst, PdfExportService::writeToMemory, rendered -> {
+                    out.putNextEntry(new ZipEntry(rendered.fileName));
+                    out.write(rendered.pdf);
+                    out.closeEntry();
+                    progress.note(rendered);
+                    progress.result.setBytesWritten(progress.result.getBytesWritten() + rendered.size);
+                }, progress);
+            }
+            if (!complete) {
+                return progress.cancelled();
+            }
+
+            progress.result.setBytesWritten(Files.size(partFile));
+            ExportService.moveIntoPlace(partFile, target);
+            return progress.finished();
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(partFile);
+            }
+        }
+    }
+
+    // Render the notes of query on the pool one page at a time and hand them to handler in order;
+    // false if cancelled
+    private boolean exportNotes(DeliveryNoteQuery query, RenderTask task, RenderedHandler handler, Progress progress)
+            throws IOException, SQLException {
+        DeliveryNotePage page = deliveryNoteService.getDeliveryNotesPage(query, null, BATCH_SIZE);
+        while (!page.getNotes().isEmpty()) {
+            List<ForkJoinTask<Rendered>> batch = new ArrayList<>(page.getNotes().size());
+            for (DeliveryNote note : page.getNotes()) {
+                batch.add(renderPool.submit(() -> cancelRequested ? null : RENDER_TIMER.time(() -> task.render(note))));
+            }
+
+            boolean handledAll = false;
+            try {
+                DeliveryNotePage next = page.isHasMore()
+                        ? deliveryNoteService.getDeliveryNotesPage(query, page.getLastNote(), BATCH_SIZE)
+                        : new DeliveryNotePage();
+                for (ForkJoinTask<Rendered> rendering : batch) {
+                    Rendered rendered = result(rendering);
+                    if (rendered == null) {
+                        return false;
+                    }
+                    handler.handle(rendered);
+                    progress.maybeReport();
+                }
+                handledAll = true;
+                page = next;
+            } finally {
+                // Nothing of this batch may still be writing once the export returns; after a
+                // failure the notes not yet started skip themselves as when stopped
+                if (!handledAll) {
+                    cancelRequested = true;
+                }
+                for (ForkJoinTask<Rendered> rendering : batch) {
+                    rendering.quietlyJoin();
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Rendered writeToFolder(DeliveryNote note, Path folder) throws IOException {
+        List<PrintPage> pages = template.layout(note);
+        String fileName = fileName(note);
+        Path file = folder.resolve(fileName);
+        Path partFile = folder.resolve(fileName + ".part");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partFile), BUFFER_SIZE)) {
+                renderer.write(pages, title(note), out);
+            }
+            ExportService.moveIntoPlace(partFile, file);
+        } finally {
+            Files.deleteIfExists(partFile);
+        }
+        return new Rendered(fileName, null, Files.size(file), pages.size());
+    }
+
+    private static Rendered writeToMemory(DeliveryNote note) throws IOException {
+        List<PrintPage> pages = template.layout(note);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 * 1024);
+        renderer.write(pages, title(note), out);
+        byte[] pdf = out.toByteArray();
+        return new Rendered(fileName(note), pdf, pdf.length, pages.size());
+    }
+
+    private static Rendered result(ForkJoinTask<Rendered> rendering) throws IOException {
+        try {
+            return rendering.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PDF export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Could not write a PDF", cause);
+        }
+    }
+
+    private static synchronized void compileTemplate() {
+        if (template == null) {
+            COMPILE_TEMPLATE_TIMER.run(() -> {
+                PdfTextMeasurer measurer = new PdfTextMeasurer();
+                template = DeliveryNoteTemplate.compile(measurer);
+                renderer = new PdfRenderer(measurer);
+            });
+        }
+    }
+
+    private static DeliveryNoteQuery oldestFirst(DeliveryNoteQuery query) {
+        DeliveryNoteQuery copy = new DeliveryNoteQuery();
+        copy.setCustomerId(query.getCustomerId());
+        copy.setStartDate(query.getStartDate());
+        copy.setEndDate(query.getEndDate());
+        copy.setAscending(true);
+        return copy;
+    }
+
+    // Note numbers only hold letters, digits and dashes, but are not trusted with the file system
+    private static String fileName(DeliveryNote note) {
+        return note.getNoteNumber().replaceAll("[^A-Za-z0-9._-]", "_") + ".pdf";
+    }
+
+    private static String title(DeliveryNote note) {
+        return "Delivery Note " + note.getNoteNumber();
+    }
+
+    private interface RenderTask {
+        Rendered render(DeliveryNote note) throws IOException;
+    }
+
+    private interface RenderedHandler {
+        void handle(Rendered rendered) throws IOException;
+    }
+
+    // One note's PDF; pdf is only kept when it goes into a zip
+    private static final class Rendered {
+        private final String fileName;
+        private final byte[] pdf;
+        private final long size;
+        private final int pages;
+
+        private Rendered(String fileName, byte[] pdf, long size, int pages) {
+            this.fileName = fileName;
+            this.pdf = pdf;
+            this.size = size;
+            this.pages = pages;
+        }
+    }
+
+    // The running result, handed to the listener as snapshots at most every 250 ms
+    private static final class Progress {
+        private final PdfExportResult result = new PdfExportResult();
+        private final Consumer<PdfExportResult> listener;
+        private final long startedAt = System.nanoTime();
+        private long lastReportAt = startedAt;
+
+        private Progress(Path target, Consumer<PdfExportResult> listener) {
+            this.listener = listener;
+            result.setTarget(target.toString());
+        }
+
+        private void note(Rendered rendered) {
+            result.setNotesWritten(result.getNotesWritten() + 1);
+            result.setPagesWritten(result.getPagesWritten() + rendered.pages);
+        }
+
+        private void maybeReport() {
+            long now = System.nanoTime();
+            if (listener != null && now - lastReportAt >= PROGRESS_INTERVAL_NANOS) {
+                lastReportAt = now;
+                listener.accept(snapshot());
+            }
+        }
+
+        private PdfExportResult finished() {
+            result.setFinished(true);
+            return report();
+        }
+
+        private PdfExportResult cancelled() {
+            result.setCancelled(true);
+            return report();
+        }
+
+        private PdfExportResult report() {
+            EXPORT_TIMER.recordSince(startedAt);
+            NOTES_EXPORTED.add(result.getNotesWritten());
+
+            PdfExportResult last = snapshot();
+            if (listener != null) {
+                listener.accept(last);
+            }
+            return last;
+        }
+
+        private PdfExportResult snapshot() {
+            PdfExportResult copy = new PdfExportResult();
+            copy.setTarget(result.getTarget());
+            copy.setNotesWritten(result.getNotesWritten());
+            copy.setPagesWritten(result.getPagesWritten());
+            copy.setBytesWritten(result.getBytesWritten());
+            copy.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            copy.setFinished(result.isFinished());
+            copy.setCancelled(result.isCancelled());
+            return copy;
+        }
+    }
+}
@@ -1,44 +1,93 @@
 package com.aarsoma.deliverynote.service;
 
+import com.aarsoma.deliverynote.controller.PrintPreviewController;
+import com.aarsoma.deliverynote.metrics.Counter;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
 import com.aarsoma.deliverynote.model.DeliveryNote;
-/*
-import net.sf.jasperreports.engine.*;
-import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
-import net.sf.jasperreports.view.JasperViewer;
-*/
+import com.aarsoma.deliverynote.print.DeliveryNoteTemplate;
+import com.aarsoma.deliverynote.print.FxPageRenderer;
+import com.aarsoma.deliverynote.print.FxTextMeasurer;
+import com.aarsoma.deliverynote.print.PrintPage;
+import com.aarsoma.deliverynote.util.AlertUtil;
+import com.aarsoma.deliverynote.util.ViewLoader;
+import javafx.fxml.FXMLLoader;
+import javafx.print.PageLayout;
+import javafx.print.PrinterJob;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import javafx.stage.Window;
 
-import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+// Lays out and prints notes with the cached A5 template on one background thread
 public class PrintService {
 
-    public void printDeliveryNote(DeliveryNote deliveryNote) {
-       /* try {
-            // Load report template
-            InputStream reportTemplate = getClass().getResourceAsStream("/com/aarsoma/deliverynote/reports/DeliveryNote.jasper");
-
-            // Prepare parameters
-            Map<String, Object> parameters = new HashMap<>();
-            parameters.put("NOTE_NUMBER", deliveryNote.getNoteNumber());
-            parameters.put("CUSTOMER_NAME", deliveryNote.getCustomer().getName());
-            parameters.put("CUSTOMER_ADDRESS", deliveryNote.getCustomer().getAddress());
-            parameters.put("ISSUE_DATE", deliveryNote.getIssueDate());
-            parameters.put("FOOTER_TEXT", "This is a system generated Delivery Note & does not require a physical signature");
-
-            // Create data source from delivery items
-            JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(deliveryNote.getItems());
-
-            // Fill report
-            JasperPrint jasperPrint = JasperFillManager.fillReport(reportTemplate, parameters, dataSource);
-
-            // Show print preview
-            JasperViewer viewer = new JasperViewer(jasperPrint, false);
-            viewer.setTitle("Print Preview - Delivery Note #" + deliveryNote.getNoteNumber());
-            viewer.setVisible(true);
-        } catch (JRException e) {
-            e.printStackTrace();
-            // Show error dialog
-        }*/
+    private static final Timer COMPILE_TEMPLATE_TIMER = Metrics.timer("PrintService.compileTemplate");
+    private static final Timer LAYOUT_TIMER = Metrics.timer("PrintService.layout");
+    private static final Timer PRINT_TIMER = Metrics.timer("PrintService.print");
+    private static final Counter PAGES_PRINTED = Metrics.counter("PrintService.pagesPrinted");
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "print");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only used on the print thread
+    private static DeliveryNoteTemplate template;
+
+    // Open the print preview of deliveryNote, from which it can be printed; call on the FX thread.
+    // The preview belongs to owner, so it takes input while a modal owner is open
+    public void printDeliveryNote(DeliveryNote deliveryNote, Window owner) {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/aarsoma/deliverynote/view/printpreview.fxml"));
+            Parent root = ViewLoader.load(loader);
+            PrintPreviewController controller = loader.getController();
+
+            Stage stage = new Stage();
+            stage.setTitle("Print Preview - Delivery Note " + (deliveryNote.getNoteNumber() == null ? "" : deliveryNote.getNoteNumber()));
+            stage.setScene(new Scene(root));
+            stage.initOwner(owner);
+            stage.show();
+            controller.show(deliveryNote);
+        } catch (IOException e) {
+            AlertUtil.showErrorAlert("Error", "Could not open print preview", e.getMessage());
+        }
+    }
+
+    // The pages of deliveryNote, laid out on the print thread
+    public CompletableFuture<List<PrintPage>> layoutAsync(DeliveryNote deliveryNote) {
+        return CompletableFuture.supplyAsync(() -> LAYOUT_TIMER.time(() -> template().layout(deliveryNote)), EXECUTOR);
+    }
+
+    // Render and send pages to job, whose dialog has been shown, on the print thread; completes
+    // with whether the printer accepted them all
+    public CompletableFuture<Boolean> printAsync(PrinterJob job, List<PrintPage> pages) {
+        return CompletableFuture.supplyAsync(() -> PRINT_TIMER.time(() -> {
+            PageLayout pageLayout = job.getJobSettings().getPageLayout();
+            double scale = Math.min(pageLayout.getPrintableWidth() / DeliveryNoteTemplate.PAGE_WIDTH,
+                    pageLayout.getPrintableHeight() / DeliveryNoteTemplate.PAGE_HEIGHT);
+            for (PrintPage page : pages) {
+                if (!job.printPage(pageLayout, FxPageRenderer.render(page, scale))) {
+                    job.cancelJob();
+                    return false;
+                }
+                PAGES_PRINTED.increment();
+            }
+            return job.endJob();
+        }), EXECUTOR);
+    }
+
+    private static DeliveryNoteTemplate template() {
+        if (template == null) {
+            template = COMPILE_TEMPLATE_TIMER.time(() -> DeliveryNoteTemplate.compile(new FxTextMeasurer()));
+        }
+        return template;
     }
 }
@@ -0,0 +1,49 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
+
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Loads the delivery history and customer search indexes on a background thread, so the first search doesn't wait for them
+public class SearchIndexJob {
+
+    private final DeliveryNoteRepository deliveryNoteRepository = new DeliveryNoteRepository();
+    private final CustomerService customerService = new CustomerService();
+    private ExecutorService executor;
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::runOnce);
+    }
+
+    public void runOnce() {
+        try {
+            long startedAt = System.nanoTime();
+            deliveryNoteRepository.loadSearchIndex();
+            customerService.loadCustomerIndex();
+            System.out.println("Search indexes loaded in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + " ms");
+        } catch (SQLException e) {
+            // The first search tries again
+            System.err.println("Search index load failed: " + e.getMessage());
+        }
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.aarsoma.deliverynote.service;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodically rebuilds the dashboard counters from the base tables on a background thread
+public class StatisticsReconciliationJob {
+
+    private static final long INITIAL_DELAY_MINUTES = 1;
+    private static final long INTERVAL_HOURS = 24;
+
+    private final StatisticsService statisticsService = new StatisticsService();
+    private ScheduledExecutorService scheduler;
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runOnce,
+                TimeUnit.MINUTES.toSeconds(INITIAL_DELAY_MINUTES), TimeUnit.HOURS.toSeconds(INTERVAL_HOURS), TimeUnit.SECONDS);
+    }
+
+    public void runOnce() {
+        try {
+            statisticsService.reconcileCounters();
+        } catch (SQLException e) {
+            System.err.println("Statistics reconciliation failed: " + e.getMessage());
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -1,142 +1,83 @@
 package com.aarsoma.deliverynote.service;
 
-import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.metrics.Metrics;
+import com.aarsoma.deliverynote.metrics.Timer;
 import com.aarsoma.deliverynote.model.FinancialYear;
 import com.aarsoma.deliverynote.model.Statistics;
+import com.aarsoma.deliverynote.model.StatisticsPeriod;
+import com.aarsoma.deliverynote.repository.StatisticsCounterRepository;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.temporal.TemporalAdjusters;
+import java.util.Map;
 
 public class StatisticsService {
 
-    public Statistics getDeliveryNoteStatistics() throws SQLException {
-        Statistics statistics = new Statistics();
-
-        // Get total delivery notes
-        statistics.setTotalDeliveryNotes(getTotalDeliveryNotes());
-
-        // Get financial year delivery notes
-        statistics.setFinancialYearDeliveryNotes(getFinancialYearDeliveryNotes());
-
-        // Get monthly delivery notes
-        statistics.setMonthlyDeliveryNotes(getMonthlyDeliveryNotes());
-
-        // Get weekly delivery notes
-        statistics.setWeeklyDeliveryNotes(getWeeklyDeliveryNotes());
+    private static final Timer GET_DELIVERY_NOTE_STATISTICS_TIMER = Metrics.timer("StatisticsService.getDeliveryNoteStatistics");
+    private static final Timer RECONCILE_COUNTERS_TIMER = Metrics.timer("StatisticsService.reconcileCounters");
 
-        // Get daily delivery notes
-        statistics.setDailyDeliveryNotes(getDailyDeliveryNotes());
+    private final StatisticsCounterRepository counterRepository = new StatisticsCounterRepository();
 
-        return statistics;
-    }
-
-    private long getTotalDeliveryNotes() throws SQLException {
-        String sql = "SELECT COUNT(*) FROM delivery_notes";
-
-        try (Connection conn = DBConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-
-            if (rs.next()) {
-                return rs.getLong(1);
+    // Reads the incrementally maintained counters: a fixed number of rows regardless of history size
+    public Statistics getDeliveryNoteStatistics() throws SQLException {
+        long startedAt = System.nanoTime();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDate today = now.toLocalDate();
+
+            Map<StatisticsPeriod, Long> counts = counterRepository.findCounts(today);
+            if (!counts.containsKey(StatisticsPeriod.TOTAL)) {
+                // Counters were never built (e.g. a database from an older version)
+                reconcileCounters();
+                counts = counterRepository.findCounts(today);
             }
-        }
-
-        return 0;
-    }
-
-    private long getFinancialYearDeliveryNotes() throws SQLException {
-        String sql = "SELECT COUNT(*) FROM delivery_notes WHERE CAST(issue_date AS DATE) BETWEEN ? AND ?";
-
-        String fyStartDate = FinancialYear.getFinancialYearStartDate().toString();
-        String fyEndDate = FinancialYear.getFinancialYearEndDate().toString();
 
-        try (Connection conn = DBConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, fyStartDate);
-            pstmt.setString(2, fyEndDate);
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getLong(1);
-                }
-            }
+            Statistics statistics = new Statistics();
+            statistics.setTotalDeliveryNotes(counts.getOrDefault(StatisticsPeriod.TOTAL, 0L));
+            statistics.setFinancialYearDeliveryNotes(counts.getOrDefault(StatisticsPeriod.FINANCIAL_YEAR, 0L));
+            statistics.setMonthlyDeliveryNotes(counts.getOrDefault(StatisticsPeriod.MONTH, 0L));
+            statistics.setWeeklyDeliveryNotes(counts.getOrDefault(StatisticsPeriod.WEEK, 0L));
+            statistics.setDailyDeliveryNotes(counts.getOrDefault(StatisticsPeriod.DAY, 0L));
+            statistics.setFinancialYear(FinancialYear.getFinancialYear(today));
+            statistics.setComputedAt(now);
+            return statistics;
+        } finally {
+            GET_DELIVERY_NOTE_STATISTICS_TIMER.recordSince(startedAt);
         }
-
-        return 0;
     }
 
-    private long getMonthlyDeliveryNotes() throws SQLException {
-        String sql = "SELECT COUNT(*) FROM delivery_notes WHERE CAST(issue_date AS DATE) BETWEEN ? AND ?";
-
-        LocalDate today = LocalDate.now();
-        LocalDate firstDayOfMonth = today.withDayOfMonth(1);
-        LocalDate lastDayOfMonth = today.with(TemporalAdjusters.lastDayOfMonth());
-
-        try (Connection conn = DBConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, firstDayOfMonth.toString());
-            pstmt.setString(2, lastDayOfMonth.toString());
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getLong(1);
-                }
-            }
+    // The statistics after one more note issued on issueDate, worked out without a query; null if
+    // they were computed on an earlier day, when the periods have moved on and must be read again
+    public Statistics addNote(Statistics statistics, LocalDate issueDate) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        if (statistics.getComputedAt() == null || !statistics.getComputedAt().toLocalDate().equals(today)) {
+            return null;
         }
 
-        return 0;
+        Statistics updated = new Statistics();
+        updated.setTotalDeliveryNotes(statistics.getTotalDeliveryNotes() + 1);
+        updated.setFinancialYearDeliveryNotes(statistics.getFinancialYearDeliveryNotes()
+                + countIn(StatisticsPeriod.FINANCIAL_YEAR, issueDate, today));
+        updated.setMonthlyDeliveryNotes(statistics.getMonthlyDeliveryNotes()
+                + countIn(StatisticsPeriod.MONTH, issueDate, today));
+        updated.setWeeklyDeliveryNotes(statistics.getWeeklyDeliveryNotes()
+                + countIn(StatisticsPeriod.WEEK, issueDate, today));
+        updated.setDailyDeliveryNotes(statistics.getDailyDeliveryNotes()
+                + countIn(StatisticsPeriod.DAY, issueDate, today));
+        updated.setFinancialYear(statistics.getFinancialYear());
+        updated.setComputedAt(now);
+        return updated;
     }
 
-    private long getWeeklyDeliveryNotes() throws SQLException {
-        String sql = "SELECT COUNT(*) FROM delivery_notes WHERE CAST(issue_date AS DATE) BETWEEN ? AND ?";
-
-        LocalDate today = LocalDate.now();
-        LocalDate firstDayOfWeek = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
-        LocalDate lastDayOfWeek = today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
-
-        try (Connection conn = DBConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, firstDayOfWeek.toString());
-            pstmt.setString(2, lastDayOfWeek.toString());
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getLong(1);
-                }
-            }
-        }
-
-        return 0;
+    // 1 if issueDate falls in the same bucket of period as today
+    private static long countIn(StatisticsPeriod period, LocalDate issueDate, LocalDate today) {
+        return period.keyFor(issueDate).equals(period.keyFor(today)) ? 1 : 0;
     }
 
-    private long getDailyDeliveryNotes() throws SQLException {
-        String sql = "SELECT COUNT(*) FROM delivery_notes WHERE CAST(issue_date AS DATE) = ?";
-
-        LocalDate today = LocalDate.now();
-
-        try (Connection conn = DBConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, today.toString());
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getLong(1);
-                }
-            }
-        }
-
-        return 0;
+    // Rebuild the counters from delivery_notes, correcting any drift
+    public void reconcileCounters() throws SQLException {
+        RECONCILE_COUNTERS_TIMER.run(counterRepository::rebuild);
     }
 }
@@ -1,5 +1,7 @@
 package com.aarsoma.deliverynote.util;
 
+import com.aarsoma.deliverynote.metrics.Counter;
+import com.aarsoma.deliverynote.metrics.Metrics;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 
@@ -7,6 +9,9 @@ import java.util.Optional;
 
 public class AlertUtil {
 
+    // Errors users were shown, for the diagnostics snapshot
+    private static final Counter ERROR_ALERTS = Metrics.counter("ui.errorAlerts");
+
     public static void showInformationAlert(String title, String header, String content) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
@@ -24,6 +29,7 @@ public class AlertUtil {
     }
 
     public static void showErrorAlert(String title, String header, String content) {
+        ERROR_ALERTS.increment();
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
         alert.setHeaderText(header);
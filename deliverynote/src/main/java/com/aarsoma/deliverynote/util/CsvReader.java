@@ -0,0 +1,143 @@
+package com.aarsoma.deliverynote.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming RFC 4180 CSV reader that holds only the current record
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private final StringBuilder field = new StringBuilder();
+    private long lineNumber = 1;
+    private long recordLineNumber;
+    private long recordCount;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // Next record, or null at end of input; blank lines are skipped
+    public List<String> readRecord() throws IOException {
+        List<String> record = new ArrayList<>();
+
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            if (c == '\r' || c == '\n') {
+                consumeLineEnd(c);
+                continue;
+            }
+            position--;
+            break;
+        }
+
+        recordLineNumber = lineNumber;
+        field.setLength(0);
+        boolean quoted = false;
+        boolean fieldStart = true;
+
+        while (true) {
+            int c = read();
+
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLineNumber);
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        position++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                        lineNumber++;
+                    }
+                    field.append((char) c);
+                }
+                continue;
+            }
+
+            if (c == -1 || c == '\r' || c == '\n') {
+                record.add(field.toString());
+                if (c != -1) {
+                    consumeLineEnd(c);
+                }
+                recordCount++;
+                return record;
+            }
+
+            if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+                fieldStart = true;
+                continue;
+            }
+
+            if (c == '"' && fieldStart) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            fieldStart = false;
+        }
+    }
+
+    // Line on which the last returned record started (1-based)
+    public long getRecordLineNumber() {
+        return recordLineNumber;
+    }
+
+    // Records returned so far, including the header if the caller read one
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void consumeLineEnd(int c) throws IOException {
+        if (c == '\r' && peek() == '\n') {
+            position++;
+        }
+        lineNumber++;
+    }
+
+    private int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int n = reader.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+package com.aarsoma.deliverynote.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+// CSV writer producing what CsvReader reads; fields are quoted only when needed
+public class CsvWriter implements Closeable, Flushable {
+
+    private final Writer writer;
+    private boolean recordStart = true;
+
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void writeRecord(String... fields) throws IOException {
+        for (String field : fields) {
+            writeField(field);
+        }
+        endRecord();
+    }
+
+    // Null is written as an empty field
+    public void writeField(String value) throws IOException {
+        separate();
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                writer.write(value, start, i - start + 1);
+                writer.write('"');
+                start = i + 1;
+            }
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+
+    public void writeField(long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+    }
+
+    public void endRecord() throws IOException {
+        writer.write("\r\n");
+        recordStart = true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void separate() throws IOException {
+        if (!recordStart) {
+            writer.write(',');
+        }
+        recordStart = false;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+package com.aarsoma.deliverynote.util;
+
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.DeliveryNoteRow;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// The JSON layout of notes and customers, shared by the API and the JSON Lines export
+public final class DeliveryNoteJson {
+
+    public static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private DeliveryNoteJson() {
+    }
+
+    public static String formatDateTime(LocalDateTime value) {
+        return value == null ? null : value.format(DATE_TIME_FORMAT);
+    }
+
+    public static void writeCustomer(JsonWriter json, Customer customer) throws IOException {
+        json.beginObject()
+                .name("id").value(customer.getId())
+                .name("name").value(customer.getName())
+                .name("address").value(customer.getAddress())
+                .name("contactPerson").value(customer.getContactPerson())
+                .name("phone").value(customer.getPhone())
+                .name("email").value(customer.getEmail())
+                .endObject();
+    }
+
+    public static void writeNote(JsonWriter json, DeliveryNote note) throws IOException {
+        json.beginObject()
+                .name("id").value(note.getId())
+                .name("noteNumber").value(note.getNoteNumber())
+                .name("issueDate").value(formatDateTime(note.getIssueDate()))
+                .name("financialYear").value(note.getFinancialYear())
+                .name("customer");
+        if (note.getCustomer() != null) {
+            writeCustomer(json, note.getCustomer());
+        } else {
+            json.beginObject().name("id").value(note.getCustomerId()).endObject();
+        }
+        json.name("items").beginArray();
+        for (DeliveryItem item : note.getItems() == null ? List.<DeliveryItem>of() : note.getItems()) {
+            writeItem(json, item.getItemName(), item.getOrderedQty(), item.getDeliveredQty(), item.getBalanceQty());
+        }
+        json.endArray().endObject();
+    }
+
+    private static void writeItem(JsonWriter json, String itemName, Integer orderedQty, Integer deliveredQty,
+                                  Integer balanceQty) throws IOException {
+        json.beginObject()
+                .name("itemName").value(itemName)
+                .name("orderedQty").value(orderedQty)
+                .name("deliveredQty").value(deliveredQty)
+                .name("balanceQty").value(balanceQty)
+                .endObject();
+    }
+
+    // Writes streamed rows (one per item, a note's rows together) as JSON Lines: one note object
+    // per line, each written as soon as its rows have arrived
+    public static final class RowWriter {
+        private final JsonWriter json;
+        private boolean inNote;
+        private int noteId;
+
+        public RowWriter(JsonWriter json) {
+            this.json = json;
+        }
+
+        public void write(DeliveryNoteRow row) throws IOException {
+            if (!inNote || row.getNoteId() != noteId) {
+                finish();
+                inNote = true;
+                noteId = row.getNoteId();
+                json.beginObject()
+                        .name("id").value(row.getNoteId())
+                        .name("noteNumber").value(row.getNoteNumber())
+                        .name("issueDate").value(formatDateTime(row.getIssueDate()))
+                        .name("financialYear").value(row.getFinancialYear())
+                        .name("customer").beginObject()
+                        .name("id").value(row.getCustomerId())
+                        .name("name").value(row.getCustomerName())
+                        .name("address").value(row.getCustomerAddress())
+                        .name("contactPerson").value(row.getCustomerContactPerson())
+                        .name("phone").value(row.getCustomerPhone())
+                        .name("email").value(row.getCustomerEmail())
+                        .endObject()
+                        .name("items").beginArray();
+            }
+            if (row.getItemId() != null) {
+                writeItem(json, row.getItemName(), row.getOrderedQty(), row.getDeliveredQty(), row.getBalanceQty());
+            }
+        }
+
+        // Ends the last note's line; the underlying writer is not flushed
+        public void finish() throws IOException {
+            if (inNote) {
+                json.endArray().endObject().endLine();
+                inNote = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.aarsoma.deliverynote.util;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+public class FxAsync {
+
+    private static final String PENDING_KEY = FxAsync.class.getName() + ".pending";
+
+    // Show the loading node while the future runs, then call back on the FX thread; cancelled futures are ignored
+    public static <T> CompletableFuture<T> run(CompletableFuture<T> future, Node loadingIndicator,
+                                               Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        updatePending(loadingIndicator, 1);
+
+        future.whenComplete((result, error) -> Platform.runLater(() -> {
+            updatePending(loadingIndicator, -1);
+            if (future.isCancelled() || error instanceof CancellationException) {
+                return;
+            }
+            if (error != null) {
+                onError.accept(unwrap(error));
+            } else {
+                onSuccess.accept(result);
+            }
+        }));
+
+        return future;
+    }
+
+    public static <T> CompletableFuture<T> run(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        return run(future, null, onSuccess, onError);
+    }
+
+    // Cancel a pending call so its result is discarded; the statement itself is left to finish
+    public static void cancel(CompletableFuture<?> future) {
+        if (future != null && !future.isDone()) {
+            future.cancel(false);
+        }
+    }
+
+    // Overlapping calls share one indicator, so it stays visible until the last one finishes
+    private static void updatePending(Node loadingIndicator, int delta) {
+        if (loadingIndicator == null) {
+            return;
+        }
+        int pending = (int) loadingIndicator.getProperties().getOrDefault(PENDING_KEY, 0) + delta;
+        loadingIndicator.getProperties().put(PENDING_KEY, pending);
+        loadingIndicator.setVisible(pending > 0);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
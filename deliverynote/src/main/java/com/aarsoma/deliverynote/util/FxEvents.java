@@ -0,0 +1,52 @@
+package com.aarsoma.deliverynote.util;
+
+import com.aarsoma.deliverynote.event.EventBus;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.WindowEvent;
+
+import java.util.function.Consumer;
+
+public class FxEvents {
+
+    // Handle events of type on the FX thread for as long as owner's window is open; the
+    // subscription ends when that window is closed
+    public static <T> void subscribe(Node owner, Class<T> type, Consumer<T> handler) {
+        boolean[] active = {true};
+        EventBus.Subscription subscription = EventBus.subscribe(type,
+                event -> Platform.runLater(() -> {
+                    // Events queued before the window closed are dropped
+                    if (active[0]) {
+                        handler.accept(event);
+                    }
+                }));
+
+        Runnable cancel = () -> {
+            active[0] = false;
+            subscription.cancel();
+        };
+        // Usually called from initialize(), before the node is part of a shown window
+        if (owner.getScene() != null) {
+            cancelWhenHidden(owner.getScene(), cancel);
+        } else {
+            owner.sceneProperty().addListener((obs, oldScene, scene) -> {
+                if (scene != null && oldScene == null) {
+                    cancelWhenHidden(scene, cancel);
+                }
+            });
+        }
+    }
+
+    private static void cancelWhenHidden(Scene scene, Runnable cancel) {
+        if (scene.getWindow() != null) {
+            scene.getWindow().addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> cancel.run());
+        } else {
+            scene.windowProperty().addListener((obs, oldWindow, window) -> {
+                if (window != null && oldWindow == null) {
+                    window.addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> cancel.run());
+                }
+            });
+        }
+    }
+}
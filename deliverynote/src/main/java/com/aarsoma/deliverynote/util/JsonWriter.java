@@ -0,0 +1,179 @@
+package com.aarsoma.deliverynote.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Minimal streaming JSON writer; inside an object every value follows name()
+public class JsonWriter {
+
+    private final Writer writer;
+    private final boolean indent;
+    // One entry per open object or array: whether it already has a member
+    private final Deque<Boolean> hasMembers = new ArrayDeque<>();
+    private boolean afterName;
+
+    public JsonWriter(Writer writer) {
+        this(writer, false);
+    }
+
+    public JsonWriter(Writer writer, boolean indent) {
+        this.writer = writer;
+        this.indent = indent;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        writer.write('{');
+        hasMembers.push(false);
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return end('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        writer.write('[');
+        hasMembers.push(false);
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return end(']');
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        writer.write(indent ? ": " : ":");
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    // Infinite and NaN values, which JSON cannot represent, are written as null
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        writer.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writer.write(Boolean.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return value((String) null);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return value(value.doubleValue());
+        }
+        return value(value.longValue());
+    }
+
+    // A value that is already valid JSON, e.g. produced by another JsonWriter, written as it is
+    public JsonWriter rawValue(String json) throws IOException {
+        beforeValue();
+        writer.write(json);
+        return this;
+    }
+
+    // Ends a top-level value with a line break, so that consecutive values form JSON Lines
+    public JsonWriter endLine() throws IOException {
+        if (!hasMembers.isEmpty()) {
+            throw new IllegalStateException("Not at the top level");
+        }
+        writer.write('\n');
+        return this;
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private JsonWriter end(char bracket) throws IOException {
+        boolean hadMembers = hasMembers.pop();
+        if (indent && hadMembers) {
+            newLine();
+        }
+        writer.write(bracket);
+        return this;
+    }
+
+    // Separator and indentation before a member, element or top-level value
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasMembers.isEmpty()) {
+            return;
+        }
+        if (hasMembers.pop()) {
+            writer.write(',');
+        }
+        hasMembers.push(true);
+        if (indent) {
+            newLine();
+        }
+    }
+
+    private void newLine() throws IOException {
+        writer.write('\n');
+        for (int i = 0; i < hasMembers.size(); i++) {
+            writer.write("  ");
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,23 @@
+package com.aarsoma.deliverynote.util;
+
+import com.aarsoma.deliverynote.metrics.Metrics;
+import javafx.fxml.FXMLLoader;
+
+import java.io.IOException;
+
+public class ViewLoader {
+
+    // loader.load(), timed per view as "View.<fxml file name>" in the metrics
+    public static <T> T load(FXMLLoader loader) throws IOException {
+        return Metrics.timer("View." + viewName(loader)).time(loader::load);
+    }
+
+    private static String viewName(FXMLLoader loader) {
+        if (loader.getLocation() == null) {
+            return "unknown";
+        }
+        String path = loader.getLocation().getPath();
+        String file = path.substring(path.lastIndexOf('/') + 1);
+        return file.endsWith(".fxml") ? file.substring(0, file.length() - ".fxml".length()) : file;
+    }
+}
@@ -7,6 +7,10 @@ module com.aarsoma.deliverynote {
     requires com.dlsc.formsfx;
     requires org.kordamp.ikonli.javafx;
     requires java.sql;
+    requires java.management;
+    requires jdk.httpserver;
+    requires com.h2database;
+    requires org.apache.pdfbox;
     requires static lombok;
     //requires eu.hansolo.tilesfx;
 
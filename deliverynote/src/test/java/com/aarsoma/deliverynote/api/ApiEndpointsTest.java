@@ -0,0 +1,92 @@
+package com.aarsoma.deliverynote.api;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.repository.CustomerRepository;
+import com.aarsoma.deliverynote.util.JsonReader;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Input checks of the endpoints, against the application database
+class ApiEndpointsTest {
+
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    private static ApiServer server;
+    private static int port;
+    private static int customerId;
+
+    @BeforeAll
+    static void startServer() throws IOException, SQLException {
+        DBConfig.initDatabase();
+        Customer customer = new Customer();
+        customer.setName("API Endpoints Customer");
+        customerId = new CustomerRepository().save(customer).getId();
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new ApiServer("127.0.0.1", port, null);
+        new ApiEndpoints().register(server);
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    void refusesCustomerFieldsLongerThanTheirColumns() throws Exception {
+        assertRefused("/api/customers", "{\"name\": \"" + "n".repeat(101) + "\"}",
+                "'name' is longer than 100 characters");
+        assertRefused("/api/customers", "{\"name\": \"Long address\", \"address\": \"" + "a".repeat(201) + "\"}",
+                "'address' is longer than 200 characters");
+        assertRefused("/api/customers", "{\"name\": \"Long contact\", \"contactPerson\": \"" + "c".repeat(101) + "\"}",
+                "'contactPerson' is longer than 100 characters");
+        assertRefused("/api/customers", "{\"name\": \"Long phone\", \"phone\": \"" + "1".repeat(21) + "\"}",
+                "'phone' is longer than 20 characters");
+        assertRefused("/api/customers", "{\"name\": \"Long email\", \"email\": \"" + "e".repeat(95) + "@x.org\"}",
+                "'email' is longer than 100 characters");
+    }
+
+    @Test
+    void acceptsFieldsThatFillTheirColumns() throws Exception {
+        HttpResponse<String> response = post("/api/customers", "{\"name\": \"" + "n".repeat(100) + "\", "
+                + "\"phone\": \"" + "1".repeat(20) + "\"}");
+
+        assertEquals(201, response.statusCode(), response.body());
+    }
+
+    @Test
+    void refusesItemNamesLongerThanTheirColumn() throws Exception {
+        assertRefused("/api/notes", "{\"customerId\": " + customerId + ", \"items\": [{\"itemName\": \""
+                        + "i".repeat(101) + "\", \"orderedQty\": 1, \"deliveredQty\": 1}]}",
+                "'itemName' is longer than 100 characters");
+    }
+
+    private static void assertRefused(String path, String body, String message) throws Exception {
+        HttpResponse<String> response = post(path, body);
+        assertEquals(400, response.statusCode(), response.body());
+        assertEquals(Map.of("status", 400L, "error", message), JsonReader.parse(response.body()));
+    }
+
+    private static HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
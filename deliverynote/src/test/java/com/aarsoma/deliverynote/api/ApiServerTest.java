@@ -0,0 +1,207 @@
+package com.aarsoma.deliverynote.api;
+
+import com.aarsoma.deliverynote.util.JsonReader;
+import com.aarsoma.deliverynote.util.JsonWriter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// POST /api/batch against test endpoints, so no database is needed
+class ApiServerTest {
+
+    private static final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    private static ApiServer server;
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new ApiServer("127.0.0.1", port, null);
+        server.route("GET", "/api/test/echo", (request, response) -> {
+            calls.add(request.query("v"));
+            response.begin(200).beginObject().name("v").value(request.query("v")).endObject();
+        });
+        server.route("POST", "/api/test/echo", (request, response) -> {
+            calls.add("POST");
+            writeValue(response.begin(201), request.bodyObject());
+        });
+        server.route("GET", "/api/test/fail", (request, response) -> {
+            calls.add("fail");
+            throw new ApiException(422, "Refused");
+        });
+        server.route("DELETE", "/api/test/empty", (request, response) -> calls.add("empty"));
+        server.route("GET", "/api/test/sql", (request, response) -> {
+            throw new SQLException("Unique index violated: CUSTOMERS(NAME) VALUES ('secret')", "23505");
+        });
+        server.route("GET", "/api/test/bug", (request, response) -> {
+            throw new IllegalStateException("internal detail");
+        });
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @BeforeEach
+    void clearCalls() {
+        calls.clear();
+    }
+
+    @Test
+    void answersEveryCallInOrder() throws Exception {
+        HttpResponse<String> response = postBatch("["
+                + "{\"method\": \"GET\", \"path\": \"/api/test/echo?v=1\"},"
+                + "{\"method\": \"get\", \"path\": \"/api/test/echo?v=%C3%A9+2\"},"
+                + "{\"method\": \"GET\", \"path\": \"/api/test/fail\"},"
+                + "{\"method\": \"POST\", \"path\": \"/api/test/echo\", \"body\": {\"a\": [1, {\"b\": null}]}},"
+                + "{\"method\": \"DELETE\", \"path\": \"/api/test/empty\"},"
+                + "{\"method\": \"GET\", \"path\": \"/api/test/echo?v=3\"}"
+                + "]");
+
+        assertEquals(200, response.statusCode());
+        assertEquals(Arrays.asList("1", "é 2", "fail", "POST", "empty", "3"), calls);
+
+        List<?> results = (List<?>) JsonReader.parse(response.body());
+        assertEquals(6, results.size());
+        assertResult(results.get(0), 200, Map.of("v", "1"));
+        assertResult(results.get(1), 200, Map.of("v", "é 2"));
+        assertResult(results.get(2), 422, Map.of("status", 422L, "error", "Refused"));
+        assertResult(results.get(3), 201, Map.of("a", Arrays.asList(1L, Collections.singletonMap("b", null))));
+        assertResult(results.get(4), 204, null);
+        assertResult(results.get(5), 200, Map.of("v", "3"));
+    }
+
+    @Test
+    void answersUnknownEndpointsInsideTheBatch() throws Exception {
+        HttpResponse<String> response = postBatch("[{\"method\": \"GET\", \"path\": \"/api/nothing\"},"
+                + "{\"method\": \"PUT\", \"path\": \"/api/test/echo\"}]");
+
+        assertEquals(200, response.statusCode());
+        List<?> results = (List<?>) JsonReader.parse(response.body());
+        assertEquals(404L, ((Map<?, ?>) results.get(0)).get("status"));
+        assertEquals(405L, ((Map<?, ?>) results.get(1)).get("status"));
+    }
+
+    @Test
+    void answersAnEmptyBatch() throws Exception {
+        HttpResponse<String> response = postBatch("[]");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("[]", response.body());
+    }
+
+    @Test
+    void refusesMalformedJson() throws Exception {
+        assertRefused("[{\"method\": \"GET\", ", "Invalid JSON");
+        assertRefused("[{\"method\": \"GET\", \"path\": \"/api/test/echo\"}] trailing", "Invalid JSON");
+        assertRefused("[1e400]", "Invalid JSON");
+        assertRefused("", "A JSON body is required");
+    }
+
+    @Test
+    void refusesBatchesThatAreNotAListOfCalls() throws Exception {
+        assertRefused("{\"method\": \"GET\", \"path\": \"/api/test/echo\"}", "The body must be an array");
+        assertRefused("[{\"method\": \"GET\"}]", "Every request needs");
+        assertRefused("[{\"method\": 1, \"path\": \"/api/test/echo\"}]", "Every request needs");
+        assertRefused("[\"GET /api/test/echo\"]", "Every request needs");
+    }
+
+    @Test
+    void runsNothingWhenAnyCallIsInvalid() throws Exception {
+        assertRefused("[{\"method\": \"GET\", \"path\": \"/api/test/echo?v=1\"}, {\"path\": \"/api/test/echo\"}]",
+                "Every request needs");
+        assertRefused("[{\"method\": \"GET\", \"path\": \"/api/test/echo?v=1\"},"
+                + " {\"method\": \"POST\", \"path\": \"/api/batch\", \"body\": []}]", "Batches cannot be nested");
+
+        assertEquals(Collections.emptyList(), calls);
+    }
+
+    @Test
+    void keepsTheDetailsOfServerErrorsOutOfTheResponse() throws Exception {
+        HttpResponse<String> response = postBatch("[{\"method\": \"GET\", \"path\": \"/api/test/sql\"},"
+                + "{\"method\": \"GET\", \"path\": \"/api/test/bug\"}]");
+
+        assertEquals(200, response.statusCode());
+        List<?> results = (List<?>) JsonReader.parse(response.body());
+        assertResult(results.get(0), 500, Map.of("status", 500L, "error", "Database error"));
+        assertResult(results.get(1), 500, Map.of("status", 500L, "error", "Internal error"));
+    }
+
+    @Test
+    void refusesBatchesOverTheLimit() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 101; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"method\": \"GET\", \"path\": \"/api/test/echo\"}");
+        }
+        assertRefused(body.append(']').toString(), "At most 100 requests");
+        assertEquals(Collections.emptyList(), calls);
+    }
+
+    // Writes a value as JsonReader returned it
+    private static void writeValue(JsonWriter json, Object value) throws IOException {
+        if (value instanceof Map) {
+            json.beginObject();
+            for (Map.Entry<?, ?> member : ((Map<?, ?>) value).entrySet()) {
+                json.name((String) member.getKey());
+                writeValue(json, member.getValue());
+            }
+            json.endObject();
+        } else if (value instanceof List) {
+            json.beginArray();
+            for (Object element : (List<?>) value) {
+                writeValue(json, element);
+            }
+            json.endArray();
+        } else if (value instanceof Number) {
+            json.value((Number) value);
+        } else if (value instanceof Boolean) {
+            json.value((boolean) (Boolean) value);
+        } else {
+            json.value((String) value);
+        }
+    }
+
+    private static void assertResult(Object result, int status, Object body) {
+        Map<?, ?> map = (Map<?, ?>) result;
+        assertEquals((long) status, map.get("status"));
+        assertEquals(body, map.get("body"));
+    }
+
+    private static void assertRefused(String batch, String message) throws Exception {
+        HttpResponse<String> response = postBatch(batch);
+        assertEquals(400, response.statusCode(), response.body());
+        Map<?, ?> error = (Map<?, ?>) JsonReader.parse(response.body());
+        assertEquals(400L, error.get("status"));
+        assertTrue(((String) error.get("error")).startsWith(message), response.body());
+    }
+
+    private static HttpResponse<String> postBatch(String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
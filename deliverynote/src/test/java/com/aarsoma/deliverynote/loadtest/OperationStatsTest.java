@@ -0,0 +1,78 @@
+package com.aarsoma.deliverynote.loadtest;
+
+import com.aarsoma.deliverynote.metrics.TimerSnapshot;
+import org.h2.api.ErrorCode;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OperationStatsTest {
+
+    @Test
+    void countsOutcomes() {
+        OperationStats stats = new OperationStats("SAVE");
+        stats.recordSuccess(1_000);
+        stats.recordFailure(2_000, new RuntimeException(new SQLException("duplicate", "23505")));
+        stats.recordFailure(3_000, new SQLException("lock", "HYT00", ErrorCode.LOCK_TIMEOUT_1));
+        stats.recordFailure(3_500, new SQLException("deadlock", "40001", ErrorCode.DEADLOCK_1));
+        stats.recordFailure(4_000, new SQLTimeoutException("no connection"));
+        stats.recordFailure(5_000, new IllegalStateException());
+
+        assertEquals(6, stats.getCalls());
+        assertEquals(1, stats.getSucceeded());
+        assertEquals(1, stats.getConstraintViolations());
+        assertEquals(2, stats.getLockConflicts());
+        assertEquals(1, stats.getPoolTimeouts());
+        assertEquals(1, stats.getOtherErrors());
+        assertEquals(6, stats.getLatencies().getCount());
+        assertEquals(5_000, stats.getLatencies().getMaxMicros());
+    }
+
+    @Test
+    void survivesEncoding() {
+        OperationStats stats = new OperationStats("SEARCH");
+        for (int i = 1; i <= 1000; i++) {
+            stats.recordSuccess(i * 100L);
+        }
+        stats.recordFailure(10_000_000, new SQLTimeoutException());
+
+        OperationStats decoded = OperationStats.decode(stats.encode());
+
+        assertEquals("SEARCH", decoded.getName());
+        assertEquals(1000, decoded.getSucceeded());
+        assertEquals(1, decoded.getPoolTimeouts());
+        assertLatencies(stats.getLatencies(), decoded.getLatencies());
+        assertEquals(stats.encode(), decoded.encode());
+    }
+
+    @Test
+    void mergesLikeOneRun() {
+        OperationStats whole = new OperationStats("TOTAL");
+        OperationStats first = new OperationStats("A");
+        OperationStats second = new OperationStats("B");
+        for (int i = 1; i <= 2000; i++) {
+            long micros = (i * 7919L) % 50_000;
+            whole.recordSuccess(micros);
+            (i % 3 == 0 ? first : second).recordSuccess(micros);
+        }
+
+        OperationStats merged = new OperationStats("TOTAL");
+        merged.merge(first);
+        merged.merge(OperationStats.decode(second.encode()));
+
+        assertEquals(2000, merged.getCalls());
+        assertLatencies(whole.getLatencies(), merged.getLatencies());
+    }
+
+    private static void assertLatencies(TimerSnapshot expected, TimerSnapshot actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getTotalMicros(), actual.getTotalMicros());
+        assertEquals(expected.getMaxMicros(), actual.getMaxMicros());
+        for (double fraction : new double[]{0.0, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+            assertEquals(expected.percentileMicros(fraction), actual.percentileMicros(fraction));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.aarsoma.deliverynote.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NoteNumberAllocatorTest {
+
+    private static final String FINANCIAL_YEAR = "2024-2025";
+
+    private Connection conn;
+    private final NoteNumberAllocator allocator = new NoteNumberAllocator(1);
+
+    @BeforeEach
+    void createTables() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:note-numbers");
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("CREATE TABLE delivery_notes (id INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "note_number VARCHAR(50) NOT NULL UNIQUE, financial_year VARCHAR(9) NOT NULL)");
+            statement.execute("CREATE TABLE note_number_counters (financial_year VARCHAR(9) PRIMARY KEY, " +
+                    "next_value INT NOT NULL)");
+        }
+    }
+
+    @AfterEach
+    void dropDatabase() throws SQLException {
+        // The in-memory database goes away with its last connection
+        conn.close();
+    }
+
+    @Test
+    void firstNumberOfTheYearStartsAtOne() throws SQLException {
+        assertEquals("DN2024-25-0001", allocator.peek(conn, FINANCIAL_YEAR));
+        assertEquals("DN2024-25-0001", allocator.allocate(conn, FINANCIAL_YEAR));
+        assertEquals("DN2024-25-0002", allocator.allocate(conn, FINANCIAL_YEAR));
+    }
+
+    @Test
+    void continuesAfterTheHighestNumberWithMoreDigits() throws SQLException {
+        insertNotes("DN2024-25-9999", "DN2024-25-10000", "DN2024-25-0042");
+
+        assertEquals("DN2024-25-10001", allocator.peek(conn, FINANCIAL_YEAR));
+        assertEquals("DN2024-25-10001", allocator.allocate(conn, FINANCIAL_YEAR));
+    }
+
+    @Test
+    void continuesAfterImportedNumbersWithMoreDigits() throws SQLException {
+        // An import advances the counter, but there is no counter row to advance yet
+        insertNotes("DN2024-25-9999", "DN2024-25-10000");
+        allocator.advancePast(conn, FINANCIAL_YEAR, 10000);
+
+        assertEquals("DN2024-25-10001", allocator.allocate(conn, FINANCIAL_YEAR));
+        assertEquals("DN2024-25-10002", allocator.allocate(conn, FINANCIAL_YEAR));
+    }
+
+    @Test
+    void skipsImportedNumbersInAnotherFormat() throws SQLException {
+        // All of these sort above the real numbers but have no numeric suffix parseNumber accepts
+        insertNotes("DN2024-25-0007", "DN2024-25-0007A", "DN2024-25-12345678901", "DN2024-25-", "DN2024-25-00-1");
+
+        assertEquals("DN2024-25-0008", allocator.peek(conn, FINANCIAL_YEAR));
+        assertEquals("DN2024-25-0008", allocator.allocate(conn, FINANCIAL_YEAR));
+    }
+
+    @Test
+    void startsAtOneWhenOnlyForeignNumbersExist() throws SQLException {
+        insertNotes("DN2024-25-X1", "OLD-0001");
+
+        assertEquals("DN2024-25-0001", allocator.allocate(conn, FINANCIAL_YEAR));
+    }
+
+    @Test
+    void parseNumberOnlyAcceptsThisYearsFormat() {
+        assertEquals(42, NoteNumberAllocator.parseNumber(FINANCIAL_YEAR, "DN2024-25-0042"));
+        assertEquals(123456789, NoteNumberAllocator.parseNumber(FINANCIAL_YEAR, "DN2024-25-123456789"));
+        assertEquals(-1, NoteNumberAllocator.parseNumber(FINANCIAL_YEAR, "DN2024-25-1234567890"));
+        assertEquals(-1, NoteNumberAllocator.parseNumber(FINANCIAL_YEAR, "DN2024-25-0007A"));
+        assertEquals(-1, NoteNumberAllocator.parseNumber(FINANCIAL_YEAR, "DN2024-25-"));
+        assertEquals(-1, NoteNumberAllocator.parseNumber(FINANCIAL_YEAR, "DN2023-24-0042"));
+        assertEquals(-1, NoteNumberAllocator.parseNumber(FINANCIAL_YEAR, null));
+    }
+
+    private void insertNotes(String... noteNumbers) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO delivery_notes (note_number, financial_year) VALUES (?, ?)")) {
+            for (String noteNumber : noteNumbers) {
+                pstmt.setString(1, noteNumber);
+                pstmt.setString(2, FINANCIAL_YEAR);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+}
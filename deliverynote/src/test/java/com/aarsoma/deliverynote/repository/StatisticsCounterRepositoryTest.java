@@ -0,0 +1,101 @@
+package com.aarsoma.deliverynote.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatisticsCounterRepositoryTest {
+
+    private static final String URL = "jdbc:h2:mem:note-counters;LOCK_TIMEOUT=10000";
+    private static final LocalDate DAY = LocalDate.of(2024, 5, 6);
+
+    private final StatisticsCounterRepository repository = new StatisticsCounterRepository();
+    private Connection first;
+    private Connection second;
+
+    @BeforeEach
+    void createTable() throws SQLException {
+        first = DriverManager.getConnection(URL);
+        second = DriverManager.getConnection(URL);
+        try (Statement statement = first.createStatement()) {
+            statement.execute("CREATE TABLE delivery_note_counters (period_type VARCHAR(20) NOT NULL, " +
+                    "period_key VARCHAR(10) NOT NULL, note_count BIGINT NOT NULL, " +
+                    "PRIMARY KEY (period_type, period_key))");
+        }
+        first.setAutoCommit(false);
+        second.setAutoCommit(false);
+    }
+
+    @AfterEach
+    void dropDatabase() throws SQLException {
+        // The in-memory database goes away with its last connection
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void incrementWaitsForBucketsCreatedConcurrently() throws Exception {
+        repository.increment(first, DAY, 1);
+
+        CompletableFuture<Void> concurrent = CompletableFuture.runAsync(() -> {
+            try {
+                repository.increment(second, DAY, 1);
+                second.commit();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        // Commit while the other transaction waits for the new rows
+        Thread.sleep(300);
+        first.commit();
+        concurrent.get();
+
+        assertEquals(2, count("TOTAL", "ALL"));
+        assertEquals(2, count("DAY", DAY.toString()));
+    }
+
+    @Test
+    void incrementAllWaitsForBucketsCreatedConcurrently() throws Exception {
+        repository.increment(first, DAY, 1);
+
+        CompletableFuture<Void> concurrent = CompletableFuture.runAsync(() -> {
+            try {
+                repository.incrementAll(second, Map.of(DAY, 3L, DAY.plusDays(1), 2L));
+                second.commit();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(300);
+        first.commit();
+        concurrent.get();
+
+        assertEquals(6, count("TOTAL", "ALL"));
+        assertEquals(4, count("DAY", DAY.toString()));
+        assertEquals(2, count("DAY", DAY.plusDays(1).toString()));
+        assertEquals(6, count("WEEK", "2024-05-06"));
+    }
+
+    private long count(String periodType, String periodKey) throws SQLException {
+        try (PreparedStatement pstmt = first.prepareStatement(
+                "SELECT note_count FROM delivery_note_counters WHERE period_type = ? AND period_key = ?")) {
+            pstmt.setString(1, periodType);
+            pstmt.setString(2, periodKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.event.DataChanged;
+import com.aarsoma.deliverynote.event.EventBus;
+import com.aarsoma.deliverynote.repository.DataVersionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DataChangeWatcherTest {
+
+    private final DataVersionRepository versionRepository = new DataVersionRepository();
+    private final DataChangeWatcher watcher = new DataChangeWatcher();
+    private final List<Long> customerChanges = Collections.synchronizedList(new ArrayList<>());
+    private EventBus.Subscription subscription;
+
+    @BeforeAll
+    static void initDatabase() {
+        DBConfig.initDatabase();
+    }
+
+    @BeforeEach
+    void watchCustomers() {
+        subscription = EventBus.subscribe(DataChanged.class, event -> {
+            if (event.getTable().equals(DataVersionRepository.CUSTOMERS)) {
+                customerChanges.add(event.getChanges());
+            }
+        });
+        watcher.runOnce();
+    }
+
+    @AfterEach
+    void stopWatching() {
+        subscription.cancel();
+    }
+
+    @Test
+    void reportsChangesByOtherTerminals() throws SQLException {
+        remoteIncrement();
+        watcher.runOnce();
+
+        assertEquals(List.of(1L), customerChanges);
+    }
+
+    @Test
+    void ignoresCommittedLocalChanges() throws SQLException {
+        try (Connection conn = DBConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            versionRepository.increment(conn, DataVersionRepository.CUSTOMERS);
+            conn.commit();
+            DataVersionRepository.committed(conn);
+            conn.setAutoCommit(true);
+        }
+        watcher.runOnce();
+
+        assertEquals(List.of(), customerChanges);
+    }
+
+    @Test
+    void stillReportsRemoteChangesAfterALocalRollback() throws SQLException {
+        try (Connection conn = DBConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            versionRepository.increment(conn, DataVersionRepository.CUSTOMERS);
+            conn.rollback();
+            DataVersionRepository.rolledBack(conn);
+            conn.setAutoCommit(true);
+        }
+        watcher.runOnce();
+        assertEquals(List.of(), customerChanges);
+
+        remoteIncrement();
+        watcher.runOnce();
+
+        assertEquals(List.of(1L), customerChanges);
+    }
+
+    // What another terminal's write looks like from here: a new version this process did not count
+    private static void remoteIncrement() throws SQLException {
+        try (Connection conn = DBConfig.getConnection();
+             Statement statement = conn.createStatement()) {
+            statement.executeUpdate("MERGE INTO data_versions t USING (VALUES ('" + DataVersionRepository.CUSTOMERS
+                    + "')) s(table_name) ON t.table_name = s.table_name "
+                    + "WHEN MATCHED THEN UPDATE SET version = t.version + 1 "
+                    + "WHEN NOT MATCHED THEN INSERT (table_name, version) VALUES (s.table_name, 1)");
+        }
+    }
+}
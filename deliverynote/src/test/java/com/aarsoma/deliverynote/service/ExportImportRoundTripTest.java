@@ -0,0 +1,110 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.ExportFormat;
+import com.aarsoma.deliverynote.model.ExportResult;
+import com.aarsoma.deliverynote.model.ImportResult;
+import com.aarsoma.deliverynote.repository.CustomerRepository;
+import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
+import com.aarsoma.deliverynote.repository.StatisticsCounterRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// A CSV export read back by the import gives the same notes, against the application database
+class ExportImportRoundTripTest {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2033, 6, 1);
+
+    private static int customerId;
+
+    private final DeliveryNoteRepository repository = new DeliveryNoteRepository();
+
+    @BeforeAll
+    static void createCustomer() throws SQLException {
+        DBConfig.initDatabase();
+        Customer customer = new Customer();
+        customer.setName("Round Trip Customer");
+        customerId = new CustomerRepository().save(customer).getId();
+    }
+
+    @Test
+    void importsWhatTheCsvExportWrote(@TempDir Path dir) throws Exception {
+        DeliveryNote withItems = repository.save(note(FIRST_DAY.atTime(9, 30), "Cement, 50 kg", "Sand \"fine\""));
+        DeliveryNote withoutItems = repository.save(note(FIRST_DAY.plusDays(1).atTime(14, 0)));
+
+        Path file = dir.resolve("notes.csv");
+        ExportResult exported = new ExportService().exportDeliveryNotes(FIRST_DAY, FIRST_DAY.plusDays(1), file,
+                ExportFormat.CSV, false, progress -> {
+                });
+        assertEquals(2, exported.getNotesWritten());
+
+        delete(withItems.getNoteNumber(), withoutItems.getNoteNumber());
+        ImportResult imported = new ImportService(10).importDeliveryNotes(file, progress -> {
+        });
+
+        assertEquals(2, imported.getImported());
+        assertEquals(0, imported.getRejected());
+        assertSameNote(withItems, repository.findByNoteNumber(withItems.getNoteNumber()).orElseThrow());
+        assertSameNote(withoutItems, repository.findByNoteNumber(withoutItems.getNoteNumber()).orElseThrow());
+    }
+
+    private static DeliveryNote note(LocalDateTime issued, String... itemNames) {
+        DeliveryNote note = new DeliveryNote();
+        note.setCustomerId(customerId);
+        note.setIssueDate(issued);
+        for (int i = 0; i < itemNames.length; i++) {
+            DeliveryItem item = new DeliveryItem();
+            item.setItemName(itemNames[i]);
+            item.setOrderedQty(10 + i);
+            item.setDeliveredQty(4 + i);
+            item.setBalanceQty(6);
+            note.getItems().add(item);
+        }
+        return note;
+    }
+
+    private static void assertSameNote(DeliveryNote expected, DeliveryNote actual) {
+        assertEquals(expected.getIssueDate(), actual.getIssueDate());
+        assertEquals(expected.getFinancialYear(), actual.getFinancialYear());
+        assertEquals(expected.getCustomerId(), actual.getCustomerId());
+        assertEquals(describe(expected.getItems()), describe(actual.getItems()));
+    }
+
+    private static List<String> describe(List<DeliveryItem> items) {
+        List<String> described = new ArrayList<>();
+        for (DeliveryItem item : items) {
+            described.add(item.getItemName() + " " + item.getOrderedQty() + "/" + item.getDeliveredQty()
+                    + "/" + item.getBalanceQty());
+        }
+        return described;
+    }
+
+    // Removes the notes again, keeping the dashboard counters right for the other tests
+    private static void delete(String... noteNumbers) throws SQLException {
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement items = conn.prepareStatement("DELETE FROM delivery_items WHERE delivery_note_id IN "
+                     + "(SELECT id FROM delivery_notes WHERE note_number = ANY(?))");
+             PreparedStatement notes = conn.prepareStatement("DELETE FROM delivery_notes WHERE note_number = ANY(?)")) {
+            items.setArray(1, conn.createArrayOf("VARCHAR", noteNumbers));
+            items.executeUpdate();
+            notes.setArray(1, conn.createArrayOf("VARCHAR", noteNumbers));
+            assertEquals(noteNumbers.length, notes.executeUpdate());
+        }
+        new StatisticsCounterRepository().rebuild();
+    }
+}
@@ -0,0 +1,141 @@
+package com.aarsoma.deliverynote.service;
+
+import com.aarsoma.deliverynote.config.DBConfig;
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.ImportResult;
+import com.aarsoma.deliverynote.repository.CustomerRepository;
+import com.aarsoma.deliverynote.repository.DeliveryNoteRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// An import and terminals saving notes of the same financial year at the same time, against the
+// application database
+class ImportConcurrencyTest {
+
+    private static final String FINANCIAL_YEAR = "2031-2032";
+    private static final LocalDateTime ISSUED = LocalDateTime.of(2031, 6, 1, 10, 0);
+    private static final String CUSTOMER_NAME = "Import Concurrency Customer";
+    private static final int IMPORTED_NOTES = 1500;
+    private static final int SAVING_THREADS = 2;
+
+    private static int customerId;
+
+    @BeforeAll
+    static void createCustomer() throws SQLException {
+        DBConfig.initDatabase();
+        Customer customer = new Customer();
+        customer.setName(CUSTOMER_NAME);
+        customerId = new CustomerRepository().save(customer).getId();
+    }
+
+    @Test
+    void importAndSavesOfOneYearBothComplete(@TempDir Path dir) throws Exception {
+        Path file = writeImportFile(dir.resolve("notes.csv"));
+        long notesBefore = countNotes();
+
+        ExecutorService threads = Executors.newFixedThreadPool(1 + SAVING_THREADS);
+        try {
+            AtomicBoolean importing = new AtomicBoolean(true);
+            Future<ImportResult> imported = threads.submit(() -> {
+                try {
+                    return new ImportService(50).importDeliveryNotes(file, progress -> {
+                    });
+                } finally {
+                    importing.set(false);
+                }
+            });
+            List<Future<Integer>> savers = new ArrayList<>();
+            for (int i = 0; i < SAVING_THREADS; i++) {
+                savers.add(threads.submit(() -> saveWhile(importing)));
+            }
+
+            ImportResult result = imported.get(5, TimeUnit.MINUTES);
+            int saved = 0;
+            for (Future<Integer> saver : savers) {
+                saved += saver.get(1, TimeUnit.MINUTES);
+            }
+
+            assertEquals(IMPORTED_NOTES, result.getImported());
+            assertEquals(0, result.getRejected());
+            assertEquals(notesBefore + IMPORTED_NOTES + saved, countNotes());
+            assertEquals(countNotes(), totalCounter());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    // Saves notes until the import is done, and a few more so that some run after it; any failure
+    // fails the test
+    private static int saveWhile(AtomicBoolean importing) throws SQLException {
+        DeliveryNoteRepository repository = new DeliveryNoteRepository();
+        int saved = 0;
+        while (importing.get() || saved < 5) {
+            DeliveryNote note = new DeliveryNote();
+            note.setCustomerId(customerId);
+            note.setIssueDate(ISSUED);
+            DeliveryItem item = new DeliveryItem();
+            item.setItemName("Saved item");
+            item.setOrderedQty(10);
+            item.setDeliveredQty(10);
+            item.setBalanceQty(0);
+            note.getItems().add(item);
+            repository.save(note);
+            saved++;
+        }
+        return saved;
+    }
+
+    // The highest number comes first, so the saves are numbered after every imported note instead of
+    // colliding with numbers of later batches
+    private static Path writeImportFile(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("note_number,issue_date,customer,item_name,ordered_qty,delivered_qty\n");
+            for (int i = 0; i < IMPORTED_NOTES; i++) {
+                String number = String.format("DN2031-32-%d", i == 0 ? 900_000 : 100_000 + i);
+                for (int item = 1; item <= 2; item++) {
+                    out.write(number + ",2031-06-01 09:00:00," + CUSTOMER_NAME + ",Imported item " + item + ",5,5\n");
+                }
+            }
+        }
+        return file;
+    }
+
+    private static long countNotes() throws SQLException {
+        return queryLong("SELECT COUNT(*) FROM delivery_notes");
+    }
+
+    private static long totalCounter() throws SQLException {
+        return queryLong("SELECT note_count FROM delivery_note_counters WHERE period_type = 'TOTAL'");
+    }
+
+    private static long queryLong(String sql) throws SQLException {
+        try (Connection conn = DBConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.aarsoma.deliverynote.util;
+
+import com.aarsoma.deliverynote.model.Customer;
+import com.aarsoma.deliverynote.model.DeliveryItem;
+import com.aarsoma.deliverynote.model.DeliveryNote;
+import com.aarsoma.deliverynote.model.DeliveryNoteRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DeliveryNoteJsonTest {
+
+    private static final LocalDateTime ISSUED = LocalDateTime.of(2024, 4, 1, 9, 30, 15);
+
+    @Test
+    void writesRowsLikeLoadedNotes() throws IOException {
+        StringWriter rows = new StringWriter();
+        DeliveryNoteJson.RowWriter rowWriter = new DeliveryNoteJson.RowWriter(new JsonWriter(rows));
+        rowWriter.write(row(1, 10, "Flyers"));
+        rowWriter.write(row(1, 11, "Posters \"A2\""));
+        rowWriter.write(row(2, null, null));
+        rowWriter.write(row(3, 12, "Line\nbreak"));
+        rowWriter.finish();
+
+        StringWriter notes = new StringWriter();
+        JsonWriter json = new JsonWriter(notes);
+        DeliveryNoteJson.writeNote(json, note(1, "Flyers", "Posters \"A2\""));
+        json.endLine();
+        DeliveryNoteJson.writeNote(json, note(2));
+        json.endLine();
+        DeliveryNoteJson.writeNote(json, note(3, "Line\nbreak"));
+        json.endLine();
+
+        assertEquals(notes.toString(), rows.toString());
+        assertEquals(3, rows.toString().split("\n").length);
+    }
+
+    @Test
+    void writesTheNoteLayout() throws IOException {
+        StringWriter out = new StringWriter();
+        DeliveryNoteJson.writeNote(new JsonWriter(out), note(7, "Flyers"));
+
+        assertEquals("{\"id\":7,\"noteNumber\":\"DN2024-25-0007\",\"issueDate\":\"2024-04-01T09:30:15\","
+                + "\"financialYear\":\"2024-2025\",\"customer\":{\"id\":5,\"name\":\"Print \\\"Shop\\\"\","
+                + "\"address\":null,\"contactPerson\":null,\"phone\":\"123\",\"email\":null},"
+                + "\"items\":[{\"itemName\":\"Flyers\",\"orderedQty\":100,\"deliveredQty\":60,\"balanceQty\":40}]}",
+                out.toString());
+    }
+
+    @Test
+    void writesOnlyTheCustomerIdWhenTheCustomerIsNotLoaded() throws IOException {
+        DeliveryNote note = note(8);
+        note.setCustomer(null);
+        StringWriter out = new StringWriter();
+        DeliveryNoteJson.writeNote(new JsonWriter(out), note);
+
+        assertEquals("{\"id\":8,\"noteNumber\":\"DN2024-25-0008\",\"issueDate\":\"2024-04-01T09:30:15\","
+                + "\"financialYear\":\"2024-2025\",\"customer\":{\"id\":5},\"items\":[]}", out.toString());
+    }
+
+    private static DeliveryNote note(int id, String... itemNames) {
+        Customer customer = new Customer();
+        customer.setId(5);
+        customer.setName("Print \"Shop\"");
+        customer.setPhone("123");
+
+        DeliveryNote note = new DeliveryNote();
+        note.setId(id);
+        note.setNoteNumber(String.format("DN2024-25-%04d", id));
+        note.setIssueDate(ISSUED);
+        note.setFinancialYear("2024-2025");
+        note.setCustomerId(5);
+        note.setCustomer(customer);
+        for (String itemName : itemNames) {
+            DeliveryItem item = new DeliveryItem();
+            item.setItemName(itemName);
+            item.setOrderedQty(100);
+            item.setDeliveredQty(60);
+            item.setBalanceQty(40);
+            note.getItems().add(item);
+        }
+        return note;
+    }
+
+    private static DeliveryNoteRow row(int noteId, Integer itemId, String itemName) {
+        DeliveryNoteRow row = new DeliveryNoteRow();
+        row.setNoteId(noteId);
+        row.setNoteNumber(String.format("DN2024-25-%04d", noteId));
+        row.setIssueDate(ISSUED);
+        row.setFinancialYear("2024-2025");
+        row.setCustomerId(5);
+        row.setCustomerName("Print \"Shop\"");
+        row.setCustomerPhone("123");
+        row.setItemId(itemId);
+        if (itemId != null) {
+            row.setItemName(itemName);
+            row.setOrderedQty(100);
+            row.setDeliveredQty(60);
+            row.setBalanceQty(40);
+        }
+        return row;
+    }
+}
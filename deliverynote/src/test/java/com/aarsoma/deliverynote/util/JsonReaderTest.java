@@ -0,0 +1,133 @@
+package com.aarsoma.deliverynote.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonReaderTest {
+
+    @Test
+    void readsScalars() {
+        assertEquals("text", JsonReader.parse("\"text\""));
+        assertEquals(Boolean.TRUE, JsonReader.parse("true"));
+        assertEquals(Boolean.FALSE, JsonReader.parse(" false "));
+        assertNull(JsonReader.parse("null"));
+        assertEquals(42L, JsonReader.parse("42"));
+        assertEquals(-7L, JsonReader.parse("-7"));
+        assertEquals(1.5, JsonReader.parse("1.5"));
+        assertEquals(-2.5e-3, JsonReader.parse("-2.5E-3"));
+    }
+
+    @Test
+    void readsEscapes() {
+        assertEquals("quote \" backslash \\ slash /", JsonReader.parse("\"quote \\\" backslash \\\\ slash \\/\""));
+        assertEquals("\b\f\n\r\t", JsonReader.parse("\"\\b\\f\\n\\r\\t\""));
+        assertEquals("A\u00e9\u20ac", JsonReader.parse("\"\\u0041\\u00E9\\u20ac\""));
+        // A character outside the BMP arrives as a surrogate pair
+        assertEquals("\ud83d\ude00", JsonReader.parse("\"\\ud83d\\ude00\""));
+        assertEquals("\u00e9 stays", JsonReader.parse("\"\u00e9 stays\""));
+    }
+
+    @Test
+    void readsNestedValuesInOrder() {
+        Object value = JsonReader.parse("{\"b\": [1, {\"c\": []}, \"x\"], \"a\": {}, \"n\": null}");
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        Map<String, Object> inner = new LinkedHashMap<>();
+        inner.put("c", Collections.emptyList());
+        expected.put("b", Arrays.asList(1L, inner, "x"));
+        expected.put("a", Collections.emptyMap());
+        expected.put("n", null);
+        assertEquals(expected, value);
+        assertEquals(Arrays.asList("b", "a", "n"), List.copyOf(((Map<?, ?>) value).keySet()));
+    }
+
+    @Test
+    void acceptsNestingUpToTheLimit() {
+        assertEquals(Collections.emptyList(), unwrap(JsonReader.parse("[".repeat(64) + "]".repeat(64)), 63));
+        assertRefused("[".repeat(65) + "]".repeat(65), "Nested too deeply");
+        // Far deeper input must fail cleanly rather than overflow the stack
+        assertRefused("[".repeat(100_000), "Nested too deeply");
+    }
+
+    @Test
+    void readsNumbersAcrossTheirRange() {
+        assertEquals(Long.MAX_VALUE, JsonReader.parse("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE, JsonReader.parse("-9223372036854775808"));
+        assertEquals(Double.MAX_VALUE, JsonReader.parse("1.7976931348623157e308"));
+        assertEquals(0.0, JsonReader.parse("1e-400"));
+
+        assertRefused("9223372036854775808", "Invalid number");
+        assertRefused("-9223372036854775809", "Invalid number");
+        assertRefused("1e400", "Number out of range");
+        assertRefused("-1e400", "Number out of range");
+    }
+
+    @Test
+    void refusesMalformedNumbers() {
+        assertRefused("-", "Invalid number");
+        assertRefused("1.2.3", "Invalid number");
+        assertRefused("1e", "Invalid number");
+        assertRefused("[1 2]", "Expected ',' or ']'");
+    }
+
+    @Test
+    void refusesMalformedInput() {
+        assertRefused("", "Unexpected end of input");
+        assertRefused("   ", "Unexpected end of input");
+        assertRefused("{\"a\": 1", "Expected ',' or '}'");
+        assertRefused("{\"a\" 1}", "Expected ':'");
+        assertRefused("{a: 1}", "Expected a member name");
+        assertRefused("{\"a\": 1,}", "Expected a member name");
+        assertRefused("[1,]", "Unexpected character ']'");
+        assertRefused("[1", "Expected ',' or ']'");
+        assertRefused("\"open", "Unterminated string");
+        assertRefused("\"tab\there\"", "Control character in string");
+        assertRefused("\"\\x\"", "Invalid escape");
+        assertRefused("\"\\u00zz\"", "Invalid \\u escape");
+        assertRefused("\"\\u12 4\"", "Invalid \\u escape");
+        assertRefused("\"\\u+041\"", "Invalid \\u escape");
+        assertRefused("\"\\u004", "Incomplete \\u escape");
+        assertRefused("tru", "Expected 'true'");
+        assertRefused("nul", "Expected 'null'");
+        assertRefused("{} {}", "Unexpected text after the value");
+    }
+
+    @Test
+    void readsWhatJsonWriterWrites() throws IOException {
+        StringWriter out = new StringWriter();
+        String awkward = "line\nbreak \"quoted\" \\ \u0001 \u00e9";
+        new JsonWriter(out, true).beginObject()
+                .name("text").value(awkward)
+                .name("list").beginArray().value(1).value(2.5).value(true).value((String) null).endArray()
+                .endObject();
+
+        Map<?, ?> read = (Map<?, ?>) JsonReader.parse(out.toString());
+        assertEquals(awkward, read.get("text"));
+        assertEquals(Arrays.asList(1L, 2.5, true, null), read.get("list"));
+    }
+
+    private static Object unwrap(Object value, int levels) {
+        for (int i = 0; i < levels; i++) {
+            value = ((List<?>) value).get(0);
+        }
+        return value;
+    }
+
+    private static void assertRefused(String json, String message) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> JsonReader.parse(json));
+        assertTrue(e.getMessage().startsWith(message), () -> "Message for " + json + ": " + e.getMessage());
+        assertTrue(e.getMessage().contains(" at offset "), e.getMessage());
+    }
+}
@@ -0,0 +1,89 @@
+package com.aarsoma.deliverynote.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonWriterTest {
+
+    private final StringWriter out = new StringWriter();
+    private final JsonWriter json = new JsonWriter(out);
+
+    @Test
+    void escapesStrings() throws IOException {
+        json.value("quote \" backslash \\ slash / \n\r\t \u0000\u001f é€");
+
+        assertEquals("\"quote \\\" backslash \\\\ slash / \\n\\r\\t \\u0000\\u001f é€\"", out.toString());
+    }
+
+    @Test
+    void escapesNames() throws IOException {
+        json.beginObject().name("a\"b\n").value(1).endObject();
+
+        assertEquals("{\"a\\\"b\\n\":1}", out.toString());
+    }
+
+    @Test
+    void placesCommasInNestedValues() throws IOException {
+        json.beginObject()
+                .name("empty").beginArray().endArray()
+                .name("list").beginArray()
+                .value(1)
+                .beginObject().name("x").value("y").endObject()
+                .beginArray().endArray()
+                .value(false)
+                .endArray()
+                .name("object").beginObject().name("inner").beginObject().endObject().endObject()
+                .endObject();
+
+        assertEquals("{\"empty\":[],\"list\":[1,{\"x\":\"y\"},[],false],\"object\":{\"inner\":{}}}", out.toString());
+    }
+
+    @Test
+    void indentsWhenAsked() throws IOException {
+        new JsonWriter(out, true).beginObject()
+                .name("a").beginArray().value(1).value(2).endArray()
+                .name("b").beginObject().endObject()
+                .endObject();
+
+        assertEquals("{\n  \"a\": [\n    1,\n    2\n  ],\n  \"b\": {}\n}", out.toString());
+    }
+
+    @Test
+    void writesNumbersAcrossTheirRange() throws IOException {
+        json.beginArray()
+                .value(Long.MAX_VALUE)
+                .value(Long.MIN_VALUE)
+                .value(0.1)
+                .value(Double.MAX_VALUE)
+                .value(-Double.MIN_VALUE)
+                .value(Integer.valueOf(7))
+                .value(Float.valueOf(0.5f))
+                .endArray();
+
+        assertEquals("[9223372036854775807,-9223372036854775808,0.1,1.7976931348623157E308,-4.9E-324,7,0.5]",
+                out.toString());
+    }
+
+    @Test
+    void writesNullForValuesJsonCannotHold() throws IOException {
+        json.beginArray()
+                .value(Double.NaN)
+                .value(Double.POSITIVE_INFINITY)
+                .value((Number) null)
+                .value((String) null)
+                .endArray();
+
+        assertEquals("[null,null,null,null]", out.toString());
+    }
+
+    @Test
+    void writesRawValuesInPlace() throws IOException {
+        json.beginArray().rawValue("{\"a\":1}").rawValue("2").endArray();
+
+        assertEquals("[{\"a\":1},2]", out.toString());
+    }
+}